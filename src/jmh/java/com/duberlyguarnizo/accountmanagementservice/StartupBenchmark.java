@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time to the first successful request and resident memory at that point, for the default
+ * start, the fast-start profile, and the fast-start profile with a class data sharing archive.
+ * Each run starts the thin jar of {@code mvn -Pfast-start package} as a new process on a free
+ * port and polls it until it answers 2xx. The archive is trained by one unmeasured fast-start
+ * run the first time, and is kept in target/fast-start.jsa.
+ *
+ * <p>Plain JDK, run from the project directory with
+ * {@code java src/jmh/java/com/duberlyguarnizo/accountmanagementservice/StartupBenchmark.java
+ * [runs] [path]}. The path defaults to /actuator/info, which answers without Mongo; an API path
+ * also times the first creation of the lazily initialized request path.
+ */
+public class StartupBenchmark {
+  private static final Path TARGET = Path.of("target");
+  private static final Path ARCHIVE = TARGET.resolve("fast-start.jsa");
+  private static final Duration START_TIMEOUT = Duration.ofMinutes(2);
+  private static final Duration POLL_INTERVAL = Duration.ofMillis(10);
+  private static final String FAST_START = "--spring.profiles.active=fast-start";
+
+  private final Path jar;
+  private final String path;
+  private final HttpClient client = HttpClient.newBuilder()
+      .connectTimeout(Duration.ofSeconds(1))
+      .build();
+
+  private StartupBenchmark(Path jar, String path) {
+    this.jar = jar;
+    this.path = path;
+  }
+
+  public static void main(String[] args) throws Exception {
+    int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+    String path = args.length > 1 ? args[1] : "/actuator/info";
+    Optional<Path> jar = thinJar();
+    if (jar.isEmpty()) {
+      System.err.println("No thin jar in target, build it with mvn -Pfast-start package");
+      System.exit(1);
+    }
+    StartupBenchmark benchmark = new StartupBenchmark(jar.get(), path);
+    System.out.printf("%-16s %8s %12s %12s %12s%n", "start", "runs", "p50 ms", "max ms",
+        "p50 RSS MiB");
+    benchmark.measure("default", runs, List.of(), List.of());
+    benchmark.measure("fast-start", runs, List.of(), List.of(FAST_START));
+    if (Runtime.version().feature() < 13) {
+      System.out.println("fast-start+cds needs a JDK 13+ to train the archive, skipped");
+      return;
+    }
+    if (!Files.exists(ARCHIVE)) {
+      benchmark.run("cds-training", 0, List.of("-XX:ArchiveClassesAtExit=" + ARCHIVE),
+          List.of(FAST_START));
+    }
+    benchmark.measure("fast-start+cds", runs, List.of("-XX:SharedArchiveFile=" + ARCHIVE),
+        List.of(FAST_START));
+  }
+
+  private static Optional<Path> thinJar() throws IOException {
+    if (!Files.isDirectory(TARGET.resolve("lib"))) {
+      return Optional.empty();
+    }
+    try (Stream<Path> files = Files.list(TARGET)) {
+      return files.filter(file -> {
+        String name = file.getFileName().toString();
+        return name.startsWith("account-management-service-") && name.endsWith(".jar");
+      }).findFirst();
+    }
+  }
+
+  private void measure(String name, int runs, List<String> jvmOptions, List<String> arguments)
+      throws Exception {
+    List<Long> millis = new ArrayList<>();
+    List<Long> rssKibibytes = new ArrayList<>();
+    for (int run = 1; run <= runs; ++run) {
+      long[] sample = run(name, run, jvmOptions, arguments);
+      millis.add(sample[0]);
+      rssKibibytes.add(sample[1]);
+    }
+    Collections.sort(millis);
+    Collections.sort(rssKibibytes);
+    System.out.printf("%-16s %8d %12d %12d %12d%n", name, runs, millis.get(runs / 2),
+        millis.get(runs - 1), rssKibibytes.get(runs / 2) / 1024);
+  }
+
+  /**
+   * @return the milliseconds to the first successful request, and the resident set in KiB
+   *         right after it, -1 where /proc is not available.
+   */
+  private long[] run(String name, int run, List<String> jvmOptions, List<String> arguments)
+      throws Exception {
+    int port = freePort();
+    List<String> command = new ArrayList<>();
+    command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+    command.addAll(jvmOptions);
+    command.addAll(Arrays.asList("-jar", jar.toString(), "--server.port=" + port));
+    command.addAll(arguments);
+    File log = TARGET.resolve("startup-" + name + "-" + run + ".log").toFile();
+    HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+        .timeout(Duration.ofSeconds(5))
+        .build();
+
+    long started = System.nanoTime();
+    Process process = new ProcessBuilder(command).redirectErrorStream(true)
+        .redirectOutput(log).start();
+    try {
+      while (!answers(request)) {
+        if (!process.isAlive()) {
+          throw new IllegalStateException(name + " exited before answering, see " + log);
+        }
+        if (System.nanoTime() - started > START_TIMEOUT.toNanos()) {
+          throw new IllegalStateException(name + " did not answer in time, see " + log);
+        }
+        Thread.sleep(POLL_INTERVAL.toMillis());
+      }
+      long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+      return new long[] {millis, residentKibibytes(process.pid())};
+    } finally {
+      // a graceful stop, which is also when the training run writes the archive
+      process.destroy();
+      if (!process.waitFor(30, TimeUnit.SECONDS)) {
+        process.destroyForcibly().waitFor();
+      }
+    }
+  }
+
+  private boolean answers(HttpRequest request) throws InterruptedException {
+    try {
+      int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+      return status >= 200 && status < 300;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private static long residentKibibytes(long pid) throws IOException {
+    Path status = Path.of("/proc", Long.toString(pid), "status");
+    if (!Files.exists(status)) {
+      return -1;
+    }
+    try (Stream<String> lines = Files.lines(status)) {
+      return lines.filter(line -> line.startsWith("VmRSS:"))
+          .map(line -> Long.parseLong(line.replaceAll("\\D", "")))
+          .findFirst()
+          .orElse(-1L);
+    }
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
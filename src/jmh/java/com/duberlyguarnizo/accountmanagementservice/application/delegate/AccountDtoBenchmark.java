@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.application.delegate;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.AssetAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building the API model of a single account, including the Instant to OffsetDateTime
+ * conversion, as the delegate does for every account it returns.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AccountDtoBenchmark {
+  private AssetAccount assetAccount;
+  private PassiveAccount passiveAccount;
+
+  @Setup
+  public void setUp() {
+    assetAccount = new AssetAccount();
+    assetAccount.setClientId(UUID.randomUUID());
+    assetAccount.setAccountCode("19120100000042");
+    assetAccount.setAccountType(AccountType.ASSET);
+    assetAccount.setAssetAccountType(AssetAccountType.CREDIT_CARD_ACCOUNT);
+    assetAccount.setBalance(1_250_00);
+    assetAccount.setCreatedAt(Instant.now());
+    passiveAccount = new PassiveAccount();
+    passiveAccount.setClientId(UUID.randomUUID());
+    passiveAccount.setAccountCode("19110100000042");
+    passiveAccount.setAccountType(AccountType.PASSIVE);
+    passiveAccount.setPassiveAccountType(PassiveAccountType.SAVINGS_ACCOUNT);
+    passiveAccount.setBalance(730_15);
+    passiveAccount.setCreatedAt(Instant.now());
+  }
+
+  @Benchmark
+  public AssetAccountDto assetAccountDto() {
+    return AssetAccountApiDelegateImp.toAssetAccountDto(assetAccount);
+  }
+
+  @Benchmark
+  public PassiveAccountDto passiveAccountDto() {
+    return AssetAccountApiDelegateImp.toPassiveAccountDto(passiveAccount);
+  }
+}
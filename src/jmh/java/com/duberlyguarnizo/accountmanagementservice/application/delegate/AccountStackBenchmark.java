@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.application.delegate;
+
+import com.duberlyguarnizo.accountmanagementservice.application.rest.AccountUseCases;
+import com.duberlyguarnizo.accountmanagementservice.application.rest.ReactiveAccountUseCases;
+import com.duberlyguarnizo.accountmanagementservice.application.rest.ReactorAccountUseCases;
+import com.duberlyguarnizo.accountmanagementservice.application.rest.RxAccountUseCasesAdapter;
+import com.duberlyguarnizo.accountmanagementservice.domain.AccountBalanceDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.BalanceOperationDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountCreationDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.ClientType;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.ReactorAccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.AccountCodeAllocator;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.AssetAccountService;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.IdempotencyStore;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.InterServiceOperations;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.PassiveAccountService;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.PastDueDebtCheck;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.ReactorAssetAccountService;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.ReactorPassiveAccountService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Requests per millisecond from the delegate down to ports that answer at once, on the RxJava
+ * stack (rx) and on the Reactor stack (reactor, account.reactor.enabled). Run with -prof gc to
+ * compare the allocations per request.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountStackBenchmark {
+  private static final String ACCOUNT_CODE = "19110100000001";
+
+  @Param({"rx", "reactor"})
+  private String stack;
+
+  private AssetAccountApiDelegateImp delegate;
+  private PassiveAccountCreationDto creationDto;
+  private BalanceOperationDto depositDto;
+  private UUID accountId;
+
+  @Setup
+  public void setUp() {
+    // stubs rather than mocks: Mockito records a stack trace on every call it answers
+    InterServiceOperations operations = clientId -> Maybe.just(ClientType.REGULAR_CLIENT);
+    AccountCodeAllocator codeAllocator = stub(AccountCodeAllocator.class, Map.of(
+        "nextPassiveAccountCode", Single.just(ACCOUNT_CODE)));
+    PastDueDebtCheck pastDueDebtCheck = stub(PastDueDebtCheck.class, Map.of(
+        "hasPastDueDebt", Single.just(false)));
+    AccountPersistence persistence = stub(AccountPersistence.class, Map.of(
+        "getAccountBalance", Single.just(10_000L),
+        "getPassiveAccountsByClientId", Observable.empty(),
+        "createAccount", Completable.complete(),
+        "addToBalance", Single.just(true)));
+    AccountUseCases rxUseCases = new AccountUseCases(
+        new AssetAccountService(persistence, operations, codeAllocator, pastDueDebtCheck),
+        new PassiveAccountService(operations, persistence, codeAllocator, pastDueDebtCheck),
+        stub(IdempotencyStore.class, Map.of()), new SimpleMeterRegistry(), 500);
+    ReactiveAccountUseCases useCases;
+    if ("reactor".equals(stack)) {
+      ReactorAccountPersistence reactorPersistence = stub(ReactorAccountPersistence.class,
+          Map.of(
+              "getAccountBalance", Mono.just(10_000L),
+              "getPassiveAccountsByClientId", Flux.empty(),
+              "createAccount", Mono.empty(),
+              "addToBalance", Mono.just(true)));
+      useCases = new ReactorAccountUseCases(
+          new ReactorAssetAccountService(reactorPersistence, codeAllocator, pastDueDebtCheck),
+          new ReactorPassiveAccountService(operations, reactorPersistence, codeAllocator,
+              pastDueDebtCheck),
+          rxUseCases, stub(IdempotencyStore.class, Map.of()), new SimpleMeterRegistry());
+    } else {
+      useCases = new RxAccountUseCasesAdapter(rxUseCases);
+    }
+    delegate = new AssetAccountApiDelegateImp(useCases);
+    creationDto = PassiveAccountCreationDto.builder()
+        .clientId(UUID.randomUUID())
+        .balance(100.0)
+        .passiveAccountType(PassiveAccountCreationDto.PassiveAccountTypeEnum.SAVINGS_ACCOUNT)
+        .build();
+    depositDto = BalanceOperationDto.builder().amount(25.5).build();
+    accountId = UUID.randomUUID();
+  }
+
+  private static <T> T stub(Class<T> type, Map<String, Object> answers) {
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+        (proxy, method, args) -> {
+          Object answer = answers.get(method.getName());
+          if (answer == null) {
+            throw new UnsupportedOperationException(method.getName());
+          }
+          return answer;
+        }));
+  }
+
+  @Benchmark
+  public ResponseEntity<AccountBalanceDto> getAccountBalance() {
+    return delegate.getAccountBalance(ACCOUNT_CODE, null, null).block();
+  }
+
+  @Benchmark
+  public ResponseEntity<Void> increaseAccountBalance() {
+    return delegate.increaseAccountBalance(accountId, Mono.just(depositDto), null, null).block();
+  }
+
+  @Benchmark
+  public ResponseEntity<Void> createPassiveAccount() {
+    return delegate.createPassiveAccount(Mono.just(creationDto), null).block();
+  }
+}
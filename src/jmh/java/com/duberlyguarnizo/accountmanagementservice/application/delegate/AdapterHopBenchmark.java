@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.application.delegate;
+
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.adapter.rxjava.RxJava3Adapter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The cost of crossing between Reactor and RxJava with synchronous sources, so only the
+ * operators and the adapters are measured. A request crosses twice: the Mongo driver answers
+ * with Reactor, the persistence and the services work with RxJava, and the delegate hands
+ * Reactor back to WebFlux.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AdapterHopBenchmark {
+  private static final int LIST_SIZE = 100;
+  private final Integer value = 42;
+
+  @Benchmark
+  public void monoOnly(Blackhole blackhole) {
+    Mono.just(value).map(v -> v + 1).subscribe(blackhole::consume);
+  }
+
+  @Benchmark
+  public void singleOnly(Blackhole blackhole) {
+    Single.just(value).map(v -> v + 1).subscribe(blackhole::consume);
+  }
+
+  @Benchmark
+  public void monoToSingle(Blackhole blackhole) {
+    RxJava3Adapter.monoToSingle(Mono.just(value)).map(v -> v + 1).subscribe(blackhole::consume);
+  }
+
+  @Benchmark
+  public void singleToMono(Blackhole blackhole) {
+    RxJava3Adapter.singleToMono(Single.just(value).map(v -> v + 1))
+        .subscribe(blackhole::consume);
+  }
+
+  /**
+   * A single value read the way a request reads it: Mongo to persistence to delegate.
+   */
+  @Benchmark
+  public void requestRoundTrip(Blackhole blackhole) {
+    RxJava3Adapter.singleToMono(RxJava3Adapter.monoToSingle(Mono.just(value)).map(v -> v + 1))
+        .subscribe(blackhole::consume);
+  }
+
+  /**
+   * A list of accounts read the way the client listing reads it: a Flux turned into an
+   * Observable, collected, and handed back as a Mono.
+   */
+  @Benchmark
+  public void listRoundTrip(Blackhole blackhole) {
+    Observable<Integer> accounts = RxJava3Adapter.fluxToObservable(Flux.range(0, LIST_SIZE));
+    RxJava3Adapter.singleToMono(accounts.toList()).subscribe(blackhole::consume);
+  }
+
+  @Benchmark
+  public void listReactorOnly(Blackhole blackhole) {
+    Flux.range(0, LIST_SIZE).collectList().subscribe(blackhole::consume);
+  }
+}
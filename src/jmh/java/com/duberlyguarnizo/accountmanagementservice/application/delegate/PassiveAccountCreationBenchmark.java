@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.application.delegate;
+
+import static org.mockito.Mockito.mock;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import com.duberlyguarnizo.accountmanagementservice.application.rest.AccountUseCases;
+import com.duberlyguarnizo.accountmanagementservice.application.rest.RxAccountUseCasesAdapter;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountCreationDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.ClientType;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.AccountCodeAllocator;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.AssetAccountService;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.IdempotencyStore;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.PassiveAccountService;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.PastDueDebtCheck;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.logging.DroppingAsyncAppender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Mono;
+
+/**
+ * Requests per millisecond through the passive account creation path, from the delegate down to
+ * a persistence that answers at once, so what is left is the code and its logging. The log goes
+ * to a file at INFO with the console pattern, written by the request thread (sync) or through
+ * the async appender of logback-spring.xml (async).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PassiveAccountCreationBenchmark {
+  @Param({"sync", "async"})
+  private String appender;
+
+  private AssetAccountApiDelegateImp delegate;
+  private PassiveAccountCreationDto dto;
+  private DroppingAsyncAppender asyncAppender;
+
+  @Setup
+  public void setUp() {
+    configureLogging();
+    // stubs rather than mocks: Mockito records a stack trace on every call it answers
+    PassiveAccountService passiveService = new PassiveAccountService(
+        clientId -> Maybe.just(ClientType.REGULAR_CLIENT),
+        stub(AccountPersistence.class, Map.of(
+            "getPassiveAccountsByClientId", Observable.empty(),
+            "createAccount", Completable.complete())),
+        stub(AccountCodeAllocator.class, Map.of(
+            "nextPassiveAccountCode", Single.just("19110100000001"))),
+        stub(PastDueDebtCheck.class, Map.of("hasPastDueDebt", Single.just(false))));
+    AccountUseCases useCases = new AccountUseCases(mock(AssetAccountService.class),
+        passiveService, mock(IdempotencyStore.class), new SimpleMeterRegistry(), 500);
+    delegate = new AssetAccountApiDelegateImp(new RxAccountUseCasesAdapter(useCases));
+    dto = PassiveAccountCreationDto.builder()
+        .clientId(UUID.randomUUID())
+        .balance(100.0)
+        .passiveAccountType(PassiveAccountCreationDto.PassiveAccountTypeEnum.SAVINGS_ACCOUNT)
+        .build();
+  }
+
+  private static <T> T stub(Class<T> type, Map<String, Object> answers) {
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+        (proxy, method, args) -> {
+          Object answer = answers.get(method.getName());
+          if (answer == null) {
+            throw new UnsupportedOperationException(method.getName());
+          }
+          return answer;
+        }));
+  }
+
+  private void configureLogging() {
+    LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+    context.reset();
+    PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+    encoder.setContext(context);
+    encoder.setPattern("%d{yyyy-MM-dd HH:mm:ss.SSS} %5p --- [%15.15t] %-40.40logger{39} : %m%n");
+    encoder.start();
+    FileAppender<ILoggingEvent> file = new FileAppender<>();
+    file.setContext(context);
+    file.setName("FILE");
+    file.setFile("target/jmh-passive-account-creation.log");
+    file.setAppend(false);
+    file.setEncoder(encoder);
+    file.start();
+    Appender<ILoggingEvent> root = file;
+    if ("async".equals(appender)) {
+      asyncAppender = new DroppingAsyncAppender();
+      asyncAppender.setContext(context);
+      asyncAppender.setName("ASYNC_FILE");
+      asyncAppender.setQueueSize(8192);
+      asyncAppender.addAppender(file);
+      asyncAppender.start();
+      root = asyncAppender;
+    }
+    ch.qos.logback.classic.Logger rootLogger = context.getLogger("ROOT");
+    rootLogger.setLevel(ch.qos.logback.classic.Level.INFO);
+    rootLogger.addAppender(root);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (asyncAppender != null) {
+      System.out.println("Dropped log events: " + asyncAppender.getDroppedCount());
+    }
+    ((LoggerContext) LoggerFactory.getILoggerFactory()).stop();
+  }
+
+  @Benchmark
+  public ResponseEntity<Void> createPassiveAccount() {
+    return delegate.createPassiveAccount(Mono.just(dto), null).block();
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.application.rest;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.AccountListForUserDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Writing the account list of a client to JSON, with the ObjectMapper setup WebFlux uses, for
+ * portfolios from a single account up to corporate clients with thousands.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountListSerializationBenchmark {
+  @Param({"1", "10", "100", "1000", "10000"})
+  private int accounts;
+
+  private ObjectMapper objectMapper;
+  private AccountListForUserDto accountList;
+
+  @Setup
+  public void setUp() {
+    objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    UUID clientId = UUID.randomUUID();
+    OffsetDateTime createdAt = OffsetDateTime.now(ZoneOffset.UTC);
+    List<AssetAccountDto> assetAccounts = new ArrayList<>();
+    List<PassiveAccountDto> passiveAccounts = new ArrayList<>();
+    for (int i = 0; i < accounts; ++i) {
+      if (i % 2 == 0) {
+        passiveAccounts.add(PassiveAccountDto.builder()
+            .accountCode(String.format("191101%08d", i))
+            .balance(i * 10.25)
+            .clientId(clientId)
+            .passiveAccountType(PassiveAccountDto.PassiveAccountTypeEnum.SAVINGS_ACCOUNT)
+            .createdAt(createdAt)
+            .build());
+      } else {
+        assetAccounts.add(AssetAccountDto.builder()
+            .accountCode(String.format("191201%08d", i))
+            .balance(i * 3.5)
+            .clientId(clientId)
+            .assetAccountType(AssetAccountDto.AssetAccountTypeEnum.CREDIT_CARD_ACCOUNT)
+            .createdAt(createdAt)
+            .build());
+      }
+    }
+    accountList = AccountListForUserDto.builder()
+        .assetAccounts(assetAccounts)
+        .passiveAccounts(passiveAccounts)
+        .build();
+  }
+
+  @Benchmark
+  public byte[] serialize() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(accountList);
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.domain.model;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The two paths balances go through most: summing the balances of a client's accounts and
+ * checking a charge against a card limit, with the same amounts held as double, BigDecimal and
+ * minor units.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoneyBenchmark {
+  @Param({"10", "10000"})
+  private int accounts;
+
+  private double[] doubleBalances;
+  private BigDecimal[] decimalBalances;
+  private long[] minorBalances;
+  private double[] doubleLimits;
+  private BigDecimal[] decimalLimits;
+  private long[] minorLimits;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    doubleBalances = new double[accounts];
+    decimalBalances = new BigDecimal[accounts];
+    minorBalances = new long[accounts];
+    doubleLimits = new double[accounts];
+    decimalLimits = new BigDecimal[accounts];
+    minorLimits = new long[accounts];
+    for (int i = 0; i < accounts; ++i) {
+      long balance = random.nextInt(1_000_000_00);
+      long limit = balance + random.nextInt(10_000_00);
+      minorBalances[i] = balance;
+      doubleBalances[i] = Money.toMajor(balance);
+      decimalBalances[i] = BigDecimal.valueOf(balance, Money.SCALE);
+      minorLimits[i] = limit;
+      doubleLimits[i] = Money.toMajor(limit);
+      decimalLimits[i] = BigDecimal.valueOf(limit, Money.SCALE);
+    }
+  }
+
+  @Benchmark
+  public double sumDouble() {
+    double sum = 0;
+    for (double balance : doubleBalances) {
+      sum += balance;
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public BigDecimal sumBigDecimal() {
+    BigDecimal sum = BigDecimal.ZERO;
+    for (BigDecimal balance : decimalBalances) {
+      sum = sum.add(balance);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long sumMinorUnits() {
+    long sum = 0;
+    for (long balance : minorBalances) {
+      sum = Money.add(sum, balance);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public void limitCheckDouble(Blackhole blackhole) {
+    double amount = 12.34;
+    for (int i = 0; i < accounts; ++i) {
+      blackhole.consume(doubleBalances[i] + amount < doubleLimits[i]);
+    }
+  }
+
+  @Benchmark
+  public void limitCheckBigDecimal(Blackhole blackhole) {
+    BigDecimal amount = BigDecimal.valueOf(1234, Money.SCALE);
+    for (int i = 0; i < accounts; ++i) {
+      blackhole.consume(decimalBalances[i].add(amount).compareTo(decimalLimits[i]) < 0);
+    }
+  }
+
+  @Benchmark
+  public void limitCheckMinorUnits(Blackhole blackhole) {
+    long amount = 1234;
+    for (int i = 0; i < accounts; ++i) {
+      blackhole.consume(Money.staysBelow(minorBalances[i], amount, minorLimits[i]));
+    }
+  }
+}
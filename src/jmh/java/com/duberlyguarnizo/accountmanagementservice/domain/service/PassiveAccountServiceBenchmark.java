@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.domain.service;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.ClientType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The creation rules checked for every new passive account, in the request path and for every
+ * account of a batch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PassiveAccountServiceBenchmark {
+  @Param({"0", "2"})
+  private int existingAccounts;
+
+  private PassiveAccount account;
+  private List<PassiveAccount> accounts;
+
+  @Setup
+  public void setUp() {
+    account = new PassiveAccount();
+    account.setPassiveAccountType(PassiveAccountType.FIXED_TERM_SAVINGS_ACCOUNT);
+    accounts = new ArrayList<>();
+    for (int i = 0; i < existingAccounts; ++i) {
+      PassiveAccount existing = new PassiveAccount();
+      existing.setPassiveAccountType(PassiveAccountType.values()[i]);
+      accounts.add(existing);
+    }
+  }
+
+  @Benchmark
+  public boolean isValidCreationForRegularClient() {
+    return PassiveAccountService.isValidCreation(account, ClientType.REGULAR_CLIENT, accounts);
+  }
+
+  @Benchmark
+  public boolean isValidCreationForCorporateClient() {
+    return PassiveAccountService.isValidCreation(account, ClientType.CORPORATE_CLIENT, accounts);
+  }
+}
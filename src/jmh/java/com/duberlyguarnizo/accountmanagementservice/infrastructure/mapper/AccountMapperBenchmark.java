@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.mapper;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.AssetAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.AssetAccountEntity;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.PassiveAccountEntity;
+import java.time.Instant;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mapping one account between the domain, the entity and, for summaries, the projected
+ * document. Every account read or written pays one of these.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AccountMapperBenchmark {
+  private AssetAccount assetAccount;
+  private PassiveAccount passiveAccount;
+  private AssetAccountEntity assetEntity;
+  private PassiveAccountEntity passiveEntity;
+  private Document assetSummary;
+
+  @Setup
+  public void setUp() {
+    assetAccount = new AssetAccount();
+    assetAccount.setAccountId(UUID.randomUUID());
+    assetAccount.setClientId(UUID.randomUUID());
+    assetAccount.setAccountCode("19120100000042");
+    assetAccount.setAccountType(AccountType.ASSET);
+    assetAccount.setAssetAccountType(AssetAccountType.CREDIT_CARD_ACCOUNT);
+    assetAccount.setBalance(1_250_00);
+    assetAccount.setLoanOrCreditCardLimit(5_000_00);
+    assetAccount.setCreatedAt(Instant.now());
+    assetAccount.setLastPaymentDate(Instant.now());
+    passiveAccount = new PassiveAccount();
+    passiveAccount.setAccountId(UUID.randomUUID());
+    passiveAccount.setClientId(UUID.randomUUID());
+    passiveAccount.setAccountCode("19110100000042");
+    passiveAccount.setAccountType(AccountType.PASSIVE);
+    passiveAccount.setPassiveAccountType(PassiveAccountType.SAVINGS_ACCOUNT);
+    passiveAccount.setBalance(730_15);
+    passiveAccount.setCreatedAt(Instant.now());
+    assetEntity = AccountMapper.toEntity(assetAccount);
+    passiveEntity = AccountMapper.toEntity(passiveAccount);
+    assetSummary = new Document("accountCode", assetAccount.getAccountCode())
+        .append("balance", assetAccount.getBalance())
+        .append("clientId", assetAccount.getClientId())
+        .append("assetAccountType", assetAccount.getAssetAccountType().name())
+        .append("createdAt", Date.from(assetAccount.getCreatedAt()));
+  }
+
+  @Benchmark
+  public AssetAccountEntity assetToEntity() {
+    return AccountMapper.toEntity(assetAccount);
+  }
+
+  @Benchmark
+  public AssetAccount assetToDomain() {
+    return AccountMapper.toDomain(assetEntity);
+  }
+
+  @Benchmark
+  public PassiveAccountEntity passiveToEntity() {
+    return AccountMapper.toEntity(passiveAccount);
+  }
+
+  @Benchmark
+  public PassiveAccount passiveToDomain() {
+    return AccountMapper.toDomain(passiveEntity);
+  }
+
+  @Benchmark
+  public AssetAccountDto summaryToDto() {
+    return AccountMapper.toAssetAccountDto(assetSummary);
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Formatting an account code from a leased sequence number, the part of code allocation that
+ * runs for every new account. Leasing a block costs a Mongo round trip once per block and is
+ * left out.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AccountCodeBenchmark {
+  private final String typePrefix = AssetAccountType.CREDIT_CARD_ACCOUNT.getCodePrefix();
+  private long sequence;
+
+  @Benchmark
+  public String format() {
+    sequence = (sequence + 1) % 100_000_000L;
+    return AccountCodeAllocatorImpl.format(typePrefix, sequence);
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.AccountBalanceView;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.AssetAccountEntity;
+import com.mongodb.MongoClientSettings;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.UuidRepresentation;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.projection.EntityProjection;
+import org.springframework.data.projection.EntityProjectionIntrospector;
+import org.springframework.data.projection.EntityProjectionIntrospector.ProjectionPredicate;
+
+/**
+ * The client side of one balance read, from the reply bytes to the balance: the whole account
+ * document read into its entity (entity), as findByAccountCode did, against the covered
+ * projection read into {@link AccountBalanceView} (projection). The reply sizes, which are what
+ * each read moves over the wire besides the fixed message framing, are printed once at setup.
+ * The server side, an index-only plan instead of a document fetch, needs a live Mongo and is
+ * left out.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BalanceReadBenchmark {
+  private MappingMongoConverter converter;
+  private EntityProjection<AccountBalanceView, AssetAccountEntity> projection;
+  private Codec<Document> codec;
+  private byte[] entityReply;
+  private byte[] projectionReply;
+
+  @Setup
+  public void setUp() {
+    MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+    MongoMappingContext mappingContext = new MongoMappingContext();
+    mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+    converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+    converter.setCustomConversions(conversions);
+    converter.afterPropertiesSet();
+    projection = EntityProjectionIntrospector.create(converter.getProjectionFactory(),
+            ProjectionPredicate.typeHierarchy(), mappingContext)
+        .introspect(AccountBalanceView.class, AssetAccountEntity.class);
+    codec = CodecRegistries.withUuidRepresentation(MongoClientSettings.getDefaultCodecRegistry(),
+        UuidRepresentation.STANDARD).get(Document.class);
+
+    AssetAccountEntity entity = AssetAccountEntity.builder()
+        .id(UUID.randomUUID().toString())
+        .accountCode("19120100000042")
+        .balance(1_250_00)
+        .loanOrCreditCardLimit(5_000_00)
+        .clientId(UUID.randomUUID())
+        .assetAccountType(AssetAccountType.CREDIT_CARD_ACCOUNT)
+        .accountType(AccountType.ASSET)
+        .createdAt(Instant.now())
+        .ledgerSeq(42L)
+        .lastPaymentDate(Instant.now())
+        .build();
+    Document document = new Document();
+    converter.write(entity, document);
+    entityReply = encode(document);
+    projectionReply = encode(new Document("accountCode", entity.getAccountCode())
+        .append("balance", entity.getBalance()));
+    System.out.println("Reply bytes per balance read: entity " + entityReply.length
+        + ", projection " + projectionReply.length);
+  }
+
+  private byte[] encode(Document document) {
+    BasicOutputBuffer buffer = new BasicOutputBuffer();
+    codec.encode(new BsonBinaryWriter(buffer), document, EncoderContext.builder().build());
+    return buffer.toByteArray();
+  }
+
+  private Document decode(byte[] reply) {
+    return codec.decode(new BsonBinaryReader(ByteBuffer.wrap(reply)),
+        DecoderContext.builder().build());
+  }
+
+  @Benchmark
+  public long entity() {
+    return converter.read(AssetAccountEntity.class, decode(entityReply)).getBalance();
+  }
+
+  @Benchmark
+  public long projection() {
+    return converter.project(projection, decode(projectionReply)).getBalance();
+  }
+}
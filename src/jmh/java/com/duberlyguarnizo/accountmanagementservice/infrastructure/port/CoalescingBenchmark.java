@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Deposits to one hot account from several writers at once, straight to the document (direct)
+ * and through the lanes (lanes). Mongo applies the writes to one document one at a time, so the
+ * simulated document holds a single thread for {@link #WRITE_MS} per write. Each invocation is
+ * a burst of {@link #OPERATIONS} deposits split between the writers, and the sampled time is
+ * the time of a burst divided by its deposits: its inverse is the throughput, and its p0.99
+ * comes from the slowest bursts.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CoalescingBenchmark {
+  private static final long WRITE_MS = 1;
+  private static final int OPERATIONS = 1024;
+
+  @Param({"1", "4", "16", "64"})
+  private int writers;
+
+  private final UUID accountId = UUID.randomUUID();
+  private ExecutorService documentLock;
+  private AccountPersistence document;
+  private AccountPersistence lanes;
+
+  @Setup
+  public void setUp() {
+    documentLock = Executors.newSingleThreadExecutor();
+    Scheduler documentScheduler = Schedulers.from(documentLock);
+    document = mock(AccountPersistence.class);
+    when(document.addToBalance(eq(AccountType.PASSIVE), eq(accountId), anyLong()))
+        .thenAnswer(call -> Single.fromCallable(() -> {
+          TimeUnit.MILLISECONDS.sleep(WRITE_MS);
+          return true;
+        }).subscribeOn(documentScheduler));
+    lanes = new CoalescingAccountPersistence(document, 16, Duration.ofMillis(1), 256,
+        reactor.core.scheduler.Schedulers.parallel());
+  }
+
+  @TearDown
+  public void tearDown() {
+    documentLock.shutdownNow();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(OPERATIONS)
+  public void direct() {
+    burst(document);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(OPERATIONS)
+  public void lanes() {
+    burst(lanes);
+  }
+
+  private void burst(AccountPersistence persistence) {
+    Flowable.range(0, writers)
+        .flatMapCompletable(writer -> Flowable.range(0, OPERATIONS / writers)
+            .concatMapCompletable(i -> persistence.addToBalance(AccountType.PASSIVE, accountId, 1)
+                .ignoreElement()))
+        .blockingAwait();
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.metrics;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.core.SingleTransformer;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Mono;
+
+/**
+ * What timing a call costs: the same trivial Single and Mono with and without a pipeline timer,
+ * recorded into a Prometheus registry the way the service does, on one thread and on four
+ * recording into the same timer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PipelineMetricsBenchmark {
+  private PipelineMetrics metrics;
+  private SingleTransformer<Long, Long> singleTimer;
+  private Function<Mono<Long>, Mono<Long>> monoTimer;
+
+  @Setup
+  public void setUp() {
+    metrics = new PipelineMetrics(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT),
+        "benchmark");
+    singleTimer = metrics.single("single");
+    monoTimer = metrics.mono("mono");
+  }
+
+  @Benchmark
+  public Long single() {
+    return Single.just(1L).blockingGet();
+  }
+
+  @Benchmark
+  public Long singleTimed() {
+    return Single.just(1L).compose(singleTimer).blockingGet();
+  }
+
+  /**
+   * Looks the pipeline up by method on every call, as the decorators do.
+   */
+  @Benchmark
+  public Long singleTimedByMethod() {
+    return Single.just(1L).compose(metrics.<Long>single("single")).blockingGet();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public Long singleTimedContended() {
+    return Single.just(1L).compose(singleTimer).blockingGet();
+  }
+
+  @Benchmark
+  public Long mono() {
+    return Mono.just(1L).block();
+  }
+
+  @Benchmark
+  public Long monoTimed() {
+    return Mono.just(1L).transform(monoTimer).block();
+  }
+}
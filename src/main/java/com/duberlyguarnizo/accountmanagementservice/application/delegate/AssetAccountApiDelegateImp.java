@@ -6,30 +6,55 @@ package com.duberlyguarnizo.accountmanagementservice.application.delegate;
 
 import com.duberlyguarnizo.accountmanagementservice.api.AccountsApi;
 import com.duberlyguarnizo.accountmanagementservice.api.AccountsApiDelegate;
-import com.duberlyguarnizo.accountmanagementservice.application.rest.AccountUseCases;
+import com.duberlyguarnizo.accountmanagementservice.application.rest.ReactiveAccountUseCases;
+import com.duberlyguarnizo.accountmanagementservice.domain.AccountBalanceDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.AccountBalancesQueryDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.AccountCreationResultDto;
 import com.duberlyguarnizo.accountmanagementservice.domain.AccountListForUserDto;
 import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountCreationDto;
 import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.BalanceOperationDto;
 import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountCreationDto;
 import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
 import com.duberlyguarnizo.accountmanagementservice.domain.model.AssetAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Money;
 import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
+import com.duberlyguarnizo.accountmanagementservice.exception.AccountDoesNotExistException;
+import com.duberlyguarnizo.accountmanagementservice.exception.BulkheadFullException;
+import com.duberlyguarnizo.accountmanagementservice.exception.CreditCardLimitReachedException;
+import com.duberlyguarnizo.accountmanagementservice.exception.IdempotencyKeyReusedException;
+import com.duberlyguarnizo.accountmanagementservice.exception.IdempotentRequestInProgressException;
+import com.duberlyguarnizo.accountmanagementservice.exception.IdempotentRequestOutcomeUnknownException;
+import com.duberlyguarnizo.accountmanagementservice.exception.IncompatibleAccountTypeException;
+import com.duberlyguarnizo.accountmanagementservice.exception.InsufficientBalanceException;
+import com.duberlyguarnizo.accountmanagementservice.exception.OverpaidAssetAccountException;
 import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ServerWebExchange;
-import reactor.adapter.rxjava.RxJava3Adapter;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Service
 @Slf4j
 public class AssetAccountApiDelegateImp implements AccountsApiDelegate {
-  private final AccountUseCases useCases;
+  private static final int DEFAULT_PAGE_SIZE = 100;
+  private static final int MAX_PAGE_SIZE = 1000;
+  private static final int MAX_BALANCE_QUERY_SIZE = 1000;
+  private final ReactiveAccountUseCases useCases;
 
-  public AssetAccountApiDelegateImp(AccountUseCases useCases) {
+  public AssetAccountApiDelegateImp(ReactiveAccountUseCases useCases) {
     this.useCases = useCases;
   }
 
@@ -42,17 +67,50 @@ public class AssetAccountApiDelegateImp implements AccountsApiDelegate {
    * @return New account created. (status code 201)
    *     or Bad request. Check the request body. (status code 400)
    *     or Account not created. Internal server error. (status code 500)
+   *     or The service is at capacity. Retry later. (status code 503)
    * @see AccountsApi#createAssetAccount
    */
   @Override
   public Mono<ResponseEntity<Void>> createAssetAccount(
       Mono<AssetAccountCreationDto> assetAccountCreationDto, ServerWebExchange exchange) {
-    try {
-      useCases.createAssetAccount(RxJava3Adapter.monoToSingle(assetAccountCreationDto));
-      return Mono.just(new ResponseEntity<>(HttpStatus.CREATED));
-    } catch (RuntimeException e) {
-      return Mono.just(new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR));
-    }
+    return useCases.createAssetAccount(assetAccountCreationDto)
+        .thenReturn(new ResponseEntity<Void>(HttpStatus.CREATED))
+        .onErrorResume(BulkheadFullException.class, e -> overloaded())
+        .onErrorResume(RuntimeException.class, e -> {
+          log.error("Could not create an asset account: {}", e.getMessage());
+          return Mono.just(new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR));
+        });
+  }
+
+  /**
+   * POST /accounts/asset/batch : Create many asset accounts
+   * Create asset accounts from a stream of newline delimited JSON objects.
+   *
+   * @param assetAccountCreationDto (required)
+   * @param exchange                The request exchange
+   * @return Result of every account in the request. (status code 200)
+   * @see AccountsApi#createAssetAccounts
+   */
+  @Override
+  public Mono<ResponseEntity<Flux<AccountCreationResultDto>>> createAssetAccounts(
+      Flux<AssetAccountCreationDto> assetAccountCreationDto, ServerWebExchange exchange) {
+    return Mono.just(ResponseEntity.ok(useCases.createAssetAccounts(assetAccountCreationDto)));
+  }
+
+  /**
+   * POST /accounts/passive/batch : Create many passive accounts
+   * Create passive accounts from a stream of newline delimited JSON objects.
+   *
+   * @param passiveAccountCreationDto (required)
+   * @param exchange                  The request exchange
+   * @return Result of every account in the request. (status code 200)
+   * @see AccountsApi#createPassiveAccounts
+   */
+  @Override
+  public Mono<ResponseEntity<Flux<AccountCreationResultDto>>> createPassiveAccounts(
+      Flux<PassiveAccountCreationDto> passiveAccountCreationDto, ServerWebExchange exchange) {
+    return Mono.just(ResponseEntity.ok(useCases.createPassiveAccounts(
+        passiveAccountCreationDto)));
   }
 
   /**
@@ -64,45 +122,227 @@ public class AssetAccountApiDelegateImp implements AccountsApiDelegate {
    * @return New account created. (status code 201)
    *     or Bad request. Check the request body. (status code 400)
    *     or Account not created. Internal server error. (status code 500)
+   *     or The service is at capacity. Retry later. (status code 503)
    * @see AccountsApi#createPassiveAccount
    */
   @Override
   public Mono<ResponseEntity<Void>> createPassiveAccount(
       Mono<PassiveAccountCreationDto> passiveAccountCreationDto, ServerWebExchange exchange) {
-    log.warn("Creating account at delegate");
-    return passiveAccountCreationDto.flatMap(dto -> {
-      useCases.createPassiveAccount(dto).blockingSubscribe();
-      log.warn("Account created at delegate");
-      return Mono.just(new ResponseEntity<Void>(HttpStatus.CREATED));
-    }).switchIfEmpty(Mono.error(new Exception("passiveAccountCreationDto was empty")));
+    return passiveAccountCreationDto.flatMap(dto ->
+        useCases.createPassiveAccount(dto)
+            .thenReturn(new ResponseEntity<Void>(HttpStatus.CREATED))
+    ).switchIfEmpty(Mono.error(new Exception("passiveAccountCreationDto was empty")))
+        .onErrorResume(BulkheadFullException.class, e -> overloaded());
   }
 
   /**
+   * POST /accounts/asset/{accountId}/charges : Charge a credit card
+   * Add the amount to the debt of a credit card account, as long as it stays within the card
+   * limit.
    *
-   * GET /accounts/{clientId} : Get accounts for client
-   * Composed list of accounts for the specified client.
+   * @param accountId           The internal id of the account. (required)
+   * @param balanceOperationDto (required)
+   * @param idempotencyKey      Unique key chosen by the caller for this operation. (optional)
+   * @param exchange            The request exchange
+   * @return Amount charged. (status code 204)
+   *     or No account found with the provided account id. (status code 404)
+   *     or A request with the same idempotency key is still being processed. (status code 409)
+   *     or The card limit would be exceeded, the account is not a credit card, or the
+   *     idempotency key was used for a different request. (status code 422)
+   *     or The service is at capacity. Retry later. (status code 503)
+   * @see AccountsApi#increaseCreditCardDebt
+   */
+  @Override
+  public Mono<ResponseEntity<Void>> increaseCreditCardDebt(
+      UUID accountId, Mono<BalanceOperationDto> balanceOperationDto, String idempotencyKey,
+      ServerWebExchange exchange) {
+    return changeBalance(balanceOperationDto, amount ->
+        useCases.increaseCreditCardDebt(accountId, amount, idempotencyKey));
+  }
+
+  /**
+   * POST /accounts/asset/{accountId}/payments : Pay a loan or credit card
+   * Subtract the amount from the debt of a loan or credit card account.
    *
-   * @param clientId the Id card or legal Id of the client. (optional)
-   * @param exchange The request exchange
+   * @param accountId           The internal id of the account. (required)
+   * @param balanceOperationDto (required)
+   * @param idempotencyKey      Unique key chosen by the caller for this operation. (optional)
+   * @param exchange            The request exchange
+   * @return Payment applied. (status code 204)
+   *     or No account found with the provided account id. (status code 404)
+   *     or A request with the same idempotency key is still being processed. (status code 409)
+   *     or The amount is more than the debt, or the idempotency key was used for a different
+   *     request. (status code 422)
+   *     or The service is at capacity. Retry later. (status code 503)
+   * @see AccountsApi#payLoanOrCreditCard
+   */
+  @Override
+  public Mono<ResponseEntity<Void>> payLoanOrCreditCard(
+      UUID accountId, Mono<BalanceOperationDto> balanceOperationDto, String idempotencyKey,
+      ServerWebExchange exchange) {
+    return changeBalance(balanceOperationDto, amount ->
+        useCases.payLoanOrCreditCard(accountId, amount, idempotencyKey));
+  }
+
+  /**
+   * POST /accounts/passive/{accountId}/deposits : Deposit into a passive account
+   * Add the amount to the balance of a passive account.
+   *
+   * @param accountId           The internal id of the account. (required)
+   * @param balanceOperationDto (required)
+   * @param idempotencyKey      Unique key chosen by the caller for this operation. (optional)
+   * @param exchange            The request exchange
+   * @return Deposit applied. (status code 204)
+   *     or No passive account found with the provided account id. (status code 404)
+   *     or A request with the same idempotency key is still being processed. (status code 409)
+   *     or The idempotency key was used for a different request. (status code 422)
+   *     or The service is at capacity. Retry later. (status code 503)
+   * @see AccountsApi#increaseAccountBalance
+   */
+  @Override
+  public Mono<ResponseEntity<Void>> increaseAccountBalance(
+      UUID accountId, Mono<BalanceOperationDto> balanceOperationDto, String idempotencyKey,
+      ServerWebExchange exchange) {
+    return changeBalance(balanceOperationDto, amount ->
+        useCases.increaseAccountBalance(accountId, amount, idempotencyKey));
+  }
+
+  /**
+   * POST /accounts/passive/{accountId}/withdrawals : Withdraw from a passive account
+   * Subtract the amount from the balance of a passive account.
+   *
+   * @param accountId           The internal id of the account. (required)
+   * @param balanceOperationDto (required)
+   * @param idempotencyKey      Unique key chosen by the caller for this operation. (optional)
+   * @param exchange            The request exchange
+   * @return Withdrawal applied. (status code 204)
+   *     or No passive account found with the provided account id. (status code 404)
+   *     or A request with the same idempotency key is still being processed. (status code 409)
+   *     or The balance is less than the amount, or the idempotency key was used for a
+   *     different request. (status code 422)
+   *     or The service is at capacity. Retry later. (status code 503)
+   * @see AccountsApi#decreaseAccountBalance
+   */
+  @Override
+  public Mono<ResponseEntity<Void>> decreaseAccountBalance(
+      UUID accountId, Mono<BalanceOperationDto> balanceOperationDto, String idempotencyKey,
+      ServerWebExchange exchange) {
+    return changeBalance(balanceOperationDto, amount ->
+        useCases.decreaseAccountBalance(accountId, amount, idempotencyKey));
+  }
+
+  private static Mono<ResponseEntity<Void>> changeBalance(
+      Mono<BalanceOperationDto> balanceOperationDto, Function<Long, Mono<Void>> operation) {
+    return balanceOperationDto
+        .flatMap(dto -> operation.apply(Money.ofMajor(dto.getAmount()))
+            .thenReturn(ResponseEntity.noContent().<Void>build()))
+        .onErrorResume(AccountDoesNotExistException.class,
+            e -> Mono.just(ResponseEntity.notFound().build()))
+        .onErrorResume(e -> e instanceof IdempotentRequestInProgressException
+                            || e instanceof IdempotentRequestOutcomeUnknownException,
+            e -> Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).build()))
+        .onErrorResume(BulkheadFullException.class, e -> overloaded())
+        .onErrorResume(e -> e instanceof CreditCardLimitReachedException
+                            || e instanceof IncompatibleAccountTypeException
+                            || e instanceof InsufficientBalanceException
+                            || e instanceof OverpaidAssetAccountException
+                            || e instanceof IdempotencyKeyReusedException
+                            // the amount or the resulting balance does not fit in a long
+                            || e instanceof ArithmeticException,
+            e -> Mono.just(ResponseEntity.unprocessableEntity().build()));
+  }
+
+  /**
+   * A full bulkhead fails the request at once, so the client backs off and retries instead of
+   * waiting behind a queue that is not moving.
+   */
+  private static <T> Mono<ResponseEntity<T>> overloaded() {
+    return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+  }
+
+  /**
+   * GET /accounts/balances/{accountCode} : Get the balance of an account
+   * Get the current balance of an account, or the balance it had at a past instant.
+   *
+   * @param accountCode The account number (required)
+   * @param at          Return the balance the account had at this instant instead of the
+   *                    current one. (optional)
+   * @param exchange    The request exchange
    * @return Successful Operation (status code 200)
-   * @see AccountsApi#getAccountsByClientId
+   *     or No account found with the provided account code, or the account did not exist yet
+   *     at that instant. (status code 404)
+   *     or Past balances are not available without the balance ledger. (status code 501)
+   *     or The service is at capacity. Retry later. (status code 503)
+   * @see AccountsApi#getAccountBalance
    */
+  @Override
+  public Mono<ResponseEntity<AccountBalanceDto>> getAccountBalance(String accountCode,
+                                                                   OffsetDateTime at,
+                                                                   ServerWebExchange exchange) {
+    return useCases.getAccountBalance(accountCode, at == null ? null : at.toInstant())
+        .map(balance -> ResponseEntity.ok(AccountBalanceDto.builder()
+            .accountCode(accountCode)
+            .balance(Money.toMajor(balance))
+            .at(at)
+            .build()))
+        .defaultIfEmpty(ResponseEntity.notFound().build())
+        .onErrorResume(UnsupportedOperationException.class,
+            e -> Mono.just(ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build()))
+        .onErrorResume(BulkheadFullException.class, e -> overloaded());
+  }
+
+  /**
+   * POST /accounts/balances : Get the balances of many accounts
+   * Get the current balances of many accounts at once, read with one query per kind of
+   * account. Accounts that are not found are left out.
+   *
+   * @param accountBalancesQueryDto (required)
+   * @param exchange                The request exchange
+   * @return The balance of every account found, in request order. (status code 200)
+   *     or Bad request. No account codes, or more than 1000. (status code 400)
+   *     or The service is at capacity. Retry later. (status code 503)
+   * @see AccountsApi#getAccountBalances
+   */
+  @Override
+  public Mono<ResponseEntity<Flux<AccountBalanceDto>>> getAccountBalances(
+      Mono<AccountBalancesQueryDto> accountBalancesQueryDto, ServerWebExchange exchange) {
+    return accountBalancesQueryDto.flatMap(query -> {
+      List<String> accountCodes = query.getAccountCodes() == null ? List.of()
+          : query.getAccountCodes().stream()
+              .filter(Objects::nonNull)
+              .distinct()
+              .collect(Collectors.toList());
+      if (accountCodes.isEmpty() || accountCodes.size() > MAX_BALANCE_QUERY_SIZE) {
+        return Mono.just(ResponseEntity.badRequest().<Flux<AccountBalanceDto>>build());
+      }
+      return useCases.getAccountBalances(accountCodes)
+          .map(balances -> ResponseEntity.ok(Flux.fromIterable(accountCodes)
+              .filter(balances::containsKey)
+              .map(accountCode -> AccountBalanceDto.builder()
+                  .accountCode(accountCode)
+                  .balance(Money.toMajor(balances.get(accountCode)))
+                  .build())));
+    })
+        .defaultIfEmpty(ResponseEntity.badRequest().build())
+        .onErrorResume(BulkheadFullException.class, e -> overloaded());
+  }
+
   /**
    * GET /accounts/{clientId} : Get accounts for client
    * Composed list of accounts for the specified client.
    *
    * @param clientId the Id card or legal Id of the client. (optional)
-   * @param exchange
+   * @param exchange The request exchange
    * @return Successful Operation (status code 200)
+   *     or The service is at capacity. Retry later. (status code 503)
    * @see AccountsApi#getAccountsByClientId
    */
   @Override
   public Mono<ResponseEntity<AccountListForUserDto>> getAccountsByClientId(UUID clientId,
                                                                            ServerWebExchange exchange) {
-    final AccountListForUserDto[] result = new AccountListForUserDto[1];
-    useCases.getAllAccountsForClient(clientId)
-        .subscribe(accountList -> result[0] = accountList).dispose();
-    return Mono.just(new ResponseEntity<>(result[0], HttpStatus.OK));
+    return useCases.getAllAccountsForClient(clientId)
+        .map(ResponseEntity::ok)
+        .onErrorResume(BulkheadFullException.class, e -> overloaded());
   }
 
   /**
@@ -113,22 +353,16 @@ public class AssetAccountApiDelegateImp implements AccountsApiDelegate {
    * @param exchange    The request exchange
    * @return Successful Operation (status code 200)
    *     or No account found with the provided account code. (status code 404)
+   *     or The service is at capacity. Retry later. (status code 503)
    * @see AccountsApi#getAssetAccountByAccountCode
    */
   @Override
   public Mono<ResponseEntity<AssetAccountDto>> getAssetAccountByAccountCode(
       String accountCode, ServerWebExchange exchange) {
-    return RxJava3Adapter.maybeToMono(useCases.getAccountByAccountCode(accountCode).map(acc -> {
-      AssetAccount asset = (AssetAccount) acc;
-      var result = AssetAccountDto.builder()
-          .accountCode(asset.getAccountCode())
-          .createdAt(OffsetDateTime.from(asset.getCreatedAt()))
-          .clientId(asset.getClientId())
-          .balance(asset.getBalance())
-          .assetAccountType(AssetAccountDto.AssetAccountTypeEnum.fromValue(asset.getAssetAccountType().name()))
-          .build();
-      return ResponseEntity.ok(result);
-    }));
+    return useCases.getAssetAccountByAccountCode(accountCode)
+        .map(asset -> ResponseEntity.ok(toAssetAccountDto(asset)))
+        .defaultIfEmpty(ResponseEntity.notFound().build())
+        .onErrorResume(BulkheadFullException.class, e -> overloaded());
   }
 
   /**
@@ -139,22 +373,103 @@ public class AssetAccountApiDelegateImp implements AccountsApiDelegate {
    * @param exchange    The request exchange
    * @return Successful Operation (status code 200)
    *     or No account found with the provided account code. (status code 404)
+   *     or The service is at capacity. Retry later. (status code 503)
    * @see AccountsApi#getPassiveAccountByAccountCode
    */
   @Override
   public Mono<ResponseEntity<PassiveAccountDto>> getPassiveAccountByAccountCode(
       String accountCode, ServerWebExchange exchange) {
-    return RxJava3Adapter.maybeToMono(useCases.getAccountByAccountCode(accountCode).map(acc -> {
-      PassiveAccount passive = (PassiveAccount) acc;
-      var result = PassiveAccountDto.builder()
-          .accountCode(passive.getAccountCode())
-          .createdAt(OffsetDateTime.from(passive.getCreatedAt()))
-          .clientId(passive.getClientId())
-          .balance(passive.getBalance())
-          .passiveAccountType(PassiveAccountDto.PassiveAccountTypeEnum
-              .fromValue(passive.getPassiveAccountType().name()))
-          .build();
-      return ResponseEntity.ok(result);
-    }));
+    return useCases.getPassiveAccountByAccountCode(accountCode)
+        .map(passive -> ResponseEntity.ok(toPassiveAccountDto(passive)))
+        .defaultIfEmpty(ResponseEntity.notFound().build())
+        .onErrorResume(BulkheadFullException.class, e -> overloaded());
+  }
+
+  /**
+   * GET /accounts/asset : Get list of asset accounts
+   * Get the list of asset accounts filtered by type, ordered by account code.
+   *
+   * @param type     The type of asset account (required)
+   * @param after    Return only accounts whose account code comes after this one. (optional)
+   * @param limit    Maximum number of accounts to return. (optional)
+   * @param exchange The request exchange
+   * @return Successful Operation (status code 200)
+   *     or Bad request. Unknown account type. (status code 400)
+   * @see AccountsApi#getAssetAccounts
+   */
+  @Override
+  public Mono<ResponseEntity<Flux<AssetAccountDto>>> getAssetAccounts(
+      String type, String after, Integer limit, ServerWebExchange exchange) {
+    AssetAccountType assetAccountType;
+    try {
+      assetAccountType = AssetAccountType.valueOf(type.toUpperCase() + "_ACCOUNT");
+    } catch (IllegalArgumentException e) {
+      return Mono.just(ResponseEntity.badRequest().build());
+    }
+    return Mono.just(ResponseEntity.ok(useCases.getAssetAccountsByType(
+        assetAccountType, after, pageSize(limit, exchange))));
+  }
+
+  /**
+   * GET /accounts/passive : Get list of passive accounts
+   * Get the list of passive accounts filtered by type, ordered by account code.
+   *
+   * @param type     The type of passive account. (required)
+   * @param after    Return only accounts whose account code comes after this one. (optional)
+   * @param limit    Maximum number of accounts to return. (optional)
+   * @param exchange The request exchange
+   * @return Successful Operation (status code 200)
+   *     or Bad request. Unknown account type. (status code 400)
+   * @see AccountsApi#getPassiveAccounts
+   */
+  @Override
+  public Mono<ResponseEntity<Flux<PassiveAccountDto>>> getPassiveAccounts(
+      String type, String after, Integer limit, ServerWebExchange exchange) {
+    PassiveAccountType passiveAccountType;
+    try {
+      passiveAccountType = PassiveAccountType.valueOf(type.toUpperCase() + "_ACCOUNT");
+    } catch (IllegalArgumentException e) {
+      return Mono.just(ResponseEntity.badRequest().build());
+    }
+    return Mono.just(ResponseEntity.ok(useCases.getPassiveAccountsByType(
+        passiveAccountType, after, pageSize(limit, exchange))));
+  }
+
+  /**
+   * A JSON array response is bounded to a page. An NDJSON stream is written as the Mongo
+   * cursor yields rows, so it may run over every matching account unless a limit is given.
+   *
+   * @return the page size, or 0 for no limit.
+   */
+  private static int pageSize(Integer limit, ServerWebExchange exchange) {
+    boolean streaming = exchange.getRequest().getHeaders().getAccept().stream()
+        .anyMatch(MediaType.APPLICATION_NDJSON::equalsTypeAndSubtype);
+    if (streaming) {
+      return limit == null ? 0 : Math.max(limit, 1);
+    }
+    return limit == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+  }
+
+  // package-private for the benchmarks
+  static AssetAccountDto toAssetAccountDto(AssetAccount asset) {
+    return AssetAccountDto.builder()
+        .accountCode(asset.getAccountCode())
+        .createdAt(OffsetDateTime.ofInstant(asset.getCreatedAt(), ZoneOffset.UTC))
+        .clientId(asset.getClientId())
+        .balance(Money.toMajor(asset.getBalance()))
+        .assetAccountType(AssetAccountDto.AssetAccountTypeEnum
+            .valueOf(asset.getAssetAccountType().name()))
+        .build();
+  }
+
+  static PassiveAccountDto toPassiveAccountDto(PassiveAccount passive) {
+    return PassiveAccountDto.builder()
+        .accountCode(passive.getAccountCode())
+        .createdAt(OffsetDateTime.ofInstant(passive.getCreatedAt(), ZoneOffset.UTC))
+        .clientId(passive.getClientId())
+        .balance(Money.toMajor(passive.getBalance()))
+        .passiveAccountType(PassiveAccountDto.PassiveAccountTypeEnum
+            .valueOf(passive.getPassiveAccountType().name()))
+        .build();
   }
 }
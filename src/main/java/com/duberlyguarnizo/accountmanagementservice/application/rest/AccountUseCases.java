@@ -4,6 +4,7 @@
 
 package com.duberlyguarnizo.accountmanagementservice.application.rest;
 
+import com.duberlyguarnizo.accountmanagementservice.domain.AccountCreationResultDto;
 import com.duberlyguarnizo.accountmanagementservice.domain.AccountListForUserDto;
 import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountCreationDto;
 import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
@@ -12,92 +13,226 @@ import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountDto;
 import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
 import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
 import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
-import com.duberlyguarnizo.accountmanagementservice.domain.model.Account;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.AccountCreationResult;
 import com.duberlyguarnizo.accountmanagementservice.domain.model.AssetAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Money;
 import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
 import com.duberlyguarnizo.accountmanagementservice.domain.service.AssetAccountService;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.IdempotencyStore;
 import com.duberlyguarnizo.accountmanagementservice.domain.service.PassiveAccountService;
+import com.duberlyguarnizo.accountmanagementservice.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Single;
-import java.time.OffsetDateTime;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.UUID;
-import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
-@Slf4j
 public class AccountUseCases {
   private final AssetAccountService assetService;
   private final PassiveAccountService passiveService;
+  private final IdempotencyStore idempotencyStore;
+  private final int batchChunkSize;
+  private final PipelineMetrics metrics;
 
-  public AccountUseCases(AssetAccountService assetService, PassiveAccountService passiveService) {
+  public AccountUseCases(AssetAccountService assetService, PassiveAccountService passiveService,
+                         IdempotencyStore idempotencyStore, MeterRegistry meterRegistry,
+                         @Value("${account.batch.chunk-size:500}") int batchChunkSize) {
     this.assetService = assetService;
     this.passiveService = passiveService;
+    this.idempotencyStore = idempotencyStore;
+    this.batchChunkSize = batchChunkSize;
+    this.metrics = new PipelineMetrics(meterRegistry, "account.usecase");
   }
 
   public Completable createAssetAccount(Single<AssetAccountCreationDto> dto) {
-    AssetAccount account = new AssetAccount();
-    return dto.flatMapCompletable(creationDto -> {
-      account.setBalance(creationDto.getBalance());
-      account.setAssetAccountType(AssetAccountType
-          .valueOf(creationDto.getAssetAccountType().name()));
-      account.setClientId(creationDto.getClientId());
-      account.setAccountType(AccountType.ASSET);
-      return assetService.createAssetAccount(account);
-    });
-
+    return dto.flatMapCompletable(creationDto ->
+        assetService.createAssetAccount(toAssetAccount(creationDto)))
+        .compose(metrics.completable("createAssetAccount"));
   }
 
   public Completable createPassiveAccount(PassiveAccountCreationDto dto) {
-    log.warn("Entering createPassiveAccount() at RestService");
+    return passiveService.createPassiveAccount(toPassiveAccount(dto))
+        .compose(metrics.completable("createPassiveAccount"));
+  }
+
+  public Flowable<AccountCreationResultDto> createAssetAccounts(
+      Flowable<AssetAccountCreationDto> dtos) {
+    return assetService.createAssetAccounts(dtos.map(AccountUseCases::toAssetAccount),
+            batchChunkSize)
+        .map(AccountUseCases::toResultDto)
+        .compose(metrics.flowable("createAssetAccounts"));
+  }
+
+  public Flowable<AccountCreationResultDto> createPassiveAccounts(
+      Flowable<PassiveAccountCreationDto> dtos) {
+    return passiveService.createPassiveAccounts(dtos.map(AccountUseCases::toPassiveAccount),
+            batchChunkSize)
+        .map(AccountUseCases::toResultDto)
+        .compose(metrics.flowable("createPassiveAccounts"));
+  }
+
+  public Completable increaseCreditCardDebt(UUID accountId, long amount,
+                                            String idempotencyKey) {
+    return idempotent(idempotencyKey, "increaseCreditCardDebt", accountId, amount,
+        assetService.increaseCreditCardDebt(accountId, amount));
+  }
+
+  public Completable payLoanOrCreditCard(UUID accountId, long amount, String idempotencyKey) {
+    return idempotent(idempotencyKey, "payLoanOrCreditCard", accountId, amount,
+        assetService.payLoanOrCreditCard(accountId, amount));
+  }
+
+  public Completable increaseAccountBalance(UUID accountId, long amount,
+                                            String idempotencyKey) {
+    return idempotent(idempotencyKey, "increaseAccountBalance", accountId, amount,
+        passiveService.increaseAccountBalance(accountId, amount));
+  }
+
+  public Completable decreaseAccountBalance(UUID accountId, long amount,
+                                            String idempotencyKey) {
+    return idempotent(idempotencyKey, "decreaseAccountBalance", accountId, amount,
+        passiveService.decreaseAccountBalance(accountId, amount));
+  }
+
+  private Completable idempotent(String idempotencyKey, String operationName, UUID accountId,
+                                 long amount, Completable operation) {
+    if (idempotencyKey == null || idempotencyKey.isBlank()) {
+      return operation.compose(metrics.completable(operationName));
+    }
+    return idempotencyStore.execute(idempotencyKey,
+            operationName + ':' + accountId + ':' + amount, operation)
+        .compose(metrics.completable(operationName));
+  }
+
+  /**
+   * Reads the current balance of an account, or the one it had at the given instant.
+   *
+   * @param at the instant, or null for the current balance.
+   */
+  public Maybe<Long> getAccountBalance(String accountCode, Instant at) {
+    boolean asset = isAssetAccountCode(accountCode);
+    if (at != null) {
+      return (asset ? assetService.getAccountBalanceAt(accountCode, at)
+          : passiveService.getAccountBalanceAt(accountCode, at))
+          .compose(metrics.maybe("getAccountBalanceAt"));
+    }
+    Single<Long> balance = asset ? assetService.getAccountBalance(accountCode)
+        : passiveService.getAccountBalance(accountCode);
+    return balance.toMaybe().onErrorComplete(NoSuchElementException.class::isInstance)
+        .compose(metrics.maybe("getAccountBalance"));
+  }
+
+  /**
+   * Reads the current balances of many accounts, with one query per kind of account.
+   *
+   * @return the balance of every account found, by account code.
+   */
+  public Single<Map<String, Long>> getAccountBalances(List<String> accountCodes) {
+    List<String> assetCodes = new ArrayList<>();
+    List<String> passiveCodes = new ArrayList<>();
+    for (String accountCode : accountCodes) {
+      (isAssetAccountCode(accountCode) ? assetCodes : passiveCodes).add(accountCode);
+    }
+    return Single.zip(
+            assetCodes.isEmpty() ? Single.just(Map.<String, Long>of())
+                : assetService.getAccountBalances(assetCodes),
+            passiveCodes.isEmpty() ? Single.just(Map.<String, Long>of())
+                : passiveService.getAccountBalances(passiveCodes),
+            AccountUseCases::merge)
+        .compose(metrics.single("getAccountBalances"));
+  }
+
+  public Maybe<AssetAccount> getAssetAccountByAccountCode(String accountCode) {
+    return assetService.getAssetAccountByAccountCode(accountCode)
+        .compose(metrics.maybe("getAssetAccountByAccountCode"));
+  }
+
+  public Maybe<PassiveAccount> getPassiveAccountByAccountCode(String accountCode) {
+    return passiveService.getPassiveAccountByAccountCode(accountCode)
+        .compose(metrics.maybe("getPassiveAccountByAccountCode"));
+  }
+
+  public Flowable<AssetAccountDto> getAssetAccountsByType(AssetAccountType type,
+                                                          String afterAccountCode, int limit) {
+    return assetService.getAssetAccountsByType(type, afterAccountCode, limit)
+        .compose(metrics.flowable("getAssetAccountsByType"));
+  }
+
+  public Flowable<PassiveAccountDto> getPassiveAccountsByType(PassiveAccountType type,
+                                                              String afterAccountCode,
+                                                              int limit) {
+    return passiveService.getPassiveAccountsByType(type, afterAccountCode, limit)
+        .compose(metrics.flowable("getPassiveAccountsByType"));
+  }
+
+  // shared with the Reactor stack
+  static boolean isAssetAccountCode(String accountCode) {
+    return AccountType.fromAccountCode(accountCode)
+        .map(AccountType.ASSET::equals)
+        .orElse(false);
+  }
+
+  static Map<String, Long> merge(Map<String, Long> assetBalances,
+                                 Map<String, Long> passiveBalances) {
+    Map<String, Long> balances = new HashMap<>(assetBalances);
+    balances.putAll(passiveBalances);
+    return balances;
+  }
+
+  static AssetAccount toAssetAccount(AssetAccountCreationDto dto) {
+    AssetAccount account = new AssetAccount();
+    account.setBalance(dto.getBalance() == null ? 0 : Money.ofMajor(dto.getBalance()));
+    account.setAccountType(AccountType.ASSET);
+    if (dto.getAssetAccountType() != null) {
+      account.setAssetAccountType(AssetAccountType.valueOf(dto.getAssetAccountType().name()));
+    }
+    account.setClientId(dto.getClientId());
+    return account;
+  }
+
+  static PassiveAccount toPassiveAccount(PassiveAccountCreationDto dto) {
     PassiveAccount account = new PassiveAccount();
-    account.setBalance(dto.getBalance());
+    account.setBalance(dto.getBalance() == null ? 0 : Money.ofMajor(dto.getBalance()));
     account.setAccountType(AccountType.PASSIVE);
-    account.setPassiveAccountType(PassiveAccountType
-        .valueOf(dto.getPassiveAccountType().name()));
+    if (dto.getPassiveAccountType() != null) {
+      account.setPassiveAccountType(PassiveAccountType
+          .valueOf(dto.getPassiveAccountType().name()));
+    }
     account.setClientId(dto.getClientId());
-    log.warn("Creating passive account at RestService");
-    return passiveService.createPassiveAccount(account);
-
+    return account;
   }
 
-  public Maybe<Account> getAccountByAccountCode(String accountCode) {
-    return assetService.getAssetAccountByAccountCode(accountCode)
-        .switchIfEmpty(passiveService.getPassiveAccountByAccountCode(accountCode));
+  private static AccountCreationResultDto toResultDto(AccountCreationResult result) {
+    return AccountCreationResultDto.builder()
+        .index(result.getIndex())
+        .created(result.isCreated())
+        .accountCode(result.getAccountCode())
+        .error(result.getError())
+        .build();
   }
 
+  /**
+   * Fetches both sides of the client's portfolio concurrently and assembles the response once
+   * both queries have completed.
+   */
   public Single<AccountListForUserDto> getAllAccountsForClient(UUID clientId) {
-    final List<AssetAccountDto> dtoAssetList = new ArrayList<>();
-    final List<PassiveAccountDto> dtoPassiveList = new ArrayList<>();
-    passiveService.getAllPassiveAccountsForClient(clientId).map(account -> {
-      log.warn("Getting passive account: " + account);
-      return PassiveAccountDto.builder()
-          .accountCode(account.getAccountCode())
-          .passiveAccountType(PassiveAccountDto.PassiveAccountTypeEnum
-              .fromValue(account.getPassiveAccountType().name()))
-          .clientId(account.getClientId())
-          .balance(account.getBalance())
-          .createdAt(OffsetDateTime.from(account.getCreatedAt()))
-          .build();
-    }).toList().subscribe(list -> dtoPassiveList.addAll(list),
-        error -> log.error("Error getting passive accounts: " + error.toString()));
-
-    assetService.getAssetAccountsForClient(clientId).map(account -> {
-      return AssetAccountDto.builder()
-          .accountCode(account.getAccountCode())
-          .assetAccountType(AssetAccountDto.AssetAccountTypeEnum
-              .fromValue(account.getAssetAccountType().name()))
-          .clientId(account.getClientId())
-          .balance(account.getBalance())
-          .createdAt(OffsetDateTime.from(account.getCreatedAt()))
-          .build();
-    }).toList().subscribe(list -> dtoAssetList.addAll(list),
-        error -> log.error("Error getting asset accounts: " + error.toString())).dispose();
-    return Single.just(AccountListForUserDto.builder()
-        .assetAccounts(dtoAssetList)
-        .passiveAccounts(dtoPassiveList).build());
+    return Single.zip(
+        passiveService.getPassiveAccountSummariesForClient(clientId).toList(),
+        assetService.getAssetAccountSummariesForClient(clientId).toList(),
+        (passiveAccounts, assetAccounts) -> AccountListForUserDto.builder()
+            .passiveAccounts(passiveAccounts)
+            .assetAccounts(assetAccounts)
+            .build())
+        .compose(metrics.single("getAllAccountsForClient"));
   }
 }
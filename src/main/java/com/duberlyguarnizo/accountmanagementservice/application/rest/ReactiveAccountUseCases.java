@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.application.rest;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.AccountCreationResultDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.AccountListForUserDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountCreationDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountCreationDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.AssetAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The use cases in the types WebFlux works with. Two stacks implement it, chosen with
+ * account.reactor.enabled: {@link RxAccountUseCasesAdapter} over the RxJava services, the
+ * default, and {@link ReactorAccountUseCases}, which stays in Reactor down to the Mongo driver.
+ * Amounts are in minor units.
+ */
+public interface ReactiveAccountUseCases {
+  Mono<Void> createAssetAccount(Mono<AssetAccountCreationDto> dto);
+
+  Mono<Void> createPassiveAccount(PassiveAccountCreationDto dto);
+
+  Flux<AccountCreationResultDto> createAssetAccounts(Flux<AssetAccountCreationDto> dtos);
+
+  Flux<AccountCreationResultDto> createPassiveAccounts(Flux<PassiveAccountCreationDto> dtos);
+
+  Mono<Void> increaseCreditCardDebt(UUID accountId, long amount, String idempotencyKey);
+
+  Mono<Void> payLoanOrCreditCard(UUID accountId, long amount, String idempotencyKey);
+
+  Mono<Void> increaseAccountBalance(UUID accountId, long amount, String idempotencyKey);
+
+  Mono<Void> decreaseAccountBalance(UUID accountId, long amount, String idempotencyKey);
+
+  /**
+   * Reads the current balance of an account, or the one it had at the given instant.
+   *
+   * @param at the instant, or null for the current balance.
+   * @return the balance, or empty if there is no such account.
+   */
+  Mono<Long> getAccountBalance(String accountCode, Instant at);
+
+  /**
+   * Reads the current balances of many accounts, with one query per kind of account.
+   *
+   * @return the balance of every account found, by account code.
+   */
+  Mono<Map<String, Long>> getAccountBalances(List<String> accountCodes);
+
+  Mono<AssetAccount> getAssetAccountByAccountCode(String accountCode);
+
+  Mono<PassiveAccount> getPassiveAccountByAccountCode(String accountCode);
+
+  Flux<AssetAccountDto> getAssetAccountsByType(AssetAccountType type, String afterAccountCode,
+                                               int limit);
+
+  Flux<PassiveAccountDto> getPassiveAccountsByType(PassiveAccountType type,
+                                                   String afterAccountCode, int limit);
+
+  Mono<AccountListForUserDto> getAllAccountsForClient(UUID clientId);
+}
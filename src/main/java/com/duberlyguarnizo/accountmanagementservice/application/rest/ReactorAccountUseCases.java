@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.application.rest;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.AccountCreationResultDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.AccountListForUserDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountCreationDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountCreationDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.AssetAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.IdempotencyStore;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.ReactorAssetAccountService;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.ReactorPassiveAccountService;
+import com.duberlyguarnizo.accountmanagementservice.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.adapter.rxjava.RxJava3Adapter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The Reactor stack, enabled with account.reactor.enabled: the request paths stay in Reactor
+ * types from the delegate to the Mongo driver. The batch endpoints still run on the RxJava
+ * stack, whose chunking they rely on, and an idempotency key is handed to the RxJava store.
+ * Timed under the same account.usecase names as {@link AccountUseCases}.
+ */
+@Service
+@ConditionalOnProperty(name = "account.reactor.enabled", havingValue = "true")
+public class ReactorAccountUseCases implements ReactiveAccountUseCases {
+  private final ReactorAssetAccountService assetService;
+  private final ReactorPassiveAccountService passiveService;
+  private final AccountUseCases batchUseCases;
+  private final IdempotencyStore idempotencyStore;
+  private final PipelineMetrics metrics;
+
+  public ReactorAccountUseCases(ReactorAssetAccountService assetService,
+                                ReactorPassiveAccountService passiveService,
+                                AccountUseCases batchUseCases,
+                                IdempotencyStore idempotencyStore, MeterRegistry meterRegistry) {
+    this.assetService = assetService;
+    this.passiveService = passiveService;
+    this.batchUseCases = batchUseCases;
+    this.idempotencyStore = idempotencyStore;
+    this.metrics = new PipelineMetrics(meterRegistry, "account.usecase");
+  }
+
+  @Override
+  public Mono<Void> createAssetAccount(Mono<AssetAccountCreationDto> dto) {
+    return dto.flatMap(creationDto ->
+            assetService.createAssetAccount(AccountUseCases.toAssetAccount(creationDto)))
+        .transform(metrics.mono("createAssetAccount"));
+  }
+
+  @Override
+  public Mono<Void> createPassiveAccount(PassiveAccountCreationDto dto) {
+    return passiveService.createPassiveAccount(AccountUseCases.toPassiveAccount(dto))
+        .transform(metrics.mono("createPassiveAccount"));
+  }
+
+  @Override
+  public Flux<AccountCreationResultDto> createAssetAccounts(Flux<AssetAccountCreationDto> dtos) {
+    return Flux.from(batchUseCases.createAssetAccounts(RxJava3Adapter.fluxToFlowable(dtos)));
+  }
+
+  @Override
+  public Flux<AccountCreationResultDto> createPassiveAccounts(
+      Flux<PassiveAccountCreationDto> dtos) {
+    return Flux.from(batchUseCases.createPassiveAccounts(RxJava3Adapter.fluxToFlowable(dtos)));
+  }
+
+  @Override
+  public Mono<Void> increaseCreditCardDebt(UUID accountId, long amount, String idempotencyKey) {
+    return idempotent(idempotencyKey, "increaseCreditCardDebt", accountId, amount,
+        assetService.increaseCreditCardDebt(accountId, amount));
+  }
+
+  @Override
+  public Mono<Void> payLoanOrCreditCard(UUID accountId, long amount, String idempotencyKey) {
+    return idempotent(idempotencyKey, "payLoanOrCreditCard", accountId, amount,
+        assetService.payLoanOrCreditCard(accountId, amount));
+  }
+
+  @Override
+  public Mono<Void> increaseAccountBalance(UUID accountId, long amount, String idempotencyKey) {
+    return idempotent(idempotencyKey, "increaseAccountBalance", accountId, amount,
+        passiveService.increaseAccountBalance(accountId, amount));
+  }
+
+  @Override
+  public Mono<Void> decreaseAccountBalance(UUID accountId, long amount, String idempotencyKey) {
+    return idempotent(idempotencyKey, "decreaseAccountBalance", accountId, amount,
+        passiveService.decreaseAccountBalance(accountId, amount));
+  }
+
+  private Mono<Void> idempotent(String idempotencyKey, String operationName, UUID accountId,
+                                long amount, Mono<Void> operation) {
+    if (idempotencyKey == null || idempotencyKey.isBlank()) {
+      return operation.transform(metrics.mono(operationName));
+    }
+    return RxJava3Adapter.completableToMono(idempotencyStore.execute(idempotencyKey,
+            operationName + ':' + accountId + ':' + amount,
+            RxJava3Adapter.monoToCompletable(operation)))
+        .transform(metrics.mono(operationName));
+  }
+
+  @Override
+  public Mono<Long> getAccountBalance(String accountCode, Instant at) {
+    boolean asset = AccountUseCases.isAssetAccountCode(accountCode);
+    if (at != null) {
+      return (asset ? assetService.getAccountBalanceAt(accountCode, at)
+          : passiveService.getAccountBalanceAt(accountCode, at))
+          .transform(metrics.mono("getAccountBalanceAt"));
+    }
+    return (asset ? assetService.getAccountBalance(accountCode)
+        : passiveService.getAccountBalance(accountCode))
+        .transform(metrics.mono("getAccountBalance"));
+  }
+
+  @Override
+  public Mono<Map<String, Long>> getAccountBalances(List<String> accountCodes) {
+    List<String> assetCodes = new ArrayList<>();
+    List<String> passiveCodes = new ArrayList<>();
+    for (String accountCode : accountCodes) {
+      (AccountUseCases.isAssetAccountCode(accountCode) ? assetCodes : passiveCodes)
+          .add(accountCode);
+    }
+    return Mono.zip(
+            assetCodes.isEmpty() ? Mono.just(Map.<String, Long>of())
+                : assetService.getAccountBalances(assetCodes),
+            passiveCodes.isEmpty() ? Mono.just(Map.<String, Long>of())
+                : passiveService.getAccountBalances(passiveCodes),
+            AccountUseCases::merge)
+        .transform(metrics.mono("getAccountBalances"));
+  }
+
+  @Override
+  public Mono<AssetAccount> getAssetAccountByAccountCode(String accountCode) {
+    return assetService.getAssetAccountByAccountCode(accountCode)
+        .transform(metrics.mono("getAssetAccountByAccountCode"));
+  }
+
+  @Override
+  public Mono<PassiveAccount> getPassiveAccountByAccountCode(String accountCode) {
+    return passiveService.getPassiveAccountByAccountCode(accountCode)
+        .transform(metrics.mono("getPassiveAccountByAccountCode"));
+  }
+
+  @Override
+  public Flux<AssetAccountDto> getAssetAccountsByType(AssetAccountType type,
+                                                      String afterAccountCode, int limit) {
+    return assetService.getAssetAccountsByType(type, afterAccountCode, limit)
+        .transform(metrics.flux("getAssetAccountsByType"));
+  }
+
+  @Override
+  public Flux<PassiveAccountDto> getPassiveAccountsByType(PassiveAccountType type,
+                                                          String afterAccountCode, int limit) {
+    return passiveService.getPassiveAccountsByType(type, afterAccountCode, limit)
+        .transform(metrics.flux("getPassiveAccountsByType"));
+  }
+
+  /**
+   * Fetches both sides of the client's portfolio concurrently and assembles the response once
+   * both queries have completed.
+   */
+  @Override
+  public Mono<AccountListForUserDto> getAllAccountsForClient(UUID clientId) {
+    return Mono.zip(
+            passiveService.getPassiveAccountSummariesForClient(clientId).collectList(),
+            assetService.getAssetAccountSummariesForClient(clientId).collectList(),
+            (passiveAccounts, assetAccounts) -> AccountListForUserDto.builder()
+                .passiveAccounts(passiveAccounts)
+                .assetAccounts(assetAccounts)
+                .build())
+        .transform(metrics.mono("getAllAccountsForClient"));
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.application.rest;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.AccountCreationResultDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.AccountListForUserDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountCreationDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountCreationDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.AssetAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.adapter.rxjava.RxJava3Adapter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The RxJava stack: {@link AccountUseCases}, converted to Reactor for the delegate.
+ */
+@Service
+@ConditionalOnProperty(name = "account.reactor.enabled", havingValue = "false",
+    matchIfMissing = true)
+public class RxAccountUseCasesAdapter implements ReactiveAccountUseCases {
+  private final AccountUseCases useCases;
+
+  public RxAccountUseCasesAdapter(AccountUseCases useCases) {
+    this.useCases = useCases;
+  }
+
+  @Override
+  public Mono<Void> createAssetAccount(Mono<AssetAccountCreationDto> dto) {
+    return RxJava3Adapter.completableToMono(
+        useCases.createAssetAccount(RxJava3Adapter.monoToSingle(dto)));
+  }
+
+  @Override
+  public Mono<Void> createPassiveAccount(PassiveAccountCreationDto dto) {
+    return RxJava3Adapter.completableToMono(useCases.createPassiveAccount(dto));
+  }
+
+  @Override
+  public Flux<AccountCreationResultDto> createAssetAccounts(Flux<AssetAccountCreationDto> dtos) {
+    return Flux.from(useCases.createAssetAccounts(RxJava3Adapter.fluxToFlowable(dtos)));
+  }
+
+  @Override
+  public Flux<AccountCreationResultDto> createPassiveAccounts(
+      Flux<PassiveAccountCreationDto> dtos) {
+    return Flux.from(useCases.createPassiveAccounts(RxJava3Adapter.fluxToFlowable(dtos)));
+  }
+
+  @Override
+  public Mono<Void> increaseCreditCardDebt(UUID accountId, long amount, String idempotencyKey) {
+    return RxJava3Adapter.completableToMono(
+        useCases.increaseCreditCardDebt(accountId, amount, idempotencyKey));
+  }
+
+  @Override
+  public Mono<Void> payLoanOrCreditCard(UUID accountId, long amount, String idempotencyKey) {
+    return RxJava3Adapter.completableToMono(
+        useCases.payLoanOrCreditCard(accountId, amount, idempotencyKey));
+  }
+
+  @Override
+  public Mono<Void> increaseAccountBalance(UUID accountId, long amount, String idempotencyKey) {
+    return RxJava3Adapter.completableToMono(
+        useCases.increaseAccountBalance(accountId, amount, idempotencyKey));
+  }
+
+  @Override
+  public Mono<Void> decreaseAccountBalance(UUID accountId, long amount, String idempotencyKey) {
+    return RxJava3Adapter.completableToMono(
+        useCases.decreaseAccountBalance(accountId, amount, idempotencyKey));
+  }
+
+  @Override
+  public Mono<Long> getAccountBalance(String accountCode, Instant at) {
+    return RxJava3Adapter.maybeToMono(useCases.getAccountBalance(accountCode, at));
+  }
+
+  @Override
+  public Mono<Map<String, Long>> getAccountBalances(List<String> accountCodes) {
+    return RxJava3Adapter.singleToMono(useCases.getAccountBalances(accountCodes));
+  }
+
+  @Override
+  public Mono<AssetAccount> getAssetAccountByAccountCode(String accountCode) {
+    return RxJava3Adapter.maybeToMono(useCases.getAssetAccountByAccountCode(accountCode));
+  }
+
+  @Override
+  public Mono<PassiveAccount> getPassiveAccountByAccountCode(String accountCode) {
+    return RxJava3Adapter.maybeToMono(useCases.getPassiveAccountByAccountCode(accountCode));
+  }
+
+  @Override
+  public Flux<AssetAccountDto> getAssetAccountsByType(AssetAccountType type,
+                                                      String afterAccountCode, int limit) {
+    return Flux.from(useCases.getAssetAccountsByType(type, afterAccountCode, limit));
+  }
+
+  @Override
+  public Flux<PassiveAccountDto> getPassiveAccountsByType(PassiveAccountType type,
+                                                          String afterAccountCode, int limit) {
+    return Flux.from(useCases.getPassiveAccountsByType(type, afterAccountCode, limit));
+  }
+
+  @Override
+  public Mono<AccountListForUserDto> getAllAccountsForClient(UUID clientId) {
+    return RxJava3Adapter.singleToMono(useCases.getAllAccountsForClient(clientId));
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.concurrency;
+
+/**
+ * The pools of the service, one per kind of work, so a backlog in one cannot take the threads
+ * of another and none of them falls back to the unbounded global pools.
+ *
+ * <ul>
+ *   <li>persistence: the timers of the balance lanes and of the lookup batches.</li>
+ *   <li>inter-service: lookups waiting for the client type replica to catch up.</li>
+ *   <li>jobs: the outbox relay and the ledger snapshots.</li>
+ * </ul>
+ */
+public class AccountSchedulers implements AutoCloseable {
+  private final BoundedScheduler persistence;
+  private final BoundedScheduler interService;
+  private final BoundedScheduler jobs;
+
+  public AccountSchedulers(BoundedScheduler persistence, BoundedScheduler interService,
+                           BoundedScheduler jobs) {
+    this.persistence = persistence;
+    this.interService = interService;
+    this.jobs = jobs;
+  }
+
+  public BoundedScheduler getPersistence() {
+    return persistence;
+  }
+
+  public BoundedScheduler getInterService() {
+    return interService;
+  }
+
+  public BoundedScheduler getJobs() {
+    return jobs;
+  }
+
+  @Override
+  public void close() {
+    persistence.close();
+    interService.close();
+    jobs.close();
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.concurrency;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.subjects.MaybeSubject;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Collects the keys asked for within a short window and loads them with a single call, then
+ * hands every caller its own value. The window opens with the first key and closes when it
+ * runs out or when the batch is full, whichever comes first. Callers asking for a key already
+ * in the open batch share its result.
+ *
+ * <p>Publishes the {@code loader.batch.size} distribution, tagged name.
+ */
+public class BatchLoader<K, V> {
+  private final Function<List<K>, Single<Map<K, V>>> batchLoad;
+  private final long windowMicros;
+  private final int maximumBatchSize;
+  private final Scheduler scheduler;
+  private final DistributionSummary batchSizes;
+  // guarded by this
+  private Map<K, MaybeSubject<V>> open;
+
+  /**
+   * @param batchLoad        loads the values of the keys; a key missing from its map has no
+   *                         value.
+   * @param window           how long a batch waits for more keys.
+   * @param maximumBatchSize the most keys loaded by one call.
+   * @param scheduler        runs the window timers.
+   */
+  public BatchLoader(String name, Function<List<K>, Single<Map<K, V>>> batchLoad,
+                     Duration window, int maximumBatchSize, Scheduler scheduler,
+                     MeterRegistry meterRegistry) {
+    this.batchLoad = batchLoad;
+    this.windowMicros = TimeUnit.NANOSECONDS.toMicros(window.toNanos());
+    this.maximumBatchSize = maximumBatchSize;
+    this.scheduler = scheduler;
+    this.batchSizes = DistributionSummary.builder("loader.batch.size")
+        .description("Keys loaded by one call")
+        .tag("name", name)
+        .register(meterRegistry);
+  }
+
+  /**
+   * @return the value of the key, or empty if it has none.
+   */
+  public Maybe<V> load(K key) {
+    return Maybe.defer(() -> {
+      Map<K, MaybeSubject<V>> batch;
+      MaybeSubject<V> result;
+      boolean opened = false;
+      boolean full = false;
+      synchronized (this) {
+        if (open == null) {
+          open = new LinkedHashMap<>();
+          opened = true;
+        }
+        batch = open;
+        result = batch.computeIfAbsent(key, k -> MaybeSubject.create());
+        if (batch.size() >= maximumBatchSize) {
+          open = null;
+          full = true;
+        }
+      }
+      if (full) {
+        dispatch(batch);
+      } else if (opened) {
+        closeLater(batch);
+      }
+      return result;
+    });
+  }
+
+  private void closeLater(Map<K, MaybeSubject<V>> batch) {
+    if (windowMicros == 0) {
+      close(batch);
+      return;
+    }
+    try {
+      scheduler.schedule(() -> close(batch), windowMicros, TimeUnit.MICROSECONDS);
+    } catch (RejectedExecutionException e) {
+      // with the timers saturated the batch is loaded at once rather than not at all
+      close(batch);
+    }
+  }
+
+  /**
+   * Closes the batch when its window runs out, unless it filled up and went out before.
+   */
+  private void close(Map<K, MaybeSubject<V>> batch) {
+    synchronized (this) {
+      if (open != batch) {
+        return;
+      }
+      open = null;
+    }
+    dispatch(batch);
+  }
+
+  private void dispatch(Map<K, MaybeSubject<V>> batch) {
+    batchSizes.record(batch.size());
+    Single.defer(() -> batchLoad.apply(new ArrayList<>(batch.keySet())))
+        .subscribe(values -> batch.forEach((key, result) -> {
+          V value = values.get(key);
+          if (value == null) {
+            result.onComplete();
+          } else {
+            result.onSuccess(value);
+          }
+        }), error -> batch.values().forEach(result -> result.onError(error)));
+  }
+}
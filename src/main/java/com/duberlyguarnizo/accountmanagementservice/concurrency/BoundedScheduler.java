@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.concurrency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * A named pool with a fixed number of threads and a cap on the tasks waiting for them. A task
+ * submitted while the queue is full fails with {@link RejectedExecutionException} instead of
+ * growing the queue or the pool, so an overload shows up as rejections rather than as memory
+ * and latency. Only a Reactor view is offered: RxJava's executor schedulers drop a rejected
+ * task after reporting it to RxJavaPlugins, which would leave its subscriber waiting forever.
+ *
+ * <p>Registered with the Micrometer executor metrics (executor.*, tagged name) plus the
+ * {@code executor.rejected} counter.
+ */
+public class BoundedScheduler implements AutoCloseable {
+  private final String name;
+  private final Executor executor;
+  private final Scheduler scheduler;
+
+  public BoundedScheduler(String name, int threads, int queueCapacity,
+                          MeterRegistry meterRegistry) {
+    this.name = name;
+    Counter rejected = Counter.builder("executor.rejected")
+        .description("Tasks rejected because the queue was full")
+        .tag("name", name)
+        .register(meterRegistry);
+    this.executor = new Executor(name, threads, queueCapacity, (task, pool) -> {
+      rejected.increment();
+      throw new RejectedExecutionException(name + " is saturated");
+    });
+    ExecutorServiceMetrics.monitor(meterRegistry, executor, name, Tags.empty());
+    this.scheduler = Schedulers.fromExecutorService(executor, name);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Scheduler scheduler() {
+    return scheduler;
+  }
+
+  public int getPoolSize() {
+    return executor.getPoolSize();
+  }
+
+  public int getQueueSize() {
+    return executor.getQueue().size();
+  }
+
+  @Override
+  public void close() {
+    scheduler.dispose();
+    executor.shutdownNow();
+  }
+
+  /**
+   * A scheduled pool never grows past its core size, but its delay queue is unbounded, so the
+   * cap is checked on every submission. Everything else submitted goes through schedule.
+   */
+  private static final class Executor extends ScheduledThreadPoolExecutor {
+    private final int queueCapacity;
+
+    private Executor(String name, int threads, int queueCapacity,
+                     RejectedExecutionHandler rejectionHandler) {
+      super(threads, threadFactory(name), rejectionHandler);
+      this.queueCapacity = queueCapacity;
+      setRemoveOnCancelPolicy(true);
+    }
+
+    private void checkCapacity(Runnable task) {
+      if (getQueue().size() >= queueCapacity) {
+        getRejectedExecutionHandler().rejectedExecution(task, this);
+      }
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+      checkCapacity(command);
+      return super.schedule(command, delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+      checkCapacity(null);
+      return super.schedule(callable, delay, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay,
+                                                  long period, TimeUnit unit) {
+      checkCapacity(command);
+      return super.scheduleAtFixedRate(command, initialDelay, period, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay,
+                                                     long delay, TimeUnit unit) {
+      checkCapacity(command);
+      return super.scheduleWithFixedDelay(command, initialDelay, delay, unit);
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+      AtomicInteger count = new AtomicInteger();
+      return task -> {
+        Thread thread = new Thread(task, name + '-' + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      };
+    }
+  }
+}
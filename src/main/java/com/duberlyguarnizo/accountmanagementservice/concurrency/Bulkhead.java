@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.concurrency;
+
+import com.duberlyguarnizo.accountmanagementservice.exception.BulkheadFullException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.CompletableTransformer;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.FlowableTransformer;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.MaybeTransformer;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.ObservableTransformer;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.core.SingleTransformer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Limits the subscriptions of a port that run at the same time. Past the limit a subscription
+ * waits, in order, for one of them to end; past the waiting limit it fails at once with
+ * {@link BulkheadFullException}. Nothing blocks: a waiting subscription is started on the
+ * thread that ends the one it replaces. If that start ends another subscription right away, the
+ * next start waits for the current one to return instead of nesting in it, so a queue of
+ * subscriptions that complete synchronously does not grow the stack.
+ *
+ * <ul>
+ *   <li>{@code bulkhead.active} and {@code bulkhead.queued} gauges, tagged name.</li>
+ *   <li>{@code bulkhead.rejected} counter, tagged name.</li>
+ * </ul>
+ */
+public class Bulkhead {
+  // the starts handed to a thread while it is already starting one
+  private static final ThreadLocal<Queue<Runnable>> STARTING = new ThreadLocal<>();
+
+  private final String name;
+  private final int maxConcurrent;
+  private final int maxQueued;
+  private final Queue<Permit> waiting = new ArrayDeque<>();
+  private final Counter rejected;
+  // guarded by waiting
+  private int active;
+
+  public Bulkhead(String name, int maxConcurrent, int maxQueued, MeterRegistry meterRegistry) {
+    this.name = name;
+    this.maxConcurrent = maxConcurrent;
+    this.maxQueued = maxQueued;
+    Gauge.builder("bulkhead.active", this, Bulkhead::getActive)
+        .description("Subscriptions running")
+        .tag("name", name)
+        .register(meterRegistry);
+    Gauge.builder("bulkhead.queued", this, Bulkhead::getQueued)
+        .description("Subscriptions waiting to run")
+        .tag("name", name)
+        .register(meterRegistry);
+    this.rejected = Counter.builder("bulkhead.rejected")
+        .description("Subscriptions failed because the bulkhead and its queue were full")
+        .tag("name", name)
+        .register(meterRegistry);
+  }
+
+  public int getActive() {
+    synchronized (waiting) {
+      return active;
+    }
+  }
+
+  public int getQueued() {
+    synchronized (waiting) {
+      return waiting.size();
+    }
+  }
+
+  public <T> SingleTransformer<T, T> single() {
+    return upstream -> Single.defer(() -> {
+      Permit permit = new Permit();
+      return permit.rx().andThen(upstream).doFinally(permit::release);
+    });
+  }
+
+  public <T> MaybeTransformer<T, T> maybe() {
+    return upstream -> Maybe.defer(() -> {
+      Permit permit = new Permit();
+      return permit.rx().andThen(upstream).doFinally(permit::release);
+    });
+  }
+
+  public CompletableTransformer completable() {
+    return upstream -> Completable.defer(() -> {
+      Permit permit = new Permit();
+      return permit.rx().andThen(upstream).doFinally(permit::release);
+    });
+  }
+
+  public <T> ObservableTransformer<T, T> observable() {
+    return upstream -> Observable.defer(() -> {
+      Permit permit = new Permit();
+      return permit.rx().andThen(upstream).doFinally(permit::release);
+    });
+  }
+
+  public <T> FlowableTransformer<T, T> flowable() {
+    return upstream -> Flowable.defer(() -> {
+      Permit permit = new Permit();
+      return permit.rx().andThen(upstream).doFinally(permit::release);
+    });
+  }
+
+  /**
+   * For {@link Mono#transform}.
+   */
+  public <T> Function<Mono<T>, Mono<T>> mono() {
+    return upstream -> Mono.defer(() -> {
+      Permit permit = new Permit();
+      return permit.reactor().then(upstream).doFinally(signal -> permit.release());
+    });
+  }
+
+  public <T> Function<Flux<T>, Flux<T>> flux() {
+    return upstream -> Flux.defer(() -> {
+      Permit permit = new Permit();
+      return permit.reactor().thenMany(upstream).doFinally(signal -> permit.release());
+    });
+  }
+
+  /**
+   * One subscription's claim on the bulkhead. It is released exactly once, when the
+   * subscription ends, whether it was running, still waiting, or rejected.
+   */
+  private final class Permit {
+    private Runnable start;
+    // guarded by waiting
+    private boolean running;
+    private boolean released;
+
+    private Completable rx() {
+      return Completable.create(emitter -> acquire(emitter::onComplete, emitter::onError));
+    }
+
+    private Mono<Void> reactor() {
+      return Mono.create(sink -> acquire(sink::success, sink::error));
+    }
+
+    private void acquire(Runnable start, Consumer<Throwable> reject) {
+      synchronized (waiting) {
+        if (active < maxConcurrent) {
+          active++;
+          running = true;
+        } else if (waiting.size() < maxQueued) {
+          this.start = start;
+          waiting.add(this);
+          return;
+        } else {
+          released = true;
+        }
+      }
+      if (running) {
+        start.run();
+      } else {
+        rejected.increment();
+        reject.accept(new BulkheadFullException(name + " is full"));
+      }
+    }
+
+    private void release() {
+      Permit next;
+      synchronized (waiting) {
+        if (released) {
+          return;
+        }
+        released = true;
+        if (!running) {
+          waiting.remove(this);
+          return;
+        }
+        next = waiting.poll();
+        if (next == null) {
+          active--;
+          return;
+        }
+        next.running = true;
+      }
+      start(next.start);
+    }
+
+    private void start(Runnable start) {
+      Queue<Runnable> starting = STARTING.get();
+      if (starting != null) {
+        starting.add(start);
+        return;
+      }
+      starting = new ArrayDeque<>();
+      STARTING.set(starting);
+      try {
+        for (Runnable next = start; next != null; next = starting.poll()) {
+          next.run();
+        }
+      } finally {
+        STARTING.remove();
+      }
+    }
+  }
+}
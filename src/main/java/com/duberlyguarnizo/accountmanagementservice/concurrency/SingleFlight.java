@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.concurrency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.subjects.MaybeSubject;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Lets the calls for the same key that overlap in time share one call. The first subscriber
+ * starts it, the ones that come while it runs join it, and all of them get its outcome. The
+ * key is released before the outcome is handed out, so a subscriber that comes after that
+ * starts a new call: nothing is kept beyond the call itself.
+ *
+ * <p>A started call runs to the end even if its subscribers go away, so one of them leaving
+ * cannot cancel it for the others. A forgotten call also runs to the end for the subscribers it
+ * has, but no one joins it any more.
+ *
+ * <p>Every subscriber gets the same value instance, which it must not change.
+ *
+ * <p>Publishes the {@code singleflight.joined} counter, tagged name: the calls saved.
+ */
+public class SingleFlight<K> {
+  private final ConcurrentMap<K, MaybeSubject<?>> inFlight = new ConcurrentHashMap<>();
+  private final Counter joined;
+
+  public SingleFlight(String name, MeterRegistry meterRegistry) {
+    this.joined = Counter.builder("singleflight.joined")
+        .description("Subscriptions that joined a call already in flight")
+        .tag("name", name)
+        .register(meterRegistry);
+  }
+
+  public <V> Maybe<V> maybe(K key, Supplier<Maybe<V>> call) {
+    return Maybe.defer(() -> {
+      MaybeSubject<V> flight = MaybeSubject.create();
+      @SuppressWarnings("unchecked")
+      MaybeSubject<V> running = (MaybeSubject<V>) inFlight.putIfAbsent(key, flight);
+      if (running != null) {
+        joined.increment();
+        return running;
+      }
+      try {
+        call.get().subscribe(
+            value -> {
+              inFlight.remove(key, flight);
+              flight.onSuccess(value);
+            },
+            error -> {
+              inFlight.remove(key, flight);
+              flight.onError(error);
+            },
+            () -> {
+              inFlight.remove(key, flight);
+              flight.onComplete();
+            });
+      } catch (RuntimeException e) {
+        inFlight.remove(key, flight);
+        flight.onError(e);
+      }
+      return flight;
+    });
+  }
+
+  public <V> Single<V> single(K key, Supplier<Single<V>> call) {
+    return maybe(key, () -> call.get().toMaybe()).toSingle();
+  }
+
+  /**
+   * Lets the subscribers that come from now on start a new call instead of joining the one in
+   * flight for the key, such as after a write that the running call may not see.
+   */
+  public void forget(K key) {
+    inFlight.remove(key);
+  }
+
+  public void forgetAll() {
+    inFlight.clear();
+  }
+
+  /**
+   * @return the number of keys with a call in flight.
+   */
+  public int size() {
+    return inFlight.size();
+  }
+}
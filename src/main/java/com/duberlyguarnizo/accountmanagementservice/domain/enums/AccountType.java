@@ -4,7 +4,37 @@
 
 package com.duberlyguarnizo.accountmanagementservice.domain.enums;
 
+import java.util.Optional;
+
 public enum AccountType {
   PASSIVE,
-  ASSET
+  ASSET;
+
+  public static final String BANK_CODE_PREFIX = "191";
+  private static final int TYPE_PREFIX_END = BANK_CODE_PREFIX.length() + 3;
+
+  /**
+   * Decodes the account type from the type prefix of an account code.
+   *
+   * @param accountCode the account code.
+   * @return the account type, or empty for legacy codes without a known prefix.
+   */
+  public static Optional<AccountType> fromAccountCode(String accountCode) {
+    if (accountCode == null || accountCode.length() < TYPE_PREFIX_END
+        || !accountCode.startsWith(BANK_CODE_PREFIX)) {
+      return Optional.empty();
+    }
+    String typePrefix = accountCode.substring(BANK_CODE_PREFIX.length(), TYPE_PREFIX_END);
+    for (PassiveAccountType type : PassiveAccountType.values()) {
+      if (type.getCodePrefix().equals(typePrefix)) {
+        return Optional.of(PASSIVE);
+      }
+    }
+    for (AssetAccountType type : AssetAccountType.values()) {
+      if (type.getCodePrefix().equals(typePrefix)) {
+        return Optional.of(ASSET);
+      }
+    }
+    return Optional.empty();
+  }
 }
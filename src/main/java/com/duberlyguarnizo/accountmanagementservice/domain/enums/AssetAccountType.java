@@ -5,6 +5,16 @@
 package com.duberlyguarnizo.accountmanagementservice.domain.enums;
 
 public enum AssetAccountType {
-  LOAN_ACCOUNT,
-  CREDIT_CARD_ACCOUNT
+  LOAN_ACCOUNT("202"),
+  CREDIT_CARD_ACCOUNT("201");
+
+  private final String codePrefix;
+
+  AssetAccountType(String codePrefix) {
+    this.codePrefix = codePrefix;
+  }
+
+  public String getCodePrefix() {
+    return codePrefix;
+  }
 }
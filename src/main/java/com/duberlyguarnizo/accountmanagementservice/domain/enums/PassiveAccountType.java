@@ -5,8 +5,17 @@
 package com.duberlyguarnizo.accountmanagementservice.domain.enums;
 
 public enum PassiveAccountType {
-  SAVINGS_ACCOUNT,
-  CHECKING_ACCOUNT,
-  FIXED_TERM_SAVINGS_ACCOUNT
+  SAVINGS_ACCOUNT("101"),
+  CHECKING_ACCOUNT("102"),
+  FIXED_TERM_SAVINGS_ACCOUNT("103");
 
+  private final String codePrefix;
+
+  PassiveAccountType(String codePrefix) {
+    this.codePrefix = codePrefix;
+  }
+
+  public String getCodePrefix() {
+    return codePrefix;
+  }
 }
@@ -17,9 +17,13 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @NoArgsConstructor
 public class Account {
+  private UUID accountId;
   private UUID clientId;
   private String accountCode;
-  private double balance;
+  /**
+   * In minor units, see {@link Money}.
+   */
+  private long balance;
   private AccountType accountType;
   private Instant createdAt;
 }
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Outcome of one item of a batch creation, identified by its position in the request.
+ */
+@Data
+@AllArgsConstructor
+public class AccountCreationResult {
+  private int index;
+  private String accountCode;
+  private String error;
+
+  public static AccountCreationResult created(int index, String accountCode) {
+    return new AccountCreationResult(index, accountCode, null);
+  }
+
+  public static AccountCreationResult rejected(int index, String error) {
+    return new AccountCreationResult(index, null, error);
+  }
+
+  public boolean isCreated() {
+    return error == null;
+  }
+}
@@ -15,6 +15,9 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 public class AssetAccount extends Account {
   private AssetAccountType assetAccountType;
-  private double loanOrCreditCardLimit;
+  /**
+   * In minor units, see {@link Money}.
+   */
+  private long loanOrCreditCardLimit;
   private Instant lastPaymentDate;
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.domain.model;
+
+/**
+ * Amounts of money as a {@code long} count of minor units (cents), the way balances and limits
+ * are held from the API boundary down to Mongo. Sums are exact, and none of the operations
+ * allocate; an amount that does not fit a long fails with an {@link ArithmeticException}
+ * instead of wrapping around.
+ *
+ * <p>The API still exchanges amounts as JSON numbers in major units: {@link #ofMajor} and
+ * {@link #toMajor} are the only places a double is involved.
+ */
+public final class Money {
+  public static final int SCALE = 2;
+  public static final long MINOR_UNITS_PER_MAJOR = 100;
+  private static final double LARGEST_MAJOR = (double) Long.MAX_VALUE / MINOR_UNITS_PER_MAJOR;
+
+  private Money() {
+  }
+
+  /**
+   * Converts an amount in major units, rounding half to even to the nearest minor unit.
+   */
+  public static long ofMajor(double amount) {
+    if (Double.isNaN(amount) || Double.isInfinite(amount)) {
+      throw new IllegalArgumentException("Not an amount: " + amount);
+    }
+    if (Math.abs(amount) >= LARGEST_MAJOR) {
+      throw new ArithmeticException("Amount out of range: " + amount);
+    }
+    return (long) Math.rint(amount * MINOR_UNITS_PER_MAJOR);
+  }
+
+  /**
+   * The double closest to the amount in major units, for the API.
+   */
+  public static double toMajor(long amount) {
+    return (double) amount / MINOR_UNITS_PER_MAJOR;
+  }
+
+  public static long add(long amount, long other) {
+    return Math.addExact(amount, other);
+  }
+
+  public static long subtract(long amount, long other) {
+    return Math.subtractExact(amount, other);
+  }
+
+  /**
+   * Whether adding the amount to the balance keeps it strictly below the limit.
+   */
+  public static boolean staysBelow(long balance, long amount, long limit) {
+    return add(balance, amount) < limit;
+  }
+
+  /**
+   * Formats the amount in major units with exactly {@link #SCALE} decimals, e.g. "-12.05".
+   */
+  public static String format(long amount) {
+    long major = Math.abs(amount / MINOR_UNITS_PER_MAJOR);
+    long minor = Math.abs(amount % MINOR_UNITS_PER_MAJOR);
+    return (amount < 0 ? "-" : "") + major + (minor < 10 ? ".0" : ".") + minor;
+  }
+}
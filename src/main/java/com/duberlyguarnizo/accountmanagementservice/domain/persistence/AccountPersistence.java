@@ -4,18 +4,45 @@
 
 package com.duberlyguarnizo.accountmanagementservice.domain.persistence;
 
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
 import com.duberlyguarnizo.accountmanagementservice.domain.model.Account;
 import com.duberlyguarnizo.accountmanagementservice.domain.model.AssetAccount;
 import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
 import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.core.Single;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
-
+/**
+ * Balances, limits and amounts are in minor units, see
+ * {@link com.duberlyguarnizo.accountmanagementservice.domain.model.Money}.
+ */
 public interface AccountPersistence {
-  Single<Double> getAccountBalance(String accountCode);
+  Single<Long> getAccountBalance(String accountCode);
+
+  /**
+   * Reads the balances of many accounts with one query per collection.
+   *
+   * @return the balance of every account found, by account code.
+   */
+  Single<Map<String, Long>> getAccountBalances(Collection<String> accountCodes);
+
+  /**
+   * Reads the balance the account had at the given instant. Needs the balance ledger.
+   *
+   * @return the balance, or empty if the account did not exist at that time.
+   */
+  Maybe<Long> getAccountBalanceAt(String accountCode, Instant at);
 
   Maybe<Account> getAccountByAccountId(UUID accountId);
 
@@ -25,11 +52,90 @@ public interface AccountPersistence {
 
   Observable<PassiveAccount> getPassiveAccountsByClientId(UUID clientId);
 
+  /**
+   * Computes the credit available to a client, the sum of its passive balances minus the sum
+   * of its asset balances, without loading the accounts.
+   */
+  Single<Long> getAvailableCreditForClient(UUID clientId);
+
+  /**
+   * Tells whether any asset account of the client was last paid before the cutoff, stopping at
+   * the first one found.
+   */
+  Single<Boolean> hasAssetAccountLastPaidBefore(UUID clientId, Instant cutoff);
+
+  /**
+   * Streams only the fields of the client's asset accounts that the API returns.
+   */
+  Observable<AssetAccountDto> getAssetAccountSummariesByClientId(UUID clientId);
+
+  /**
+   * Streams only the fields of the client's passive accounts that the API returns.
+   */
+  Observable<PassiveAccountDto> getPassiveAccountSummariesByClientId(UUID clientId);
+
+  /**
+   * Streams the same fields as {@link #getAssetAccountSummariesByClientId} for many clients
+   * with one query.
+   */
+  Observable<AssetAccountDto> getAssetAccountSummariesByClientIds(Collection<UUID> clientIds);
+
+  /**
+   * Streams the same fields as {@link #getPassiveAccountSummariesByClientId} for many clients
+   * with one query.
+   */
+  Observable<PassiveAccountDto> getPassiveAccountSummariesByClientIds(
+      Collection<UUID> clientIds);
+
+  /**
+   * Streams the asset accounts of a type in account code order, starting after the given code.
+   *
+   * @param afterAccountCode the last account code already returned, or null to start over.
+   * @param limit            the maximum number of accounts, or 0 for no limit.
+   */
+  Flowable<AssetAccountDto> getAssetAccountsByType(AssetAccountType assetAccountType,
+                                                   String afterAccountCode, int limit);
+
+  /**
+   * Streams the passive accounts of a type in account code order, starting after the given code.
+   *
+   * @param afterAccountCode the last account code already returned, or null to start over.
+   * @param limit            the maximum number of accounts, or 0 for no limit.
+   */
+  Flowable<PassiveAccountDto> getPassiveAccountsByType(PassiveAccountType passiveAccountType,
+                                                       String afterAccountCode, int limit);
+
   Completable createAccount(Account account);
 
-  Completable addToBalance(UUID accountId, double amount);
+  /**
+   * Inserts the accounts with unordered bulk inserts, so one failing account does not stop
+   * the others.
+   *
+   * @return the positions in the list of the accounts that could not be inserted.
+   */
+  Single<List<Integer>> createAccounts(List<Account> accounts);
+
+  /**
+   * Atomically adds the amount to the balance of the account in a single write.
+   *
+   * @return true if the account was found and updated.
+   */
+  Single<Boolean> addToBalance(AccountType accountType, UUID accountId, long amount);
+
+  /**
+   * Atomically subtracts the amount from the balance, only if the balance covers it.
+   *
+   * @return true if the account was found and its balance was at least the amount.
+   */
+  Single<Boolean> subtractFromBalance(AccountType accountType, UUID accountId, long amount);
 
-  Completable subtractFromBalance(UUID accountId, double amount);
+  /**
+   * Atomically adds the amount to the balance of an asset account, only if the resulting
+   * balance stays below its loan or credit card limit.
+   *
+   * @return true if the account was found and the limit was not reached.
+   */
+  Single<Boolean> addToBalanceWithinLimit(UUID accountId, long amount);
 
   Completable updateAccount(Account account);
 
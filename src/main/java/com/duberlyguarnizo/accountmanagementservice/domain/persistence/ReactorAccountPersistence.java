@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.domain.persistence;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Account;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The request paths of {@link AccountPersistence} in Reactor types, for the services of the
+ * Reactor stack (account.reactor.enabled), which go from WebFlux to the Mongo driver without
+ * converting to RxJava and back. Balances, limits and amounts are in minor units.
+ */
+public interface ReactorAccountPersistence {
+  Mono<Long> getAccountBalance(String accountCode);
+
+  Mono<Map<String, Long>> getAccountBalances(Collection<String> accountCodes);
+
+  Mono<Long> getAccountBalanceAt(String accountCode, Instant at);
+
+  Mono<Account> getAccountByAccountId(UUID accountId);
+
+  Mono<Account> getAccountByAccountCode(String accountCode);
+
+  Flux<PassiveAccount> getPassiveAccountsByClientId(UUID clientId);
+
+  Mono<Long> getAvailableCreditForClient(UUID clientId);
+
+  Flux<AssetAccountDto> getAssetAccountSummariesByClientId(UUID clientId);
+
+  Flux<PassiveAccountDto> getPassiveAccountSummariesByClientId(UUID clientId);
+
+  Flux<AssetAccountDto> getAssetAccountSummariesByClientIds(Collection<UUID> clientIds);
+
+  Flux<PassiveAccountDto> getPassiveAccountSummariesByClientIds(Collection<UUID> clientIds);
+
+  Flux<AssetAccountDto> getAssetAccountsByType(AssetAccountType assetAccountType,
+                                               String afterAccountCode, int limit);
+
+  Flux<PassiveAccountDto> getPassiveAccountsByType(PassiveAccountType passiveAccountType,
+                                                   String afterAccountCode, int limit);
+
+  Mono<Void> createAccount(Account account);
+
+  Mono<Boolean> addToBalance(AccountType accountType, UUID accountId, long amount);
+
+  Mono<Boolean> subtractFromBalance(AccountType accountType, UUID accountId, long amount);
+
+  Mono<Boolean> addToBalanceWithinLimit(UUID accountId, long amount);
+}
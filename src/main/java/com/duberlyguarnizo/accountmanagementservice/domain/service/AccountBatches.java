@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.domain.service;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Account;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.AccountCreationResult;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Single;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Shared steps of the batch creation of accounts: splitting the stream into chunks and storing
+ * the accounts a chunk accepted.
+ */
+@Slf4j
+final class AccountBatches {
+
+  private AccountBatches() {
+  }
+
+  /**
+   * Hands the accounts to the creator one chunk at a time, along with the position of the
+   * first account of the chunk in the whole stream. A chunk starts once the previous one has
+   * been stored, so it sees the accounts the previous one created.
+   */
+  static <T extends Account> Flowable<AccountCreationResult> createInChunks(
+      Flowable<T> accounts, int chunkSize, ChunkCreator<T> creator) {
+    return Flowable.defer(() -> {
+      AtomicInteger nextIndex = new AtomicInteger();
+      return accounts.buffer(chunkSize)
+          .concatMapSingle(chunk -> creator.create(chunk, nextIndex.getAndAdd(chunk.size())))
+          .concatMapIterable(results -> results);
+    });
+  }
+
+  /**
+   * Allocates codes to the accepted accounts and inserts them with a single unordered bulk
+   * insert, then fills in their results.
+   *
+   * @param positions the position in the chunk of each accepted account.
+   * @param results   the results of the chunk, already holding the rejected accounts.
+   */
+  static <T extends Account> Single<List<AccountCreationResult>> store(
+      AccountPersistence persistence, List<T> accepted, List<Integer> positions,
+      AccountCreationResult[] results, int firstIndex,
+      Function<T, Single<String>> codeAllocation) {
+    return Flowable.fromIterable(accepted)
+        .concatMapSingle(account -> codeAllocation.apply(account)
+            .doOnSuccess(account::setAccountCode))
+        .ignoreElements()
+        .andThen(Single.defer(() -> persistence.createAccounts(new ArrayList<>(accepted))))
+        .onErrorReturn(error -> {
+          log.error("Could not store a chunk of {} accounts: {}", accepted.size(),
+              error.getMessage());
+          return IntStream.range(0, accepted.size()).boxed().collect(Collectors.toList());
+        })
+        .map(failed -> {
+          Set<Integer> failedPositions = new HashSet<>(failed);
+          for (int i = 0; i < accepted.size(); ++i) {
+            int position = positions.get(i);
+            results[position] = failedPositions.contains(i)
+                ? AccountCreationResult.rejected(firstIndex + position,
+                "The account could not be stored")
+                : AccountCreationResult.created(firstIndex + position,
+                accepted.get(i).getAccountCode());
+          }
+          return Arrays.asList(results);
+        });
+  }
+
+  @FunctionalInterface
+  interface ChunkCreator<T extends Account> {
+    Single<List<AccountCreationResult>> create(List<T> chunk, int firstIndex);
+  }
+}
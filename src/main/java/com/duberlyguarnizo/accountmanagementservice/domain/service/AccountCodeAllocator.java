@@ -0,0 +1,21 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.domain.service;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
+import io.reactivex.rxjava3.core.Single;
+
+/**
+ * Hands out unique 14 digit account codes: the bank prefix 191, the three digit prefix of the
+ * account type and an eight digit sequence number.
+ */
+public interface AccountCodeAllocator {
+
+  Single<String> nextAssetAccountCode(AssetAccountType assetAccountType);
+
+  Single<String> nextPassiveAccountCode(PassiveAccountType passiveAccountType);
+
+}
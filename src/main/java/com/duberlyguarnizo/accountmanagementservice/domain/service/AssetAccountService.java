@@ -4,10 +4,13 @@
 
 package com.duberlyguarnizo.accountmanagementservice.domain.service;
 
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
 import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
 import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
 import com.duberlyguarnizo.accountmanagementservice.domain.model.Account;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.AccountCreationResult;
 import com.duberlyguarnizo.accountmanagementservice.domain.model.AssetAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Money;
 import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
 import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
 import com.duberlyguarnizo.accountmanagementservice.exception.AccountDoesNotExistException;
@@ -16,23 +19,35 @@ import com.duberlyguarnizo.accountmanagementservice.exception.DebtPastDueExcepti
 import com.duberlyguarnizo.accountmanagementservice.exception.IncompatibleAccountTypeException;
 import com.duberlyguarnizo.accountmanagementservice.exception.OverpaidAssetAccountException;
 import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.core.Single;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
-import java.util.Random;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import org.springframework.stereotype.Service;
 
 @Service
 public class AssetAccountService {
+  private static final int CLIENT_LOAD_CONCURRENCY = 16;
   private final AccountPersistence persistence;
   private final InterServiceOperations operations;
+  private final AccountCodeAllocator codeAllocator;
+  private final PastDueDebtCheck pastDueDebtCheck;
 
-  public AssetAccountService(AccountPersistence persistence, InterServiceOperations operations) {
+  public AssetAccountService(AccountPersistence persistence, InterServiceOperations operations,
+                             AccountCodeAllocator codeAllocator,
+                             PastDueDebtCheck pastDueDebtCheck) {
     this.persistence = persistence;
     this.operations = operations;
+    this.codeAllocator = codeAllocator;
+    this.pastDueDebtCheck = pastDueDebtCheck;
   }
 
   public Observable<AssetAccount> getAssetAccountsForClient(UUID clientId) {
@@ -43,64 +58,156 @@ public class AssetAccountService {
     return persistence.getPassiveAccountsByClientId(clientId);
   }
 
-  public Maybe<Account> getAssetAccountByAccountCode(String accountCode) {
-    return persistence.getAccountByAccountCode(accountCode);
+  public Observable<AssetAccountDto> getAssetAccountSummariesForClient(UUID clientId) {
+    return persistence.getAssetAccountSummariesByClientId(clientId);
+  }
+
+  public Flowable<AssetAccountDto> getAssetAccountsByType(AssetAccountType type,
+                                                          String afterAccountCode, int limit) {
+    return persistence.getAssetAccountsByType(type, afterAccountCode, limit);
+  }
+
+  public Maybe<AssetAccount> getAssetAccountByAccountCode(String accountCode) {
+    return persistence.getAccountByAccountCode(accountCode).ofType(AssetAccount.class);
   }
 
   public Completable createAssetAccount(AssetAccount account) {
-    return cardOrLoanIsPastDue(account.getLastPaymentDate()).flatMapCompletable(hasDueDebt -> {
+    UUID clientId = account.getClientId();
+    return pastDueDebtCheck.hasPastDueDebt(clientId).flatMapCompletable(hasDueDebt -> {
       if (hasDueDebt) {
         return Completable.error(
             new DebtPastDueException("Debt is past due, cannot create new account until paid"));
       } else {
         account.setLastPaymentDate(Instant.now());
 
-        var assetSum = persistence.getAssetAccountsByClientId(account.getClientId())
-            .filter(ac -> ac.getAccountType() == AccountType.ASSET)
-            .map(Account::getBalance)
-            .reduce(0.0, Double::sum);
-        var passiveSum = persistence.getPassiveAccountsByClientId(account.getClientId())
-            .filter(ac -> ac.getAccountType() == AccountType.PASSIVE)
-            .map(Account::getBalance)
-            .reduce(0.0, Double::sum);
-        Single.zip(passiveSum, assetSum, (passive, asset) -> passive - asset)
-            .subscribe(creditLimit -> {
-              if (creditLimit > 0) {
-                account.setLoanOrCreditCardLimit(creditLimit);
-              } else {
-                account.setLoanOrCreditCardLimit(0.0);
-              }
-            }).dispose();
-        account.setLastPaymentDate(Instant.now());
-        account.setAccountCode(generateAssetAccountCode(account.getAssetAccountType()));
-        return persistence.createAccount(account);
+        return persistence.getAvailableCreditForClient(clientId)
+            .flatMapCompletable(creditLimit -> {
+              account.setLoanOrCreditCardLimit(Math.max(creditLimit, 0));
+              account.setAccountId(UUID.randomUUID());
+              account.setCreatedAt(Instant.now());
+              return codeAllocator.nextAssetAccountCode(account.getAssetAccountType())
+                  .flatMapCompletable(accountCode -> {
+                    account.setAccountCode(accountCode);
+                    return persistence.createAccount(account);
+                  })
+                  .doOnComplete(() -> pastDueDebtCheck.paymentDateChanged(clientId));
+            });
       }
     });
   }
 
-  public Single<Double> getAccountBalance(String accountCode) {
+  /**
+   * Creates the accounts in chunks. Each client's debt status and available credit are loaded
+   * once per chunk. Every accepted account takes its balance off the credit left for the next
+   * account of the same client, as if they had been created one by one.
+   *
+   * @return the result of every account, in request order.
+   */
+  public Flowable<AccountCreationResult> createAssetAccounts(Flowable<AssetAccount> accounts,
+                                                             int chunkSize) {
+    return AccountBatches.createInChunks(accounts, chunkSize, this::createAssetAccountChunk);
+  }
+
+  private Single<List<AccountCreationResult>> createAssetAccountChunk(List<AssetAccount> chunk,
+                                                                       int firstIndex) {
+    return Flowable.fromIterable(chunk)
+        .filter(account -> account.getClientId() != null)
+        .map(AssetAccount::getClientId)
+        .distinct()
+        .flatMapSingle(this::loadCreationContext, false, CLIENT_LOAD_CONCURRENCY)
+        .toMap(context -> context.clientId)
+        .flatMap(contexts -> {
+          AccountCreationResult[] results = new AccountCreationResult[chunk.size()];
+          List<AssetAccount> accepted = new ArrayList<>();
+          List<Integer> positions = new ArrayList<>();
+          Set<UUID> clients = new HashSet<>();
+          for (int i = 0; i < chunk.size(); ++i) {
+            AssetAccount account = chunk.get(i);
+            CreationContext context = contexts.get(account.getClientId());
+            if (context == null || account.getAssetAccountType() == null) {
+              results[i] = AccountCreationResult.rejected(firstIndex + i,
+                  "The client id and the account type are required");
+            } else if (context.pastDue) {
+              results[i] = AccountCreationResult.rejected(firstIndex + i,
+                  "Debt is past due, cannot create new account until paid");
+            } else {
+              account.setAccountType(AccountType.ASSET);
+              account.setLoanOrCreditCardLimit(Math.max(context.availableCredit, 0));
+              context.availableCredit = Money.subtract(context.availableCredit,
+                  account.getBalance());
+              account.setAccountId(UUID.randomUUID());
+              account.setCreatedAt(Instant.now());
+              account.setLastPaymentDate(account.getCreatedAt());
+              clients.add(account.getClientId());
+              accepted.add(account);
+              positions.add(i);
+            }
+          }
+          return AccountBatches.store(persistence, accepted, positions, results, firstIndex,
+                  account -> codeAllocator.nextAssetAccountCode(account.getAssetAccountType()))
+              .doOnSuccess(stored -> clients.forEach(pastDueDebtCheck::paymentDateChanged));
+        });
+  }
+
+  private Single<CreationContext> loadCreationContext(UUID clientId) {
+    return Single.zip(
+        pastDueDebtCheck.hasPastDueDebt(clientId),
+        persistence.getAvailableCreditForClient(clientId),
+        (pastDue, availableCredit) -> new CreationContext(clientId, pastDue, availableCredit));
+  }
+
+  public Single<Long> getAccountBalance(String accountCode) {
     return persistence.getAccountBalance(accountCode);
   }
 
+  public Single<Map<String, Long>> getAccountBalances(Collection<String> accountCodes) {
+    return persistence.getAccountBalances(accountCodes);
+  }
+
+  public Maybe<Long> getAccountBalanceAt(String accountCode, Instant at) {
+    return persistence.getAccountBalanceAt(accountCode, at);
+  }
+
+  /**
+   * Raises the debt of the loan and credits the amount to the destination. The two accounts are
+   * separate documents, so the destination is checked before the debt is raised, and if the
+   * credit still fails, the raise is taken back before the error is returned.
+   */
   public Completable increaseLoanDebtForBankClient(UUID loanAccountId, UUID destinationAccountId,
-                                                   double amount) {
-    return persistence.getAccountByAccountId(loanAccountId)
-        .flatMapCompletable(account -> {
-          persistence.addToBalance(loanAccountId, amount);
-          return persistence.addToBalance(destinationAccountId, amount);
-        });
+                                                   long amount) {
+    return findAccount(destinationAccountId).flatMapCompletable(destination -> {
+      if (destination.getAccountType() != AccountType.PASSIVE) {
+        return Completable.error(new IncompatibleAccountTypeException("Destination account is"
+                                                                      + " not a passive account"));
+      }
+      return requireAccount(persistence.addToBalance(AccountType.ASSET, loanAccountId, amount),
+          loanAccountId)
+          .andThen(Completable.defer(() -> requireAccount(persistence.addToBalance(
+                  AccountType.PASSIVE, destinationAccountId, amount), destinationAccountId)
+              .onErrorResumeNext(error -> undoLoanDebt(loanAccountId, amount, error))));
+    });
+  }
+
+  private Completable undoLoanDebt(UUID loanAccountId, long amount, Throwable cause) {
+    return persistence.addToBalance(AccountType.ASSET, loanAccountId, Math.negateExact(amount))
+        .ignoreElement()
+        .onErrorResumeNext(undoError -> {
+          cause.addSuppressed(undoError);
+          return Completable.complete();
+        })
+        .andThen(Completable.error(cause));
   }
 
 
-  public Completable increaseLoanDebtForNonBankClient(UUID loanAccountId, double amount) {
+  public Completable increaseLoanDebtForNonBankClient(UUID loanAccountId, long amount) {
     return persistence.getAccountByAccountId(loanAccountId)
         .flatMapCompletable(account ->
             persistence.getPassiveAccountsByClientId(account.getClientId()).count()
                 .flatMapCompletable(passiveAccountCount -> {
                   if (passiveAccountCount == 0) {
                     if (account.getAccountType() == AccountType.ASSET) {
-                      return persistence.addToBalance(loanAccountId,
-                          amount);
+                      return requireAccount(persistence.addToBalance(AccountType.ASSET,
+                          loanAccountId, amount), loanAccountId);
                     } else {
                       return Completable.error(
                           new IncompatibleAccountTypeException("Account is not a loan"
@@ -115,65 +222,68 @@ public class AssetAccountService {
         );
   }
 
-  public Completable increaseCreditCardDebt(UUID accountId, double amount) {
-    return persistence.getAccountByAccountId(accountId)
-        .flatMapCompletable(account -> {
-          if (account.getAccountType() == AccountType.ASSET) {
-            AssetAccount assetAccount = (AssetAccount) account;
-
-            if (assetAccount.getLoanOrCreditCardLimit() > account.getBalance() + amount) {
-              return persistence.addToBalance(accountId, amount);
-            } else {
+  public Completable increaseCreditCardDebt(UUID accountId, long amount) {
+    return persistence.addToBalanceWithinLimit(accountId, amount)
+        .flatMapCompletable(applied -> {
+          if (applied) {
+            return Completable.complete();
+          }
+          // the conditional write did not match: read once to report why
+          return findAccount(accountId).flatMapCompletable(account -> {
+            if (account.getAccountType() == AccountType.ASSET) {
               return Completable.error(
                   new CreditCardLimitReachedException("Credit card debt limit exceeded"));
+            } else {
+              return Completable.error(
+                  new IncompatibleAccountTypeException("Account is not a credit card account"));
             }
-          } else {
-            return Completable.error(
-                new IncompatibleAccountTypeException("Account is not a credit card account"));
-          }
+          });
         });
   }
 
-  public Completable payLoanOrCreditCard(UUID accountId, double amount) {
-    return persistence.getAccountByAccountId(accountId)
-        .flatMapCompletable(account -> {
-          if (account.getAccountType() == AccountType.ASSET) {
-            if (account.getBalance() < amount) {
+  public Completable payLoanOrCreditCard(UUID accountId, long amount) {
+    return persistence.subtractFromBalance(AccountType.ASSET, accountId, amount)
+        .flatMapCompletable(applied -> {
+          if (applied) {
+            return Completable.complete();
+          }
+          return findAccount(accountId).flatMapCompletable(account -> {
+            if (account.getAccountType() == AccountType.ASSET) {
               return Completable.error(
                   new OverpaidAssetAccountException("Account or card debt is less than "
                                                     + "amount to pay"));
-            } else {
-              return persistence.subtractFromBalance(accountId, amount);
             }
-          }
-          return Completable.error(
-              new AccountDoesNotExistException("No account found with the id: "
-                                               + accountId.toString()));
+            return Completable.error(
+                new AccountDoesNotExistException("No account found with the id: "
+                                                 + accountId.toString()));
+          });
         });
   }
 
-  private Single<Boolean> cardOrLoanIsPastDue(Instant lastPaymentDate) {
-    Instant oneMonthAgo = Instant.now().minus(30, ChronoUnit.DAYS);
-    return Single.just(lastPaymentDate.isBefore(oneMonthAgo));
+  private Completable requireAccount(Single<Boolean> mutation, UUID accountId) {
+    return mutation.flatMapCompletable(applied -> applied
+        ? Completable.complete()
+        : Completable.error(new AccountDoesNotExistException("No account found with the id: "
+                                                             + accountId.toString())));
   }
 
+  private static final class CreationContext {
+    private final UUID clientId;
+    private final boolean pastDue;
+    private long availableCredit;
 
-  private String generateAssetAccountCode(AssetAccountType assetAccountType) {
-    Random random = new Random();
-    StringBuilder builder = new StringBuilder(14);
-    builder.append("191");
-    switch (assetAccountType) {
-      case CREDIT_CARD_ACCOUNT:
-        builder.append("201");
-        break;
-      case LOAN_ACCOUNT:
-        builder.append("202");
-        break;
-      default:
+    private CreationContext(UUID clientId, boolean pastDue, long availableCredit) {
+      this.clientId = clientId;
+      this.pastDue = pastDue;
+      this.availableCredit = availableCredit;
     }
-    for (int i = 0; i < 8; ++i) {
-      builder.append(random.nextInt(10));
-    }
-    return builder.toString();
   }
+
+  private Single<Account> findAccount(UUID accountId) {
+    return persistence.getAccountByAccountId(accountId)
+        .switchIfEmpty(Single.error(
+            new AccountDoesNotExistException("No account found with the id: "
+                                             + accountId.toString())));
+  }
+
 }
@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.domain.service;
+
+import io.reactivex.rxjava3.core.Completable;
+
+/**
+ * Remembers the outcome of operations submitted with an idempotency key, so a caller that
+ * retries with the same key gets the first outcome back instead of running the operation again.
+ */
+public interface IdempotencyStore {
+
+  /**
+   * Runs the operation unless the key was already used, in which case the stored outcome is
+   * replayed: completion, or the business rule error the operation failed with. Errors that
+   * leave the outcome unknown (a timeout, a lost connection) keep the key, whose retries fail
+   * with IdempotentRequestOutcomeUnknownException: the operation may have been applied. Errors
+   * raised before anything was written (a full bulkhead, a rejected task, an invalid argument)
+   * free the key, so a retry runs the operation.
+   *
+   * @param fingerprint identifies the request the key was sent with. Reusing a key for another
+   *                    request fails with IdempotencyKeyReusedException.
+   */
+  Completable execute(String key, String fingerprint, Completable operation);
+
+}
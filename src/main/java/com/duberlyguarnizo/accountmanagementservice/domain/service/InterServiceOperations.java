@@ -5,10 +5,16 @@
 package com.duberlyguarnizo.accountmanagementservice.domain.service;
 
 import com.duberlyguarnizo.accountmanagementservice.domain.enums.ClientType;
+import io.reactivex.rxjava3.core.Maybe;
 import java.util.UUID;
 
 public interface InterServiceOperations {
 
-  public ClientType getClientType(UUID clientId);
+  /**
+   * Looks up the type of a client without a remote call.
+   *
+   * @return the client type, or empty if the client is not known.
+   */
+  public Maybe<ClientType> getClientType(UUID clientId);
 
 }
@@ -4,23 +4,30 @@
 
 package com.duberlyguarnizo.accountmanagementservice.domain.service;
 
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
 import com.duberlyguarnizo.accountmanagementservice.domain.enums.ClientType;
 import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
-import com.duberlyguarnizo.accountmanagementservice.domain.model.Account;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.AccountCreationResult;
 import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
 import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.exception.AccountDoesNotExistException;
+import com.duberlyguarnizo.accountmanagementservice.exception.ClientDoesNotExistException;
 import com.duberlyguarnizo.accountmanagementservice.exception.DebtPastDueException;
 import com.duberlyguarnizo.accountmanagementservice.exception.IncompatibleAccountTypeException;
+import com.duberlyguarnizo.accountmanagementservice.exception.InsufficientBalanceException;
 import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.core.Single;
-import io.reactivex.rxjava3.schedulers.Schedulers;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Random;
+import java.util.Optional;
 import java.util.UUID;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -28,31 +35,52 @@ import org.springframework.stereotype.Service;
 @Service
 @Slf4j
 public class PassiveAccountService {
+  private static final int CLIENT_LOAD_CONCURRENCY = 16;
   private final InterServiceOperations operations;
   private final AccountPersistence persistence;
+  private final AccountCodeAllocator codeAllocator;
+  private final PastDueDebtCheck pastDueDebtCheck;
 
-  public PassiveAccountService(InterServiceOperations operations, AccountPersistence persistence) {
+  public PassiveAccountService(InterServiceOperations operations, AccountPersistence persistence,
+                               AccountCodeAllocator codeAllocator,
+                               PastDueDebtCheck pastDueDebtCheck) {
     this.operations = operations;
     this.persistence = persistence;
+    this.codeAllocator = codeAllocator;
+    this.pastDueDebtCheck = pastDueDebtCheck;
   }
 
   public Observable<PassiveAccount> getAllPassiveAccountsForClient(UUID clientId) {
     return persistence.getPassiveAccountsByClientId(clientId);
   }
 
-  public Maybe<Account> getPassiveAccountByAccountCode(String accountCode) {
-    return persistence.getAccountByAccountCode(accountCode);
+  public Observable<PassiveAccountDto> getPassiveAccountSummariesForClient(UUID clientId) {
+    return persistence.getPassiveAccountSummariesByClientId(clientId);
   }
 
-  public Completable createPassiveAccount(PassiveAccount account) {
-    log.warn("entering create passive account at Service level");
+  public Flowable<PassiveAccountDto> getPassiveAccountsByType(PassiveAccountType type,
+                                                              String afterAccountCode,
+                                                              int limit) {
+    return persistence.getPassiveAccountsByType(type, afterAccountCode, limit);
+  }
+
+  public Maybe<PassiveAccount> getPassiveAccountByAccountCode(String accountCode) {
+    return persistence.getAccountByAccountCode(accountCode).ofType(PassiveAccount.class);
+  }
 
-    ClientType clientType = ClientType.REGULAR_CLIENT; //TODO: implement client type from Kafka
+  public Completable createPassiveAccount(PassiveAccount account) {
+    return operations.getClientType(account.getClientId())
+        .switchIfEmpty(Single.error(() -> new ClientDoesNotExistException(
+            "No client found with the id: " + account.getClientId())))
+        .flatMapCompletable(clientType -> createPassiveAccount(account, clientType));
+  }
 
-    return cardOrLoanIsPastDue(account.getClientId())
+  private Completable createPassiveAccount(PassiveAccount account, ClientType clientType) {
+    return pastDueDebtCheck.hasPastDueDebt(account.getClientId())
         .flatMapCompletable(isPastDue -> {
           if (isPastDue) {
-            log.error("cannot create passive account: is past due");
+            log.debug("Client {} has past due debt, not creating a passive account",
+                account.getClientId());
             return Completable.error(
                 new DebtPastDueException("Client has a past due card or loan. Cannot create "
                                          + "account")
@@ -62,21 +90,22 @@ public class PassiveAccountService {
               .flatMapCompletable(
                   accList -> {
                     boolean isValid = isValidCreation(account, clientType, accList);
-                    log.warn("isValid is: " + isValid);
                     if (isValid) {
-                      log.warn("account before persistence: " + account.toString());
-                      account.setAccountCode(generatePassiveAccountCode(account
-                          .getPassiveAccountType()));
+                      account.setAccountId(UUID.randomUUID());
                       account.setCreatedAt(Instant.now());
-                      persistence.createAccount(account).subscribeOn(Schedulers.io())
-                          .subscribe(() -> {
-                            log.warn("passive account created at service level");
-                          }, error -> log.error("error creating passive account at service level "
-                                                + error.getMessage()));
-                      log.warn("account after persistence: " + account.toString());
-                      return Completable.complete();
+                      return codeAllocator.nextPassiveAccountCode(account.getPassiveAccountType())
+                          .flatMapCompletable(accountCode -> {
+                            account.setAccountCode(accountCode);
+                            return persistence.createAccount(account);
+                          })
+                          .doOnComplete(() -> log.debug("Created passive account {} for client {}",
+                              account.getAccountCode(), account.getClientId()))
+                          .doOnError(error -> log.warn(
+                              "Could not create a passive account for client {}: {}",
+                              account.getClientId(), error.getMessage()));
                     } else {
-                      log.error("is not valid");
+                      log.debug("Client {} of type {} cannot open a {}", account.getClientId(),
+                          clientType, account.getPassiveAccountType());
                       return Completable.error(
                           new IncompatibleAccountTypeException("The account type is not "
                                                                + "compatible with the client type.")
@@ -86,22 +115,132 @@ public class PassiveAccountService {
               );
         });
   }
+
+  /**
+   * Creates the accounts in chunks. Each client's type, debt status and existing accounts are
+   * loaded once per chunk, and the accounts of the chunk are validated against them in memory,
+   * including the accounts accepted earlier in the same chunk.
+   *
+   * @return the result of every account, in request order.
+   */
+  public Flowable<AccountCreationResult> createPassiveAccounts(Flowable<PassiveAccount> accounts,
+                                                               int chunkSize) {
+    return AccountBatches.createInChunks(accounts, chunkSize, this::createPassiveAccountChunk);
+  }
+
+  private Single<List<AccountCreationResult>> createPassiveAccountChunk(
+      List<PassiveAccount> chunk, int firstIndex) {
+    return Flowable.fromIterable(chunk)
+        .filter(account -> account.getClientId() != null)
+        .map(PassiveAccount::getClientId)
+        .distinct()
+        .flatMapSingle(this::loadCreationContext, false, CLIENT_LOAD_CONCURRENCY)
+        .toMap(context -> context.clientId)
+        .flatMap(contexts -> {
+          AccountCreationResult[] results = new AccountCreationResult[chunk.size()];
+          List<PassiveAccount> accepted = new ArrayList<>();
+          List<Integer> positions = new ArrayList<>();
+          for (int i = 0; i < chunk.size(); ++i) {
+            PassiveAccount account = chunk.get(i);
+            String rejection = validateCreation(account, contexts.get(account.getClientId()));
+            if (rejection != null) {
+              results[i] = AccountCreationResult.rejected(firstIndex + i, rejection);
+            } else {
+              account.setAccountType(AccountType.PASSIVE);
+              account.setAccountId(UUID.randomUUID());
+              account.setCreatedAt(Instant.now());
+              contexts.get(account.getClientId()).accounts.add(account);
+              accepted.add(account);
+              positions.add(i);
+            }
+          }
+          return AccountBatches.store(persistence, accepted, positions, results, firstIndex,
+              account -> codeAllocator.nextPassiveAccountCode(account.getPassiveAccountType()));
+        });
+  }
+
+  private Single<CreationContext> loadCreationContext(UUID clientId) {
+    return Single.zip(
+        operations.getClientType(clientId).map(Optional::of).defaultIfEmpty(Optional.empty()),
+        pastDueDebtCheck.hasPastDueDebt(clientId),
+        persistence.getPassiveAccountsByClientId(clientId).toList(),
+        (clientType, pastDue, accounts) -> new CreationContext(clientId,
+            clientType.orElse(null), pastDue, accounts));
+  }
+
+  private String validateCreation(PassiveAccount account, CreationContext context) {
+    if (context == null || account.getPassiveAccountType() == null) {
+      return "The client id and the account type are required";
+    }
+    if (context.clientType == null) {
+      return "No client found with the id: " + account.getClientId();
+    }
+    if (context.pastDue) {
+      return "Client has a past due card or loan. Cannot create account";
+    }
+    if (!isValidCreation(account, context.clientType, context.accounts)) {
+      return "The account type is not compatible with the client type.";
+    }
+    return null;
+  }
+
   //TODO: implement delete and update methods
 
-  public Single<Double> getAccountBalance(String accountCode) {
+  public Single<Long> getAccountBalance(String accountCode) {
     return persistence.getAccountBalance(accountCode);
   }
 
-  public Completable increaseAccountBalance(UUID accountId, double amount) {
-    return persistence.addToBalance(accountId, amount);
+  public Single<Map<String, Long>> getAccountBalances(Collection<String> accountCodes) {
+    return persistence.getAccountBalances(accountCodes);
+  }
+
+  public Maybe<Long> getAccountBalanceAt(String accountCode, Instant at) {
+    return persistence.getAccountBalanceAt(accountCode, at);
+  }
+
+  public Completable increaseAccountBalance(UUID accountId, long amount) {
+    return persistence.addToBalance(AccountType.PASSIVE, accountId, amount)
+        .flatMapCompletable(applied -> applied
+            ? Completable.complete()
+            : Completable.error(new AccountDoesNotExistException("No account found with the id: "
+                                                                 + accountId.toString())));
   }
 
-  public Completable decreaseAccountBalance(UUID accountId, double amount) {
-    return persistence.subtractFromBalance(accountId, amount);
+  public Completable decreaseAccountBalance(UUID accountId, long amount) {
+    return persistence.subtractFromBalance(AccountType.PASSIVE, accountId, amount)
+        .flatMapCompletable(applied -> {
+          if (applied) {
+            return Completable.complete();
+          }
+          return persistence.getAccountByAccountId(accountId)
+              .filter(account -> account.getAccountType() == AccountType.PASSIVE)
+              .isEmpty()
+              .flatMapCompletable(missing -> Completable.error(missing
+                  ? new AccountDoesNotExistException("No account found with the id: "
+                                                     + accountId.toString())
+                  : new InsufficientBalanceException("Account balance is less than the amount "
+                                                     + "to withdraw")));
+        });
   }
 
-  private boolean isValidCreation(PassiveAccount account, ClientType clientType,
-                                  List<PassiveAccount> accountList) {
+  private static final class CreationContext {
+    private final UUID clientId;
+    private final ClientType clientType;
+    private final boolean pastDue;
+    private final List<PassiveAccount> accounts;
+
+    private CreationContext(UUID clientId, ClientType clientType, boolean pastDue,
+                            List<PassiveAccount> accounts) {
+      this.clientId = clientId;
+      this.clientType = clientType;
+      this.pastDue = pastDue;
+      this.accounts = accounts;
+    }
+  }
+
+  // package-private for the benchmarks
+  static boolean isValidCreation(PassiveAccount account, ClientType clientType,
+                                 List<PassiveAccount> accountList) {
     boolean result = false;
     switch (clientType) {
       case REGULAR_CLIENT:
@@ -109,8 +248,6 @@ public class PassiveAccountService {
             .map(PassiveAccount::getPassiveAccountType)
             .filter(Objects::nonNull)
             .noneMatch(enumerator -> enumerator == account.getPassiveAccountType());
-
-        log.warn("isValidCreation result evaluation for Regular client is: " + result);
         break;
       case CORPORATE_CLIENT:
         result = account.getPassiveAccountType() == PassiveAccountType.CHECKING_ACCOUNT;
@@ -119,41 +256,7 @@ public class PassiveAccountService {
         throw new IncompatibleAccountTypeException("The client should be of "
                                                    + "type Regular or Corporate");
     }
-    log.warn("isValidCreation result is: " + result);
     return result;
   }
 
-  private Single<Boolean> cardOrLoanIsPastDue(UUID clientId) {
-    log.warn("entering card or loan is past due method at Service level");
-    return persistence.getAssetAccountsByClientId(clientId)
-        .any(x -> x.getLastPaymentDate().isBefore(Instant.now().minus(30, ChronoUnit.DAYS)))
-        .doOnSuccess(result -> {
-          log.warn("leaving card or loan is past due method at Service level");
-          log.warn("result is: " + result);
-        });
-
-  }
-
-  private String generatePassiveAccountCode(PassiveAccountType passiveAccountType) {
-    Random random = new Random();
-    StringBuilder builder = new StringBuilder(14);
-    builder.append("191");
-    switch (passiveAccountType) {
-      case SAVINGS_ACCOUNT:
-        builder.append("101");
-        break;
-      case CHECKING_ACCOUNT:
-        builder.append("102");
-        break;
-      case FIXED_TERM_SAVINGS_ACCOUNT:
-        builder.append("103");
-        break;
-      default:
-    }
-    for (int i = 0; i < 8; ++i) {
-      builder.append(random.nextInt(10));
-    }
-    return builder.toString();
-  }
-
 }
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.domain.service;
+
+import io.reactivex.rxjava3.core.Single;
+import java.util.UUID;
+
+/**
+ * Tells whether a client has a loan or credit card whose last payment is more than
+ * {@link #PAYMENT_PERIOD_DAYS} days old. New accounts cannot be opened while it does.
+ */
+public interface PastDueDebtCheck {
+  long PAYMENT_PERIOD_DAYS = 30;
+
+  Single<Boolean> hasPastDueDebt(UUID clientId);
+
+  /**
+   * Must be called after the payment date of any of the client's asset accounts is written.
+   */
+  void paymentDateChanged(UUID clientId);
+
+}
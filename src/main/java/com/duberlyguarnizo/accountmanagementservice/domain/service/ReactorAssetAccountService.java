@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.domain.service;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Account;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.AssetAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.ReactorAccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.exception.AccountDoesNotExistException;
+import com.duberlyguarnizo.accountmanagementservice.exception.CreditCardLimitReachedException;
+import com.duberlyguarnizo.accountmanagementservice.exception.DebtPastDueException;
+import com.duberlyguarnizo.accountmanagementservice.exception.IncompatibleAccountTypeException;
+import com.duberlyguarnizo.accountmanagementservice.exception.OverpaidAssetAccountException;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.adapter.rxjava.RxJava3Adapter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link AssetAccountService} in Reactor types, for the Reactor stack. The debt check and the
+ * code allocator are still RxJava ports and are adapted where they are called.
+ */
+@Service
+@ConditionalOnProperty(name = "account.reactor.enabled", havingValue = "true")
+public class ReactorAssetAccountService {
+  private final ReactorAccountPersistence persistence;
+  private final AccountCodeAllocator codeAllocator;
+  private final PastDueDebtCheck pastDueDebtCheck;
+
+  public ReactorAssetAccountService(ReactorAccountPersistence persistence,
+                                    AccountCodeAllocator codeAllocator,
+                                    PastDueDebtCheck pastDueDebtCheck) {
+    this.persistence = persistence;
+    this.codeAllocator = codeAllocator;
+    this.pastDueDebtCheck = pastDueDebtCheck;
+  }
+
+  public Flux<AssetAccountDto> getAssetAccountSummariesForClient(UUID clientId) {
+    return persistence.getAssetAccountSummariesByClientId(clientId);
+  }
+
+  public Flux<AssetAccountDto> getAssetAccountsByType(AssetAccountType type,
+                                                      String afterAccountCode, int limit) {
+    return persistence.getAssetAccountsByType(type, afterAccountCode, limit);
+  }
+
+  public Mono<AssetAccount> getAssetAccountByAccountCode(String accountCode) {
+    return persistence.getAccountByAccountCode(accountCode).ofType(AssetAccount.class);
+  }
+
+  public Mono<Void> createAssetAccount(AssetAccount account) {
+    UUID clientId = account.getClientId();
+    return RxJava3Adapter.singleToMono(pastDueDebtCheck.hasPastDueDebt(clientId))
+        .flatMap(hasDueDebt -> {
+          if (hasDueDebt) {
+            return Mono.error(
+                new DebtPastDueException("Debt is past due, cannot create new account until paid"));
+          }
+          account.setLastPaymentDate(Instant.now());
+          return persistence.getAvailableCreditForClient(clientId)
+              .flatMap(creditLimit -> {
+                account.setLoanOrCreditCardLimit(Math.max(creditLimit, 0));
+                account.setAccountId(UUID.randomUUID());
+                account.setCreatedAt(Instant.now());
+                return RxJava3Adapter.singleToMono(
+                    codeAllocator.nextAssetAccountCode(account.getAssetAccountType()));
+              })
+              .flatMap(accountCode -> {
+                account.setAccountCode(accountCode);
+                return persistence.createAccount(account);
+              })
+              .doOnSuccess(created -> pastDueDebtCheck.paymentDateChanged(clientId));
+        });
+  }
+
+  public Mono<Long> getAccountBalance(String accountCode) {
+    return persistence.getAccountBalance(accountCode);
+  }
+
+  public Mono<Map<String, Long>> getAccountBalances(Collection<String> accountCodes) {
+    return persistence.getAccountBalances(accountCodes);
+  }
+
+  public Mono<Long> getAccountBalanceAt(String accountCode, Instant at) {
+    return persistence.getAccountBalanceAt(accountCode, at);
+  }
+
+  public Mono<Void> increaseCreditCardDebt(UUID accountId, long amount) {
+    return persistence.addToBalanceWithinLimit(accountId, amount)
+        .flatMap(applied -> {
+          if (applied) {
+            return Mono.empty();
+          }
+          // the conditional write did not match: read once to report why
+          return findAccount(accountId).flatMap(account -> Mono.error(
+              account.getAccountType() == AccountType.ASSET
+                  ? new CreditCardLimitReachedException("Credit card debt limit exceeded")
+                  : new IncompatibleAccountTypeException("Account is not a credit card account")));
+        });
+  }
+
+  public Mono<Void> payLoanOrCreditCard(UUID accountId, long amount) {
+    return persistence.subtractFromBalance(AccountType.ASSET, accountId, amount)
+        .flatMap(applied -> {
+          if (applied) {
+            return Mono.empty();
+          }
+          return findAccount(accountId).flatMap(account -> Mono.error(
+              account.getAccountType() == AccountType.ASSET
+                  ? new OverpaidAssetAccountException("Account or card debt is less than "
+                                                      + "amount to pay")
+                  : new AccountDoesNotExistException("No account found with the id: "
+                                                     + accountId.toString())));
+        });
+  }
+
+  private Mono<Account> findAccount(UUID accountId) {
+    return persistence.getAccountByAccountId(accountId)
+        .switchIfEmpty(Mono.error(() ->
+            new AccountDoesNotExistException("No account found with the id: "
+                                             + accountId.toString())));
+  }
+}
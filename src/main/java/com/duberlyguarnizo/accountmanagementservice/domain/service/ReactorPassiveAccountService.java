@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.domain.service;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.ClientType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.ReactorAccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.exception.AccountDoesNotExistException;
+import com.duberlyguarnizo.accountmanagementservice.exception.ClientDoesNotExistException;
+import com.duberlyguarnizo.accountmanagementservice.exception.DebtPastDueException;
+import com.duberlyguarnizo.accountmanagementservice.exception.IncompatibleAccountTypeException;
+import com.duberlyguarnizo.accountmanagementservice.exception.InsufficientBalanceException;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.adapter.rxjava.RxJava3Adapter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link PassiveAccountService} in Reactor types, for the Reactor stack. The client lookup, the
+ * debt check and the code allocator are still RxJava ports and are adapted where they are
+ * called; the creation rules are shared with the RxJava service.
+ */
+@Service
+@ConditionalOnProperty(name = "account.reactor.enabled", havingValue = "true")
+@Slf4j
+public class ReactorPassiveAccountService {
+  private final InterServiceOperations operations;
+  private final ReactorAccountPersistence persistence;
+  private final AccountCodeAllocator codeAllocator;
+  private final PastDueDebtCheck pastDueDebtCheck;
+
+  public ReactorPassiveAccountService(InterServiceOperations operations,
+                                      ReactorAccountPersistence persistence,
+                                      AccountCodeAllocator codeAllocator,
+                                      PastDueDebtCheck pastDueDebtCheck) {
+    this.operations = operations;
+    this.persistence = persistence;
+    this.codeAllocator = codeAllocator;
+    this.pastDueDebtCheck = pastDueDebtCheck;
+  }
+
+  public Flux<PassiveAccountDto> getPassiveAccountSummariesForClient(UUID clientId) {
+    return persistence.getPassiveAccountSummariesByClientId(clientId);
+  }
+
+  public Flux<PassiveAccountDto> getPassiveAccountsByType(PassiveAccountType type,
+                                                          String afterAccountCode, int limit) {
+    return persistence.getPassiveAccountsByType(type, afterAccountCode, limit);
+  }
+
+  public Mono<PassiveAccount> getPassiveAccountByAccountCode(String accountCode) {
+    return persistence.getAccountByAccountCode(accountCode).ofType(PassiveAccount.class);
+  }
+
+  public Mono<Void> createPassiveAccount(PassiveAccount account) {
+    return RxJava3Adapter.maybeToMono(operations.getClientType(account.getClientId()))
+        .switchIfEmpty(Mono.error(() -> new ClientDoesNotExistException(
+            "No client found with the id: " + account.getClientId())))
+        .flatMap(clientType -> createPassiveAccount(account, clientType));
+  }
+
+  private Mono<Void> createPassiveAccount(PassiveAccount account, ClientType clientType) {
+    return RxJava3Adapter.singleToMono(pastDueDebtCheck.hasPastDueDebt(account.getClientId()))
+        .flatMap(isPastDue -> {
+          if (isPastDue) {
+            log.debug("Client {} has past due debt, not creating a passive account",
+                account.getClientId());
+            return Mono.error(
+                new DebtPastDueException("Client has a past due card or loan. Cannot create "
+                                         + "account"));
+          }
+          return persistence.getPassiveAccountsByClientId(account.getClientId()).collectList()
+              .flatMap(accList -> {
+                if (!PassiveAccountService.isValidCreation(account, clientType, accList)) {
+                  log.debug("Client {} of type {} cannot open a {}", account.getClientId(),
+                      clientType, account.getPassiveAccountType());
+                  return Mono.error(
+                      new IncompatibleAccountTypeException("The account type is not "
+                                                           + "compatible with the client type."));
+                }
+                account.setAccountId(UUID.randomUUID());
+                account.setCreatedAt(Instant.now());
+                return RxJava3Adapter.singleToMono(
+                        codeAllocator.nextPassiveAccountCode(account.getPassiveAccountType()))
+                    .flatMap(accountCode -> {
+                      account.setAccountCode(accountCode);
+                      return persistence.createAccount(account);
+                    })
+                    .doOnSuccess(created -> log.debug("Created passive account {} for client {}",
+                        account.getAccountCode(), account.getClientId()))
+                    .doOnError(error -> log.warn(
+                        "Could not create a passive account for client {}: {}",
+                        account.getClientId(), error.getMessage()));
+              });
+        });
+  }
+
+  public Mono<Long> getAccountBalance(String accountCode) {
+    return persistence.getAccountBalance(accountCode);
+  }
+
+  public Mono<Map<String, Long>> getAccountBalances(Collection<String> accountCodes) {
+    return persistence.getAccountBalances(accountCodes);
+  }
+
+  public Mono<Long> getAccountBalanceAt(String accountCode, Instant at) {
+    return persistence.getAccountBalanceAt(accountCode, at);
+  }
+
+  public Mono<Void> increaseAccountBalance(UUID accountId, long amount) {
+    return persistence.addToBalance(AccountType.PASSIVE, accountId, amount)
+        .flatMap(applied -> applied
+            ? Mono.empty()
+            : Mono.error(new AccountDoesNotExistException("No account found with the id: "
+                                                          + accountId.toString())));
+  }
+
+  public Mono<Void> decreaseAccountBalance(UUID accountId, long amount) {
+    return persistence.subtractFromBalance(AccountType.PASSIVE, accountId, amount)
+        .flatMap(applied -> {
+          if (applied) {
+            return Mono.empty();
+          }
+          return persistence.getAccountByAccountId(accountId)
+              .filter(account -> account.getAccountType() == AccountType.PASSIVE)
+              .hasElement()
+              .flatMap(found -> Mono.error(found
+                  ? new InsufficientBalanceException("Account balance is less than the amount "
+                                                     + "to withdraw")
+                  : new AccountDoesNotExistException("No account found with the id: "
+                                                     + accountId.toString())));
+        });
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.config;
+
+import com.duberlyguarnizo.accountmanagementservice.concurrency.AccountSchedulers;
+import com.duberlyguarnizo.accountmanagementservice.concurrency.Bulkhead;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.ReactorAccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.port.AccountOutbox;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.port.AccountPersistenceImpl;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.port.BatchingAccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.port.BulkheadAccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.port.BulkheadReactorAccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.port.CachingAccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.port.CoalescingAccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.port.LedgerAccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.port.LedgerSnapshotter;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.port.MeteredAccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.port.ReactorAccountPersistenceImpl;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.port.SingleFlightAccountPersistence;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+/**
+ * Assembles the {@link AccountPersistence} the services use: the Mongo implementation behind
+ * the persistence bulkhead, wrapped by the optional layers enabled through the account.*
+ * properties and, outermost, by the account.persistence timers.
+ */
+@Configuration
+@Slf4j
+public class AccountPersistenceConfig {
+
+  /**
+   * Bounds the Mongo operations in flight. The default matches the driver's default connection
+   * pool, so operations wait here, where they are counted and capped, rather than in the
+   * driver's unbounded wait queue.
+   */
+  @Bean
+  public Bulkhead persistenceBulkhead(
+      MeterRegistry meterRegistry,
+      @Value("${account.bulkheads.persistence.max-concurrent:100}") int maxConcurrent,
+      @Value("${account.bulkheads.persistence.max-queued:1000}") int maxQueued) {
+    return new Bulkhead("persistence", maxConcurrent, maxQueued, meterRegistry);
+  }
+
+  @Bean
+  @Primary
+  public AccountPersistence accountPersistence(
+      AccountPersistenceImpl mongoPersistence,
+      ObjectProvider<LedgerAccountPersistence> ledger,
+      Bulkhead persistenceBulkhead,
+      AccountSchedulers schedulers,
+      MeterRegistry meterRegistry,
+      @Value("${account.cache.enabled:false}") boolean cacheEnabled,
+      @Value("${account.cache.maximum-size:10000}") long cacheMaximumSize,
+      @Value("${account.cache.ttl:30s}") Duration cacheTtl,
+      @Value("${account.lanes.enabled:false}") boolean lanesEnabled,
+      @Value("${account.lanes.count:16}") int laneCount,
+      @Value("${account.lanes.window:1ms}") Duration laneWindow,
+      @Value("${account.lanes.maximum-batch-size:256}") int laneBatchSize,
+      @Value("${account.loader.enabled:false}") boolean loaderEnabled,
+      @Value("${account.loader.window:1ms}") Duration loaderWindow,
+      @Value("${account.loader.maximum-batch-size:100}") int loaderBatchSize,
+      @Value("${account.single-flight.enabled:false}") boolean singleFlightEnabled,
+      @Value("${account.query.cursor-batch-size:256}") int cursorBatchSize) {
+    AccountPersistence persistence = mongoPersistence;
+    LedgerAccountPersistence ledgerPersistence = ledger.getIfAvailable();
+    if (ledgerPersistence != null) {
+      persistence = ledgerPersistence;
+    }
+    persistence = new BulkheadAccountPersistence(persistence, persistenceBulkhead,
+        cursorBatchSize);
+    if (lanesEnabled) {
+      log.info("Balance changes go through {} lanes (window {}, batches of up to {})",
+          laneCount, laneWindow, laneBatchSize);
+      persistence = new CoalescingAccountPersistence(persistence, laneCount, laneWindow,
+          laneBatchSize, schedulers.getPersistence().scheduler());
+    }
+    if (loaderEnabled) {
+      log.info("Balance and account summary lookups are batched (window {}, up to {} keys)",
+          loaderWindow, loaderBatchSize);
+      persistence = new BatchingAccountPersistence(persistence, loaderWindow, loaderBatchSize,
+          schedulers.getPersistence().scheduler(), meterRegistry);
+    }
+    if (cacheEnabled) {
+      log.info("Account cache enabled (maximum size {}, ttl {})", cacheMaximumSize, cacheTtl);
+      var cached = new CachingAccountPersistence(persistence, cacheMaximumSize, cacheTtl);
+      CaffeineCacheMetrics.monitor(meterRegistry, cached.getCache(), "accounts");
+      persistence = cached;
+    }
+    if (singleFlightEnabled) {
+      persistence = new SingleFlightAccountPersistence(persistence, meterRegistry);
+    }
+    return new MeteredAccountPersistence(persistence, meterRegistry);
+  }
+
+  /**
+   * Balance changes appended to a ledger, enabled with account.ledger.enabled. It wraps the
+   * Mongo implementation directly and is a bean of its own so its snapshotter can reach it.
+   */
+  @Bean
+  @ConditionalOnProperty(name = "account.ledger.enabled", havingValue = "true")
+  public LedgerAccountPersistence ledgerAccountPersistence(
+      AccountPersistenceImpl mongoPersistence,
+      ReactiveMongoTemplate template,
+      AccountOutbox outbox,
+      @Value("${account.ledger.state-cache-size:100000}") long stateCacheSize) {
+    log.info("Balance changes are appended to the ledger");
+    return new LedgerAccountPersistence(mongoPersistence, template, outbox, stateCacheSize);
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "account.ledger.enabled", havingValue = "true")
+  public LedgerSnapshotter ledgerSnapshotter(
+      LedgerAccountPersistence ledger,
+      AccountSchedulers schedulers,
+      @Value("${account.ledger.snapshot-interval:1s}") Duration snapshotInterval) {
+    return new LedgerSnapshotter(ledger, snapshotInterval, schedulers.getJobs().scheduler());
+  }
+
+  /**
+   * The persistence of the Reactor stack, enabled with account.reactor.enabled. The balance
+   * ledger needs the RxJava stack, and the cache and the lanes only wrap it, so the Reactor
+   * stack goes to Mongo for every request; its queries are timed by the mongodb.driver.commands
+   * metrics only.
+   */
+  @Bean
+  @ConditionalOnProperty(name = "account.reactor.enabled", havingValue = "true")
+  public ReactorAccountPersistence reactorAccountPersistence(
+      ReactiveMongoTemplate template,
+      AccountOutbox outbox,
+      Bulkhead persistenceBulkhead,
+      @Value("${account.query.cursor-batch-size:256}") int cursorBatchSize,
+      @Value("${account.ledger.enabled:false}") boolean ledgerEnabled,
+      @Value("${account.cache.enabled:false}") boolean cacheEnabled,
+      @Value("${account.lanes.enabled:false}") boolean lanesEnabled,
+      @Value("${account.loader.enabled:false}") boolean loaderEnabled) {
+    if (ledgerEnabled) {
+      throw new IllegalStateException(
+          "account.reactor.enabled cannot be combined with account.ledger.enabled");
+    }
+    if (cacheEnabled || lanesEnabled || loaderEnabled) {
+      log.warn("The account cache, the balance lanes and the lookup batches only apply to the "
+               + "batch endpoints on the Reactor stack");
+    }
+    log.info("Requests run on the Reactor stack");
+    return new BulkheadReactorAccountPersistence(
+        new ReactorAccountPersistenceImpl(template, outbox, cursorBatchSize), persistenceBulkhead,
+        cursorBatchSize);
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.config;
+
+import com.duberlyguarnizo.accountmanagementservice.concurrency.AccountSchedulers;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.port.ClientServiceLookup;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.port.ClientTypeReplica;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * Consumes the client type topic with the spring.kafka.consumer.* settings, except for the
+ * group, offset and deserializer settings the replica needs. With the replica disabled, client
+ * types are asked to the client service instead, found through Eureka.
+ */
+@Configuration
+public class ClientTypeReplicaConfig {
+  private static final String CLIENT_URL = "http://client-management-service/clients/{clientId}";
+
+  @Bean
+  public ClientTypeReplica clientTypeReplica(
+      KafkaProperties kafkaProperties,
+      @Value("${account.client-types.topic:client-types}") String topic,
+      @Value("${account.client-types.enabled:true}") boolean enabled) {
+    return new ClientTypeReplica(kafkaProperties.buildConsumerProperties(), topic, enabled);
+  }
+
+  @Bean
+  @LoadBalanced
+  public WebClient.Builder loadBalancedWebClientBuilder() {
+    return WebClient.builder();
+  }
+
+  @Bean
+  public ClientServiceLookup clientServiceLookup(
+      WebClient.Builder webClientBuilder,
+      @Value("${account.client-types.client-url:" + CLIENT_URL + "}") String clientUrl,
+      @Value("${account.client-types.lookup-timeout:2s}") Duration timeout,
+      AccountSchedulers schedulers) {
+    return new ClientServiceLookup(webClientBuilder.build(), clientUrl, timeout,
+        schedulers.getInterService().scheduler());
+  }
+}
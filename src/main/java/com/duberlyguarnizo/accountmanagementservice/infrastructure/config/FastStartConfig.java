@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.config;
+
+import com.netflix.appinfo.ApplicationInfoManager;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+/**
+ * The parts of the fast-start profile that need code, enabled with account.fast-start.enabled.
+ * The profile turns on lazy bean initialization, which the background components do not
+ * notice: being SmartLifecycle beans, they are created and started anyway. The Mongo template
+ * is kept eager so that the indexes are still ensured at startup rather than by the first
+ * request. The instance registers with Eureka as STARTING and is only set UP once the
+ * application is ready, so no traffic is routed to it before it can serve.
+ */
+@Configuration
+@ConditionalOnProperty(name = "account.fast-start.enabled", havingValue = "true")
+@Slf4j
+public class FastStartConfig {
+
+  @Bean
+  public static LazyInitializationExcludeFilter eagerMongoTemplate() {
+    return LazyInitializationExcludeFilter.forBeanTypes(ReactiveMongoTemplate.class);
+  }
+
+  @Bean
+  public ApplicationListener<ApplicationReadyEvent> registerWithEurekaWhenReady(
+      ObjectProvider<ApplicationInfoManager> applicationInfoManager) {
+    return event -> applicationInfoManager.ifAvailable(manager -> {
+      manager.setInstanceStatus(InstanceStatus.UP);
+      log.info("Application ready, registered with Eureka as {}", InstanceStatus.UP);
+    });
+  }
+}
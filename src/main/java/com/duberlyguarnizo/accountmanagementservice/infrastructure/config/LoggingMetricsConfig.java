@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.config;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.logging.DroppingAsyncAppender;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.Iterator;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Publishes the queue of the async appenders logback-spring.xml attaches to the root logger:
+ * logback.async.dropped and logback.async.queued, tagged with the appender name.
+ */
+@Configuration
+@ConditionalOnClass(LoggerContext.class)
+public class LoggingMetricsConfig {
+
+  @Bean
+  public MeterBinder asyncAppenderMetrics() {
+    return registry -> {
+      if (!(LoggerFactory.getILoggerFactory() instanceof LoggerContext)) {
+        return;
+      }
+      LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+      Iterator<Appender<ILoggingEvent>> appenders =
+          context.getLogger(Logger.ROOT_LOGGER_NAME).iteratorForAppenders();
+      while (appenders.hasNext()) {
+        Appender<ILoggingEvent> appender = appenders.next();
+        if (appender instanceof DroppingAsyncAppender) {
+          DroppingAsyncAppender async = (DroppingAsyncAppender) appender;
+          FunctionCounter.builder("logback.async.dropped", async,
+                  DroppingAsyncAppender::getDroppedCount)
+              .description("Events dropped because the queue was full or past its threshold")
+              .tag("appender", async.getName())
+              .register(registry);
+          Gauge.builder("logback.async.queued", async,
+                  DroppingAsyncAppender::getNumberOfElementsInQueue)
+              .description("Events waiting to be written")
+              .tag("appender", async.getName())
+              .register(registry);
+        }
+      }
+    };
+  }
+}
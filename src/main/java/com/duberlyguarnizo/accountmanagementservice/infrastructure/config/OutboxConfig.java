@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.config;
+
+import com.duberlyguarnizo.accountmanagementservice.concurrency.AccountSchedulers;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.port.AccountOutbox;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.port.OutboxLeases;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.port.OutboxRelay;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.ReactiveMongoTransactionManager;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+/**
+ * The account event outbox and its relay to Kafka, enabled with account.outbox.enabled.
+ * Writing to the outbox needs Mongo transactions, so Mongo must run as a replica set.
+ */
+@Configuration
+@Slf4j
+public class OutboxConfig {
+
+  @Bean
+  public AccountOutbox accountOutbox(
+      ReactiveMongoTemplate template,
+      ReactiveMongoDatabaseFactory databaseFactory,
+      @Value("${account.outbox.enabled:false}") boolean enabled,
+      @Value("${account.outbox.partitions:16}") int partitions) {
+    if (!enabled) {
+      return new AccountOutbox(template, null, partitions);
+    }
+    log.info("Account outbox enabled with {} partitions", partitions);
+    return new AccountOutbox(template,
+        TransactionalOperator.create(new ReactiveMongoTransactionManager(databaseFactory)),
+        partitions);
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "account.outbox.enabled", havingValue = "true")
+  public OutboxRelay outboxRelay(
+      AccountOutbox outbox,
+      ReactiveMongoTemplate template,
+      KafkaProperties kafkaProperties,
+      @Value("${account.outbox.relay.topic:account-events}") String topic,
+      @Value("${account.outbox.relay.batch-size:1000}") int batchSize,
+      @Value("${account.outbox.relay.poll-interval:100ms}") Duration pollInterval,
+      @Value("${account.outbox.relay.lease-ttl:10s}") Duration leaseTtl,
+      @Value("${account.outbox.relay.linger:20ms}") Duration linger,
+      @Value("${account.outbox.relay.producer-batch-bytes:262144}") int producerBatchBytes,
+      @Value("${account.outbox.relay.compression:lz4}") String compression,
+      AccountSchedulers schedulers,
+      MeterRegistry meterRegistry) {
+    Map<String, Object> producerProperties = kafkaProperties.buildProducerProperties();
+    producerProperties.put(ProducerConfig.LINGER_MS_CONFIG, (int) linger.toMillis());
+    producerProperties.put(ProducerConfig.BATCH_SIZE_CONFIG, producerBatchBytes);
+    producerProperties.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compression);
+    OutboxLeases leases = new OutboxLeases(template, UUID.randomUUID().toString(),
+        outbox.getPartitions(), leaseTtl);
+    return new OutboxRelay(outbox, leases, producerProperties, topic, batchSize, pollInterval,
+        schedulers.getJobs().scheduler(), meterRegistry);
+  }
+}
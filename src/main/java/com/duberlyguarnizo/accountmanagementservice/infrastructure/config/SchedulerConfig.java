@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.config;
+
+import com.duberlyguarnizo.accountmanagementservice.concurrency.AccountSchedulers;
+import com.duberlyguarnizo.accountmanagementservice.concurrency.BoundedScheduler;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Sizes the {@link AccountSchedulers} from the account.schedulers.* properties.
+ */
+@Configuration
+public class SchedulerConfig {
+
+  @Bean
+  public AccountSchedulers accountSchedulers(
+      MeterRegistry meterRegistry,
+      @Value("${account.schedulers.persistence.threads:2}") int persistenceThreads,
+      @Value("${account.schedulers.persistence.queue-capacity:1024}") int persistenceQueue,
+      @Value("${account.schedulers.inter-service.threads:1}") int interServiceThreads,
+      @Value("${account.schedulers.inter-service.queue-capacity:4096}") int interServiceQueue,
+      @Value("${account.schedulers.jobs.threads:2}") int jobThreads,
+      @Value("${account.schedulers.jobs.queue-capacity:64}") int jobQueue) {
+    return new AccountSchedulers(
+        new BoundedScheduler("account-persistence", persistenceThreads, persistenceQueue,
+            meterRegistry),
+        new BoundedScheduler("account-inter-service", interServiceThreads, interServiceQueue,
+            meterRegistry),
+        new BoundedScheduler("account-jobs", jobThreads, jobQueue, meterRegistry));
+  }
+}
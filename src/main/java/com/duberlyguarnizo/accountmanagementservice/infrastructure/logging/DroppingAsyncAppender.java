@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.logging;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Logback's {@link AsyncAppender} set to never block the logging thread, counting what it drops:
+ * TRACE to INFO events once the queue is past its discarding threshold, and every event once it
+ * is full. The count is published as logback.async.dropped.
+ */
+public class DroppingAsyncAppender extends AsyncAppender {
+  private final LongAdder dropped = new LongAdder();
+
+  public DroppingAsyncAppender() {
+    setNeverBlock(true);
+  }
+
+  public long getDroppedCount() {
+    return dropped.sum();
+  }
+
+  @Override
+  protected void append(ILoggingEvent event) {
+    // only the worker frees capacity, so a full queue cannot take this event either
+    if (isStarted() && getRemainingCapacity() == 0) {
+      dropped.increment();
+      return;
+    }
+    super.append(event);
+  }
+
+  @Override
+  protected boolean isDiscardable(ILoggingEvent event) {
+    // only asked once the queue is past the discarding threshold
+    boolean discardable = super.isDiscardable(event);
+    if (discardable) {
+      dropped.increment();
+    }
+    return discardable;
+  }
+}
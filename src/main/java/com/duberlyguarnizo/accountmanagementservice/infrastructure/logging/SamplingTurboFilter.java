@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Marker;
+
+/**
+ * Lets one in every n events of a category through, for the events at or below a level (DEBUG
+ * by default). A category is a logger name and the loggers below it; each is configured as
+ * {@code <sample>category=n</sample>}, and the most specific category of a logger applies.
+ * Events outside every category, and above the level, are left to the logger levels.
+ *
+ * <p>Sampling happens before the message is formatted, so a sampled-out event costs a counter
+ * increment. {@code isDebugEnabled()} is not sampled.
+ */
+public class SamplingTurboFilter extends TurboFilter {
+  private final List<Category> categories = new ArrayList<>();
+  private Level level = Level.DEBUG;
+
+  public void addSample(String sample) {
+    int separator = sample.lastIndexOf('=');
+    if (separator < 0) {
+      addError("Expected category=n, got " + sample);
+      return;
+    }
+    String name = sample.substring(0, separator).trim();
+    int rate = Integer.parseInt(sample.substring(separator + 1).trim());
+    if (rate < 1) {
+      addError("The sampling rate of " + name + " must be at least 1");
+      return;
+    }
+    categories.add(new Category(name, rate));
+    categories.sort(Comparator.comparingInt((Category category) -> category.name.length())
+        .reversed());
+  }
+
+  public void setLevel(String level) {
+    this.level = Level.toLevel(level, Level.DEBUG);
+  }
+
+  @Override
+  public FilterReply decide(Marker marker, Logger logger, Level level, String format,
+                            Object[] params, Throwable t) {
+    if (!isStarted() || format == null || !this.level.isGreaterOrEqual(level)) {
+      return FilterReply.NEUTRAL;
+    }
+    String loggerName = logger.getName();
+    for (Category category : categories) {
+      if (category.contains(loggerName)) {
+        return category.next() ? FilterReply.NEUTRAL : FilterReply.DENY;
+      }
+    }
+    return FilterReply.NEUTRAL;
+  }
+
+  private static final class Category {
+    private final String name;
+    private final int rate;
+    private final AtomicLong events = new AtomicLong();
+
+    private Category(String name, int rate) {
+      this.name = name;
+      this.rate = rate;
+    }
+
+    private boolean contains(String loggerName) {
+      return loggerName.startsWith(name)
+          && (loggerName.length() == name.length() || loggerName.charAt(name.length()) == '.');
+    }
+
+    private boolean next() {
+      return rate == 1 || events.getAndIncrement() % rate == 0;
+    }
+  }
+}
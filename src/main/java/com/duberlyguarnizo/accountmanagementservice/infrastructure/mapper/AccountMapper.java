@@ -4,15 +4,29 @@
 
 package com.duberlyguarnizo.accountmanagementservice.infrastructure.mapper;
 
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountDto;
 import com.duberlyguarnizo.accountmanagementservice.domain.model.AssetAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Money;
 import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
 import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.AssetAccountEntity;
 import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.PassiveAccountEntity;
 import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.UUID;
+import org.bson.Document;
 
 public class AccountMapper {
+  public static final String[] ASSET_SUMMARY_FIELDS = {
+      "accountCode", "balance", "clientId", "assetAccountType", "createdAt"};
+  public static final String[] PASSIVE_SUMMARY_FIELDS = {
+      "accountCode", "balance", "clientId", "passiveAccountType", "createdAt"};
+
   public static AssetAccountEntity toEntity(AssetAccount assetAccount) {
     return AssetAccountEntity.builder()
+        .id(toEntityId(assetAccount.getAccountId()))
         .accountCode(assetAccount.getAccountCode())
         .balance(assetAccount.getBalance())
         .createdAt(Instant.now())
@@ -27,6 +41,8 @@ public class AccountMapper {
 
   public static AssetAccount toDomain(AssetAccountEntity assetAccountEntity) {
     AssetAccount result = new AssetAccount();
+    result.setAccountId(toAccountId(assetAccountEntity.getId()));
+    result.setAssetAccountType(assetAccountEntity.getAssetAccountType());
     result.setLastPaymentDate(assetAccountEntity.getLastPaymentDate());
     result.setLoanOrCreditCardLimit(assetAccountEntity.getLoanOrCreditCardLimit());
     result.setAccountType(assetAccountEntity.getAccountType());
@@ -40,6 +56,7 @@ public class AccountMapper {
 
   public static PassiveAccountEntity toEntity(PassiveAccount passiveAccount) {
     return PassiveAccountEntity.builder()
+        .id(toEntityId(passiveAccount.getAccountId()))
         .accountCode(passiveAccount.getAccountCode())
         .balance(passiveAccount.getBalance())
         .createdAt(Instant.now())
@@ -52,6 +69,8 @@ public class AccountMapper {
 
   public static PassiveAccount toDomain(PassiveAccountEntity passiveEntity) {
     PassiveAccount result = new PassiveAccount();
+    result.setAccountId(toAccountId(passiveEntity.getId()));
+    result.setPassiveAccountType(passiveEntity.getPassiveAccountType());
     result.setBalance(passiveEntity.getBalance());
     result.setAccountType(passiveEntity.getAccountType());
     result.setAccountCode(passiveEntity.getAccountCode());
@@ -61,4 +80,60 @@ public class AccountMapper {
     return result;
   }
 
+  /**
+   * Maps a document projected on {@link #ASSET_SUMMARY_FIELDS} straight to the API model,
+   * without instantiating the entity or the domain account.
+   */
+  public static AssetAccountDto toAssetAccountDto(Document document) {
+    String assetAccountType = document.getString("assetAccountType");
+    return AssetAccountDto.builder()
+        .accountCode(document.getString("accountCode"))
+        .balance(toMajor(document.get("balance")))
+        .clientId(document.get("clientId", UUID.class))
+        .assetAccountType(assetAccountType == null ? null
+            : AssetAccountDto.AssetAccountTypeEnum.valueOf(assetAccountType))
+        .createdAt(toOffsetDateTime(document.getDate("createdAt")))
+        .build();
+  }
+
+  /**
+   * Maps a document projected on {@link #PASSIVE_SUMMARY_FIELDS} straight to the API model,
+   * without instantiating the entity or the domain account.
+   */
+  public static PassiveAccountDto toPassiveAccountDto(Document document) {
+    String passiveAccountType = document.getString("passiveAccountType");
+    return PassiveAccountDto.builder()
+        .accountCode(document.getString("accountCode"))
+        .balance(toMajor(document.get("balance")))
+        .clientId(document.get("clientId", UUID.class))
+        .passiveAccountType(passiveAccountType == null ? null
+            : PassiveAccountDto.PassiveAccountTypeEnum.valueOf(passiveAccountType))
+        .createdAt(toOffsetDateTime(document.getDate("createdAt")))
+        .build();
+  }
+
+  public static String toEntityId(UUID accountId) {
+    return accountId == null ? null : accountId.toString();
+  }
+
+  private static Double toMajor(Object minorUnits) {
+    return minorUnits == null ? null : Money.toMajor(((Number) minorUnits).longValue());
+  }
+
+  private static OffsetDateTime toOffsetDateTime(Date date) {
+    return date == null ? null : OffsetDateTime.ofInstant(date.toInstant(), ZoneOffset.UTC);
+  }
+
+  /**
+   * Accounts created before account ids were assigned by the services carry a Mongo
+   * generated ObjectId, which has no UUID representation.
+   */
+  private static UUID toAccountId(String entityId) {
+    try {
+      return entityId == null ? null : UUID.fromString(entityId);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
 }
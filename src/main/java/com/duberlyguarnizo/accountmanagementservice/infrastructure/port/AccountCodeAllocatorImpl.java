@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.AccountCodeAllocator;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Single;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.adapter.rxjava.RxJava3Adapter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Leases blocks of sequence numbers per account type from a counter document in Mongo and
+ * hands them out from memory. Every node leases disjoint blocks through an atomic $inc, so
+ * codes are unique across nodes and only one round trip is paid per block.
+ *
+ * <p>Before its first lease for a prefix, a node raises the counter past the highest code with
+ * that prefix already stored, through an atomic $max. Accounts created before the counter
+ * existed, or by an earlier code scheme with the same layout, are thus never handed out again.
+ */
+@Service
+@Slf4j
+public class AccountCodeAllocatorImpl implements AccountCodeAllocator {
+  static final String COUNTER_COLLECTION = "account_code_counters";
+  private static final int SEQUENCE_DIGITS = 8;
+  private static final long MAX_SEQUENCE = 99_999_999L;
+
+  private final ReactiveMongoTemplate template;
+  private final int blockSize;
+  private final ConcurrentMap<String, CodeRange> ranges = new ConcurrentHashMap<>();
+
+  public AccountCodeAllocatorImpl(ReactiveMongoTemplate template,
+                                  @Value("${account.code.block-size:1000}") int blockSize) {
+    this.template = template;
+    this.blockSize = blockSize;
+  }
+
+  @Override
+  public Single<String> nextAssetAccountCode(AssetAccountType assetAccountType) {
+    return nextCode(assetAccountType.getCodePrefix());
+  }
+
+  @Override
+  public Single<String> nextPassiveAccountCode(PassiveAccountType passiveAccountType) {
+    return nextCode(passiveAccountType.getCodePrefix());
+  }
+
+  private Single<String> nextCode(String typePrefix) {
+    return Single.defer(() -> {
+      CodeRange range = ranges.computeIfAbsent(typePrefix, CodeRange::new);
+      Block block = range.current.get();
+      long sequence = block.next.getAndIncrement();
+      if (sequence < block.end) {
+        return Single.just(format(typePrefix, sequence));
+      }
+      return range.refill(block).flatMap(leased -> nextCode(typePrefix));
+    });
+  }
+
+  /**
+   * Raises the counter of the prefix to one past the highest sequence stored in either account
+   * collection. $max never lowers it, so running this on every node is harmless.
+   */
+  private Completable seedCounter(String typePrefix) {
+    String codePrefix = AccountType.BANK_CODE_PREFIX + typePrefix;
+    return RxJava3Adapter.monoToCompletable(Flux.merge(
+            highestCode(ReactorAccountPersistenceImpl.ASSET_COLLECTION, codePrefix),
+            highestCode(ReactorAccountPersistenceImpl.PASSIVE_COLLECTION, codePrefix))
+        .map(code -> Long.parseLong(code.substring(codePrefix.length())) + 1)
+        .reduce(Math::max)
+        .flatMap(next -> template.upsert(Query.query(Criteria.where("_id").is(typePrefix)),
+                new Update().max("value", next), COUNTER_COLLECTION)
+            .retryWhen(Retry.max(1).filter(DuplicateKeyException.class::isInstance))
+            .doOnSuccess(result -> log.info("Account code counter of prefix {} seeded to {}",
+                typePrefix, next)))
+        .then());
+  }
+
+  private Mono<String> highestCode(String collection, String codePrefix) {
+    // the anchored regex is a range scan on the accountCode index, read from its top
+    Query query = Query.query(Criteria.where("accountCode")
+            .regex("^" + codePrefix + "\\d{" + SEQUENCE_DIGITS + "}$"))
+        .with(Sort.by(Sort.Direction.DESC, "accountCode"))
+        .limit(1);
+    query.fields().include("accountCode").exclude("_id");
+    return template.findOne(query, Document.class, collection)
+        .map(document -> document.getString("accountCode"));
+  }
+
+  private Single<Block> leaseBlock(String typePrefix) {
+    Query query = Query.query(Criteria.where("_id").is(typePrefix));
+    Update update = new Update().inc("value", (long) blockSize);
+    FindAndModifyOptions options = FindAndModifyOptions.options().returnNew(true).upsert(true);
+    return RxJava3Adapter.monoToSingle(template
+        .findAndModify(query, update, options, Document.class, COUNTER_COLLECTION)
+        // two nodes upserting a brand-new counter at once: one of them loses and retries
+        .retryWhen(Retry.max(1).filter(DuplicateKeyException.class::isInstance))
+        .map(counter -> {
+          long end = ((Number) counter.get("value")).longValue();
+          if (end - 1 > MAX_SEQUENCE) {
+            throw new IllegalStateException("Account codes exhausted for prefix " + typePrefix);
+          }
+          log.info("Leased account code block [{}, {}) for prefix {}", end - blockSize, end,
+              typePrefix);
+          return new Block(end - blockSize, end);
+        }));
+  }
+
+  static String format(String typePrefix, long sequence) {
+    StringBuilder builder = new StringBuilder(14);
+    builder.append(AccountType.BANK_CODE_PREFIX).append(typePrefix);
+    String digits = Long.toString(sequence);
+    for (int i = digits.length(); i < SEQUENCE_DIGITS; ++i) {
+      builder.append('0');
+    }
+    return builder.append(digits).toString();
+  }
+
+  private static final class Block {
+    private static final Block EXHAUSTED = new Block(0, 0);
+    private final AtomicLong next;
+    private final long end;
+
+    private Block(long start, long end) {
+      this.next = new AtomicLong(start);
+      this.end = end;
+    }
+  }
+
+  /**
+   * The block currently being handed out for one type prefix, plus the lease in flight when it
+   * runs out. Callers that find the block exhausted share that single lease.
+   */
+  private final class CodeRange {
+    private final String typePrefix;
+    private final AtomicReference<Block> current = new AtomicReference<>(Block.EXHAUSTED);
+    private final AtomicReference<Single<Block>> pendingLease = new AtomicReference<>();
+    // set once the counter is past the stored codes; leases are serialized by pendingLease
+    private volatile boolean seeded;
+
+    private CodeRange(String typePrefix) {
+      this.typePrefix = typePrefix;
+    }
+
+    private Single<Block> refill(Block exhausted) {
+      if (current.get() != exhausted) {
+        // another caller already installed a fresh block
+        return Single.just(current.get());
+      }
+      Single<Block> lease = pendingLease.get();
+      if (lease == null) {
+        Single<Block> created = (seeded ? Completable.complete() : seedCounter(typePrefix)
+            .doOnComplete(() -> seeded = true))
+            .andThen(leaseBlock(typePrefix))
+            .doOnSuccess(block -> {
+              current.set(block);
+              pendingLease.set(null);
+            })
+            .doOnError(error -> pendingLease.set(null))
+            .cache();
+        lease = pendingLease.compareAndSet(null, created) ? created : pendingLease.get();
+        if (lease == null) {
+          lease = created;
+        }
+      }
+      return lease;
+    }
+  }
+}
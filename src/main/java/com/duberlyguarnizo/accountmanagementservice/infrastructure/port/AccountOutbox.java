@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Account;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Money;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.OutboxEventEntity;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Outbox of account events. Events are inserted in the same Mongo transaction as the account
+ * change they describe, and {@link OutboxRelay} publishes them afterwards, so a change is
+ * published if and only if it was committed and requests never wait for the broker.
+ *
+ * <p>Balance events carry the amount added rather than the new balance, so consumers get the
+ * right balance whatever order they apply concurrent changes of an account in. Amounts are in
+ * major units, as the API returns them.
+ */
+public class AccountOutbox {
+  public static final String ACCOUNT_CREATED = "ACCOUNT_CREATED";
+  public static final String BALANCE_CHANGED = "BALANCE_CHANGED";
+
+  private final ReactiveMongoTemplate template;
+  private final TransactionalOperator transactionalOperator;
+  private final int partitions;
+
+  /**
+   * @param transactionalOperator the Mongo transactions to write in, or null to disable the
+   *                              outbox.
+   */
+  public AccountOutbox(ReactiveMongoTemplate template,
+                       TransactionalOperator transactionalOperator, int partitions) {
+    this.template = template;
+    this.transactionalOperator = transactionalOperator;
+    this.partitions = partitions;
+  }
+
+  public boolean isEnabled() {
+    return transactionalOperator != null;
+  }
+
+  public int getPartitions() {
+    return partitions;
+  }
+
+  /**
+   * Runs the change and inserts the events it produced in a single transaction. When the
+   * outbox is disabled, only runs the change.
+   *
+   * @param events the events to insert for the result of the change, possibly none.
+   */
+  public <T> Mono<T> record(Mono<T> change, Function<T, List<OutboxEventEntity>> events) {
+    if (!isEnabled()) {
+      return change;
+    }
+    return transactionalOperator.transactional(change.flatMap(result -> {
+      List<OutboxEventEntity> produced = events.apply(result);
+      if (produced.isEmpty()) {
+        return Mono.just(result);
+      }
+      return template.insert(produced, OutboxEventEntity.class).then(Mono.just(result));
+    }));
+  }
+
+  public OutboxEventEntity accountCreated(Account account) {
+    return event(account.getAccountId(), ACCOUNT_CREATED, new Document()
+        .append("accountType", account.getAccountType().name())
+        .append("accountCode", account.getAccountCode())
+        .append("clientId", String.valueOf(account.getClientId()))
+        .append("balance", Money.toMajor(account.getBalance())));
+  }
+
+  public OutboxEventEntity balanceChanged(AccountType accountType, UUID accountId,
+                                          long amount) {
+    return event(accountId, BALANCE_CHANGED, new Document()
+        .append("accountType", accountType.name())
+        .append("amount", Money.toMajor(amount)));
+  }
+
+  /**
+   * Oldest undelivered events of a partition.
+   */
+  public Flux<OutboxEventEntity> findPending(int partition, int limit) {
+    Query query = Query.query(Criteria.where("partition").is(partition)
+            .and("deliveredAt").is(null))
+        .with(Sort.by("_id"))
+        .limit(limit);
+    return template.find(query, OutboxEventEntity.class);
+  }
+
+  /**
+   * Marks all the events as delivered with a single update. Delivered events expire after a day.
+   */
+  public Mono<Long> markDelivered(List<String> eventIds) {
+    Query query = Query.query(Criteria.where("_id").in(eventIds));
+    return template.updateMulti(query, new Update().set("deliveredAt", Instant.now()),
+            OutboxEventEntity.class)
+        .map(result -> result.getModifiedCount());
+  }
+
+  private OutboxEventEntity event(UUID accountId, String type, Document payload) {
+    Instant now = Instant.now();
+    payload.append("type", type)
+        .append("accountId", accountId.toString())
+        .append("occurredAt", now.toString());
+    return OutboxEventEntity.builder()
+        .partition(Math.floorMod(accountId.hashCode(), partitions))
+        .accountId(accountId.toString())
+        .type(type)
+        .payload(payload.toJson())
+        .createdAt(now)
+        .build();
+  }
+}
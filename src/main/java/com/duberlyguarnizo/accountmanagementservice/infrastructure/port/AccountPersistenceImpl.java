@@ -4,59 +4,115 @@
 
 package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
 
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
 import com.duberlyguarnizo.accountmanagementservice.domain.model.Account;
 import com.duberlyguarnizo.accountmanagementservice.domain.model.AssetAccount;
 import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
 import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
 import com.duberlyguarnizo.accountmanagementservice.infrastructure.mapper.AccountMapper;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.AccountBalanceView;
 import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.AssetAccountEntity;
 import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.AssetAccountRepository;
 import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.PassiveAccountEntity;
 import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.PassiveAccountRepository;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
 import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.core.Single;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import reactor.adapter.rxjava.RxJava3Adapter;
+import reactor.core.publisher.Mono;
 
+/**
+ * The RxJava stack's persistence. Lookups go through the Rx repositories; the queries and
+ * writes built on the template are shared with the Reactor stack through
+ * {@link ReactorAccountPersistenceImpl}.
+ */
 @Service
 @Slf4j
 public class AccountPersistenceImpl implements AccountPersistence {
   private final AssetAccountRepository assetRepository;
   private final PassiveAccountRepository passiveRepository;
+  private final ReactiveMongoTemplate template;
+  private final AccountOutbox outbox;
+  private final ReactorAccountPersistenceImpl reactor;
 
   public AccountPersistenceImpl(AssetAccountRepository assetRepository,
-                                PassiveAccountRepository passiveRepository) {
+                                PassiveAccountRepository passiveRepository,
+                                ReactiveMongoTemplate template,
+                                AccountOutbox outbox,
+                                @Value("${account.query.cursor-batch-size:256}")
+                                int cursorBatchSize) {
     this.assetRepository = assetRepository;
     this.passiveRepository = passiveRepository;
+    this.template = template;
+    this.outbox = outbox;
+    this.reactor = new ReactorAccountPersistenceImpl(template, outbox, cursorBatchSize);
   }
 
-
   @Override
-  public Single<Double> getAccountBalance(String accountCode) {
+  public Single<Long> getAccountBalance(String accountCode) {
+    return routeByAccountCode(accountCode,
+        () -> assetRepository.findBalanceByAccountCode(accountCode),
+        () -> passiveRepository.findBalanceByAccountCode(accountCode))
+        .map(AccountBalanceView::getBalance)
+        .toSingle();
+  }
 
-    return assetRepository.findByAccountCode(accountCode)
-        .map(AssetAccountEntity::getBalance)
-        .switchIfEmpty(passiveRepository.findByAccountCode(accountCode)
-            .map(PassiveAccountEntity::getBalance)).toSingle();
+  @Override
+  public Single<Map<String, Long>> getAccountBalances(Collection<String> accountCodes) {
+    return RxJava3Adapter.monoToSingle(reactor.getAccountBalances(accountCodes));
+  }
 
+  @Override
+  public Maybe<Long> getAccountBalanceAt(String accountCode, Instant at) {
+    // balances are overwritten in place, only the ledger keeps their history
+    return Maybe.error(new UnsupportedOperationException(
+        "Point-in-time balances need the balance ledger (account.ledger.enabled)"));
   }
 
   @Override
   public Maybe<Account> getAccountByAccountId(UUID accountId) {
-    return null;
+    String id = AccountMapper.toEntityId(accountId);
+    return assetRepository.findById(id)
+        .<Account>map(AccountMapper::toDomain)
+        .switchIfEmpty(passiveRepository.findById(id).<Account>map(AccountMapper::toDomain));
   }
 
   @Override
   public Maybe<Account> getAccountByAccountCode(String accountCode) {
-    return null;
+    return routeByAccountCode(accountCode,
+        () -> assetRepository.findByAccountCode(accountCode).map(AccountMapper::toDomain),
+        () -> passiveRepository.findByAccountCode(accountCode).map(AccountMapper::toDomain));
   }
 
   @Override
   public Observable<AssetAccount> getAssetAccountsByClientId(UUID clientId) {
-    log.warn("Entering getAssetAccountsByClientId at persistence implementation");
     return assetRepository.findByClientId(clientId).map(AccountMapper::toDomain);
   }
 
@@ -65,39 +121,224 @@ public class AccountPersistenceImpl implements AccountPersistence {
     return passiveRepository.findByClientId(clientId).map(AccountMapper::toDomain);
   }
 
+  @Override
+  public Single<Long> getAvailableCreditForClient(UUID clientId) {
+    return RxJava3Adapter.monoToSingle(reactor.getAvailableCreditForClient(clientId));
+  }
+
+  @Override
+  public Single<Boolean> hasAssetAccountLastPaidBefore(UUID clientId, Instant cutoff) {
+    Query query = Query.query(Criteria.where("clientId").is(clientId)
+        .and("lastPaymentDate").lt(cutoff));
+    return RxJava3Adapter.monoToSingle(template.exists(query, AssetAccountEntity.class));
+  }
+
+  @Override
+  public Observable<AssetAccountDto> getAssetAccountSummariesByClientId(UUID clientId) {
+    return RxJava3Adapter.fluxToObservable(reactor.getAssetAccountSummariesByClientId(clientId));
+  }
+
+  @Override
+  public Observable<PassiveAccountDto> getPassiveAccountSummariesByClientId(UUID clientId) {
+    return RxJava3Adapter.fluxToObservable(
+        reactor.getPassiveAccountSummariesByClientId(clientId));
+  }
+
+  @Override
+  public Observable<AssetAccountDto> getAssetAccountSummariesByClientIds(
+      Collection<UUID> clientIds) {
+    return RxJava3Adapter.fluxToObservable(
+        reactor.getAssetAccountSummariesByClientIds(clientIds));
+  }
+
+  @Override
+  public Observable<PassiveAccountDto> getPassiveAccountSummariesByClientIds(
+      Collection<UUID> clientIds) {
+    return RxJava3Adapter.fluxToObservable(
+        reactor.getPassiveAccountSummariesByClientIds(clientIds));
+  }
+
+  @Override
+  public Flowable<AssetAccountDto> getAssetAccountsByType(AssetAccountType assetAccountType,
+                                                          String afterAccountCode, int limit) {
+    return RxJava3Adapter.fluxToFlowable(
+        reactor.getAssetAccountsByType(assetAccountType, afterAccountCode, limit));
+  }
+
+  @Override
+  public Flowable<PassiveAccountDto> getPassiveAccountsByType(
+      PassiveAccountType passiveAccountType, String afterAccountCode, int limit) {
+    return RxJava3Adapter.fluxToFlowable(
+        reactor.getPassiveAccountsByType(passiveAccountType, afterAccountCode, limit));
+  }
+
   @Override
   public Completable createAccount(Account account) {
-    log.warn("Creating account!!!!");
-    switch (account.getAccountType()) {
-      case ASSET:
-        log.warn("Saving passive account at repository CreateAccount method!!!!");
-        return assetRepository.save(AccountMapper.toEntity((AssetAccount) account))
-            .ignoreElement();
-      case PASSIVE:
-        return passiveRepository.save(AccountMapper.toEntity((PassiveAccount) account))
-            .ignoreElement();
-      default:
-        return Completable.error(new RuntimeException("Invalid account type"));
+    return RxJava3Adapter.monoToCompletable(reactor.createAccount(account));
+  }
+
+  @Override
+  public Single<List<Integer>> createAccounts(List<Account> accounts) {
+    return RxJava3Adapter.monoToSingle(insertAccounts(accounts, new TreeSet<>()))
+        .map(ArrayList::new);
+  }
+
+  /**
+   * Inserts the accounts at the positions not yet in {@code failed}, and adds the ones that
+   * fail to it. Without the outbox each failed insert only skips its own document. With it the
+   * inserts share a transaction with the accountCreated events of the accounts in the pass,
+   * which a failed insert aborts as a whole: the positions it reported join {@code failed} and
+   * the rest of the chunk is inserted again, until a pass commits.
+   */
+  private Mono<Set<Integer>> insertAccounts(List<Account> accounts, Set<Integer> failed) {
+    List<Account> inserted = new ArrayList<>();
+    List<Document> assetDocuments = new ArrayList<>();
+    List<Integer> assetPositions = new ArrayList<>();
+    List<Document> passiveDocuments = new ArrayList<>();
+    List<Integer> passivePositions = new ArrayList<>();
+    for (int i = 0; i < accounts.size(); ++i) {
+      if (failed.contains(i)) {
+        continue;
+      }
+      Account account = accounts.get(i);
+      inserted.add(account);
+      Document document = new Document();
+      if (account instanceof AssetAccount) {
+        template.getConverter().write(AccountMapper.toEntity((AssetAccount) account), document);
+        assetDocuments.add(document);
+        assetPositions.add(i);
+      } else {
+        template.getConverter().write(AccountMapper.toEntity((PassiveAccount) account), document);
+        passiveDocuments.add(document);
+        passivePositions.add(i);
+      }
+    }
+    if (inserted.isEmpty()) {
+      return Mono.just(failed);
     }
+    Mono<Void> assetInserts = insertUnordered(ReactorAccountPersistenceImpl.ASSET_COLLECTION,
+        assetDocuments, assetPositions);
+    Mono<Void> passiveInserts = insertUnordered(ReactorAccountPersistenceImpl.PASSIVE_COLLECTION,
+        passiveDocuments, passivePositions);
+    if (!outbox.isEnabled()) {
+      return Mono.zip(failures(assetInserts), failures(passiveInserts),
+          (assetFailures, passiveFailures) -> {
+            failed.addAll(assetFailures);
+            failed.addAll(passiveFailures);
+            return failed;
+          });
+    }
+    return outbox.record(assetInserts.then(passiveInserts).thenReturn(failed),
+            result -> inserted.stream()
+                .map(outbox::accountCreated)
+                .collect(Collectors.toList()))
+        .onErrorResume(FailedInsertsException.class, e -> {
+          failed.addAll(e.positions);
+          return insertAccounts(accounts, failed);
+        });
+  }
+
+  private static Mono<List<Integer>> failures(Mono<Void> inserts) {
+    return inserts.thenReturn(List.<Integer>of())
+        .onErrorResume(FailedInsertsException.class, e -> Mono.just(e.positions));
   }
 
   @Override
-  public Completable addToBalance(UUID accountId, double amount) {
-    return null;
+  public Single<Boolean> addToBalance(AccountType accountType, UUID accountId, long amount) {
+    return RxJava3Adapter.monoToSingle(reactor.addToBalance(accountType, accountId, amount));
   }
 
   @Override
-  public Completable subtractFromBalance(UUID accountId, double amount) {
-    return null;
+  public Single<Boolean> subtractFromBalance(AccountType accountType, UUID accountId,
+                                             long amount) {
+    return RxJava3Adapter.monoToSingle(
+        reactor.subtractFromBalance(accountType, accountId, amount));
   }
 
+  @Override
+  public Single<Boolean> addToBalanceWithinLimit(UUID accountId, long amount) {
+    return RxJava3Adapter.monoToSingle(reactor.addToBalanceWithinLimit(accountId, amount));
+  }
+
+  /**
+   * Overwrites the stored fields of the account with its own, except for the balance and the
+   * ledger seq: those only change through the atomic balance updates, which a read-modify-write
+   * here would otherwise undo.
+   */
   @Override
   public Completable updateAccount(Account account) {
-    return null;
+    return Completable.defer(() -> {
+      Document document = new Document();
+      Class<?> entityClass;
+      if (account instanceof AssetAccount) {
+        template.getConverter().write(AccountMapper.toEntity((AssetAccount) account), document);
+        entityClass = AssetAccountEntity.class;
+      } else {
+        template.getConverter().write(AccountMapper.toEntity((PassiveAccount) account), document);
+        entityClass = PassiveAccountEntity.class;
+      }
+      Object id = document.remove("_id");
+      document.remove("balance");
+      document.remove("ledgerSeq");
+      Update update = new Update();
+      document.forEach(update::set);
+      return RxJava3Adapter.monoToCompletable(
+          template.updateFirst(Query.query(Criteria.where("_id").is(id)), update, entityClass));
+    });
   }
 
   @Override
   public Completable deleteAccount(UUID accountId) {
-    return null;
+    String id = AccountMapper.toEntityId(accountId);
+    return assetRepository.deleteById(id).andThen(passiveRepository.deleteById(id));
+  }
+
+  /**
+   * Inserts every document even if some fail, and fails with the positions of the failed ones
+   * in the caller's list.
+   */
+  private Mono<Void> insertUnordered(String collection, List<Document> documents,
+                                     List<Integer> positions) {
+    if (documents.isEmpty()) {
+      return Mono.empty();
+    }
+    return template.getCollection(collection)
+        .flatMap(mongoCollection -> Mono.from(
+            mongoCollection.insertMany(documents, new InsertManyOptions().ordered(false))))
+        .then()
+        .onErrorMap(e -> e instanceof MongoBulkWriteException
+            && !((MongoBulkWriteException) e).getWriteErrors().isEmpty(), e -> {
+              List<BulkWriteError> errors = ((MongoBulkWriteException) e).getWriteErrors();
+              log.warn("{} of {} accounts could not be inserted into {}", errors.size(),
+                  documents.size(), collection);
+              return new FailedInsertsException(errors.stream()
+                  .map(error -> positions.get(error.getIndex()))
+                  .collect(Collectors.toList()), e);
+            });
+  }
+
+  /**
+   * The positions, in the caller's list, of the documents an insert rejected.
+   */
+  private static final class FailedInsertsException extends RuntimeException {
+    private final transient List<Integer> positions;
+
+    private FailedInsertsException(List<Integer> positions, Throwable cause) {
+      super(cause);
+      this.positions = positions;
+    }
+  }
+
+  /**
+   * Account codes carry their type in the prefix, so a lookup needs to query a single
+   * collection. Only legacy codes without a known prefix fall back to trying both.
+   */
+  private static <T> Maybe<T> routeByAccountCode(String accountCode,
+                                                 Supplier<Maybe<T>> assetLookup,
+                                                 Supplier<Maybe<T>> passiveLookup) {
+    return AccountType.fromAccountCode(accountCode)
+        .map(accountType -> accountType == AccountType.ASSET
+            ? assetLookup.get() : passiveLookup.get())
+        .orElseGet(() -> assetLookup.get().switchIfEmpty(Maybe.defer(passiveLookup::get)));
   }
 }
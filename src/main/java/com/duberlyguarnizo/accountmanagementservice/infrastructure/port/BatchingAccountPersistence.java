@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import com.duberlyguarnizo.accountmanagementservice.concurrency.BatchLoader;
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Account;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.AssetAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Turns the balance and account summary lookups that arrive close together into one $in query
+ * per collection, through a {@link BatchLoader} per kind of lookup. When many clients are
+ * looked up at once, each batch costs one round trip instead of one per client.
+ */
+public class BatchingAccountPersistence implements AccountPersistence {
+  private final AccountPersistence delegate;
+  private final BatchLoader<String, Long> balances;
+  private final BatchLoader<UUID, Collection<AssetAccountDto>> assetSummaries;
+  private final BatchLoader<UUID, Collection<PassiveAccountDto>> passiveSummaries;
+
+  /**
+   * @param window           how long a lookup waits for others to share its query.
+   * @param maximumBatchSize the most keys in one query.
+   * @param scheduler        runs the window timers.
+   */
+  public BatchingAccountPersistence(AccountPersistence delegate, Duration window,
+                                    int maximumBatchSize, Scheduler scheduler,
+                                    MeterRegistry meterRegistry) {
+    this.delegate = delegate;
+    this.balances = new BatchLoader<>("balances", delegate::getAccountBalances, window,
+        maximumBatchSize, scheduler, meterRegistry);
+    this.assetSummaries = new BatchLoader<>("asset-summaries",
+        clientIds -> delegate.getAssetAccountSummariesByClientIds(clientIds)
+            .toMultimap(AssetAccountDto::getClientId),
+        window, maximumBatchSize, scheduler, meterRegistry);
+    this.passiveSummaries = new BatchLoader<>("passive-summaries",
+        clientIds -> delegate.getPassiveAccountSummariesByClientIds(clientIds)
+            .toMultimap(PassiveAccountDto::getClientId),
+        window, maximumBatchSize, scheduler, meterRegistry);
+  }
+
+  @Override
+  public Single<Long> getAccountBalance(String accountCode) {
+    return balances.load(accountCode).toSingle();
+  }
+
+  @Override
+  public Single<Map<String, Long>> getAccountBalances(Collection<String> accountCodes) {
+    return delegate.getAccountBalances(accountCodes);
+  }
+
+  @Override
+  public Maybe<Long> getAccountBalanceAt(String accountCode, Instant at) {
+    return delegate.getAccountBalanceAt(accountCode, at);
+  }
+
+  @Override
+  public Maybe<Account> getAccountByAccountId(UUID accountId) {
+    return delegate.getAccountByAccountId(accountId);
+  }
+
+  @Override
+  public Maybe<Account> getAccountByAccountCode(String accountCode) {
+    return delegate.getAccountByAccountCode(accountCode);
+  }
+
+  @Override
+  public Observable<AssetAccount> getAssetAccountsByClientId(UUID clientId) {
+    return delegate.getAssetAccountsByClientId(clientId);
+  }
+
+  @Override
+  public Observable<PassiveAccount> getPassiveAccountsByClientId(UUID clientId) {
+    return delegate.getPassiveAccountsByClientId(clientId);
+  }
+
+  @Override
+  public Single<Long> getAvailableCreditForClient(UUID clientId) {
+    return delegate.getAvailableCreditForClient(clientId);
+  }
+
+  @Override
+  public Single<Boolean> hasAssetAccountLastPaidBefore(UUID clientId, Instant cutoff) {
+    return delegate.hasAssetAccountLastPaidBefore(clientId, cutoff);
+  }
+
+  @Override
+  public Observable<AssetAccountDto> getAssetAccountSummariesByClientId(UUID clientId) {
+    return assetSummaries.load(clientId).flattenAsObservable(summaries -> summaries);
+  }
+
+  @Override
+  public Observable<PassiveAccountDto> getPassiveAccountSummariesByClientId(UUID clientId) {
+    return passiveSummaries.load(clientId).flattenAsObservable(summaries -> summaries);
+  }
+
+  @Override
+  public Observable<AssetAccountDto> getAssetAccountSummariesByClientIds(
+      Collection<UUID> clientIds) {
+    return delegate.getAssetAccountSummariesByClientIds(clientIds);
+  }
+
+  @Override
+  public Observable<PassiveAccountDto> getPassiveAccountSummariesByClientIds(
+      Collection<UUID> clientIds) {
+    return delegate.getPassiveAccountSummariesByClientIds(clientIds);
+  }
+
+  @Override
+  public Flowable<AssetAccountDto> getAssetAccountsByType(AssetAccountType assetAccountType,
+                                                          String afterAccountCode, int limit) {
+    return delegate.getAssetAccountsByType(assetAccountType, afterAccountCode, limit);
+  }
+
+  @Override
+  public Flowable<PassiveAccountDto> getPassiveAccountsByType(
+      PassiveAccountType passiveAccountType, String afterAccountCode, int limit) {
+    return delegate.getPassiveAccountsByType(passiveAccountType, afterAccountCode, limit);
+  }
+
+  @Override
+  public Completable createAccount(Account account) {
+    return delegate.createAccount(account);
+  }
+
+  @Override
+  public Single<List<Integer>> createAccounts(List<Account> accounts) {
+    return delegate.createAccounts(accounts);
+  }
+
+  @Override
+  public Single<Boolean> addToBalance(AccountType accountType, UUID accountId, long amount) {
+    return delegate.addToBalance(accountType, accountId, amount);
+  }
+
+  @Override
+  public Single<Boolean> subtractFromBalance(AccountType accountType, UUID accountId,
+                                             long amount) {
+    return delegate.subtractFromBalance(accountType, accountId, amount);
+  }
+
+  @Override
+  public Single<Boolean> addToBalanceWithinLimit(UUID accountId, long amount) {
+    return delegate.addToBalanceWithinLimit(accountId, amount);
+  }
+
+  @Override
+  public Completable updateAccount(Account account) {
+    return delegate.updateAccount(account);
+  }
+
+  @Override
+  public Completable deleteAccount(UUID accountId) {
+    return delegate.deleteAccount(accountId);
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import com.duberlyguarnizo.accountmanagementservice.concurrency.Bulkhead;
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Account;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.AssetAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Runs the calls to another {@link AccountPersistence} through a {@link Bulkhead}, so only so
+ * many Mongo operations are in flight at once and the rest wait or fail fast. The listings by
+ * type, which may stream every account of a type, are read a page at a time and each page holds
+ * a place only while its query runs, so a slow reader does not keep one for the whole stream.
+ * The other streams are bounded by the accounts of a client and hold their place until they end.
+ */
+public class BulkheadAccountPersistence implements AccountPersistence {
+  private final AccountPersistence delegate;
+  private final Bulkhead bulkhead;
+  private final int pageSize;
+
+  /**
+   * @param pageSize the most rows a page of a listing by type reads.
+   */
+  public BulkheadAccountPersistence(AccountPersistence delegate, Bulkhead bulkhead,
+                                    int pageSize) {
+    this.delegate = delegate;
+    this.bulkhead = bulkhead;
+    this.pageSize = pageSize;
+  }
+
+  @Override
+  public Single<Long> getAccountBalance(String accountCode) {
+    return delegate.getAccountBalance(accountCode).compose(bulkhead.single());
+  }
+
+  @Override
+  public Single<Map<String, Long>> getAccountBalances(Collection<String> accountCodes) {
+    return delegate.getAccountBalances(accountCodes).compose(bulkhead.single());
+  }
+
+  @Override
+  public Maybe<Long> getAccountBalanceAt(String accountCode, Instant at) {
+    return delegate.getAccountBalanceAt(accountCode, at).compose(bulkhead.maybe());
+  }
+
+  @Override
+  public Maybe<Account> getAccountByAccountId(UUID accountId) {
+    return delegate.getAccountByAccountId(accountId).compose(bulkhead.maybe());
+  }
+
+  @Override
+  public Maybe<Account> getAccountByAccountCode(String accountCode) {
+    return delegate.getAccountByAccountCode(accountCode).compose(bulkhead.maybe());
+  }
+
+  @Override
+  public Observable<AssetAccount> getAssetAccountsByClientId(UUID clientId) {
+    return delegate.getAssetAccountsByClientId(clientId).compose(bulkhead.observable());
+  }
+
+  @Override
+  public Observable<PassiveAccount> getPassiveAccountsByClientId(UUID clientId) {
+    return delegate.getPassiveAccountsByClientId(clientId).compose(bulkhead.observable());
+  }
+
+  @Override
+  public Single<Long> getAvailableCreditForClient(UUID clientId) {
+    return delegate.getAvailableCreditForClient(clientId).compose(bulkhead.single());
+  }
+
+  @Override
+  public Single<Boolean> hasAssetAccountLastPaidBefore(UUID clientId, Instant cutoff) {
+    return delegate.hasAssetAccountLastPaidBefore(clientId, cutoff).compose(bulkhead.single());
+  }
+
+  @Override
+  public Observable<AssetAccountDto> getAssetAccountSummariesByClientId(UUID clientId) {
+    return delegate.getAssetAccountSummariesByClientId(clientId).compose(bulkhead.observable());
+  }
+
+  @Override
+  public Observable<PassiveAccountDto> getPassiveAccountSummariesByClientId(UUID clientId) {
+    return delegate.getPassiveAccountSummariesByClientId(clientId).compose(bulkhead.observable());
+  }
+
+  @Override
+  public Observable<AssetAccountDto> getAssetAccountSummariesByClientIds(
+      Collection<UUID> clientIds) {
+    return delegate.getAssetAccountSummariesByClientIds(clientIds).compose(bulkhead.observable());
+  }
+
+  @Override
+  public Observable<PassiveAccountDto> getPassiveAccountSummariesByClientIds(
+      Collection<UUID> clientIds) {
+    return delegate.getPassiveAccountSummariesByClientIds(clientIds).compose(bulkhead.observable());
+  }
+
+  @Override
+  public Flowable<AssetAccountDto> getAssetAccountsByType(AssetAccountType assetAccountType,
+                                                          String afterAccountCode, int limit) {
+    return byPages(afterAccountCode, limit, AssetAccountDto::getAccountCode, (after, size) ->
+        delegate.getAssetAccountsByType(assetAccountType, after, size));
+  }
+
+  @Override
+  public Flowable<PassiveAccountDto> getPassiveAccountsByType(
+      PassiveAccountType passiveAccountType, String afterAccountCode, int limit) {
+    return byPages(afterAccountCode, limit, PassiveAccountDto::getAccountCode, (after, size) ->
+        delegate.getPassiveAccountsByType(passiveAccountType, after, size));
+  }
+
+  private <T> Flowable<T> byPages(String afterAccountCode, int limit,
+                                  Function<T, String> accountCodeOf,
+                                  BiFunction<String, Integer, Flowable<T>> page) {
+    return Flowable.defer(() -> {
+      KeysetPages<T> pages = new KeysetPages<>(afterAccountCode, limit, pageSize,
+          accountCodeOf);
+      return Single.defer(() -> page.apply(pages.afterAccountCode(), pages.nextPageSize())
+              .toList())
+          .compose(bulkhead.single())
+          .doOnSuccess(pages::read)
+          .repeatUntil(pages::isDone)
+          // one page ahead at most, as the reader asks for rows
+          .concatMapIterable(rows -> rows, 1);
+    });
+  }
+
+  @Override
+  public Completable createAccount(Account account) {
+    return delegate.createAccount(account).compose(bulkhead.completable());
+  }
+
+  @Override
+  public Single<List<Integer>> createAccounts(List<Account> accounts) {
+    return delegate.createAccounts(accounts).compose(bulkhead.single());
+  }
+
+  @Override
+  public Single<Boolean> addToBalance(AccountType accountType, UUID accountId, long amount) {
+    return delegate.addToBalance(accountType, accountId, amount).compose(bulkhead.single());
+  }
+
+  @Override
+  public Single<Boolean> subtractFromBalance(AccountType accountType, UUID accountId,
+                                             long amount) {
+    return delegate.subtractFromBalance(accountType, accountId, amount).compose(bulkhead.single());
+  }
+
+  @Override
+  public Single<Boolean> addToBalanceWithinLimit(UUID accountId, long amount) {
+    return delegate.addToBalanceWithinLimit(accountId, amount).compose(bulkhead.single());
+  }
+
+  @Override
+  public Completable updateAccount(Account account) {
+    return delegate.updateAccount(account).compose(bulkhead.completable());
+  }
+
+  @Override
+  public Completable deleteAccount(UUID accountId) {
+    return delegate.deleteAccount(accountId).compose(bulkhead.completable());
+  }
+}
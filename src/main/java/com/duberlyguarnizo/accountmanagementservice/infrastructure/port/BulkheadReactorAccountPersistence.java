@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import com.duberlyguarnizo.accountmanagementservice.concurrency.Bulkhead;
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Account;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.ReactorAccountPersistence;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The Reactor stack's counterpart of {@link BulkheadAccountPersistence}, with the listings by
+ * type read by pages the same way. Both stacks go to the same Mongo connections, so they share
+ * the bulkhead.
+ */
+public class BulkheadReactorAccountPersistence implements ReactorAccountPersistence {
+  private final ReactorAccountPersistence delegate;
+  private final Bulkhead bulkhead;
+  private final int pageSize;
+
+  public BulkheadReactorAccountPersistence(ReactorAccountPersistence delegate,
+                                           Bulkhead bulkhead, int pageSize) {
+    this.delegate = delegate;
+    this.bulkhead = bulkhead;
+    this.pageSize = pageSize;
+  }
+
+  @Override
+  public Mono<Long> getAccountBalance(String accountCode) {
+    return delegate.getAccountBalance(accountCode).transform(bulkhead.mono());
+  }
+
+  @Override
+  public Mono<Map<String, Long>> getAccountBalances(Collection<String> accountCodes) {
+    return delegate.getAccountBalances(accountCodes).transform(bulkhead.mono());
+  }
+
+  @Override
+  public Mono<Long> getAccountBalanceAt(String accountCode, Instant at) {
+    return delegate.getAccountBalanceAt(accountCode, at).transform(bulkhead.mono());
+  }
+
+  @Override
+  public Mono<Account> getAccountByAccountId(UUID accountId) {
+    return delegate.getAccountByAccountId(accountId).transform(bulkhead.mono());
+  }
+
+  @Override
+  public Mono<Account> getAccountByAccountCode(String accountCode) {
+    return delegate.getAccountByAccountCode(accountCode).transform(bulkhead.mono());
+  }
+
+  @Override
+  public Flux<PassiveAccount> getPassiveAccountsByClientId(UUID clientId) {
+    return delegate.getPassiveAccountsByClientId(clientId).transform(bulkhead.flux());
+  }
+
+  @Override
+  public Mono<Long> getAvailableCreditForClient(UUID clientId) {
+    return delegate.getAvailableCreditForClient(clientId).transform(bulkhead.mono());
+  }
+
+  @Override
+  public Flux<AssetAccountDto> getAssetAccountSummariesByClientId(UUID clientId) {
+    return delegate.getAssetAccountSummariesByClientId(clientId).transform(bulkhead.flux());
+  }
+
+  @Override
+  public Flux<PassiveAccountDto> getPassiveAccountSummariesByClientId(UUID clientId) {
+    return delegate.getPassiveAccountSummariesByClientId(clientId).transform(bulkhead.flux());
+  }
+
+  @Override
+  public Flux<AssetAccountDto> getAssetAccountSummariesByClientIds(Collection<UUID> clientIds) {
+    return delegate.getAssetAccountSummariesByClientIds(clientIds).transform(bulkhead.flux());
+  }
+
+  @Override
+  public Flux<PassiveAccountDto> getPassiveAccountSummariesByClientIds(
+      Collection<UUID> clientIds) {
+    return delegate.getPassiveAccountSummariesByClientIds(clientIds)
+        .transform(bulkhead.flux());
+  }
+
+  @Override
+  public Flux<AssetAccountDto> getAssetAccountsByType(AssetAccountType assetAccountType,
+                                                      String afterAccountCode, int limit) {
+    return byPages(afterAccountCode, limit, AssetAccountDto::getAccountCode, (after, size) ->
+        delegate.getAssetAccountsByType(assetAccountType, after, size));
+  }
+
+  @Override
+  public Flux<PassiveAccountDto> getPassiveAccountsByType(PassiveAccountType passiveAccountType,
+                                                          String afterAccountCode, int limit) {
+    return byPages(afterAccountCode, limit, PassiveAccountDto::getAccountCode, (after, size) ->
+        delegate.getPassiveAccountsByType(passiveAccountType, after, size));
+  }
+
+  private <T> Flux<T> byPages(String afterAccountCode, int limit,
+                              Function<T, String> accountCodeOf,
+                              BiFunction<String, Integer, Flux<T>> page) {
+    return Flux.defer(() -> {
+      KeysetPages<T> pages = new KeysetPages<>(afterAccountCode, limit, pageSize,
+          accountCodeOf);
+      return Mono.defer(() -> page.apply(pages.afterAccountCode(), pages.nextPageSize())
+              .collectList())
+          .transform(bulkhead.mono())
+          .doOnNext(pages::read)
+          .repeat(() -> !pages.isDone())
+          // one page ahead at most, as the reader asks for rows
+          .concatMapIterable(rows -> rows, 1);
+    });
+  }
+
+  @Override
+  public Mono<Void> createAccount(Account account) {
+    return delegate.createAccount(account).transform(bulkhead.mono());
+  }
+
+  @Override
+  public Mono<Boolean> addToBalance(AccountType accountType, UUID accountId, long amount) {
+    return delegate.addToBalance(accountType, accountId, amount).transform(bulkhead.mono());
+  }
+
+  @Override
+  public Mono<Boolean> subtractFromBalance(AccountType accountType, UUID accountId, long amount) {
+    return delegate.subtractFromBalance(accountType, accountId, amount).transform(bulkhead.mono());
+  }
+
+  @Override
+  public Mono<Boolean> addToBalanceWithinLimit(UUID accountId, long amount) {
+    return delegate.addToBalanceWithinLimit(accountId, amount).transform(bulkhead.mono());
+  }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Account;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.AssetAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-through cache of accounts keyed by account code, in front of another
+ * {@link AccountPersistence}. Every write invalidates the affected entry once it completes.
+ *
+ * <p>Writes by account id find the entry through an id to code index, which holds exactly the
+ * ids of the cached accounts: entries are added to it when cached and leave it when evicted or
+ * invalidated, so no cached account can become unreachable by its id.
+ */
+public class CachingAccountPersistence implements AccountPersistence {
+  private final AccountPersistence delegate;
+  private final Cache<String, Account> accountsByCode;
+  private final ConcurrentMap<UUID, String> codesById = new ConcurrentHashMap<>();
+  /*
+   * Bumped on every invalidation. A read only caches what it loaded if no write finished while
+   * it was in flight, otherwise it could put back a value the write just invalidated.
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  public CachingAccountPersistence(AccountPersistence delegate, long maximumSize, Duration ttl) {
+    this.delegate = delegate;
+    this.accountsByCode = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(ttl)
+        // runs atomically with the eviction, so a newer entry for the code is never unlinked
+        .evictionListener((String accountCode, Account account, RemovalCause cause) ->
+            unlink(accountCode, account))
+        .recordStats()
+        .build();
+  }
+
+  public Cache<String, Account> getCache() {
+    return accountsByCode;
+  }
+
+  @Override
+  public Single<Long> getAccountBalance(String accountCode) {
+    return getAccountByAccountCode(accountCode).map(Account::getBalance).toSingle();
+  }
+
+  /**
+   * Answers the cached accounts from the cache and reads the rest with one query. Only
+   * balances come back from it, so those are not cached.
+   */
+  @Override
+  public Single<Map<String, Long>> getAccountBalances(Collection<String> accountCodes) {
+    return Single.defer(() -> {
+      Map<String, Long> balances = new HashMap<>();
+      List<String> misses = new ArrayList<>();
+      for (String accountCode : accountCodes) {
+        Account cached = accountsByCode.getIfPresent(accountCode);
+        if (cached != null) {
+          balances.put(accountCode, cached.getBalance());
+        } else {
+          misses.add(accountCode);
+        }
+      }
+      if (misses.isEmpty()) {
+        return Single.just(balances);
+      }
+      return delegate.getAccountBalances(misses).map(loaded -> {
+        balances.putAll(loaded);
+        return balances;
+      });
+    });
+  }
+
+  @Override
+  public Maybe<Long> getAccountBalanceAt(String accountCode, Instant at) {
+    return delegate.getAccountBalanceAt(accountCode, at);
+  }
+
+  @Override
+  public Maybe<Account> getAccountByAccountId(UUID accountId) {
+    return delegate.getAccountByAccountId(accountId);
+  }
+
+  @Override
+  public Maybe<Account> getAccountByAccountCode(String accountCode) {
+    return Maybe.defer(() -> {
+      Account cached = accountsByCode.getIfPresent(accountCode);
+      if (cached != null) {
+        return Maybe.just(cached);
+      }
+      long readGeneration = generation.get();
+      return delegate.getAccountByAccountCode(accountCode)
+          .doOnSuccess(account -> {
+            if (generation.get() == readGeneration) {
+              if (account.getAccountId() != null) {
+                codesById.put(account.getAccountId(), accountCode);
+              }
+              accountsByCode.put(accountCode, account);
+            }
+          });
+    });
+  }
+
+  @Override
+  public Observable<AssetAccount> getAssetAccountsByClientId(UUID clientId) {
+    return delegate.getAssetAccountsByClientId(clientId);
+  }
+
+  @Override
+  public Observable<PassiveAccount> getPassiveAccountsByClientId(UUID clientId) {
+    return delegate.getPassiveAccountsByClientId(clientId);
+  }
+
+  @Override
+  public Single<Long> getAvailableCreditForClient(UUID clientId) {
+    return delegate.getAvailableCreditForClient(clientId);
+  }
+
+  @Override
+  public Single<Boolean> hasAssetAccountLastPaidBefore(UUID clientId, Instant cutoff) {
+    return delegate.hasAssetAccountLastPaidBefore(clientId, cutoff);
+  }
+
+  @Override
+  public Observable<AssetAccountDto> getAssetAccountSummariesByClientId(UUID clientId) {
+    return delegate.getAssetAccountSummariesByClientId(clientId);
+  }
+
+  @Override
+  public Observable<PassiveAccountDto> getPassiveAccountSummariesByClientId(UUID clientId) {
+    return delegate.getPassiveAccountSummariesByClientId(clientId);
+  }
+
+  @Override
+  public Observable<AssetAccountDto> getAssetAccountSummariesByClientIds(
+      Collection<UUID> clientIds) {
+    return delegate.getAssetAccountSummariesByClientIds(clientIds);
+  }
+
+  @Override
+  public Observable<PassiveAccountDto> getPassiveAccountSummariesByClientIds(
+      Collection<UUID> clientIds) {
+    return delegate.getPassiveAccountSummariesByClientIds(clientIds);
+  }
+
+  @Override
+  public Flowable<AssetAccountDto> getAssetAccountsByType(AssetAccountType assetAccountType,
+                                                          String afterAccountCode, int limit) {
+    return delegate.getAssetAccountsByType(assetAccountType, afterAccountCode, limit);
+  }
+
+  @Override
+  public Flowable<PassiveAccountDto> getPassiveAccountsByType(
+      PassiveAccountType passiveAccountType, String afterAccountCode, int limit) {
+    return delegate.getPassiveAccountsByType(passiveAccountType, afterAccountCode, limit);
+  }
+
+  @Override
+  public Completable createAccount(Account account) {
+    return delegate.createAccount(account)
+        .doOnEvent(error -> invalidate(account.getAccountCode()));
+  }
+
+  @Override
+  public Single<List<Integer>> createAccounts(List<Account> accounts) {
+    return delegate.createAccounts(accounts)
+        .doOnEvent((failed, error) -> accounts.forEach(
+            account -> invalidate(account.getAccountCode())));
+  }
+
+  @Override
+  public Single<Boolean> addToBalance(AccountType accountType, UUID accountId, long amount) {
+    return delegate.addToBalance(accountType, accountId, amount)
+        .doOnEvent((applied, error) -> invalidate(accountId));
+  }
+
+  @Override
+  public Single<Boolean> subtractFromBalance(AccountType accountType, UUID accountId,
+                                             long amount) {
+    return delegate.subtractFromBalance(accountType, accountId, amount)
+        .doOnEvent((applied, error) -> invalidate(accountId));
+  }
+
+  @Override
+  public Single<Boolean> addToBalanceWithinLimit(UUID accountId, long amount) {
+    return delegate.addToBalanceWithinLimit(accountId, amount)
+        .doOnEvent((applied, error) -> invalidate(accountId));
+  }
+
+  @Override
+  public Completable updateAccount(Account account) {
+    return delegate.updateAccount(account)
+        .doOnEvent(error -> {
+          invalidate(account.getAccountCode());
+          invalidate(account.getAccountId());
+        });
+  }
+
+  @Override
+  public Completable deleteAccount(UUID accountId) {
+    return delegate.deleteAccount(accountId)
+        .doOnEvent(error -> invalidate(accountId));
+  }
+
+  private void invalidate(String accountCode) {
+    generation.incrementAndGet();
+    if (accountCode != null) {
+      Account removed = accountsByCode.asMap().remove(accountCode);
+      unlink(accountCode, removed);
+    }
+  }
+
+  private void invalidate(UUID accountId) {
+    generation.incrementAndGet();
+    if (accountId != null) {
+      String accountCode = codesById.remove(accountId);
+      if (accountCode != null) {
+        accountsByCode.invalidate(accountCode);
+      }
+    }
+  }
+
+  private void unlink(String accountCode, Account account) {
+    if (account != null && account.getAccountId() != null) {
+      codesById.remove(account.getAccountId(), accountCode);
+    }
+  }
+}
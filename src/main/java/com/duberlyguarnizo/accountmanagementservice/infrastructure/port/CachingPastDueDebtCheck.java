@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.PastDueDebtCheck;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.reactivex.rxjava3.core.Single;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Asks Mongo whether any asset account of the client was last paid before the cutoff, and
+ * remembers the clients that have none for a short time. Only the negative answer is cached:
+ * a client found with past due debt is checked again on the next request, so a payment lifts
+ * the block at once. A client whose oldest payment crosses the cutoff while cached, or whose
+ * payment date is written on another node, is blocked at most one ttl later.
+ */
+@Service
+public class CachingPastDueDebtCheck implements PastDueDebtCheck {
+  private final AccountPersistence persistence;
+  private final Cache<UUID, Boolean> clientsWithoutPastDueDebt;
+  private final AtomicLong generation = new AtomicLong();
+
+  public CachingPastDueDebtCheck(AccountPersistence persistence,
+                                 @Value("${account.past-due.cache-ttl:10s}") Duration ttl,
+                                 @Value("${account.past-due.cache-maximum-size:100000}")
+                                 long maximumSize) {
+    this.persistence = persistence;
+    this.clientsWithoutPastDueDebt = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(ttl)
+        .build();
+  }
+
+  @Override
+  public Single<Boolean> hasPastDueDebt(UUID clientId) {
+    return Single.defer(() -> {
+      if (clientsWithoutPastDueDebt.getIfPresent(clientId) != null) {
+        return Single.just(false);
+      }
+      long readGeneration = generation.get();
+      Instant cutoff = Instant.now().minus(PAYMENT_PERIOD_DAYS, ChronoUnit.DAYS);
+      return persistence.hasAssetAccountLastPaidBefore(clientId, cutoff)
+          .doOnSuccess(pastDue -> {
+            if (!pastDue && generation.get() == readGeneration) {
+              clientsWithoutPastDueDebt.put(clientId, Boolean.TRUE);
+            }
+          });
+    });
+  }
+
+  @Override
+  public void paymentDateChanged(UUID clientId) {
+    generation.incrementAndGet();
+    clientsWithoutPastDueDebt.invalidate(clientId);
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.ClientType;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.reactivex.rxjava3.core.Maybe;
+import java.time.Duration;
+import java.util.UUID;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.adapter.rxjava.RxJava3Adapter;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Asks the client service for the type of a client, one call per lookup. Stands in for the
+ * {@link ClientTypeReplica} when account.client-types.enabled is off. The client is read from
+ * account.client-types.client-url, whose {clientId} is expanded, and its type from the
+ * clientType field; an unknown client is empty.
+ */
+public class ClientServiceLookup {
+  private final WebClient webClient;
+  private final String clientUrl;
+  private final Duration timeout;
+  private final Scheduler scheduler;
+
+  /**
+   * @param scheduler runs the timeouts.
+   */
+  public ClientServiceLookup(WebClient webClient, String clientUrl, Duration timeout,
+                             Scheduler scheduler) {
+    this.webClient = webClient;
+    this.clientUrl = clientUrl;
+    this.timeout = timeout;
+    this.scheduler = scheduler;
+  }
+
+  public Maybe<ClientType> getClientType(UUID clientId) {
+    return RxJava3Adapter.monoToMaybe(webClient.get()
+        .uri(clientUrl, clientId)
+        .retrieve()
+        .bodyToMono(JsonNode.class)
+        .flatMap(client -> Mono.justOrEmpty(client.path("clientType").textValue()))
+        .map(ClientType::valueOf)
+        .onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.empty())
+        .timeout(timeout, scheduler));
+  }
+}
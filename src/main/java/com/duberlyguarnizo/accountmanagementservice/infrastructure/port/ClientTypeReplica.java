@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.ClientType;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.subjects.CompletableSubject;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.event.ListenerContainerIdleEvent;
+import org.springframework.kafka.listener.BatchConsumerAwareMessageListener;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+
+/**
+ * In-memory copy of the compacted client type topic, keyed by client id. Records carry the
+ * client id as key and the {@link ClientType} name as value; a null value removes the client.
+ *
+ * <p>Every instance reads the whole topic from the beginning under its own consumer group and
+ * never commits offsets. It counts as caught up once its position on every partition has
+ * reached the end offset the partition had when it was assigned. The positions are compared
+ * after every poll rather than with the offsets of the records read, since the end of a
+ * partition need not hold a record: transaction markers, and tombstones removed by compaction,
+ * advance the position without delivering anything. Polls that return nothing are covered by
+ * idle events. From then on a change is visible here as soon as
+ * the consumer fetches it, which is within fetch.max.wait.ms (500 ms by default) of its
+ * publication while the consumer keeps up with the topic. Reads do not wait for the consumer.
+ */
+@Slf4j
+public class ClientTypeReplica implements SmartLifecycle,
+    BatchConsumerAwareMessageListener<String, String>, ConsumerAwareRebalanceListener {
+  private static final String GROUP_ID_PREFIX = "account-management-client-types-";
+  private static final long IDLE_CHECK_MILLIS = 100;
+
+  private final Map<UUID, ClientType> clientTypes = new ConcurrentHashMap<>();
+  private final Map<TopicPartition, Long> catchUpOffsets = new ConcurrentHashMap<>();
+  private final CompletableSubject caughtUp = CompletableSubject.create();
+  private final KafkaMessageListenerContainer<String, String> container;
+  private final boolean autoStartup;
+  private volatile long startedAt;
+
+  public ClientTypeReplica(Map<String, Object> consumerProperties, String topic,
+                           boolean autoStartup) {
+    Map<String, Object> properties = new HashMap<>(consumerProperties);
+    properties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+    properties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+    properties.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+    properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+    ContainerProperties containerProperties = new ContainerProperties(topic);
+    containerProperties.setGroupId(GROUP_ID_PREFIX + UUID.randomUUID());
+    // offsets are never acknowledged, so nothing is committed and a restart reads it all again
+    containerProperties.setAckMode(ContainerProperties.AckMode.MANUAL);
+    containerProperties.setMessageListener(this);
+    containerProperties.setConsumerRebalanceListener(this);
+    containerProperties.setIdleEventInterval(IDLE_CHECK_MILLIS);
+    this.container = new KafkaMessageListenerContainer<>(
+        new DefaultKafkaConsumerFactory<>(properties), containerProperties);
+    // idle events are published on the consumer thread, so the consumer can be used here
+    this.container.setApplicationEventPublisher(event -> {
+      if (event instanceof ListenerContainerIdleEvent) {
+        checkPositions(((ListenerContainerIdleEvent) event).getConsumer());
+      }
+    });
+    this.autoStartup = autoStartup;
+  }
+
+  public ClientType getClientType(UUID clientId) {
+    return clientTypes.get(clientId);
+  }
+
+  public int size() {
+    return clientTypes.size();
+  }
+
+  /**
+   * Completes once the topic has been read up to where it was when the replica started.
+   */
+  public Completable caughtUp() {
+    return caughtUp;
+  }
+
+  public boolean isCaughtUp() {
+    return caughtUp.hasComplete();
+  }
+
+  /**
+   * @return false if account.client-types.enabled is off, in which case the replica is never
+   *         started and never catches up.
+   */
+  public boolean isEnabled() {
+    return autoStartup;
+  }
+
+  @Override
+  public void onPartitionsAssigned(Consumer<?, ?> consumer,
+                                   Collection<TopicPartition> partitions) {
+    consumer.endOffsets(partitions).forEach((partition, endOffset) -> {
+      if (consumer.position(partition) < endOffset) {
+        catchUpOffsets.put(partition, endOffset);
+      }
+    });
+    checkCaughtUp();
+  }
+
+  @Override
+  public void onMessage(List<ConsumerRecord<String, String>> records, Consumer<?, ?> consumer) {
+    records.forEach(this::apply);
+    checkPositions(consumer);
+  }
+
+  private void checkPositions(Consumer<?, ?> consumer) {
+    if (caughtUp.hasComplete() || consumer == null) {
+      return;
+    }
+    Set<TopicPartition> assignment = consumer.assignment();
+    catchUpOffsets.entrySet().removeIf(catchUp -> assignment.contains(catchUp.getKey())
+        && consumer.position(catchUp.getKey()) >= catchUp.getValue());
+    checkCaughtUp();
+  }
+
+  private void apply(ConsumerRecord<String, String> record) {
+    UUID clientId;
+    try {
+      clientId = UUID.fromString(record.key());
+    } catch (IllegalArgumentException | NullPointerException e) {
+      log.warn("Ignoring client type record with invalid key at offset {}", record.offset());
+      return;
+    }
+    if (record.value() == null) {
+      clientTypes.remove(clientId);
+      return;
+    }
+    try {
+      clientTypes.put(clientId, ClientType.valueOf(record.value()));
+    } catch (IllegalArgumentException e) {
+      log.warn("Ignoring unknown client type {} for client {}", record.value(), clientId);
+    }
+  }
+
+  private void checkCaughtUp() {
+    if (catchUpOffsets.isEmpty() && !caughtUp.hasComplete()) {
+      log.info("Client type replica caught up with {} clients in {} ms", clientTypes.size(),
+          System.currentTimeMillis() - startedAt);
+      caughtUp.onComplete();
+    }
+  }
+
+  @Override
+  public void start() {
+    startedAt = System.currentTimeMillis();
+    container.start();
+  }
+
+  @Override
+  public void stop() {
+    container.stop();
+  }
+
+  @Override
+  public boolean isRunning() {
+    return container.isRunning();
+  }
+
+  @Override
+  public boolean isAutoStartup() {
+    return autoStartup;
+  }
+}
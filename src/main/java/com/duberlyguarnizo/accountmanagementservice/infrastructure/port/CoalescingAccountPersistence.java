@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Account;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.AssetAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Money;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.functions.Action;
+import io.reactivex.rxjava3.subjects.SingleSubject;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Serializes the balance changes of each account through one of a fixed set of lanes, chosen
+ * by hashing the account id, and merges the deposits queued for the same account into a single
+ * write. A hot account then pays one $inc per batch instead of one per call.
+ *
+ * <p>Each lane has a single consumer, so at most one batch per lane is being written at a time
+ * and the changes of an account are applied in the order they were submitted. Deposits are
+ * merged only while they are consecutive: a withdrawal or a deposit checked against the card
+ * limit is written on its own, after the deposits queued before it, so its check sees them.
+ */
+public class CoalescingAccountPersistence implements AccountPersistence {
+  private final AccountPersistence delegate;
+  private final Lane[] lanes;
+  private final long windowMicros;
+  private final int maximumBatchSize;
+  private final Scheduler scheduler;
+
+  /**
+   * @param window           how long an idle lane waits for more changes before writing.
+   *                         A busy lane writes whatever queued up while its last batch was
+   *                         being written.
+   * @param maximumBatchSize the most changes a lane takes into one batch.
+   * @param scheduler        runs the window timers.
+   */
+  public CoalescingAccountPersistence(AccountPersistence delegate, int laneCount,
+                                      Duration window, int maximumBatchSize,
+                                      Scheduler scheduler) {
+    this.delegate = delegate;
+    this.lanes = new Lane[laneCount];
+    for (int i = 0; i < laneCount; ++i) {
+      lanes[i] = new Lane();
+    }
+    this.windowMicros = TimeUnit.NANOSECONDS.toMicros(window.toNanos());
+    this.maximumBatchSize = maximumBatchSize;
+    this.scheduler = scheduler;
+  }
+
+  @Override
+  public Single<Long> getAccountBalance(String accountCode) {
+    return delegate.getAccountBalance(accountCode);
+  }
+
+  @Override
+  public Single<Map<String, Long>> getAccountBalances(Collection<String> accountCodes) {
+    return delegate.getAccountBalances(accountCodes);
+  }
+
+  @Override
+  public Maybe<Long> getAccountBalanceAt(String accountCode, Instant at) {
+    return delegate.getAccountBalanceAt(accountCode, at);
+  }
+
+  @Override
+  public Maybe<Account> getAccountByAccountId(UUID accountId) {
+    return delegate.getAccountByAccountId(accountId);
+  }
+
+  @Override
+  public Maybe<Account> getAccountByAccountCode(String accountCode) {
+    return delegate.getAccountByAccountCode(accountCode);
+  }
+
+  @Override
+  public Observable<AssetAccount> getAssetAccountsByClientId(UUID clientId) {
+    return delegate.getAssetAccountsByClientId(clientId);
+  }
+
+  @Override
+  public Observable<PassiveAccount> getPassiveAccountsByClientId(UUID clientId) {
+    return delegate.getPassiveAccountsByClientId(clientId);
+  }
+
+  @Override
+  public Single<Long> getAvailableCreditForClient(UUID clientId) {
+    return delegate.getAvailableCreditForClient(clientId);
+  }
+
+  @Override
+  public Single<Boolean> hasAssetAccountLastPaidBefore(UUID clientId, Instant cutoff) {
+    return delegate.hasAssetAccountLastPaidBefore(clientId, cutoff);
+  }
+
+  @Override
+  public Observable<AssetAccountDto> getAssetAccountSummariesByClientId(UUID clientId) {
+    return delegate.getAssetAccountSummariesByClientId(clientId);
+  }
+
+  @Override
+  public Observable<PassiveAccountDto> getPassiveAccountSummariesByClientId(UUID clientId) {
+    return delegate.getPassiveAccountSummariesByClientId(clientId);
+  }
+
+  @Override
+  public Observable<AssetAccountDto> getAssetAccountSummariesByClientIds(
+      Collection<UUID> clientIds) {
+    return delegate.getAssetAccountSummariesByClientIds(clientIds);
+  }
+
+  @Override
+  public Observable<PassiveAccountDto> getPassiveAccountSummariesByClientIds(
+      Collection<UUID> clientIds) {
+    return delegate.getPassiveAccountSummariesByClientIds(clientIds);
+  }
+
+  @Override
+  public Flowable<AssetAccountDto> getAssetAccountsByType(AssetAccountType assetAccountType,
+                                                          String afterAccountCode, int limit) {
+    return delegate.getAssetAccountsByType(assetAccountType, afterAccountCode, limit);
+  }
+
+  @Override
+  public Flowable<PassiveAccountDto> getPassiveAccountsByType(
+      PassiveAccountType passiveAccountType, String afterAccountCode, int limit) {
+    return delegate.getPassiveAccountsByType(passiveAccountType, afterAccountCode, limit);
+  }
+
+  @Override
+  public Completable createAccount(Account account) {
+    return delegate.createAccount(account);
+  }
+
+  @Override
+  public Single<List<Integer>> createAccounts(List<Account> accounts) {
+    return delegate.createAccounts(accounts);
+  }
+
+  @Override
+  public Single<Boolean> addToBalance(AccountType accountType, UUID accountId, long amount) {
+    return submit(new Change(ChangeKind.DEPOSIT, accountType, accountId, amount));
+  }
+
+  @Override
+  public Single<Boolean> subtractFromBalance(AccountType accountType, UUID accountId,
+                                             long amount) {
+    return submit(new Change(ChangeKind.WITHDRAWAL, accountType, accountId, amount));
+  }
+
+  @Override
+  public Single<Boolean> addToBalanceWithinLimit(UUID accountId, long amount) {
+    return submit(new Change(ChangeKind.LIMITED_DEPOSIT, AccountType.ASSET, accountId, amount));
+  }
+
+  @Override
+  public Completable updateAccount(Account account) {
+    return delegate.updateAccount(account);
+  }
+
+  @Override
+  public Completable deleteAccount(UUID accountId) {
+    return delegate.deleteAccount(accountId);
+  }
+
+  private Single<Boolean> submit(Change change) {
+    return Single.defer(() -> {
+      lanes[Math.floorMod(change.accountId.hashCode(), lanes.length)].submit(change);
+      return change.outcome;
+    });
+  }
+
+  /**
+   * Writes a batch: the accounts in it concurrently, the changes of each account in order.
+   */
+  private Completable write(List<Change> batch) {
+    Map<UUID, List<Change>> byAccount = new LinkedHashMap<>();
+    for (Change change : batch) {
+      byAccount.computeIfAbsent(change.accountId, id -> new ArrayList<>()).add(change);
+    }
+    List<Completable> accounts = new ArrayList<>(byAccount.size());
+    for (List<Change> changes : byAccount.values()) {
+      accounts.add(writeInOrder(changes));
+    }
+    return Completable.merge(accounts);
+  }
+
+  private Completable writeInOrder(List<Change> changes) {
+    List<Completable> writes = new ArrayList<>();
+    int start = 0;
+    while (start < changes.size()) {
+      Change first = changes.get(start);
+      int end = start + 1;
+      if (first.kind == ChangeKind.DEPOSIT) {
+        while (end < changes.size() && changes.get(end).kind == ChangeKind.DEPOSIT
+               && changes.get(end).accountType == first.accountType) {
+          ++end;
+        }
+      }
+      writes.add(writeMerged(changes.subList(start, end)));
+      start = end;
+    }
+    return Completable.concat(writes);
+  }
+
+  /**
+   * Applies consecutive deposits of one account as one write, or a single guarded change, and
+   * hands the outcome to every caller waiting on them.
+   */
+  private Completable writeMerged(List<Change> merged) {
+    return Completable.defer(() -> {
+      Change first = merged.get(0);
+      Single<Boolean> write;
+      switch (first.kind) {
+        case WITHDRAWAL:
+          write = delegate.subtractFromBalance(first.accountType, first.accountId, first.amount);
+          break;
+        case LIMITED_DEPOSIT:
+          write = delegate.addToBalanceWithinLimit(first.accountId, first.amount);
+          break;
+        default:
+          // an overflowing sum fails the callers merged into it, like a failed write
+          write = Single.fromCallable(() -> {
+            long total = 0;
+            for (Change change : merged) {
+              total = Money.add(total, change.amount);
+            }
+            return total;
+          }).flatMap(total -> delegate.addToBalance(first.accountType, first.accountId, total));
+      }
+      return write
+          .doOnSuccess(applied -> merged.forEach(change -> change.outcome.onSuccess(applied)))
+          .doOnError(error -> merged.forEach(change -> change.outcome.onError(error)))
+          .ignoreElement()
+          // the callers have the error; the lane moves on to the next change
+          .onErrorComplete();
+    });
+  }
+
+  private enum ChangeKind {
+    DEPOSIT,
+    WITHDRAWAL,
+    LIMITED_DEPOSIT
+  }
+
+  private static final class Change {
+    private final ChangeKind kind;
+    private final AccountType accountType;
+    private final UUID accountId;
+    private final long amount;
+    private final SingleSubject<Boolean> outcome = SingleSubject.create();
+
+    private Change(ChangeKind kind, AccountType accountType, UUID accountId, long amount) {
+      this.kind = kind;
+      this.accountType = accountType;
+      this.accountId = accountId;
+      this.amount = amount;
+    }
+  }
+
+  /**
+   * A queue with many producers and one consumer. Submitting to an idle lane starts the
+   * consumer; it keeps writing batches until it finds the queue empty, and only the submission
+   * that finds it stopped starts it again. A batch that completes asynchronously resumes the
+   * consumer from its completion, one that completes synchronously lets the loop go on, so the
+   * stack does not grow with the number of batches.
+   */
+  private final class Lane {
+    private final Queue<Change> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    // only touched by the consumer
+    private int missed;
+
+    private void submit(Change change) {
+      queue.offer(change);
+      if (pending.getAndIncrement() == 0) {
+        missed = 1;
+        if (windowMicros == 0) {
+          drain();
+          return;
+        }
+        try {
+          scheduler.schedule(this::drain, windowMicros, TimeUnit.MICROSECONDS);
+        } catch (RejectedExecutionException e) {
+          // with the timers saturated the lane writes at once rather than not at all
+          drain();
+        }
+      }
+    }
+
+    private void drain() {
+      for (; ; ) {
+        List<Change> batch = new ArrayList<>();
+        for (Change change = queue.poll(); change != null; change = queue.poll()) {
+          batch.add(change);
+          if (batch.size() == maximumBatchSize) {
+            break;
+          }
+        }
+        if (!batch.isEmpty()) {
+          // whichever of the completion and this loop gets here second drains the next batch
+          AtomicBoolean handoff = new AtomicBoolean();
+          Action resume = () -> {
+            if (!handoff.compareAndSet(false, true)) {
+              drain();
+            }
+          };
+          // the callers already have any error; the lane moves on either way
+          write(batch).subscribe(resume, error -> resume.run());
+          if (handoff.compareAndSet(false, true)) {
+            return;
+          }
+          continue;
+        }
+        missed = pending.addAndGet(-missed);
+        if (missed == 0) {
+          return;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.service.IdempotencyStore;
+import com.duberlyguarnizo.accountmanagementservice.exception.AccountDoesNotExistException;
+import com.duberlyguarnizo.accountmanagementservice.exception.BulkheadFullException;
+import com.duberlyguarnizo.accountmanagementservice.exception.CreditCardLimitReachedException;
+import com.duberlyguarnizo.accountmanagementservice.exception.IdempotencyKeyReusedException;
+import com.duberlyguarnizo.accountmanagementservice.exception.IdempotentRequestInProgressException;
+import com.duberlyguarnizo.accountmanagementservice.exception.IdempotentRequestOutcomeUnknownException;
+import com.duberlyguarnizo.accountmanagementservice.exception.IncompatibleAccountTypeException;
+import com.duberlyguarnizo.accountmanagementservice.exception.InsufficientBalanceException;
+import com.duberlyguarnizo.accountmanagementservice.exception.OverpaidAssetAccountException;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.IdempotencyKeyEntity;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.adapter.rxjava.RxJava3Adapter;
+import reactor.core.publisher.Mono;
+
+/**
+ * Keeps idempotency keys in a Mongo collection whose documents expire through a TTL index,
+ * with the completed ones also held in a bounded in-memory cache, so a retry that reaches the
+ * node that served the first attempt is answered without a round trip.
+ *
+ * <p>A key is claimed by inserting its document before the operation runs: the unique _id
+ * makes the claim and the lookup a single round trip. Requests for a key that is still running
+ * on this node share that execution; on another node they are refused until it completes. The
+ * claim is a short lease, renewed while the operation runs, so a key whose node died while
+ * running it can be taken over by a later attempt, and only an outcome is kept for the full TTL.
+ */
+@Service
+@Slf4j
+public class IdempotencyStoreImpl implements IdempotencyStore {
+  /*
+   * Outcomes that only depend on the account state when the operation ran, so replaying them
+   * is what the first attempt answered. Anything else (a timeout, a lost connection) leaves the
+   * outcome unknown, which is what is replayed then.
+   */
+  private static final Map<String, Function<String, RuntimeException>> REPLAYABLE_ERRORS = Map.of(
+      AccountDoesNotExistException.class.getSimpleName(), AccountDoesNotExistException::new,
+      CreditCardLimitReachedException.class.getSimpleName(), CreditCardLimitReachedException::new,
+      IncompatibleAccountTypeException.class.getSimpleName(),
+      IncompatibleAccountTypeException::new,
+      ArithmeticException.class.getSimpleName(), ArithmeticException::new,
+      InsufficientBalanceException.class.getSimpleName(), InsufficientBalanceException::new,
+      OverpaidAssetAccountException.class.getSimpleName(), OverpaidAssetAccountException::new);
+  /*
+   * Errors raised before anything was written: a full bulkhead or scheduler queue turned the
+   * operation away, or its arguments were refused. The claim is dropped, so a retry runs it.
+   */
+  private static final List<Class<? extends Throwable>> NOT_APPLIED_ERRORS = List.of(
+      BulkheadFullException.class,
+      RejectedExecutionException.class,
+      IllegalArgumentException.class);
+
+  private final ReactiveMongoTemplate template;
+  private final Duration ttl;
+  private final Duration lease;
+  private final Cache<String, IdempotencyKeyEntity> completed;
+  private final ConcurrentMap<String, Execution> running = new ConcurrentHashMap<>();
+
+  public IdempotencyStoreImpl(ReactiveMongoTemplate template,
+                              @Value("${account.idempotency.ttl:24h}") Duration ttl,
+                              @Value("${account.idempotency.lease:30s}") Duration lease,
+                              @Value("${account.idempotency.cache-maximum-size:100000}")
+                              long cacheMaximumSize) {
+    this.template = template;
+    this.ttl = ttl;
+    this.lease = lease;
+    this.completed = Caffeine.newBuilder()
+        .maximumSize(cacheMaximumSize)
+        .expireAfterWrite(ttl)
+        .build();
+  }
+
+  @Override
+  public Completable execute(String key, String fingerprint, Completable operation) {
+    return Completable.defer(() -> {
+      IdempotencyKeyEntity outcome = completed.getIfPresent(key);
+      if (outcome != null) {
+        return replay(outcome, fingerprint);
+      }
+      Execution execution = new Execution(key, fingerprint, operation);
+      Execution current = running.putIfAbsent(key, execution);
+      if (current == null) {
+        return execution.result;
+      }
+      return current.fingerprint.equals(fingerprint) ? current.result : reused(key);
+    });
+  }
+
+  private Completable claimAndRun(String key, String fingerprint, Completable operation) {
+    Instant now = Instant.now();
+    IdempotencyKeyEntity claim = IdempotencyKeyEntity.builder()
+        .key(key)
+        .fingerprint(fingerprint)
+        .status(IdempotencyKeyEntity.IN_PROGRESS)
+        .createdAt(now)
+        .expiresAt(now.plus(lease))
+        .build();
+    return RxJava3Adapter.monoToSingle(template.insert(claim)
+            .thenReturn(true)
+            .onErrorResume(DuplicateKeyException.class, e -> Mono.just(false)))
+        .flatMapCompletable(claimed -> claimed
+            ? run(claim, operation)
+            : RxJava3Adapter.monoToMaybe(template.findById(key, IdempotencyKeyEntity.class))
+                .map(stored -> {
+                  if (!stored.isCompleted() && !stored.isUnknown()) {
+                    return stored.getExpiresAt().isAfter(Instant.now())
+                        ? inProgress(stored, fingerprint)
+                        : takeOver(stored, fingerprint, operation);
+                  }
+                  return remember(stored).andThen(replay(stored, fingerprint));
+                })
+                // removed by the TTL index since the insert failed: claim it again
+                .defaultIfEmpty(Completable.defer(() -> claimAndRun(key, fingerprint, operation)))
+                .flatMapCompletable(answer -> answer));
+  }
+
+  /**
+   * Renews the lease of a claim whose node stopped running it, unless another attempt took it
+   * over first. The stored lease end identifies the claim that was seen expired.
+   */
+  private Completable takeOver(IdempotencyKeyEntity claim, String fingerprint,
+                               Completable operation) {
+    if (!claim.getFingerprint().equals(fingerprint)) {
+      return reused(claim.getKey());
+    }
+    Query expiredClaim = Query.query(Criteria.where("_id").is(claim.getKey())
+        .and("status").is(IdempotencyKeyEntity.IN_PROGRESS)
+        .and("expiresAt").is(claim.getExpiresAt()));
+    Instant expiresAt = Instant.now().plus(lease);
+    return RxJava3Adapter.monoToSingle(template.updateFirst(expiredClaim,
+            new Update().set("expiresAt", expiresAt), IdempotencyKeyEntity.class))
+        .flatMapCompletable(result -> {
+          if (result.getModifiedCount() == 0) {
+            return claimAndRun(claim.getKey(), fingerprint, operation);
+          }
+          log.info("Took over the expired claim of idempotency key {}", claim.getKey());
+          claim.setExpiresAt(expiresAt);
+          return run(claim, operation);
+        });
+  }
+
+  private Completable run(IdempotencyKeyEntity claim, Completable operation) {
+    return Completable.ambArray(operation, heartbeat(claim.getKey()))
+        .toSingleDefault(claim)
+        .onErrorResumeNext(error -> {
+          if (NOT_APPLIED_ERRORS.stream().anyMatch(type -> type.isInstance(error))) {
+            return release(claim.getKey()).andThen(Single.error(error));
+          }
+          claim.setErrorType(error.getClass().getSimpleName());
+          claim.setErrorMessage(error.getMessage());
+          if (!REPLAYABLE_ERRORS.containsKey(claim.getErrorType())) {
+            // the key is kept: running the operation again could apply it twice
+            claim.setStatus(IdempotencyKeyEntity.UNKNOWN);
+            return store(claim).andThen(remember(claim)).andThen(Single.error(error));
+          }
+          return Single.just(claim);
+        })
+        .flatMapCompletable(outcome -> {
+          outcome.setStatus(IdempotencyKeyEntity.COMPLETED);
+          return store(outcome).andThen(remember(outcome)).andThen(replay(outcome,
+              outcome.getFingerprint()));
+        });
+  }
+
+  /**
+   * Renews the lease of a claim every third of it until the operation ends, which disposes
+   * it, so an operation that outlasts the lease is not taken over while it still runs. It never
+   * completes on its own.
+   */
+  private Completable heartbeat(String key) {
+    long period = Math.max(1, lease.toMillis() / 3);
+    Query claimed = Query.query(Criteria.where("_id").is(key)
+        .and("status").is(IdempotencyKeyEntity.IN_PROGRESS));
+    return Observable.interval(period, period, TimeUnit.MILLISECONDS)
+        .concatMapCompletable(tick -> RxJava3Adapter.monoToCompletable(template.updateFirst(
+                claimed, new Update().set("expiresAt", Instant.now().plus(lease)),
+                IdempotencyKeyEntity.class))
+            .doOnError(error -> log.warn("Could not renew the claim of idempotency key {}: {}",
+                key, error.getMessage()))
+            .onErrorComplete());
+  }
+
+  /**
+   * Drops the claim of an operation that was not applied. If that fails, the lease still ends
+   * and the key can be taken over then.
+   */
+  private Completable release(String key) {
+    Query claimed = Query.query(Criteria.where("_id").is(key)
+        .and("status").is(IdempotencyKeyEntity.IN_PROGRESS));
+    return RxJava3Adapter.monoToCompletable(template.remove(claimed, IdempotencyKeyEntity.class))
+        .doOnError(error -> log.warn("Could not release the claim of idempotency key {}: {}",
+            key, error.getMessage()))
+        .onErrorComplete();
+  }
+
+  private Completable store(IdempotencyKeyEntity outcome) {
+    outcome.setExpiresAt(Instant.now().plus(ttl));
+    Update update = new Update()
+        .set("status", outcome.getStatus())
+        .set("errorType", outcome.getErrorType())
+        .set("errorMessage", outcome.getErrorMessage())
+        .set("expiresAt", outcome.getExpiresAt());
+    return RxJava3Adapter.monoToCompletable(template.updateFirst(byKey(outcome.getKey()), update,
+            IdempotencyKeyEntity.class))
+        // the operation ran: answer it anyway, this node still remembers the outcome
+        .doOnError(error -> log.warn("Could not store the outcome of idempotency key {}: {}",
+            outcome.getKey(), error.getMessage()))
+        .onErrorComplete();
+  }
+
+  private Completable remember(IdempotencyKeyEntity outcome) {
+    return Completable.fromRunnable(() -> completed.put(outcome.getKey(), outcome));
+  }
+
+  private static Completable replay(IdempotencyKeyEntity outcome, String fingerprint) {
+    if (!outcome.getFingerprint().equals(fingerprint)) {
+      return reused(outcome.getKey());
+    }
+    if (outcome.isUnknown()) {
+      return Completable.error(new IdempotentRequestOutcomeUnknownException(
+          "The request with idempotency key " + outcome.getKey() + " failed with an unknown"
+              + " outcome: " + outcome.getErrorMessage()));
+    }
+    if (outcome.getErrorType() == null) {
+      return Completable.complete();
+    }
+    return Completable.error(REPLAYABLE_ERRORS.get(outcome.getErrorType())
+        .apply(outcome.getErrorMessage()));
+  }
+
+  private static Completable inProgress(IdempotencyKeyEntity claim, String fingerprint) {
+    if (!claim.getFingerprint().equals(fingerprint)) {
+      return reused(claim.getKey());
+    }
+    return Completable.error(new IdempotentRequestInProgressException(
+        "A request with idempotency key " + claim.getKey() + " is still being processed"));
+  }
+
+  private static Completable reused(String key) {
+    return Completable.error(new IdempotencyKeyReusedException(
+        "Idempotency key " + key + " was already used for a different request"));
+  }
+
+  private static Query byKey(String key) {
+    return Query.query(Criteria.where("_id").is(key));
+  }
+
+  /**
+   * The single execution of a key on this node, shared by every request that arrives for it
+   * while it runs.
+   */
+  private final class Execution {
+    private final String fingerprint;
+    private final Completable result;
+
+    private Execution(String key, String fingerprint, Completable operation) {
+      this.fingerprint = fingerprint;
+      this.result = Completable.defer(() -> claimAndRun(key, fingerprint, operation))
+          .doFinally(() -> running.remove(key, this))
+          .cache();
+    }
+  }
+}
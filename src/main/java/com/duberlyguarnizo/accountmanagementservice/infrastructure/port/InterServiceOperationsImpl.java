@@ -4,16 +4,65 @@
 
 package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
 
+import com.duberlyguarnizo.accountmanagementservice.concurrency.AccountSchedulers;
+import com.duberlyguarnizo.accountmanagementservice.concurrency.Bulkhead;
 import com.duberlyguarnizo.accountmanagementservice.domain.enums.ClientType;
 import com.duberlyguarnizo.accountmanagementservice.domain.service.InterServiceOperations;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.reactivex.rxjava3.core.Maybe;
+import java.time.Duration;
 import java.util.UUID;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.adapter.rxjava.RxJava3Adapter;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
+/**
+ * Answers client type lookups from the local {@link ClientTypeReplica}. Only the lookups made
+ * before the replica first catches up after startup wait for it, up to the configured timeout.
+ * Those go through the inter-service bulkhead and time out on the inter-service pool, so a slow
+ * catch-up under load fails the excess lookups at once instead of piling them up. With the
+ * replica disabled every lookup is a call to the client service, behind the same bulkhead.
+ */
 @Service
 public class InterServiceOperationsImpl implements InterServiceOperations {
+  private final ClientTypeReplica clientTypeReplica;
+  private final ClientServiceLookup clientServiceLookup;
+  private final Duration catchUpTimeout;
+  private final Scheduler scheduler;
+  private final Bulkhead bulkhead;
+
+  public InterServiceOperationsImpl(ClientTypeReplica clientTypeReplica,
+                                    ClientServiceLookup clientServiceLookup,
+                                    @Value("${account.client-types.catch-up-timeout:5s}")
+                                    Duration catchUpTimeout,
+                                    AccountSchedulers schedulers,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${account.bulkheads.inter-service.max-concurrent:256}")
+                                    int maxConcurrent,
+                                    @Value("${account.bulkheads.inter-service.max-queued:1024}")
+                                    int maxQueued) {
+    this.clientTypeReplica = clientTypeReplica;
+    this.clientServiceLookup = clientServiceLookup;
+    this.catchUpTimeout = catchUpTimeout;
+    this.scheduler = schedulers.getInterService().scheduler();
+    this.bulkhead = new Bulkhead("inter-service", maxConcurrent, maxQueued, meterRegistry);
+  }
+
   @Override
-  public ClientType getClientType(UUID clientId) {
-    return null;
+  public Maybe<ClientType> getClientType(UUID clientId) {
+    if (clientTypeReplica.isCaughtUp()) {
+      return Maybe.fromCallable(() -> clientTypeReplica.getClientType(clientId));
+    }
+    if (!clientTypeReplica.isEnabled()) {
+      return clientServiceLookup.getClientType(clientId).compose(bulkhead.maybe());
+    }
+    return RxJava3Adapter.monoToMaybe(
+        RxJava3Adapter.completableToMono(clientTypeReplica.caughtUp())
+            .timeout(catchUpTimeout, scheduler)
+            .then(Mono.fromCallable(() -> clientTypeReplica.getClientType(clientId))))
+        .compose(bulkhead.maybe());
   }
 
 }
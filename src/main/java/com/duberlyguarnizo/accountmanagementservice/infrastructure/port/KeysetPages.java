@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Where a listing by account code is while it is read a page at a time: each page starts after
+ * the last code of the one before, until a short page or the limit ends it. One per
+ * subscription.
+ */
+final class KeysetPages<T> {
+  private final int pageSize;
+  private final Function<T, String> accountCodeOf;
+  private final boolean limited;
+  private String afterAccountCode;
+  private int remaining;
+  private boolean done;
+
+  /**
+   * @param limit the most rows in all the pages, 0 for no limit.
+   */
+  KeysetPages(String afterAccountCode, int limit, int pageSize,
+              Function<T, String> accountCodeOf) {
+    this.afterAccountCode = afterAccountCode;
+    this.limited = limit > 0;
+    this.remaining = limit;
+    this.pageSize = pageSize;
+    this.accountCodeOf = accountCodeOf;
+  }
+
+  String afterAccountCode() {
+    return afterAccountCode;
+  }
+
+  int nextPageSize() {
+    return limited ? Math.min(remaining, pageSize) : pageSize;
+  }
+
+  void read(List<T> page) {
+    // a short page is the end of the listing
+    done = page.size() < nextPageSize();
+    if (limited) {
+      remaining -= page.size();
+      done |= remaining == 0;
+    }
+    if (!page.isEmpty()) {
+      afterAccountCode = accountCodeOf.apply(page.get(page.size() - 1));
+    }
+  }
+
+  boolean isDone() {
+    return done;
+  }
+}
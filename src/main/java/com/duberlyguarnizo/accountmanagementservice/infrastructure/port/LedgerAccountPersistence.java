@@ -0,0 +1,446 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Account;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.AssetAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Money;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.mapper.AccountMapper;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.AssetAccountEntity;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.LedgerEntryEntity;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.PassiveAccountEntity;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.adapter.rxjava.RxJava3Adapter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Records every balance change as an entry of the account_ledger collection instead of
+ * updating the account document, which becomes a snapshot that {@link #snapshot()} brings up to
+ * date in the background.
+ *
+ * <p>Entries of an account are numbered without gaps, and the unique (accountId, seq) index
+ * lets only one writer append each number. A change is checked against the balance after the
+ * last entry and appended with the next number, so if the insert succeeds nothing was appended
+ * in between and the check still holds; if another writer got there first, the state is read
+ * again and the change retried. The last state of each account is kept in memory, so appending
+ * to an account this node wrote last is a single insert, except for a debit within the limit,
+ * which reads the limit again.
+ *
+ * <p>Every entry carries the resulting balance, so the current balance is the last entry, or
+ * the snapshot if there is none, and a past balance is the last entry before that time. Lists
+ * and aggregations over many accounts read the snapshots and lag by at most one snapshot
+ * interval. Once enabled, balances must only change through the ledger.
+ */
+@Slf4j
+public class LedgerAccountPersistence implements AccountPersistence {
+  private static final int MAX_APPEND_ATTEMPTS = 16;
+  private static final int SNAPSHOT_CONCURRENCY = 16;
+
+  private final AccountPersistence delegate;
+  private final ReactiveMongoTemplate template;
+  private final AccountOutbox outbox;
+  private final Cache<UUID, LedgerState> states;
+  // accounts with entries that were not folded into their snapshot yet
+  private final ConcurrentMap<UUID, AccountType> pendingSnapshots = new ConcurrentHashMap<>();
+
+  public LedgerAccountPersistence(AccountPersistence delegate, ReactiveMongoTemplate template,
+                                  AccountOutbox outbox, long stateCacheSize) {
+    this.delegate = delegate;
+    this.template = template;
+    this.outbox = outbox;
+    this.states = Caffeine.newBuilder()
+        .maximumSize(stateCacheSize)
+        .build();
+  }
+
+  @Override
+  public Single<Long> getAccountBalance(String accountCode) {
+    return getAccountByAccountCode(accountCode).map(Account::getBalance).toSingle();
+  }
+
+  /**
+   * The current balances are in the ledger, so they are read account by account.
+   */
+  @Override
+  public Single<Map<String, Long>> getAccountBalances(Collection<String> accountCodes) {
+    return Observable.fromIterable(new HashSet<>(accountCodes))
+        .flatMapMaybe(this::getAccountByAccountCode)
+        .toMap(Account::getAccountCode, Account::getBalance);
+  }
+
+  @Override
+  public Maybe<Long> getAccountBalanceAt(String accountCode, Instant at) {
+    return delegate.getAccountByAccountCode(accountCode)
+        .filter(account -> account.getCreatedAt() == null || !account.getCreatedAt().isAfter(at))
+        .flatMap(account -> RxJava3Adapter.monoToMaybe(balanceAt(account, at)));
+  }
+
+  @Override
+  public Maybe<Account> getAccountByAccountId(UUID accountId) {
+    return withLedgerBalance(delegate.getAccountByAccountId(accountId));
+  }
+
+  @Override
+  public Maybe<Account> getAccountByAccountCode(String accountCode) {
+    return withLedgerBalance(delegate.getAccountByAccountCode(accountCode));
+  }
+
+  @Override
+  public Observable<AssetAccount> getAssetAccountsByClientId(UUID clientId) {
+    return delegate.getAssetAccountsByClientId(clientId);
+  }
+
+  @Override
+  public Observable<PassiveAccount> getPassiveAccountsByClientId(UUID clientId) {
+    return delegate.getPassiveAccountsByClientId(clientId);
+  }
+
+  @Override
+  public Single<Long> getAvailableCreditForClient(UUID clientId) {
+    return delegate.getAvailableCreditForClient(clientId);
+  }
+
+  @Override
+  public Single<Boolean> hasAssetAccountLastPaidBefore(UUID clientId, Instant cutoff) {
+    return delegate.hasAssetAccountLastPaidBefore(clientId, cutoff);
+  }
+
+  @Override
+  public Observable<AssetAccountDto> getAssetAccountSummariesByClientId(UUID clientId) {
+    return delegate.getAssetAccountSummariesByClientId(clientId);
+  }
+
+  @Override
+  public Observable<PassiveAccountDto> getPassiveAccountSummariesByClientId(UUID clientId) {
+    return delegate.getPassiveAccountSummariesByClientId(clientId);
+  }
+
+  @Override
+  public Observable<AssetAccountDto> getAssetAccountSummariesByClientIds(
+      Collection<UUID> clientIds) {
+    return delegate.getAssetAccountSummariesByClientIds(clientIds);
+  }
+
+  @Override
+  public Observable<PassiveAccountDto> getPassiveAccountSummariesByClientIds(
+      Collection<UUID> clientIds) {
+    return delegate.getPassiveAccountSummariesByClientIds(clientIds);
+  }
+
+  @Override
+  public Flowable<AssetAccountDto> getAssetAccountsByType(AssetAccountType assetAccountType,
+                                                          String afterAccountCode, int limit) {
+    return delegate.getAssetAccountsByType(assetAccountType, afterAccountCode, limit);
+  }
+
+  @Override
+  public Flowable<PassiveAccountDto> getPassiveAccountsByType(
+      PassiveAccountType passiveAccountType, String afterAccountCode, int limit) {
+    return delegate.getPassiveAccountsByType(passiveAccountType, afterAccountCode, limit);
+  }
+
+  @Override
+  public Completable createAccount(Account account) {
+    return delegate.createAccount(account);
+  }
+
+  @Override
+  public Single<List<Integer>> createAccounts(List<Account> accounts) {
+    return delegate.createAccounts(accounts);
+  }
+
+  @Override
+  public Single<Boolean> addToBalance(AccountType accountType, UUID accountId, long amount) {
+    return append(accountType, accountId, amount, Guard.NONE);
+  }
+
+  @Override
+  public Single<Boolean> subtractFromBalance(AccountType accountType, UUID accountId,
+                                             long amount) {
+    return append(accountType, accountId, Math.negateExact(amount), Guard.NOT_NEGATIVE);
+  }
+
+  @Override
+  public Single<Boolean> addToBalanceWithinLimit(UUID accountId, long amount) {
+    return append(AccountType.ASSET, accountId, amount, Guard.BELOW_LIMIT);
+  }
+
+  /**
+   * Forgets the state of the account, which holds its limit, so the next change reads it again.
+   */
+  @Override
+  public Completable updateAccount(Account account) {
+    return delegate.updateAccount(account)
+        .doFinally(() -> states.invalidate(account.getAccountId()));
+  }
+
+  @Override
+  public Completable deleteAccount(UUID accountId) {
+    return delegate.deleteAccount(accountId)
+        .doFinally(() -> states.invalidate(accountId));
+  }
+
+  /**
+   * Folds the last entry of every account written since the previous run into the balance of
+   * its document. A snapshot never goes back to an older seq, so runs on several nodes, or a
+   * retried run, cannot undo each other.
+   *
+   * @return how many accounts were brought up to date.
+   */
+  public Mono<Long> snapshot() {
+    return Flux.fromIterable(List.copyOf(pendingSnapshots.entrySet()))
+        .filter(pending -> pendingSnapshots.remove(pending.getKey(), pending.getValue()))
+        .flatMap(pending -> snapshot(pending.getKey(), pending.getValue())
+            .onErrorResume(error -> {
+              log.warn("Could not snapshot the balance of account {}: {}", pending.getKey(),
+                  error.getMessage());
+              pendingSnapshots.putIfAbsent(pending.getKey(), pending.getValue());
+              return Mono.empty();
+            }), SNAPSHOT_CONCURRENCY)
+        .count();
+  }
+
+  /**
+   * Queues for the next run every account with entries that were not folded into its document,
+   * such as the ones a node wrote before it stopped without its final run. The accounts pending
+   * on a node are only held in its memory, so this is what finds them after a crash. Entries
+   * are marked pending until they are folded and only the marked ones are in the pending index,
+   * so this reads as many entries as are waiting, however long the ledger is.
+   *
+   * @return how many accounts were found behind their ledger.
+   */
+  public Mono<Long> recoverPendingSnapshots() {
+    Aggregation aggregation = Aggregation.newAggregation(Stream.of(
+            new Document("$match", new Document(LedgerEntryEntity.PENDING, true)),
+            new Document("$group", new Document("_id", "$accountId")
+                .append("accountType", new Document("$first", "$accountType"))))
+        .<AggregationOperation>map(stage -> context -> stage)
+        .collect(Collectors.toList()));
+    return template.aggregate(aggregation, LedgerEntryEntity.class, Document.class)
+        .doOnNext(behind -> pendingSnapshots.putIfAbsent(
+            UUID.fromString(behind.getString("_id")),
+            AccountType.valueOf(behind.getString("accountType"))))
+        .count();
+  }
+
+  private Mono<Boolean> snapshot(UUID accountId, AccountType accountType) {
+    String id = AccountMapper.toEntityId(accountId);
+    return lastEntry(accountId).flatMap(entry -> template.updateFirst(
+            Query.query(Criteria.where("_id").is(id).orOperator(
+                Criteria.where("ledgerSeq").lt(entry.getSeq()),
+                Criteria.where("ledgerSeq").exists(false))),
+            new Update()
+                .set("balance", entry.getBalanceAfter())
+                .set("ledgerSeq", entry.getSeq()),
+            entityClass(accountType))
+        // folded here or by another node already: either way no longer pending
+        .flatMap(result -> template.updateMulti(
+                Query.query(Criteria.where(LedgerEntryEntity.PENDING).is(true)
+                    .and("accountId").is(id)
+                    .and("seq").lte(entry.getSeq())),
+                new Update().unset(LedgerEntryEntity.PENDING), LedgerEntryEntity.class)
+            .thenReturn(result.getModifiedCount() > 0)));
+  }
+
+  private Single<Boolean> append(AccountType accountType, UUID accountId, long amount,
+                                 Guard guard) {
+    return RxJava3Adapter.monoToSingle(Mono.defer(() -> {
+      LedgerState cached = states.getIfPresent(accountId);
+      // the limit may have been lowered through another node: a debit within it reads it again
+      if (cached != null && cached.accountType == accountType && guard != Guard.BELOW_LIMIT) {
+        return append(accountId, amount, guard, cached, false, 1);
+      }
+      return load(accountType, accountId)
+          .flatMap(state -> append(accountId, amount, guard, state, true, 1));
+    }).defaultIfEmpty(false));
+  }
+
+  private Mono<Boolean> append(UUID accountId, long amount, Guard guard, LedgerState state,
+                               boolean fresh, int attempt) {
+    if (!guard.allows(state, amount)) {
+      if (fresh) {
+        return Mono.just(false);
+      }
+      // the cached state may miss changes written by another node: decide on the stored one
+      return load(state.accountType, accountId)
+          .flatMap(loaded -> append(accountId, amount, guard, loaded, true, attempt));
+    }
+    Instant now = Instant.now();
+    LedgerEntryEntity entry = LedgerEntryEntity.builder()
+        .accountId(AccountMapper.toEntityId(accountId))
+        .seq(state.seq + 1)
+        .accountType(state.accountType)
+        .amount(amount)
+        .balanceAfter(Money.add(state.balance, amount))
+        .createdAt(now)
+        .pending(true)
+        .build();
+    Mono<LedgerEntryEntity> write = template.insert(entry);
+    if (state.accountType == AccountType.ASSET && amount < 0) {
+      // lowering the debt of a loan or card is a payment
+      write = write.flatMap(inserted -> template.updateFirst(
+              Query.query(Criteria.where("_id").is(inserted.getAccountId())),
+              Update.update("lastPaymentDate", now), AssetAccountEntity.class)
+          .thenReturn(inserted));
+    }
+    return outbox.record(write, inserted -> List.of(
+            outbox.balanceChanged(state.accountType, accountId, amount)))
+        .map(inserted -> {
+          remember(accountId, new LedgerState(state.accountType, inserted.getSeq(),
+              inserted.getBalanceAfter(), state.limit));
+          pendingSnapshots.put(accountId, state.accountType);
+          return true;
+        })
+        .onErrorResume(DuplicateKeyException.class, e -> {
+          if (attempt == MAX_APPEND_ATTEMPTS) {
+            return Mono.error(new IllegalStateException("Gave up appending to the ledger of "
+                                                        + "account " + accountId + " after "
+                                                        + attempt + " conflicting writes"));
+          }
+          return load(state.accountType, accountId)
+              .flatMap(loaded -> append(accountId, amount, guard, loaded, true, attempt + 1));
+        });
+  }
+
+  /**
+   * Reads the state of the account from its snapshot and last ledger entry.
+   *
+   * @return the state, or empty if there is no account of that type with the id.
+   */
+  private Mono<LedgerState> load(AccountType accountType, UUID accountId) {
+    Query query = Query.query(Criteria.where("_id").is(AccountMapper.toEntityId(accountId)));
+    query.fields().include("balance").include("loanOrCreditCardLimit");
+    return template.findOne(query, Document.class,
+            template.getCollectionName(entityClass(accountType)))
+        .flatMap(account -> {
+          long limit = numberOrZero(account.get("loanOrCreditCardLimit"));
+          return lastEntry(accountId)
+              .map(entry -> new LedgerState(accountType, entry.getSeq(),
+                  entry.getBalanceAfter(), limit))
+              .defaultIfEmpty(new LedgerState(accountType, 0,
+                  numberOrZero(account.get("balance")), limit));
+        })
+        .doOnNext(state -> remember(accountId, state));
+  }
+
+  private void remember(UUID accountId, LedgerState state) {
+    states.asMap().merge(accountId, state,
+        (current, candidate) -> candidate.seq >= current.seq ? candidate : current);
+  }
+
+  private Maybe<Account> withLedgerBalance(Maybe<Account> account) {
+    return account.flatMapSingle(found -> RxJava3Adapter.monoToSingle(
+        lastEntry(found.getAccountId())
+            .map(entry -> {
+              found.setBalance(entry.getBalanceAfter());
+              return found;
+            })
+            .defaultIfEmpty(found)));
+  }
+
+  private Mono<Long> balanceAt(Account account, Instant at) {
+    String id = AccountMapper.toEntityId(account.getAccountId());
+    Query lastBefore = Query.query(Criteria.where("accountId").is(id).and("createdAt").lte(at))
+        .with(Sort.by(Sort.Direction.DESC, "createdAt", "seq"))
+        .limit(1);
+    Query first = Query.query(Criteria.where("accountId").is(id))
+        .with(Sort.by(Sort.Direction.ASC, "seq"))
+        .limit(1);
+    return template.findOne(lastBefore, LedgerEntryEntity.class)
+        .map(LedgerEntryEntity::getBalanceAfter)
+        // nothing written yet at that time: the balance before the first entry
+        .switchIfEmpty(template.findOne(first, LedgerEntryEntity.class)
+            .map(entry -> Money.subtract(entry.getBalanceAfter(), entry.getAmount())))
+        // nothing written ever: the snapshot is still the opening balance
+        .defaultIfEmpty(account.getBalance());
+  }
+
+  private Mono<LedgerEntryEntity> lastEntry(UUID accountId) {
+    Query query = Query.query(Criteria.where("accountId").is(AccountMapper.toEntityId(accountId)))
+        .with(Sort.by(Sort.Direction.DESC, "seq"))
+        .limit(1);
+    return template.findOne(query, LedgerEntryEntity.class);
+  }
+
+  private static long numberOrZero(Object value) {
+    return value == null ? 0 : ((Number) value).longValue();
+  }
+
+  private static Class<?> entityClass(AccountType accountType) {
+    return accountType == AccountType.ASSET ? AssetAccountEntity.class
+        : PassiveAccountEntity.class;
+  }
+
+  private enum Guard {
+    NONE {
+      @Override
+      boolean allows(LedgerState state, long amount) {
+        return true;
+      }
+    },
+    NOT_NEGATIVE {
+      @Override
+      boolean allows(LedgerState state, long amount) {
+        return Money.add(state.balance, amount) >= 0;
+      }
+    },
+    BELOW_LIMIT {
+      @Override
+      boolean allows(LedgerState state, long amount) {
+        return Money.staysBelow(state.balance, amount, state.limit);
+      }
+    };
+
+    abstract boolean allows(LedgerState state, long amount);
+  }
+
+  private static final class LedgerState {
+    private final AccountType accountType;
+    private final long seq;
+    private final long balance;
+    private final long limit;
+
+    private LedgerState(AccountType accountType, long seq, long balance, long limit) {
+      this.accountType = accountType;
+      this.seq = seq;
+      this.balance = balance;
+      this.limit = limit;
+    }
+  }
+}
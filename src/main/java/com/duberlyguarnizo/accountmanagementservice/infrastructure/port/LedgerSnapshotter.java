@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import java.time.Duration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Folds the ledger into the account snapshots at a fixed interval, and once more on shutdown
+ * so the accounts this node wrote are left up to date. On start it first looks for the
+ * accounts left behind their ledger, by this node or another one, if one stopped without
+ * that last run.
+ */
+@Slf4j
+public class LedgerSnapshotter implements SmartLifecycle {
+  private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+
+  private final LedgerAccountPersistence ledger;
+  private final Duration interval;
+  private final Scheduler scheduler;
+  private volatile Disposable loop;
+
+  public LedgerSnapshotter(LedgerAccountPersistence ledger, Duration interval,
+                           Scheduler scheduler) {
+    this.ledger = ledger;
+    this.interval = interval;
+    this.scheduler = scheduler;
+  }
+
+  @Override
+  public void start() {
+    loop = ledger.recoverPendingSnapshots()
+        .doOnNext(accounts -> {
+          if (accounts > 0) {
+            log.info("Found {} accounts with ledger entries not in their snapshot", accounts);
+          }
+        })
+        .onErrorResume(error -> {
+          log.warn("Could not look for accounts behind their ledger: {}", error.getMessage());
+          return Mono.empty();
+        })
+        .thenMany(Flux.interval(interval, scheduler))
+        // a tick that comes while a snapshot is still running is skipped
+        .onBackpressureDrop()
+        .concatMap(tick -> ledger.snapshot()
+            .onErrorResume(error -> {
+              log.warn("Ledger snapshot failed: {}", error.getMessage());
+              return Mono.just(0L);
+            }))
+        .subscribe(accounts -> {
+          if (accounts > 0) {
+            log.debug("Snapshotted the balance of {} accounts", accounts);
+          }
+        });
+  }
+
+  @Override
+  public void stop() {
+    if (loop != null) {
+      loop.dispose();
+    }
+    ledger.snapshot()
+        .onErrorResume(error -> Mono.empty())
+        .block(SHUTDOWN_TIMEOUT);
+  }
+
+  @Override
+  public boolean isRunning() {
+    return loop != null && !loop.isDisposed();
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Account;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.AssetAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Times every call to another {@link AccountPersistence} under account.persistence, tagged with
+ * the method. It is the outermost layer, so cache hits and lane waits are part of the timings;
+ * the Mongo commands themselves are timed by the driver under mongodb.driver.commands.
+ */
+public class MeteredAccountPersistence implements AccountPersistence {
+  private final AccountPersistence delegate;
+  private final PipelineMetrics metrics;
+
+  public MeteredAccountPersistence(AccountPersistence delegate, MeterRegistry registry) {
+    this.delegate = delegate;
+    this.metrics = new PipelineMetrics(registry, "account.persistence");
+  }
+
+  @Override
+  public Single<Long> getAccountBalance(String accountCode) {
+    return delegate.getAccountBalance(accountCode)
+        .compose(metrics.single("getAccountBalance"));
+  }
+
+  @Override
+  public Single<Map<String, Long>> getAccountBalances(Collection<String> accountCodes) {
+    return delegate.getAccountBalances(accountCodes)
+        .compose(metrics.single("getAccountBalances"));
+  }
+
+  @Override
+  public Maybe<Long> getAccountBalanceAt(String accountCode, Instant at) {
+    return delegate.getAccountBalanceAt(accountCode, at)
+        .compose(metrics.maybe("getAccountBalanceAt"));
+  }
+
+  @Override
+  public Maybe<Account> getAccountByAccountId(UUID accountId) {
+    return delegate.getAccountByAccountId(accountId)
+        .compose(metrics.maybe("getAccountByAccountId"));
+  }
+
+  @Override
+  public Maybe<Account> getAccountByAccountCode(String accountCode) {
+    return delegate.getAccountByAccountCode(accountCode)
+        .compose(metrics.maybe("getAccountByAccountCode"));
+  }
+
+  @Override
+  public Observable<AssetAccount> getAssetAccountsByClientId(UUID clientId) {
+    return delegate.getAssetAccountsByClientId(clientId)
+        .compose(metrics.observable("getAssetAccountsByClientId"));
+  }
+
+  @Override
+  public Observable<PassiveAccount> getPassiveAccountsByClientId(UUID clientId) {
+    return delegate.getPassiveAccountsByClientId(clientId)
+        .compose(metrics.observable("getPassiveAccountsByClientId"));
+  }
+
+  @Override
+  public Single<Long> getAvailableCreditForClient(UUID clientId) {
+    return delegate.getAvailableCreditForClient(clientId)
+        .compose(metrics.single("getAvailableCreditForClient"));
+  }
+
+  @Override
+  public Single<Boolean> hasAssetAccountLastPaidBefore(UUID clientId, Instant cutoff) {
+    return delegate.hasAssetAccountLastPaidBefore(clientId, cutoff)
+        .compose(metrics.single("hasAssetAccountLastPaidBefore"));
+  }
+
+  @Override
+  public Observable<AssetAccountDto> getAssetAccountSummariesByClientId(UUID clientId) {
+    return delegate.getAssetAccountSummariesByClientId(clientId)
+        .compose(metrics.observable("getAssetAccountSummariesByClientId"));
+  }
+
+  @Override
+  public Observable<PassiveAccountDto> getPassiveAccountSummariesByClientId(UUID clientId) {
+    return delegate.getPassiveAccountSummariesByClientId(clientId)
+        .compose(metrics.observable("getPassiveAccountSummariesByClientId"));
+  }
+
+  @Override
+  public Observable<AssetAccountDto> getAssetAccountSummariesByClientIds(
+      Collection<UUID> clientIds) {
+    return delegate.getAssetAccountSummariesByClientIds(clientIds)
+        .compose(metrics.observable("getAssetAccountSummariesByClientIds"));
+  }
+
+  @Override
+  public Observable<PassiveAccountDto> getPassiveAccountSummariesByClientIds(
+      Collection<UUID> clientIds) {
+    return delegate.getPassiveAccountSummariesByClientIds(clientIds)
+        .compose(metrics.observable("getPassiveAccountSummariesByClientIds"));
+  }
+
+  @Override
+  public Flowable<AssetAccountDto> getAssetAccountsByType(AssetAccountType assetAccountType,
+                                                          String afterAccountCode, int limit) {
+    return delegate.getAssetAccountsByType(assetAccountType, afterAccountCode, limit)
+        .compose(metrics.flowable("getAssetAccountsByType"));
+  }
+
+  @Override
+  public Flowable<PassiveAccountDto> getPassiveAccountsByType(
+      PassiveAccountType passiveAccountType, String afterAccountCode, int limit) {
+    return delegate.getPassiveAccountsByType(passiveAccountType, afterAccountCode, limit)
+        .compose(metrics.flowable("getPassiveAccountsByType"));
+  }
+
+  @Override
+  public Completable createAccount(Account account) {
+    return delegate.createAccount(account)
+        .compose(metrics.completable("createAccount"));
+  }
+
+  @Override
+  public Single<List<Integer>> createAccounts(List<Account> accounts) {
+    return delegate.createAccounts(accounts)
+        .compose(metrics.single("createAccounts"));
+  }
+
+  @Override
+  public Single<Boolean> addToBalance(AccountType accountType, UUID accountId, long amount) {
+    return delegate.addToBalance(accountType, accountId, amount)
+        .compose(metrics.single("addToBalance"));
+  }
+
+  @Override
+  public Single<Boolean> subtractFromBalance(AccountType accountType, UUID accountId,
+                                             long amount) {
+    return delegate.subtractFromBalance(accountType, accountId, amount)
+        .compose(metrics.single("subtractFromBalance"));
+  }
+
+  @Override
+  public Single<Boolean> addToBalanceWithinLimit(UUID accountId, long amount) {
+    return delegate.addToBalanceWithinLimit(accountId, amount)
+        .compose(metrics.single("addToBalanceWithinLimit"));
+  }
+
+  @Override
+  public Completable updateAccount(Account account) {
+    return delegate.updateAccount(account)
+        .compose(metrics.completable("updateAccount"));
+  }
+
+  @Override
+  public Completable deleteAccount(UUID accountId) {
+    return delegate.deleteAccount(accountId)
+        .compose(metrics.completable("deleteAccount"));
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Splits the outbox partitions among the running relays. Every relay heartbeats into a
+ * members collection and holds leases on up to its fair share of partitions, which it renews
+ * well before they expire. Leases of a relay that stops renewing expire and are taken over by
+ * the others.
+ */
+@Slf4j
+public class OutboxLeases {
+  static final String LEASE_COLLECTION = "account_outbox_leases";
+  static final String MEMBER_COLLECTION = "account_outbox_relays";
+
+  private final ReactiveMongoTemplate template;
+  private final String owner;
+  private final int partitions;
+  private final Duration ttl;
+
+  public OutboxLeases(ReactiveMongoTemplate template, String owner, int partitions,
+                      Duration ttl) {
+    this.template = template;
+    this.owner = owner;
+    this.partitions = partitions;
+    this.ttl = ttl;
+  }
+
+  public Duration getTtl() {
+    return ttl;
+  }
+
+  /**
+   * Heartbeats, then renews or takes leases up to the fair share of partitions and gives up
+   * the ones beyond it.
+   *
+   * @return the partitions this relay holds until the next renewal.
+   */
+  public Mono<List<Integer>> renew() {
+    Instant now = Instant.now();
+    Instant expiresAt = now.plus(ttl);
+    return heartbeat(expiresAt)
+        .then(template.count(Query.query(Criteria.where("expiresAt").gt(now)),
+            MEMBER_COLLECTION))
+        .flatMap(relays -> {
+          int fairShare = (int) Math.ceil((double) partitions / Math.max(relays, 1));
+          List<Integer> held = new ArrayList<>();
+          // start at a different partition on every relay, so they do not all race for 0
+          int first = Math.floorMod(owner.hashCode(), partitions);
+          return Flux.range(0, partitions)
+              .map(i -> (first + i) % partitions)
+              .concatMap(partition -> held.size() < fairShare
+                  ? acquire(partition, now, expiresAt).doOnNext(acquired -> {
+                    if (acquired) {
+                      held.add(partition);
+                    }
+                  })
+                  : release(partition, now))
+              .then(Mono.fromSupplier(() -> held));
+        });
+  }
+
+  /**
+   * Gives up every lease and leaves the members, so the other relays take over at once.
+   */
+  public Mono<Void> releaseAll() {
+    Instant now = Instant.now();
+    return template.updateMulti(Query.query(Criteria.where("owner").is(owner)),
+            new Update().set("expiresAt", now), LEASE_COLLECTION)
+        .then(template.remove(Query.query(Criteria.where("_id").is(owner)), MEMBER_COLLECTION))
+        .then();
+  }
+
+  private Mono<Void> heartbeat(Instant expiresAt) {
+    return template.upsert(Query.query(Criteria.where("_id").is(owner)),
+        new Update().set("expiresAt", expiresAt), MEMBER_COLLECTION).then();
+  }
+
+  private Mono<Boolean> acquire(int partition, Instant now, Instant expiresAt) {
+    Query query = Query.query(Criteria.where("_id").is(partition)
+        .orOperator(Criteria.where("owner").is(owner), Criteria.where("expiresAt").lt(now)));
+    Update update = new Update().set("owner", owner).set("expiresAt", expiresAt);
+    return template.findAndModify(query, update,
+            FindAndModifyOptions.options().upsert(true).returnNew(true), Document.class,
+            LEASE_COLLECTION)
+        .map(lease -> true)
+        // the lease is held by a live relay: the upsert collides with its document
+        .onErrorResume(DuplicateKeyException.class, e -> Mono.just(false))
+        .defaultIfEmpty(false);
+  }
+
+  private Mono<Boolean> release(int partition, Instant now) {
+    return template.updateFirst(
+            Query.query(Criteria.where("_id").is(partition).and("owner").is(owner)),
+            new Update().set("expiresAt", now), LEASE_COLLECTION)
+        .map(result -> false);
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.OutboxEventEntity;
+import com.duberlyguarnizo.accountmanagementservice.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Publishes the outbox of the partitions this instance holds a lease on. Each cycle reads a
+ * batch of the oldest pending events per partition, sends the whole batch to Kafka, waits for
+ * the broker to acknowledge it and marks it delivered with one update. The producer batches
+ * and compresses the records following its linger.ms, batch.size and compression.type.
+ *
+ * <p>Delivery is at least once: a relay that dies between sending and marking a batch leaves
+ * it pending, and whoever takes the partition over sends it again. Events are keyed by
+ * account id, so the events of an account always land in the same topic partition.
+ */
+@Slf4j
+public class OutboxRelay implements SmartLifecycle {
+  private static final int PARTITION_CONCURRENCY = 4;
+
+  private final AccountOutbox outbox;
+  private final OutboxLeases leases;
+  private final DefaultKafkaProducerFactory<String, String> producerFactory;
+  private final KafkaTemplate<String, String> kafkaTemplate;
+  private final String topic;
+  private final int batchSize;
+  private final Duration pollInterval;
+  private final Scheduler scheduler;
+  private final PipelineMetrics metrics;
+  private volatile List<Integer> heldPartitions = List.of();
+  private volatile long leasesRenewedAt;
+  private volatile Disposable loop;
+
+  public OutboxRelay(AccountOutbox outbox, OutboxLeases leases,
+                     Map<String, Object> producerProperties, String topic, int batchSize,
+                     Duration pollInterval, Scheduler scheduler,
+                     MeterRegistry meterRegistry) {
+    Map<String, Object> properties = new HashMap<>(producerProperties);
+    properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+    properties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+    properties.put(ProducerConfig.ACKS_CONFIG, "all");
+    properties.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+    this.outbox = outbox;
+    this.leases = leases;
+    this.producerFactory = new DefaultKafkaProducerFactory<>(properties);
+    this.kafkaTemplate = new KafkaTemplate<>(producerFactory);
+    this.topic = topic;
+    this.batchSize = batchSize;
+    this.pollInterval = pollInterval;
+    this.metrics = new PipelineMetrics(meterRegistry, "account.outbox.relay");
+    // sending may block on metadata or a full producer buffer, so it runs on the job pool
+    this.scheduler = scheduler;
+  }
+
+  @Override
+  public void start() {
+    loop = Mono.defer(this::relayOnce)
+        .transform(metrics.mono("relayOnce"))
+        .onErrorResume(error -> {
+          log.warn("Outbox relay cycle failed: {}", error.getMessage());
+          return Mono.just(0);
+        })
+        .flatMap(relayed -> relayed > 0
+            ? Mono.just(relayed)
+            : Mono.delay(pollInterval, scheduler).thenReturn(relayed))
+        .repeat()
+        .subscribeOn(scheduler)
+        .subscribe();
+  }
+
+  @Override
+  public void stop() {
+    if (loop != null) {
+      loop.dispose();
+    }
+    leases.releaseAll()
+        .onErrorResume(error -> Mono.empty())
+        .block(Duration.ofSeconds(5));
+    producerFactory.destroy();
+  }
+
+  @Override
+  public boolean isRunning() {
+    return loop != null && !loop.isDisposed();
+  }
+
+  /**
+   * Relays one batch of every held partition.
+   *
+   * @return the number of events relayed.
+   */
+  private Mono<Integer> relayOnce() {
+    return renewLeasesIfDue()
+        .flatMapMany(Flux::fromIterable)
+        .flatMap(this::relayPartition, PARTITION_CONCURRENCY)
+        .reduce(0, Integer::sum);
+  }
+
+  private Mono<List<Integer>> renewLeasesIfDue() {
+    if (System.currentTimeMillis() - leasesRenewedAt < leases.getTtl().toMillis() / 3) {
+      return Mono.just(heldPartitions);
+    }
+    return leases.renew()
+        .doOnNext(partitions -> {
+          if (!partitions.equals(heldPartitions)) {
+            log.info("Outbox relay now holds partitions {}", partitions);
+          }
+          heldPartitions = partitions;
+          leasesRenewedAt = System.currentTimeMillis();
+        })
+        .onErrorResume(error -> {
+          // without renewing, the leases may already belong to someone else
+          log.warn("Could not renew outbox leases: {}", error.getMessage());
+          heldPartitions = List.of();
+          return Mono.just(heldPartitions);
+        });
+  }
+
+  private Mono<Integer> relayPartition(int partition) {
+    return outbox.findPending(partition, batchSize)
+        .collectList()
+        .flatMap(events -> events.isEmpty()
+            ? Mono.just(0)
+            : publish(events)
+            .then(outbox.markDelivered(events.stream()
+                .map(OutboxEventEntity::getId)
+                .collect(Collectors.toList())))
+            .thenReturn(events.size()));
+  }
+
+  private Mono<Void> publish(List<OutboxEventEntity> events) {
+    return Mono.fromCallable(() -> events.stream()
+            .map(event -> kafkaTemplate
+                .send(topic, event.getAccountId(), event.getPayload())
+                .completable())
+            .toArray(CompletableFuture[]::new))
+        .subscribeOn(scheduler)
+        .flatMap(sends -> Mono.fromFuture(CompletableFuture.allOf(sends)));
+  }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Account;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.AssetAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Money;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.ReactorAccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.mapper.AccountMapper;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.AccountBalanceView;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.AssetAccountEntity;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.PassiveAccountEntity;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The Mongo queries and writes of the request paths, straight on {@link ReactiveMongoTemplate}.
+ * The Reactor stack uses it as is; {@link AccountPersistenceImpl} hands the same calls to it and
+ * converts the results to RxJava.
+ */
+public class ReactorAccountPersistenceImpl implements ReactorAccountPersistence {
+  static final String ASSET_COLLECTION = "asset_accounts";
+  static final String PASSIVE_COLLECTION = "passive_accounts";
+  private static final String BALANCE_SUM = "balanceSum";
+  private final ReactiveMongoTemplate template;
+  private final AccountOutbox outbox;
+  private final int cursorBatchSize;
+
+  public ReactorAccountPersistenceImpl(ReactiveMongoTemplate template, AccountOutbox outbox,
+                                       int cursorBatchSize) {
+    this.template = template;
+    this.outbox = outbox;
+    this.cursorBatchSize = cursorBatchSize;
+  }
+
+  @Override
+  public Mono<Long> getAccountBalance(String accountCode) {
+    return routeByAccountCode(accountCode,
+        () -> template.findOne(balanceQuery(Criteria.where("accountCode").is(accountCode)),
+            Document.class, ASSET_COLLECTION).map(ReactorAccountPersistenceImpl::balanceOf),
+        () -> template.findOne(balanceQuery(Criteria.where("accountCode").is(accountCode)),
+            Document.class, PASSIVE_COLLECTION).map(ReactorAccountPersistenceImpl::balanceOf));
+  }
+
+  @Override
+  public Mono<Map<String, Long>> getAccountBalances(Collection<String> accountCodes) {
+    List<String> assetCodes = new ArrayList<>();
+    List<String> passiveCodes = new ArrayList<>();
+    for (String accountCode : accountCodes) {
+      Optional<AccountType> accountType = AccountType.fromAccountCode(accountCode);
+      // legacy codes without a known prefix are looked for in both collections
+      if (accountType.map(AccountType.ASSET::equals).orElse(true)) {
+        assetCodes.add(accountCode);
+      }
+      if (accountType.map(AccountType.PASSIVE::equals).orElse(true)) {
+        passiveCodes.add(accountCode);
+      }
+    }
+    return Flux.merge(balancesIn(ASSET_COLLECTION, assetCodes),
+            balancesIn(PASSIVE_COLLECTION, passiveCodes))
+        .collectMap(document -> document.getString("accountCode"),
+            ReactorAccountPersistenceImpl::balanceOf);
+  }
+
+  @Override
+  public Mono<Long> getAccountBalanceAt(String accountCode, Instant at) {
+    // balances are overwritten in place, only the ledger keeps their history
+    return Mono.error(new UnsupportedOperationException(
+        "Point-in-time balances need the balance ledger (account.ledger.enabled)"));
+  }
+
+  @Override
+  public Mono<Account> getAccountByAccountId(UUID accountId) {
+    String id = AccountMapper.toEntityId(accountId);
+    return template.findById(id, AssetAccountEntity.class)
+        .<Account>map(AccountMapper::toDomain)
+        .switchIfEmpty(Mono.defer(() -> template.findById(id, PassiveAccountEntity.class)
+            .map(AccountMapper::toDomain)));
+  }
+
+  @Override
+  public Mono<Account> getAccountByAccountCode(String accountCode) {
+    return routeByAccountCode(accountCode,
+        () -> findByAccountCode(accountCode, AssetAccountEntity.class)
+            .map(AccountMapper::toDomain),
+        () -> findByAccountCode(accountCode, PassiveAccountEntity.class)
+            .map(AccountMapper::toDomain));
+  }
+
+  @Override
+  public Flux<PassiveAccount> getPassiveAccountsByClientId(UUID clientId) {
+    return template.find(Query.query(Criteria.where("clientId").is(clientId)),
+            PassiveAccountEntity.class)
+        .map(AccountMapper::toDomain);
+  }
+
+  @Override
+  public Mono<Long> getAvailableCreditForClient(UUID clientId) {
+    return Mono.zip(
+        sumBalancesForClient(PassiveAccountEntity.class, clientId),
+        sumBalancesForClient(AssetAccountEntity.class, clientId),
+        Money::subtract);
+  }
+
+  @Override
+  public Flux<AssetAccountDto> getAssetAccountSummariesByClientId(UUID clientId) {
+    Query query = Query.query(Criteria.where("clientId").is(clientId));
+    query.fields().include(AccountMapper.ASSET_SUMMARY_FIELDS).exclude("_id");
+    return template.find(query, Document.class, ASSET_COLLECTION)
+        .map(AccountMapper::toAssetAccountDto);
+  }
+
+  @Override
+  public Flux<PassiveAccountDto> getPassiveAccountSummariesByClientId(UUID clientId) {
+    Query query = Query.query(Criteria.where("clientId").is(clientId));
+    query.fields().include(AccountMapper.PASSIVE_SUMMARY_FIELDS).exclude("_id");
+    return template.find(query, Document.class, PASSIVE_COLLECTION)
+        .map(AccountMapper::toPassiveAccountDto);
+  }
+
+  @Override
+  public Flux<AssetAccountDto> getAssetAccountSummariesByClientIds(Collection<UUID> clientIds) {
+    Query query = Query.query(Criteria.where("clientId").in(clientIds));
+    query.fields().include(AccountMapper.ASSET_SUMMARY_FIELDS).exclude("_id");
+    return template.find(query, Document.class, ASSET_COLLECTION)
+        .map(AccountMapper::toAssetAccountDto);
+  }
+
+  @Override
+  public Flux<PassiveAccountDto> getPassiveAccountSummariesByClientIds(
+      Collection<UUID> clientIds) {
+    Query query = Query.query(Criteria.where("clientId").in(clientIds));
+    query.fields().include(AccountMapper.PASSIVE_SUMMARY_FIELDS).exclude("_id");
+    return template.find(query, Document.class, PASSIVE_COLLECTION)
+        .map(AccountMapper::toPassiveAccountDto);
+  }
+
+  @Override
+  public Flux<AssetAccountDto> getAssetAccountsByType(AssetAccountType assetAccountType,
+                                                      String afterAccountCode, int limit) {
+    Query query = pageByAccountCode("assetAccountType", assetAccountType, afterAccountCode, limit);
+    query.fields().include(AccountMapper.ASSET_SUMMARY_FIELDS).exclude("_id");
+    return template.find(query, Document.class, ASSET_COLLECTION)
+        .map(AccountMapper::toAssetAccountDto);
+  }
+
+  @Override
+  public Flux<PassiveAccountDto> getPassiveAccountsByType(PassiveAccountType passiveAccountType,
+                                                          String afterAccountCode, int limit) {
+    Query query = pageByAccountCode("passiveAccountType", passiveAccountType, afterAccountCode,
+        limit);
+    query.fields().include(AccountMapper.PASSIVE_SUMMARY_FIELDS).exclude("_id");
+    return template.find(query, Document.class, PASSIVE_COLLECTION)
+        .map(AccountMapper::toPassiveAccountDto);
+  }
+
+  @Override
+  public Mono<Void> createAccount(Account account) {
+    Object entity;
+    switch (account.getAccountType()) {
+      case ASSET:
+        entity = AccountMapper.toEntity((AssetAccount) account);
+        break;
+      case PASSIVE:
+        entity = AccountMapper.toEntity((PassiveAccount) account);
+        break;
+      default:
+        return Mono.error(new RuntimeException("Invalid account type"));
+    }
+    return outbox.record(template.insert(entity),
+            inserted -> List.of(outbox.accountCreated(account)))
+        .then();
+  }
+
+  @Override
+  public Mono<Boolean> addToBalance(AccountType accountType, UUID accountId, long amount) {
+    return incrementBalance(accountType, accountId, Query.query(byId(accountId)), amount);
+  }
+
+  @Override
+  public Mono<Boolean> subtractFromBalance(AccountType accountType, UUID accountId,
+                                           long amount) {
+    Update update = new Update().inc("balance", -amount);
+    if (accountType == AccountType.ASSET) {
+      // lowering the debt of a loan or card is a payment
+      update.set("lastPaymentDate", Instant.now());
+    }
+    return applyUpdate(accountType, accountId,
+        Query.query(byId(accountId).and("balance").gte(amount)), update, -amount);
+  }
+
+  @Override
+  public Mono<Boolean> addToBalanceWithinLimit(UUID accountId, long amount) {
+    Document balanceBelowLimit = new Document("$lt", List.of(
+        new Document("$add", List.of("$balance", amount)), "$loanOrCreditCardLimit"));
+    Query query = new BasicQuery(new Document("_id", AccountMapper.toEntityId(accountId))
+        .append("$expr", balanceBelowLimit));
+    return incrementBalance(AccountType.ASSET, accountId, query, amount);
+  }
+
+  /**
+   * One $in query over the accountCode index, projected on the code and the balance.
+   */
+  private Flux<Document> balancesIn(String collection, List<String> accountCodes) {
+    if (accountCodes.isEmpty()) {
+      return Flux.empty();
+    }
+    return template.find(balanceQuery(Criteria.where("accountCode").in(accountCodes)),
+        Document.class, collection);
+  }
+
+  /**
+   * Projects only what the accountCode_balance index holds, so the query is covered by it.
+   */
+  private static Query balanceQuery(Criteria criteria) {
+    return new BasicQuery(criteria.getCriteriaObject(), Document.parse(AccountBalanceView.FIELDS));
+  }
+
+  private static long balanceOf(Document document) {
+    return ((Number) document.get("balance")).longValue();
+  }
+
+  private <T> Mono<T> findByAccountCode(String accountCode, Class<T> entityClass) {
+    return template.findOne(Query.query(Criteria.where("accountCode").is(accountCode)),
+        entityClass);
+  }
+
+  private Mono<Boolean> incrementBalance(AccountType accountType, UUID accountId, Query query,
+                                         long amount) {
+    return applyUpdate(accountType, accountId, query, new Update().inc("balance", amount),
+        amount);
+  }
+
+  /**
+   * Applies the balance change with a single conditional update, so the guard in the query
+   * and the write are evaluated atomically by Mongo on the same document.
+   */
+  private Mono<Boolean> applyUpdate(AccountType accountType, UUID accountId, Query query,
+                                    Update update, long amount) {
+    Mono<Boolean> change = template.updateFirst(query, update, entityClass(accountType))
+        .map(result -> result.getMatchedCount() > 0);
+    return outbox.record(change, applied -> applied
+        ? List.of(outbox.balanceChanged(accountType, accountId, amount))
+        : List.of());
+  }
+
+  /**
+   * Sums the balances of one client's accounts on the server over the clientId index, so a
+   * single document comes back however many accounts the client has.
+   */
+  private Mono<Long> sumBalancesForClient(Class<?> entityClass, UUID clientId) {
+    TypedAggregation<?> aggregation = Aggregation.newAggregation(entityClass,
+        Aggregation.match(Criteria.where("clientId").is(clientId)),
+        Aggregation.group().sum("balance").as(BALANCE_SUM));
+    return template.aggregate(aggregation, Document.class)
+        .next()
+        .map(result -> ((Number) result.get(BALANCE_SUM)).longValue())
+        .defaultIfEmpty(0L);
+  }
+
+  /**
+   * Keyset page over the (type, accountCode) index: resumes after the last code returned
+   * instead of skipping, so every page costs the same no matter how deep it is. Documents are
+   * pulled from the cursor in batches as the subscriber requests them.
+   */
+  private Query pageByAccountCode(String typeField, Enum<?> type, String afterAccountCode,
+                                  int limit) {
+    Criteria criteria = Criteria.where(typeField).is(type.name());
+    if (afterAccountCode != null) {
+      criteria = criteria.and("accountCode").gt(afterAccountCode);
+    }
+    return Query.query(criteria)
+        .with(Sort.by("accountCode"))
+        .limit(limit)
+        .cursorBatchSize(cursorBatchSize);
+  }
+
+  /**
+   * Account codes carry their type in the prefix, so a lookup needs to query a single
+   * collection. Only legacy codes without a known prefix fall back to trying both.
+   */
+  private static <T> Mono<T> routeByAccountCode(String accountCode,
+                                                Supplier<Mono<T>> assetLookup,
+                                                Supplier<Mono<T>> passiveLookup) {
+    return AccountType.fromAccountCode(accountCode)
+        .map(accountType -> accountType == AccountType.ASSET
+            ? assetLookup.get() : passiveLookup.get())
+        .orElseGet(() -> assetLookup.get().switchIfEmpty(Mono.defer(passiveLookup::get)));
+  }
+
+  static Criteria byId(UUID accountId) {
+    return Criteria.where("_id").is(AccountMapper.toEntityId(accountId));
+  }
+
+  private static Class<?> entityClass(AccountType accountType) {
+    switch (accountType) {
+      case ASSET:
+        return AssetAccountEntity.class;
+      case PASSIVE:
+        return PassiveAccountEntity.class;
+      default:
+        throw new IllegalArgumentException("Invalid account type");
+    }
+  }
+}
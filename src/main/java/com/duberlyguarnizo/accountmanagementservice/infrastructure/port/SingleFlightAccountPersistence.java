@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import com.duberlyguarnizo.accountmanagementservice.concurrency.SingleFlight;
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Account;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.AssetAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Lets identical reads of one account that overlap in time share one query, through a
+ * {@link SingleFlight} per kind of read. A burst of requests for the same account costs one
+ * round trip while it lasts; nothing is kept once the query answers.
+ *
+ * <p>A write through this decorator forgets the reads of its account in flight before it
+ * answers, so a read issued after the write completes starts a query that sees it. Balance
+ * changes only carry the account id, so they forget every read by code. Each subscriber gets
+ * its own copy of a shared account, which it is free to change.
+ */
+public class SingleFlightAccountPersistence implements AccountPersistence {
+  private final AccountPersistence delegate;
+  private final SingleFlight<String> balances;
+  private final SingleFlight<String> accountsByCode;
+  private final SingleFlight<UUID> accountsById;
+
+  public SingleFlightAccountPersistence(AccountPersistence delegate,
+                                        MeterRegistry meterRegistry) {
+    this.delegate = delegate;
+    this.balances = new SingleFlight<>("getAccountBalance", meterRegistry);
+    this.accountsByCode = new SingleFlight<>("getAccountByAccountCode", meterRegistry);
+    this.accountsById = new SingleFlight<>("getAccountByAccountId", meterRegistry);
+  }
+
+  @Override
+  public Single<Long> getAccountBalance(String accountCode) {
+    return balances.single(accountCode, () -> delegate.getAccountBalance(accountCode));
+  }
+
+  @Override
+  public Single<Map<String, Long>> getAccountBalances(Collection<String> accountCodes) {
+    return delegate.getAccountBalances(accountCodes);
+  }
+
+  @Override
+  public Maybe<Long> getAccountBalanceAt(String accountCode, Instant at) {
+    return delegate.getAccountBalanceAt(accountCode, at);
+  }
+
+  @Override
+  public Maybe<Account> getAccountByAccountId(UUID accountId) {
+    return accountsById.maybe(accountId, () -> delegate.getAccountByAccountId(accountId))
+        .map(SingleFlightAccountPersistence::copy);
+  }
+
+  @Override
+  public Maybe<Account> getAccountByAccountCode(String accountCode) {
+    return accountsByCode.maybe(accountCode,
+            () -> delegate.getAccountByAccountCode(accountCode))
+        .map(SingleFlightAccountPersistence::copy);
+  }
+
+  @Override
+  public Observable<AssetAccount> getAssetAccountsByClientId(UUID clientId) {
+    return delegate.getAssetAccountsByClientId(clientId);
+  }
+
+  @Override
+  public Observable<PassiveAccount> getPassiveAccountsByClientId(UUID clientId) {
+    return delegate.getPassiveAccountsByClientId(clientId);
+  }
+
+  @Override
+  public Single<Long> getAvailableCreditForClient(UUID clientId) {
+    return delegate.getAvailableCreditForClient(clientId);
+  }
+
+  @Override
+  public Single<Boolean> hasAssetAccountLastPaidBefore(UUID clientId, Instant cutoff) {
+    return delegate.hasAssetAccountLastPaidBefore(clientId, cutoff);
+  }
+
+  @Override
+  public Observable<AssetAccountDto> getAssetAccountSummariesByClientId(UUID clientId) {
+    return delegate.getAssetAccountSummariesByClientId(clientId);
+  }
+
+  @Override
+  public Observable<PassiveAccountDto> getPassiveAccountSummariesByClientId(UUID clientId) {
+    return delegate.getPassiveAccountSummariesByClientId(clientId);
+  }
+
+  @Override
+  public Observable<AssetAccountDto> getAssetAccountSummariesByClientIds(
+      Collection<UUID> clientIds) {
+    return delegate.getAssetAccountSummariesByClientIds(clientIds);
+  }
+
+  @Override
+  public Observable<PassiveAccountDto> getPassiveAccountSummariesByClientIds(
+      Collection<UUID> clientIds) {
+    return delegate.getPassiveAccountSummariesByClientIds(clientIds);
+  }
+
+  @Override
+  public Flowable<AssetAccountDto> getAssetAccountsByType(AssetAccountType assetAccountType,
+                                                          String afterAccountCode, int limit) {
+    return delegate.getAssetAccountsByType(assetAccountType, afterAccountCode, limit);
+  }
+
+  @Override
+  public Flowable<PassiveAccountDto> getPassiveAccountsByType(
+      PassiveAccountType passiveAccountType, String afterAccountCode, int limit) {
+    return delegate.getPassiveAccountsByType(passiveAccountType, afterAccountCode, limit);
+  }
+
+  @Override
+  public Completable createAccount(Account account) {
+    // a lookup in flight for the new code may answer that there is no such account
+    return delegate.createAccount(account)
+        .doOnEvent(error -> forget(account.getAccountId(), account.getAccountCode()));
+  }
+
+  @Override
+  public Single<List<Integer>> createAccounts(List<Account> accounts) {
+    return delegate.createAccounts(accounts).doOnEvent((failed, error) -> accounts.forEach(
+        account -> forget(account.getAccountId(), account.getAccountCode())));
+  }
+
+  @Override
+  public Single<Boolean> addToBalance(AccountType accountType, UUID accountId, long amount) {
+    return delegate.addToBalance(accountType, accountId, amount)
+        .doOnEvent((applied, error) -> forget(accountId, null));
+  }
+
+  @Override
+  public Single<Boolean> subtractFromBalance(AccountType accountType, UUID accountId,
+                                             long amount) {
+    return delegate.subtractFromBalance(accountType, accountId, amount)
+        .doOnEvent((applied, error) -> forget(accountId, null));
+  }
+
+  @Override
+  public Single<Boolean> addToBalanceWithinLimit(UUID accountId, long amount) {
+    return delegate.addToBalanceWithinLimit(accountId, amount)
+        .doOnEvent((applied, error) -> forget(accountId, null));
+  }
+
+  @Override
+  public Completable updateAccount(Account account) {
+    return delegate.updateAccount(account)
+        .doOnEvent(error -> forget(account.getAccountId(), account.getAccountCode()));
+  }
+
+  @Override
+  public Completable deleteAccount(UUID accountId) {
+    return delegate.deleteAccount(accountId).doOnEvent(error -> forget(accountId, null));
+  }
+
+  /**
+   * Runs before the write's outcome is handed on, so a read its caller issues next does not
+   * join a query started before the write.
+   *
+   * @param accountCode null if the write does not carry it.
+   */
+  private void forget(UUID accountId, String accountCode) {
+    if (accountId != null) {
+      accountsById.forget(accountId);
+    }
+    if (accountCode != null) {
+      balances.forget(accountCode);
+      accountsByCode.forget(accountCode);
+    } else {
+      balances.forgetAll();
+      accountsByCode.forgetAll();
+    }
+  }
+
+  private static Account copy(Account account) {
+    Account copy;
+    if (account instanceof AssetAccount) {
+      AssetAccount asset = (AssetAccount) account;
+      copy = new AssetAccount(asset.getAssetAccountType(), asset.getLoanOrCreditCardLimit(),
+          asset.getLastPaymentDate());
+    } else if (account instanceof PassiveAccount) {
+      copy = new PassiveAccount(((PassiveAccount) account).getPassiveAccountType());
+    } else {
+      copy = new Account();
+    }
+    copy.setAccountId(account.getAccountId());
+    copy.setClientId(account.getClientId());
+    copy.setAccountCode(account.getAccountCode());
+    copy.setBalance(account.getBalance());
+    copy.setAccountType(account.getAccountType());
+    copy.setCreatedAt(account.getCreatedAt());
+    return copy;
+  }
+}
@@ -0,0 +1,19 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.repository;
+
+/**
+ * The balance of an account, read on its own. Queries returning it project {@link #FIELDS},
+ * which the accountCode_balance index of both account collections covers, so Mongo answers
+ * them from the index without fetching the document, and the reply is decoded into this view
+ * rather than into a whole entity.
+ */
+public interface AccountBalanceView {
+  String FIELDS = "{'accountCode': 1, 'balance': 1, '_id': 0}";
+
+  String getAccountCode();
+
+  long getBalance();
+}
@@ -13,22 +13,37 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
 
 @Getter
 @Setter
 @Builder
 @AllArgsConstructor
 @Document(collection = "asset_accounts")
+@CompoundIndex(name = "assetAccountType_accountCode", def = "{'assetAccountType': 1, 'accountCode': 1}")
+@CompoundIndex(name = "accountCode_balance", def = "{'accountCode': 1, 'balance': 1}")
+@CompoundIndex(name = "clientId_lastPaymentDate", def = "{'clientId': 1, 'lastPaymentDate': 1}")
 public class AssetAccountEntity {
   @Id
   private String id;
+  @Indexed(unique = true)
   private String accountCode;
-  private double balance;
-  private double loanOrCreditCardLimit;
+  @Field(targetType = FieldType.INT64)
+  private long balance;
+  @Field(targetType = FieldType.INT64)
+  private long loanOrCreditCardLimit;
+  @Indexed
   private UUID clientId;
   private AssetAccountType assetAccountType;
   private AccountType accountType;
   private Instant createdAt;
+  /**
+   * Seq of the last ledger entry folded into balance, null if the ledger never wrote it.
+   */
+  private Long ledgerSeq;
   private Instant lastPaymentDate;
 }
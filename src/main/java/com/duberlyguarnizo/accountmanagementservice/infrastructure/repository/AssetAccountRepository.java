@@ -7,6 +7,7 @@ package com.duberlyguarnizo.accountmanagementservice.infrastructure.repository;
 import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Observable;
 import java.util.UUID;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.repository.reactive.RxJava3CrudRepository;
 import org.springframework.stereotype.Repository;
 
@@ -14,5 +15,8 @@ import org.springframework.stereotype.Repository;
 public interface AssetAccountRepository extends RxJava3CrudRepository<AssetAccountEntity, String> {
   Maybe<AssetAccountEntity> findByAccountCode(String accountCode);
 
+  @Query(value = "{'accountCode': ?0}", fields = AccountBalanceView.FIELDS)
+  Maybe<AccountBalanceView> findBalanceByAccountCode(String accountCode);
+
   Observable<AssetAccountEntity> findByClientId(UUID clientId);
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.repository;
+
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@Document(collection = "idempotency_keys")
+public class IdempotencyKeyEntity {
+  public static final String IN_PROGRESS = "IN_PROGRESS";
+  public static final String COMPLETED = "COMPLETED";
+  /**
+   * The operation failed in a way that does not tell whether it was applied.
+   */
+  public static final String UNKNOWN = "UNKNOWN";
+
+  @Id
+  private String key;
+  private String fingerprint;
+  private String status;
+  /**
+   * Simple name of the exception the operation failed with, null if it succeeded.
+   */
+  private String errorType;
+  private String errorMessage;
+  private Instant createdAt;
+  /**
+   * End of the lease while the key is in progress, end of its retention once it has an outcome.
+   */
+  @Indexed(expireAfterSeconds = 0)
+  private Instant expiresAt;
+
+  public boolean isCompleted() {
+    return COMPLETED.equals(status);
+  }
+
+  public boolean isUnknown() {
+    return UNKNOWN.equals(status);
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.repository;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+/**
+ * One balance change of an account. Entries are only ever inserted; seq numbers the changes of
+ * an account from 1 without gaps. amount and balanceAfter, the balance once the change is
+ * applied, are both in minor units. pending is true until the entry is folded into the account
+ * document, and then removed, so the pending index only holds the entries still waiting.
+ */
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@Document(collection = "account_ledger")
+@CompoundIndex(name = "accountId_seq", def = "{'accountId': 1, 'seq': 1}", unique = true)
+@CompoundIndex(name = "accountId_createdAt", def = "{'accountId': 1, 'createdAt': 1}")
+@CompoundIndex(name = "pending_accountId_seq", def = "{'pending': 1, 'accountId': 1, 'seq': 1}",
+    partialFilter = "{'pending': true}")
+public class LedgerEntryEntity {
+  public static final String PENDING = "pending";
+
+  @Id
+  private String id;
+  private String accountId;
+  private long seq;
+  private AccountType accountType;
+  @Field(targetType = FieldType.INT64)
+  private long amount;
+  @Field(targetType = FieldType.INT64)
+  private long balanceAfter;
+  private Instant createdAt;
+  private Boolean pending;
+}
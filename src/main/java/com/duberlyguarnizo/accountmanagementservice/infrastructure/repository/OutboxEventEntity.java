@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.repository;
+
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@Document(collection = "account_outbox")
+@CompoundIndex(name = "partition_deliveredAt", def = "{'partition': 1, 'deliveredAt': 1, '_id': 1}")
+public class OutboxEventEntity {
+  @Id
+  private String id;
+  private int partition;
+  private String accountId;
+  private String type;
+  private String payload;
+  private Instant createdAt;
+  @Indexed(expireAfterSeconds = 86400)
+  private Instant deliveredAt;
+}
@@ -13,20 +13,33 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
 
 @Getter
 @Setter
 @Builder
 @AllArgsConstructor
 @Document(collection = "passive_accounts")
+@CompoundIndex(name = "passiveAccountType_accountCode", def = "{'passiveAccountType': 1, 'accountCode': 1}")
+@CompoundIndex(name = "accountCode_balance", def = "{'accountCode': 1, 'balance': 1}")
 public class PassiveAccountEntity {
   @Id
   private String id;
+  @Indexed(unique = true)
   private String accountCode;
-  private double balance;
+  @Field(targetType = FieldType.INT64)
+  private long balance;
+  @Indexed
   private UUID clientId;
   private PassiveAccountType passiveAccountType;
   private AccountType accountType;
   private Instant createdAt;
+  /**
+   * Seq of the last ledger entry folded into balance, null if the ledger never wrote it.
+   */
+  private Long ledgerSeq;
 }
@@ -7,6 +7,7 @@ package com.duberlyguarnizo.accountmanagementservice.infrastructure.repository;
 import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Observable;
 import java.util.UUID;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.repository.reactive.RxJava3CrudRepository;
 import org.springframework.stereotype.Repository;
 
@@ -15,5 +16,8 @@ public interface PassiveAccountRepository extends
     RxJava3CrudRepository<PassiveAccountEntity, String> {
   Maybe<PassiveAccountEntity> findByAccountCode(String accountCode);
 
+  @Query(value = "{'accountCode': ?0}", fields = AccountBalanceView.FIELDS)
+  Maybe<AccountBalanceView> findBalanceByAccountCode(String accountCode);
+
   Observable<PassiveAccountEntity> findByClientId(UUID clientId);
 }
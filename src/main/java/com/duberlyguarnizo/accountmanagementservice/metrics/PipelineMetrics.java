@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.metrics;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.CompletableTransformer;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.FlowableTransformer;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.MaybeTransformer;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.ObservableTransformer;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.core.SingleTransformer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Times RxJava and Reactor pipelines from subscription to their terminal signal, and counts the
+ * subscriptions still in flight. Every pipeline of a component is registered under one timer
+ * name and told apart by its method tag:
+ *
+ * <ul>
+ *   <li>{@code <name>} timer, tagged method, outcome (success, error or cancelled) and
+ *   exception (the simple class name, or none), with a percentile histogram.</li>
+ *   <li>{@code <name>.active} gauge, tagged method.</li>
+ * </ul>
+ *
+ * <p>Methods are constants of the calling code and exceptions are classes, so the number of
+ * series stays bounded; never pass anything that comes from a request as the method.
+ */
+public class PipelineMetrics {
+  private static final Duration MINIMUM_EXPECTED = Duration.ofMillis(1);
+  private static final Duration MAXIMUM_EXPECTED = Duration.ofSeconds(30);
+
+  private final MeterRegistry registry;
+  private final String name;
+  private final Clock clock;
+  private final Map<String, Pipeline> pipelines = new ConcurrentHashMap<>();
+
+  public PipelineMetrics(MeterRegistry registry, String name) {
+    this.registry = registry;
+    this.name = name;
+    this.clock = registry.config().clock();
+  }
+
+  public <T> SingleTransformer<T, T> single(String method) {
+    Pipeline pipeline = pipeline(method);
+    return upstream -> Single.defer(() -> {
+      Call call = pipeline.start();
+      return upstream.doOnSuccess(value -> call.success())
+          .doOnError(call::error)
+          .doOnDispose(call::cancel);
+    });
+  }
+
+  public <T> MaybeTransformer<T, T> maybe(String method) {
+    Pipeline pipeline = pipeline(method);
+    return upstream -> Maybe.defer(() -> {
+      Call call = pipeline.start();
+      return upstream.doOnSuccess(value -> call.success())
+          .doOnComplete(call::success)
+          .doOnError(call::error)
+          .doOnDispose(call::cancel);
+    });
+  }
+
+  public CompletableTransformer completable(String method) {
+    Pipeline pipeline = pipeline(method);
+    return upstream -> Completable.defer(() -> {
+      Call call = pipeline.start();
+      return upstream.doOnComplete(call::success)
+          .doOnError(call::error)
+          .doOnDispose(call::cancel);
+    });
+  }
+
+  public <T> ObservableTransformer<T, T> observable(String method) {
+    Pipeline pipeline = pipeline(method);
+    return upstream -> Observable.defer(() -> {
+      Call call = pipeline.start();
+      return upstream.doOnComplete(call::success)
+          .doOnError(call::error)
+          .doOnDispose(call::cancel);
+    });
+  }
+
+  public <T> FlowableTransformer<T, T> flowable(String method) {
+    Pipeline pipeline = pipeline(method);
+    return upstream -> Flowable.defer(() -> {
+      Call call = pipeline.start();
+      return upstream.doOnComplete(call::success)
+          .doOnError(call::error)
+          .doOnCancel(call::cancel);
+    });
+  }
+
+  /**
+   * For {@link Mono#transform}; an empty Mono counts as a success.
+   */
+  public <T> Function<Mono<T>, Mono<T>> mono(String method) {
+    Pipeline pipeline = pipeline(method);
+    return upstream -> Mono.defer(() -> {
+      Call call = pipeline.start();
+      return upstream.doOnSuccess(value -> call.success())
+          .doOnError(call::error)
+          .doOnCancel(call::cancel);
+    });
+  }
+
+  public <T> Function<Flux<T>, Flux<T>> flux(String method) {
+    Pipeline pipeline = pipeline(method);
+    return upstream -> Flux.defer(() -> {
+      Call call = pipeline.start();
+      return upstream.doOnComplete(call::success)
+          .doOnError(call::error)
+          .doOnCancel(call::cancel);
+    });
+  }
+
+  private Pipeline pipeline(String method) {
+    return pipelines.computeIfAbsent(method, Pipeline::new);
+  }
+
+  private final class Pipeline {
+    private final String method;
+    private final AtomicInteger active = new AtomicInteger();
+    private final Timer succeeded;
+    private final Timer cancelled;
+    private final Map<Class<?>, Timer> failed = new ConcurrentHashMap<>();
+
+    private Pipeline(String method) {
+      this.method = method;
+      this.succeeded = timer("success", "none");
+      this.cancelled = timer("cancelled", "none");
+      Gauge.builder(name + ".active", active, AtomicInteger::get)
+          .description("Subscriptions that have not terminated yet")
+          .tag("method", method)
+          .register(registry);
+    }
+
+    private Timer timer(String outcome, String exception) {
+      return Timer.builder(name)
+          .description("Time from subscription to the terminal signal")
+          .tag("method", method)
+          .tag("outcome", outcome)
+          .tag("exception", exception)
+          .publishPercentileHistogram()
+          .minimumExpectedValue(MINIMUM_EXPECTED)
+          .maximumExpectedValue(MAXIMUM_EXPECTED)
+          .register(registry);
+    }
+
+    private Call start() {
+      active.incrementAndGet();
+      return new Call(this, clock.monotonicTime());
+    }
+
+    private void record(Timer timer, long startedAt) {
+      active.decrementAndGet();
+      timer.record(clock.monotonicTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * One subscription. Only the first of its terminal signal and a cancellation is recorded.
+   */
+  private static final class Call extends AtomicBoolean {
+    private final Pipeline pipeline;
+    private final long startedAt;
+
+    private Call(Pipeline pipeline, long startedAt) {
+      this.pipeline = pipeline;
+      this.startedAt = startedAt;
+    }
+
+    private void success() {
+      if (compareAndSet(false, true)) {
+        pipeline.record(pipeline.succeeded, startedAt);
+      }
+    }
+
+    private void error(Throwable error) {
+      if (compareAndSet(false, true)) {
+        Timer timer = pipeline.failed.computeIfAbsent(error.getClass(),
+            type -> pipeline.timer("error", type.getSimpleName()));
+        pipeline.record(timer, startedAt);
+      }
+    }
+
+    private void cancel() {
+      if (compareAndSet(false, true)) {
+        pipeline.record(pipeline.cancelled, startedAt);
+      }
+    }
+  }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.application.delegate;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.duberlyguarnizo.accountmanagementservice.application.rest.AccountUseCases;
+import com.duberlyguarnizo.accountmanagementservice.application.rest.ReactorAccountUseCases;
+import com.duberlyguarnizo.accountmanagementservice.application.rest.RxAccountUseCasesAdapter;
+import com.duberlyguarnizo.accountmanagementservice.concurrency.AccountSchedulers;
+import com.duberlyguarnizo.accountmanagementservice.concurrency.BoundedScheduler;
+import com.duberlyguarnizo.accountmanagementservice.concurrency.Bulkhead;
+import com.duberlyguarnizo.accountmanagementservice.domain.AccountBalanceDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.AccountBalancesQueryDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountCreationDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.BalanceOperationDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountCreationDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.ClientType;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.ReactorAccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.AccountCodeAllocator;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.AssetAccountService;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.IdempotencyStore;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.InterServiceOperations;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.PassiveAccountService;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.PastDueDebtCheck;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.ReactorAssetAccountService;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.ReactorPassiveAccountService;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.port.BulkheadAccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.port.BulkheadReactorAccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.port.ClientServiceLookup;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.port.ClientTypeReplica;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.port.InterServiceOperationsImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.subjects.CompletableSubject;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.adapter.rxjava.RxJava3Adapter;
+import reactor.blockhound.BlockHound;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+/**
+ * Runs the request paths on Reactor non-blocking threads with BlockHound installed, so any
+ * blocking call between the delegate and the persistence port fails the test: creations,
+ * balance reads and changes, and listings read a page at a time through the bulkheads. Both
+ * stacks are run: the RxJava services behind the adapter, and the Reactor services.
+ *
+ * <p>The client type lookup is run while the replica catches up, which waits on a timer rather
+ * than a thread. Only LedgerSnapshotter.stop() blocks, on purpose: it runs on the thread that
+ * closes the application context, never on a request thread, and holds the shutdown until the
+ * last balances are folded into their snapshots.
+ */
+class AssetAccountApiDelegateImpTest {
+  private static final String ASSET_CODE = "19120100000001";
+  private static final String PASSIVE_CODE = "19110100000001";
+  private static final int PAGE_SIZE = 2;
+  private static final List<String> STORED_CODES = List.of("00000001", "00000002", "00000003",
+      "00000004", "00000005");
+
+  private AtomicBoolean inserted;
+  private AssetAccountApiDelegateImp rxDelegate;
+  private AssetAccountApiDelegateImp reactorDelegate;
+
+  @BeforeAll
+  static void installBlockHound() {
+    // SecureRandom reads /dev/urandom, which never blocks on a seeded kernel
+    BlockHound.install(builder -> builder
+        .allowBlockingCallsInside("java.util.UUID", "randomUUID"));
+  }
+
+  @BeforeEach
+  void setUp() {
+    AccountPersistence persistence = mock(AccountPersistence.class);
+    InterServiceOperations operations = mock(InterServiceOperations.class);
+    when(operations.getClientType(any())).thenReturn(Maybe.just(ClientType.REGULAR_CLIENT));
+    AccountCodeAllocator codeAllocator = mock(AccountCodeAllocator.class);
+    when(codeAllocator.nextAssetAccountCode(any())).thenReturn(Single.just("19120100000001"));
+    when(codeAllocator.nextPassiveAccountCode(any())).thenReturn(Single.just("19110100000001"));
+    inserted = new AtomicBoolean(false);
+    when(persistence.getAssetAccountsByClientId(any())).thenReturn(Observable.empty());
+    when(persistence.getPassiveAccountsByClientId(any())).thenReturn(Observable.empty());
+    when(persistence.getAvailableCreditForClient(any())).thenReturn(Single.just(0L));
+    when(persistence.createAccount(any())).thenReturn(
+        Completable.timer(50, TimeUnit.MILLISECONDS).doOnComplete(() -> inserted.set(true)));
+    when(persistence.getAccountBalances(any())).thenAnswer(call ->
+        Single.just(storedBalances(call.getArgument(0))));
+    when(persistence.addToBalance(any(), any(), anyLong())).thenReturn(Single.just(true));
+    when(persistence.subtractFromBalance(any(), any(), anyLong())).thenReturn(Single.just(true));
+    when(persistence.addToBalanceWithinLimit(any(), anyLong())).thenReturn(Single.just(true));
+    when(persistence.getAssetAccountsByType(any(), any(), anyInt())).thenAnswer(call ->
+        Flowable.fromIterable(page(call.getArgument(1), call.getArgument(2),
+            code -> AssetAccountDto.builder().accountCode(code).build())));
+    when(persistence.getPassiveAccountsByType(any(), any(), anyInt())).thenAnswer(call ->
+        Flowable.fromIterable(page(call.getArgument(1), call.getArgument(2),
+            code -> PassiveAccountDto.builder().accountCode(code).build())));
+    persistence = new BulkheadAccountPersistence(persistence, bulkhead(), PAGE_SIZE);
+    PastDueDebtCheck pastDueDebtCheck = mock(PastDueDebtCheck.class);
+    when(pastDueDebtCheck.hasPastDueDebt(any())).thenReturn(Single.just(false));
+    AccountUseCases useCases = new AccountUseCases(
+        new AssetAccountService(persistence, operations, codeAllocator, pastDueDebtCheck),
+        new PassiveAccountService(operations, persistence, codeAllocator, pastDueDebtCheck),
+        mock(IdempotencyStore.class), new SimpleMeterRegistry(), 500);
+    rxDelegate = new AssetAccountApiDelegateImp(new RxAccountUseCasesAdapter(useCases));
+
+    ReactorAccountPersistence reactorPersistence = mock(ReactorAccountPersistence.class);
+    when(reactorPersistence.getPassiveAccountsByClientId(any())).thenReturn(Flux.empty());
+    when(reactorPersistence.getAvailableCreditForClient(any())).thenReturn(Mono.just(0L));
+    when(reactorPersistence.getAccountBalances(any())).thenAnswer(call ->
+        Mono.just(storedBalances(call.getArgument(0))));
+    when(reactorPersistence.createAccount(any())).thenReturn(
+        Mono.delay(Duration.ofMillis(50)).doOnNext(tick -> inserted.set(true)).then());
+    Mono<Boolean> applied = Mono.delay(Duration.ofMillis(1)).thenReturn(true);
+    when(reactorPersistence.addToBalance(any(), any(), anyLong())).thenReturn(applied);
+    when(reactorPersistence.subtractFromBalance(any(), any(), anyLong())).thenReturn(applied);
+    when(reactorPersistence.addToBalanceWithinLimit(any(), anyLong())).thenReturn(applied);
+    when(reactorPersistence.getAssetAccountsByType(any(), any(), anyInt())).thenAnswer(call ->
+        Flux.fromIterable(page(call.getArgument(1), call.getArgument(2),
+                code -> AssetAccountDto.builder().accountCode(code).build()))
+            .delayElements(Duration.ofMillis(1)));
+    when(reactorPersistence.getPassiveAccountsByType(any(), any(), anyInt())).thenAnswer(call ->
+        Flux.fromIterable(page(call.getArgument(1), call.getArgument(2),
+                code -> PassiveAccountDto.builder().accountCode(code).build()))
+            .delayElements(Duration.ofMillis(1)));
+    reactorPersistence = new BulkheadReactorAccountPersistence(reactorPersistence, bulkhead(),
+        PAGE_SIZE);
+    reactorDelegate = new AssetAccountApiDelegateImp(new ReactorAccountUseCases(
+        new ReactorAssetAccountService(reactorPersistence, codeAllocator, pastDueDebtCheck),
+        new ReactorPassiveAccountService(operations, reactorPersistence, codeAllocator,
+            pastDueDebtCheck),
+        useCases, mock(IdempotencyStore.class), new SimpleMeterRegistry()));
+  }
+
+  private static Map<String, Long> storedBalances(Collection<String> accountCodes) {
+    Map<String, Long> stored = Map.of(ASSET_CODE, 2500L, PASSIVE_CODE, 10000L);
+    return accountCodes.stream()
+        .filter(stored::containsKey)
+        .collect(Collectors.toMap(code -> code, stored::get));
+  }
+
+  private static Bulkhead bulkhead() {
+    return new Bulkhead("persistence", 4, 16, new SimpleMeterRegistry());
+  }
+
+  /**
+   * The stored accounts after the given code, up to the size, as a keyset query returns them.
+   */
+  private static <T> List<T> page(String afterAccountCode, int size,
+                                  Function<String, T> account) {
+    return STORED_CODES.stream()
+        .filter(code -> afterAccountCode == null || code.compareTo(afterAccountCode) > 0)
+        .limit(size)
+        .map(account)
+        .collect(Collectors.toList());
+  }
+
+  private AssetAccountApiDelegateImp delegate(boolean reactorStack) {
+    return reactorStack ? reactorDelegate : rxDelegate;
+  }
+
+  @Test
+  void blockHoundIsActive() {
+    StepVerifier.create(Mono.delay(Duration.ofMillis(1))
+            .doOnNext(tick -> {
+              try {
+                Thread.sleep(10);
+              } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+              }
+            }))
+        .expectErrorMatches(error -> error instanceof BlockingOperationError)
+        .verify();
+  }
+
+  @ParameterizedTest
+  @ValueSource(booleans = {false, true})
+  void createPassiveAccountDoesNotBlockAndAnswersAfterInsert(boolean reactorStack) {
+    var dto = PassiveAccountCreationDto.builder()
+        .balance(100.0)
+        .clientId(UUID.randomUUID())
+        .passiveAccountType(PassiveAccountCreationDto.PassiveAccountTypeEnum.SAVINGS_ACCOUNT)
+        .build();
+
+    StepVerifier.create(Mono.defer(() -> delegate(reactorStack)
+                .createPassiveAccount(Mono.just(dto), null))
+            .subscribeOn(Schedulers.parallel()))
+        .expectNextMatches(response -> response.getStatusCode() == HttpStatus.CREATED
+                                       && inserted.get())
+        .verifyComplete();
+  }
+
+  @ParameterizedTest
+  @ValueSource(booleans = {false, true})
+  void createAssetAccountDoesNotBlockAndAnswersAfterInsert(boolean reactorStack) {
+    var dto = AssetAccountCreationDto.builder()
+        .balance(0.0)
+        .clientId(UUID.randomUUID())
+        .assetAccountType(AssetAccountCreationDto.AssetAccountTypeEnum.CREDIT_CARD_ACCOUNT)
+        .build();
+
+    StepVerifier.create(Mono.defer(() -> delegate(reactorStack)
+                .createAssetAccount(Mono.just(dto), null))
+            .subscribeOn(Schedulers.parallel()))
+        .expectNextMatches(response -> response.getStatusCode() == HttpStatus.CREATED
+                                       && inserted.get())
+        .verifyComplete();
+  }
+
+  @ParameterizedTest
+  @ValueSource(booleans = {false, true})
+  void balancesOfTheAccountsFoundComeBackInRequestOrder(boolean reactorStack) {
+    var query = AccountBalancesQueryDto.builder()
+        .accountCodes(List.of(PASSIVE_CODE, "19110100009999", ASSET_CODE, PASSIVE_CODE))
+        .build();
+
+    StepVerifier.create(Mono.defer(() -> delegate(reactorStack)
+                .getAccountBalances(Mono.just(query), null))
+            .flatMap(response -> response.getBody().collectList())
+            .subscribeOn(Schedulers.parallel()))
+        .expectNext(List.of(
+            AccountBalanceDto.builder().accountCode(PASSIVE_CODE).balance(100.0).build(),
+            AccountBalanceDto.builder().accountCode(ASSET_CODE).balance(25.0).build()))
+        .verifyComplete();
+  }
+
+  @ParameterizedTest
+  @ValueSource(booleans = {false, true})
+  void balanceChangesDoNotBlock(boolean reactorStack) {
+    UUID accountId = UUID.randomUUID();
+    Mono<BalanceOperationDto> amount = Mono.fromSupplier(() -> new BalanceOperationDto(10.0));
+    AssetAccountApiDelegateImp delegate = delegate(reactorStack);
+
+    StepVerifier.create(Flux.defer(() -> Flux.concat(
+                delegate.increaseAccountBalance(accountId, amount, null, null),
+                delegate.decreaseAccountBalance(accountId, amount, null, null),
+                delegate.increaseCreditCardDebt(accountId, amount, null, null),
+                delegate.payLoanOrCreditCard(accountId, amount, null, null)))
+            .map(ResponseEntity::getStatusCode)
+            .subscribeOn(Schedulers.parallel()))
+        .expectNext(HttpStatus.NO_CONTENT, HttpStatus.NO_CONTENT, HttpStatus.NO_CONTENT,
+            HttpStatus.NO_CONTENT)
+        .verifyComplete();
+  }
+
+  @ParameterizedTest
+  @ValueSource(booleans = {false, true})
+  void listingsReadPageByPageDoNotBlock(boolean reactorStack) {
+    MockServerWebExchange exchange = MockServerWebExchange.from(
+        MockServerHttpRequest.get("/accounts").accept(MediaType.APPLICATION_NDJSON));
+    AssetAccountApiDelegateImp delegate = delegate(reactorStack);
+
+    StepVerifier.create(Flux.defer(() -> Flux.concat(
+                delegate.getAssetAccounts("credit_card", null, null, exchange)
+                    .flatMapMany(response -> response.getBody()
+                        .map(AssetAccountDto::getAccountCode)),
+                delegate.getPassiveAccounts("savings", "00000002", 2, exchange)
+                    .flatMapMany(response -> response.getBody()
+                        .map(PassiveAccountDto::getAccountCode))))
+            .subscribeOn(Schedulers.parallel()))
+        .expectNextSequence(STORED_CODES)
+        .expectNext("00000003", "00000004")
+        .verifyComplete();
+  }
+
+  @Test
+  void clientTypeLookupWaitsForTheReplicaWithoutBlocking() {
+    UUID clientId = UUID.randomUUID();
+    CompletableSubject caughtUp = CompletableSubject.create();
+    ClientTypeReplica replica = mock(ClientTypeReplica.class);
+    when(replica.isEnabled()).thenReturn(true);
+    when(replica.caughtUp()).thenReturn(caughtUp);
+    when(replica.getClientType(clientId)).thenReturn(ClientType.CORPORATE_CLIENT);
+    BoundedScheduler interService = mock(BoundedScheduler.class);
+    when(interService.scheduler()).thenReturn(Schedulers.parallel());
+    AccountSchedulers schedulers = mock(AccountSchedulers.class);
+    when(schedulers.getInterService()).thenReturn(interService);
+    var operations = new InterServiceOperationsImpl(replica, mock(ClientServiceLookup.class),
+        Duration.ofSeconds(5), schedulers, new SimpleMeterRegistry(), 4, 16);
+
+    StepVerifier.create(Mono.defer(() -> RxJava3Adapter.maybeToMono(
+                operations.getClientType(clientId)))
+            .subscribeOn(Schedulers.parallel()))
+        .then(() -> Schedulers.parallel().schedule(caughtUp::onComplete, 10,
+            TimeUnit.MILLISECONDS))
+        .expectNext(ClientType.CORPORATE_CLIENT)
+        .verifyComplete();
+  }
+
+  @Test
+  void tooManyAccountCodesAreABadRequest() {
+    var query = AccountBalancesQueryDto.builder()
+        .accountCodes(IntStream.range(0, 1001)
+            .mapToObj(i -> String.format("191101%08d", i))
+            .collect(Collectors.toList()))
+        .build();
+
+    StepVerifier.create(rxDelegate.getAccountBalances(Mono.just(query), null))
+        .expectNextMatches(response -> response.getStatusCode() == HttpStatus.BAD_REQUEST)
+        .verifyComplete();
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.application.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.AccountListForUserDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.PassiveAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.AssetAccountService;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.IdempotencyStore;
+import com.duberlyguarnizo.accountmanagementservice.domain.service.PassiveAccountService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Compares the zipped portfolio fetch with fetching both collections one after the other,
+ * with every collection query taking a simulated round trip.
+ */
+class AccountUseCasesTest {
+  private static final long ROUND_TRIP_MS = 40;
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 10, 1000})
+  void portfolioQueriesRunConcurrently(int accountsPerCollection) {
+    UUID clientId = UUID.randomUUID();
+    AssetAccountService assetService = mock(AssetAccountService.class);
+    PassiveAccountService passiveService = mock(PassiveAccountService.class);
+    when(assetService.getAssetAccountSummariesForClient(clientId)).thenReturn(
+        Observable.range(0, accountsPerCollection)
+            .map(i -> AssetAccountDto.builder().balance((double) i).build())
+            .delaySubscription(ROUND_TRIP_MS, TimeUnit.MILLISECONDS));
+    when(passiveService.getPassiveAccountSummariesForClient(clientId)).thenReturn(
+        Observable.range(0, accountsPerCollection)
+            .map(i -> PassiveAccountDto.builder().balance((double) i).build())
+            .delaySubscription(ROUND_TRIP_MS, TimeUnit.MILLISECONDS));
+    AccountUseCases useCases = new AccountUseCases(assetService, passiveService,
+        mock(IdempotencyStore.class), new SimpleMeterRegistry(), 500);
+
+    Single<AccountListForUserDto> sequential = passiveService
+        .getPassiveAccountSummariesForClient(clientId).toList()
+        .flatMap(passive -> assetService.getAssetAccountSummariesForClient(clientId).toList()
+            .map(asset -> AccountListForUserDto.builder()
+                .passiveAccounts(passive)
+                .assetAccounts(asset)
+                .build()));
+
+    // warm up both paths before timing them
+    useCases.getAllAccountsForClient(clientId).blockingGet();
+    sequential.blockingGet();
+    long concurrentMs = timeMs(() -> useCases.getAllAccountsForClient(clientId));
+    long sequentialMs = timeMs(() -> sequential);
+
+    System.out.printf("%d accounts per collection: zipped %d ms, sequential %d ms%n",
+        accountsPerCollection, concurrentMs, sequentialMs);
+    AccountListForUserDto result = useCases.getAllAccountsForClient(clientId).blockingGet();
+    assertThat(result.getPassiveAccounts()).hasSize(accountsPerCollection);
+    assertThat(result.getAssetAccounts()).hasSize(accountsPerCollection);
+    assertThat(concurrentMs).isLessThan(sequentialMs);
+  }
+
+  private static long timeMs(Supplier<Single<AccountListForUserDto>> fetch) {
+    long start = System.nanoTime();
+    fetch.get().blockingGet();
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.concurrency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.observers.TestObserver;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Schedulers;
+
+class BatchLoaderTest {
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final List<List<String>> calls = new CopyOnWriteArrayList<>();
+
+  // every key has a value but "missing"
+  private final Function<List<String>, Single<Map<String, Integer>>> lengths = keys -> {
+    calls.add(keys);
+    return Single.just(keys.stream()
+        .filter(key -> !key.equals("missing"))
+        .collect(Collectors.toMap(key -> key, String::length)));
+  };
+
+  private BatchLoader<String, Integer> loader(Duration window, int maximumBatchSize) {
+    return new BatchLoader<>("test", lengths, window, maximumBatchSize, Schedulers.parallel(),
+        registry);
+  }
+
+  @Test
+  void lookupsWithinTheWindowShareOneCall() throws InterruptedException {
+    BatchLoader<String, Integer> loader = loader(Duration.ofMillis(50), 1000);
+    List<TestObserver<Integer>> observers = new ArrayList<>();
+    for (int i = 0; i < 100; ++i) {
+      // every key asked for twice
+      observers.add(loader.load("key-" + i % 50).test());
+    }
+    TestObserver<Integer> missing = loader.load("missing").test();
+
+    for (TestObserver<Integer> observer : observers) {
+      observer.await(5, TimeUnit.SECONDS);
+      observer.assertValueCount(1);
+    }
+    missing.await(5, TimeUnit.SECONDS);
+    missing.assertComplete().assertNoValues();
+    assertThat(calls).hasSize(1);
+    assertThat(calls.get(0)).hasSize(51).doesNotHaveDuplicates();
+    assertThat(registry.get("loader.batch.size").tag("name", "test").summary().totalAmount())
+        .isEqualTo(51);
+  }
+
+  @Test
+  void aFullBatchGoesOutWithoutWaitingForTheWindow() {
+    BatchLoader<String, Integer> loader = loader(Duration.ofHours(1), 10);
+    List<TestObserver<Integer>> observers = new ArrayList<>();
+    for (int i = 0; i < 25; ++i) {
+      observers.add(loader.load("key-" + i).test());
+    }
+
+    assertThat(calls).hasSize(2).allSatisfy(keys -> assertThat(keys).hasSize(10));
+    observers.subList(0, 20).forEach(observer -> observer.assertValueCount(1));
+    observers.subList(20, 25).forEach(TestObserver::assertEmpty);
+  }
+
+  @Test
+  void aFailedCallFailsEveryCallerOfTheBatch() throws InterruptedException {
+    BatchLoader<String, Integer> loader = new BatchLoader<>("test",
+        keys -> Single.error(new IllegalStateException("down")), Duration.ofMillis(1), 100,
+        Schedulers.parallel(), registry);
+
+    TestObserver<Integer> first = loader.load("a").test();
+    TestObserver<Integer> second = loader.load("b").test();
+
+    first.await(5, TimeUnit.SECONDS);
+    second.await(5, TimeUnit.SECONDS);
+    first.assertError(IllegalStateException.class);
+    second.assertError(IllegalStateException.class);
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.concurrency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+class BoundedSchedulerTest {
+  private static final int THREADS = 2;
+  private static final int QUEUE_CAPACITY = 4;
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final BoundedScheduler pool =
+      new BoundedScheduler("test", THREADS, QUEUE_CAPACITY, registry);
+  private final CountDownLatch unblock = new CountDownLatch(1);
+
+  @AfterEach
+  void tearDown() {
+    unblock.countDown();
+    pool.close();
+  }
+
+  private void block(CountDownLatch started) {
+    started.countDown();
+    try {
+      unblock.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Test
+  void aSaturatedPoolRejectsInsteadOfGrowing() throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(THREADS);
+    for (int i = 0; i < THREADS; ++i) {
+      pool.scheduler().schedule(() -> block(started));
+    }
+    assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+    for (int i = 0; i < QUEUE_CAPACITY; ++i) {
+      pool.scheduler().schedule(() -> block(started));
+    }
+
+    int rejections = 0;
+    for (int i = 0; i < 100; ++i) {
+      try {
+        pool.scheduler().schedule(() -> block(started));
+      } catch (RejectedExecutionException e) {
+        ++rejections;
+      }
+    }
+
+    assertThat(rejections).isEqualTo(100);
+    assertThat(pool.getPoolSize()).isEqualTo(THREADS);
+    assertThat(pool.getQueueSize()).isEqualTo(QUEUE_CAPACITY);
+    assertThat(registry.get("executor.rejected").tag("name", "test").counter().count())
+        .isEqualTo(100);
+  }
+
+  @Test
+  void aRejectedSubscriptionFailsItsSubscriber() throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(THREADS);
+    for (int i = 0; i < THREADS; ++i) {
+      pool.scheduler().schedule(() -> block(started));
+    }
+    assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+    for (int i = 0; i < QUEUE_CAPACITY; ++i) {
+      pool.scheduler().schedule(() -> block(started));
+    }
+
+    assertThatThrownBy(() -> Mono.fromCallable(() -> 1)
+        .subscribeOn(pool.scheduler())
+        .block(Duration.ofSeconds(5)))
+        .isInstanceOf(RejectedExecutionException.class);
+  }
+}
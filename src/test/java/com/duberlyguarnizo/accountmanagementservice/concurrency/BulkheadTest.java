@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.concurrency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.duberlyguarnizo.accountmanagementservice.exception.BulkheadFullException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.disposables.Disposable;
+import io.reactivex.rxjava3.observers.TestObserver;
+import io.reactivex.rxjava3.subjects.SingleSubject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class BulkheadTest {
+  private static final int MAX_CONCURRENT = 4;
+  private static final int MAX_QUEUED = 8;
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final Bulkhead bulkhead = new Bulkhead("test", MAX_CONCURRENT, MAX_QUEUED, registry);
+
+  private double rejected() {
+    return registry.get("bulkhead.rejected").tag("name", "test").counter().count();
+  }
+
+  @Test
+  void aSaturatedBulkheadQueuesUpToItsLimitAndFailsTheRestAtOnce() {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    List<SingleSubject<Integer>> calls = new ArrayList<>();
+    List<TestObserver<Integer>> observers = new ArrayList<>();
+    for (int i = 0; i < 100; ++i) {
+      // stands for a call that is still waiting on the database
+      SingleSubject<Integer> call = SingleSubject.create();
+      calls.add(call);
+      observers.add(call
+          .doOnSubscribe(d -> maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max))
+          .doOnSuccess(value -> running.decrementAndGet())
+          .compose(bulkhead.single())
+          .test());
+    }
+
+    assertThat(bulkhead.getActive()).isEqualTo(MAX_CONCURRENT);
+    assertThat(bulkhead.getQueued()).isEqualTo(MAX_QUEUED);
+    assertThat(observers.subList(MAX_CONCURRENT + MAX_QUEUED, 100))
+        .allSatisfy(observer -> observer.assertError(BulkheadFullException.class));
+    assertThat(rejected()).isEqualTo(100 - MAX_CONCURRENT - MAX_QUEUED);
+
+    for (int i = 0; i < MAX_CONCURRENT + MAX_QUEUED; ++i) {
+      calls.get(i).onSuccess(i);
+    }
+    for (int i = 0; i < MAX_CONCURRENT + MAX_QUEUED; ++i) {
+      observers.get(i).assertValue(i);
+    }
+    assertThat(maxRunning.get()).isEqualTo(MAX_CONCURRENT);
+    assertThat(bulkhead.getActive()).isZero();
+    assertThat(bulkhead.getQueued()).isZero();
+  }
+
+  @Test
+  void aCancelledSubscriptionGivesBackItsPlace() {
+    List<Disposable> running = new ArrayList<>();
+    for (int i = 0; i < MAX_CONCURRENT; ++i) {
+      running.add(SingleSubject.<Integer>create().compose(bulkhead.single()).subscribe());
+    }
+    TestObserver<Integer> queued = SingleSubject.<Integer>create()
+        .compose(bulkhead.single())
+        .test();
+    assertThat(bulkhead.getQueued()).isEqualTo(1);
+
+    queued.dispose();
+    assertThat(bulkhead.getQueued()).isZero();
+    running.forEach(Disposable::dispose);
+    assertThat(bulkhead.getActive()).isZero();
+    assertThat(rejected()).isZero();
+  }
+
+  @Test
+  void aLongQueueOfSynchronousCallsDrainsWithoutGrowingTheStack() {
+    Bulkhead single = new Bulkhead("single", 1, 100_000, registry);
+    SingleSubject<Integer> first = SingleSubject.create();
+    first.compose(single.single()).subscribe();
+    List<TestObserver<Integer>> queued = new ArrayList<>();
+    for (int i = 0; i < 100_000; ++i) {
+      queued.add(Single.just(i).compose(single.single()).test());
+    }
+
+    first.onSuccess(0);
+
+    assertThat(queued).allSatisfy(observer -> observer.assertComplete());
+    assertThat(single.getActive()).isZero();
+  }
+
+  @Test
+  void reactorSubscriptionsShareTheSameLimit() {
+    Sinks.One<Integer> pending = Sinks.one();
+    List<reactor.core.Disposable> subscriptions = new ArrayList<>();
+    for (int i = 0; i < MAX_CONCURRENT + MAX_QUEUED; ++i) {
+      subscriptions.add(pending.asMono().transform(bulkhead.mono()).subscribe());
+    }
+
+    assertThat(bulkhead.getActive()).isEqualTo(MAX_CONCURRENT);
+    assertThat(Mono.just(1).transform(bulkhead.<Integer>mono())
+        .onErrorReturn(BulkheadFullException.class, -1)
+        .block()).isEqualTo(-1);
+
+    pending.tryEmitValue(1);
+    assertThat(bulkhead.getActive()).isZero();
+    assertThat(subscriptions).allMatch(reactor.core.Disposable::isDisposed);
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.concurrency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.observers.TestObserver;
+import io.reactivex.rxjava3.subjects.MaybeSubject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class SingleFlightTest {
+  private final SingleFlight<String> singleFlight =
+      new SingleFlight<>("test", new SimpleMeterRegistry());
+  private final AtomicInteger calls = new AtomicInteger();
+  private final List<MaybeSubject<Integer>> flights = new ArrayList<>();
+
+  private Maybe<Integer> call(String key) {
+    return singleFlight.maybe(key, () -> {
+      calls.incrementAndGet();
+      MaybeSubject<Integer> flight = MaybeSubject.create();
+      flights.add(flight);
+      return flight;
+    });
+  }
+
+  @Test
+  void nothingIsKeptOnceTheCallAnswers() {
+    TestObserver<Integer> first = call("a").test();
+    TestObserver<Integer> joined = call("a").test();
+    TestObserver<Integer> other = call("b").test();
+    assertThat(calls.get()).isEqualTo(2);
+
+    flights.get(0).onSuccess(1);
+    first.assertValue(1);
+    joined.assertValue(1);
+    other.assertEmpty();
+    assertThat(singleFlight.size()).isEqualTo(1);
+
+    call("a").test();
+    assertThat(calls.get()).isEqualTo(3);
+  }
+
+  @Test
+  void everySubscriberGetsTheErrorOrTheEmptyOutcome() {
+    TestObserver<Integer> first = call("a").test();
+    TestObserver<Integer> joined = call("a").test();
+    flights.get(0).onError(new NoSuchElementException());
+    first.assertError(NoSuchElementException.class);
+    joined.assertError(NoSuchElementException.class);
+
+    TestObserver<Integer> empty = call("b").test();
+    flights.get(1).onComplete();
+    empty.assertComplete().assertNoValues();
+    assertThat(singleFlight.size()).isZero();
+  }
+
+  @Test
+  void aSubscriberLeavingDoesNotCancelTheCallForTheOthers() {
+    TestObserver<Integer> leaving = call("a").test();
+    TestObserver<Integer> staying = call("a").test();
+
+    leaving.dispose();
+    assertThat(flights.get(0).hasObservers()).isTrue();
+    flights.get(0).onSuccess(1);
+    staying.assertValue(1);
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.domain.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+
+class MoneyTest {
+
+  @Test
+  void amountsFromTheApiAreRoundedToTheCent() {
+    assertThat(Money.ofMajor(0.29)).isEqualTo(29);
+    assertThat(Money.ofMajor(1234.56)).isEqualTo(123456);
+    assertThat(Money.ofMajor(-0.07)).isEqualTo(-7);
+    // half to even
+    assertThat(Money.ofMajor(0.125)).isEqualTo(12);
+    assertThat(Money.ofMajor(0.375)).isEqualTo(38);
+    assertThat(Money.toMajor(123456)).isEqualTo(1234.56);
+  }
+
+  @Test
+  void sumsAreExactWhereDoublesDrift() {
+    long cents = LongStream.range(0, 1_000_000).map(i -> Money.ofMajor(0.1))
+        .reduce(0, Money::add);
+    double doubles = 0;
+    for (int i = 0; i < 1_000_000; ++i) {
+      doubles += 0.1;
+    }
+
+    assertThat(cents).isEqualTo(10_000_000);
+    assertThat(Money.format(cents)).isEqualTo("100000.00");
+    assertThat(doubles).isNotEqualTo(100_000.0);
+  }
+
+  @Test
+  void overflowFailsInsteadOfWrappingAround() {
+    assertThatThrownBy(() -> Money.add(Long.MAX_VALUE, 1))
+        .isInstanceOf(ArithmeticException.class);
+    assertThatThrownBy(() -> Money.subtract(Long.MIN_VALUE, 1))
+        .isInstanceOf(ArithmeticException.class);
+    assertThatThrownBy(() -> Money.ofMajor(1e17)).isInstanceOf(ArithmeticException.class);
+    assertThatThrownBy(() -> Money.ofMajor(Double.NaN))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void limitIsExclusive() {
+    assertThat(Money.staysBelow(9_000, 999, 10_000)).isTrue();
+    assertThat(Money.staysBelow(9_000, 1_000, 10_000)).isFalse();
+  }
+
+  @Test
+  void formatsWithTwoDecimals() {
+    assertThat(Money.format(0)).isEqualTo("0.00");
+    assertThat(Money.format(5)).isEqualTo("0.05");
+    assertThat(Money.format(-1205)).isEqualTo("-12.05");
+    assertThat(Money.format(Long.MIN_VALUE)).isEqualTo("-92233720368547758.08");
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.domain.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Account;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.AccountCreationResult;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.AssetAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.exception.AccountDoesNotExistException;
+import com.duberlyguarnizo.accountmanagementservice.exception.CreditCardLimitReachedException;
+import com.duberlyguarnizo.accountmanagementservice.exception.OverpaidAssetAccountException;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Fires hundreds of concurrent mutations at one card. The persistence mock applies each
+ * conditional increment atomically, the way Mongo applies a single-document update, so the
+ * rules can only hold if the service relies on the conditional write alone.
+ */
+class AssetAccountServiceTest {
+  private static final int PARALLEL_REQUESTS = 500;
+
+  private final UUID accountId = UUID.randomUUID();
+  private AccountPersistence persistence;
+  private AssetAccountService service;
+  private AssetAccount card;
+
+  @BeforeEach
+  void setUp() {
+    persistence = mock(AccountPersistence.class);
+    service = new AssetAccountService(persistence, mock(InterServiceOperations.class),
+        mock(AccountCodeAllocator.class), mock(PastDueDebtCheck.class));
+    card = new AssetAccount();
+    card.setAccountId(accountId);
+    card.setAccountType(AccountType.ASSET);
+    card.setLoanOrCreditCardLimit(100L);
+
+    when(persistence.getAccountByAccountId(accountId))
+        .thenReturn(Maybe.fromCallable(() -> (Account) card));
+    when(persistence.addToBalanceWithinLimit(eq(accountId), anyLong()))
+        .thenAnswer(call -> Single.fromCallable(() -> {
+          long amount = call.getArgument(1);
+          synchronized (card) {
+            if (card.getBalance() + amount < card.getLoanOrCreditCardLimit()) {
+              card.setBalance(card.getBalance() + amount);
+              return true;
+            }
+            return false;
+          }
+        }));
+    when(persistence.subtractFromBalance(eq(AccountType.ASSET), eq(accountId), anyLong()))
+        .thenAnswer(call -> Single.fromCallable(() -> {
+          long amount = call.getArgument(2);
+          synchronized (card) {
+            if (card.getBalance() >= amount) {
+              card.setBalance(card.getBalance() - amount);
+              return true;
+            }
+            return false;
+          }
+        }));
+  }
+
+  @Test
+  void concurrentDebitsNeverExceedTheCreditLimit() {
+    List<Throwable> errors = runInParallel(() -> service.increaseCreditCardDebt(accountId, 1L));
+
+    assertThat(card.getBalance()).isEqualTo(99L);
+    assertThat(errors).hasSize(PARALLEL_REQUESTS - 99)
+        .allMatch(error -> error instanceof CreditCardLimitReachedException);
+  }
+
+  @Test
+  void concurrentPaymentsNeverOverpayTheDebt() {
+    card.setBalance(200L);
+
+    List<Throwable> errors = runInParallel(() -> service.payLoanOrCreditCard(accountId, 1L));
+
+    assertThat(card.getBalance()).isZero();
+    assertThat(errors).hasSize(PARALLEL_REQUESTS - 200)
+        .allMatch(error -> error instanceof OverpaidAssetAccountException);
+  }
+
+  @Test
+  void missingDestinationLeavesTheLoanDebtAlone() {
+    UUID destinationId = UUID.randomUUID();
+    when(persistence.getAccountByAccountId(destinationId)).thenReturn(Maybe.empty());
+
+    service.increaseLoanDebtForBankClient(accountId, destinationId, 50L).test()
+        .assertError(AccountDoesNotExistException.class);
+
+    verify(persistence, never()).addToBalance(any(), any(), anyLong());
+  }
+
+  @Test
+  void failedCreditTakesTheLoanDebtBack() {
+    UUID destinationId = UUID.randomUUID();
+    PassiveAccount destination = new PassiveAccount();
+    destination.setAccountId(destinationId);
+    destination.setAccountType(AccountType.PASSIVE);
+    when(persistence.getAccountByAccountId(destinationId)).thenReturn(Maybe.just(destination));
+    when(persistence.addToBalance(eq(AccountType.ASSET), eq(accountId), anyLong()))
+        .thenAnswer(call -> Single.fromCallable(() -> {
+          card.setBalance(card.getBalance() + (long) call.getArgument(2));
+          return true;
+        }));
+    when(persistence.addToBalance(AccountType.PASSIVE, destinationId, 50L))
+        .thenReturn(Single.error(new IllegalStateException("write failed")));
+
+    service.increaseLoanDebtForBankClient(accountId, destinationId, 50L).test()
+        .assertError(IllegalStateException.class);
+
+    assertThat(card.getBalance()).isZero();
+    verify(persistence).addToBalance(AccountType.ASSET, accountId, 50L);
+    verify(persistence).addToBalance(AccountType.ASSET, accountId, -50L);
+  }
+
+  @Test
+  void newCardLimitComesFromTheClientsAvailableCredit() {
+    UUID clientId = UUID.randomUUID();
+    AccountCodeAllocator codeAllocator = mock(AccountCodeAllocator.class);
+    when(codeAllocator.nextAssetAccountCode(any())).thenReturn(Single.just("19120100000001"));
+    when(persistence.getAvailableCreditForClient(clientId)).thenReturn(Single.just(750L));
+    when(persistence.createAccount(any())).thenReturn(Completable.complete());
+    PastDueDebtCheck pastDueDebtCheck = mock(PastDueDebtCheck.class);
+    when(pastDueDebtCheck.hasPastDueDebt(clientId)).thenReturn(Single.just(false));
+    service = new AssetAccountService(persistence, mock(InterServiceOperations.class),
+        codeAllocator, pastDueDebtCheck);
+    AssetAccount newCard = new AssetAccount();
+    newCard.setClientId(clientId);
+    newCard.setAccountType(AccountType.ASSET);
+    newCard.setAssetAccountType(AssetAccountType.CREDIT_CARD_ACCOUNT);
+
+    service.createAssetAccount(newCard).blockingAwait();
+
+    assertThat(newCard.getLoanOrCreditCardLimit()).isEqualTo(750L);
+    verify(persistence, never()).getAssetAccountsByClientId(any());
+    verify(persistence, never()).getPassiveAccountsByClientId(any());
+    verify(pastDueDebtCheck).paymentDateChanged(clientId);
+  }
+
+  @Test
+  void batchSpendsEachClientsCreditAcrossItsNewAccounts() {
+    UUID clientId = UUID.randomUUID();
+    UUID pastDueClient = UUID.randomUUID();
+    AccountCodeAllocator codeAllocator = mock(AccountCodeAllocator.class);
+    when(codeAllocator.nextAssetAccountCode(any())).thenReturn(Single.just("19120100000001"));
+    when(persistence.getAvailableCreditForClient(any())).thenReturn(Single.just(500L));
+    when(persistence.createAccounts(anyList())).thenReturn(Single.just(List.of()));
+    PastDueDebtCheck pastDueDebtCheck = mock(PastDueDebtCheck.class);
+    when(pastDueDebtCheck.hasPastDueDebt(clientId)).thenReturn(Single.just(false));
+    when(pastDueDebtCheck.hasPastDueDebt(pastDueClient)).thenReturn(Single.just(true));
+    service = new AssetAccountService(persistence, mock(InterServiceOperations.class),
+        codeAllocator, pastDueDebtCheck);
+    AssetAccount loan = newAssetAccount(clientId, AssetAccountType.LOAN_ACCOUNT, 300L);
+    AssetAccount card = newAssetAccount(clientId, AssetAccountType.CREDIT_CARD_ACCOUNT, 0L);
+
+    List<AccountCreationResult> results = service.createAssetAccounts(Flowable.just(loan,
+            newAssetAccount(pastDueClient, AssetAccountType.LOAN_ACCOUNT, 0L), card), 10)
+        .toList()
+        .blockingGet();
+
+    assertThat(results).extracting(AccountCreationResult::isCreated)
+        .containsExactly(true, false, true);
+    assertThat(loan.getLoanOrCreditCardLimit()).isEqualTo(500L);
+    assertThat(card.getLoanOrCreditCardLimit()).isEqualTo(200L);
+    verify(persistence).getAvailableCreditForClient(clientId);
+    verify(pastDueDebtCheck).paymentDateChanged(clientId);
+  }
+
+  private static AssetAccount newAssetAccount(UUID clientId, AssetAccountType type,
+                                              long balance) {
+    AssetAccount account = new AssetAccount();
+    account.setClientId(clientId);
+    account.setAssetAccountType(type);
+    account.setBalance(balance);
+    return account;
+  }
+
+  private List<Throwable> runInParallel(java.util.function.Supplier<Completable> operation) {
+    return Flowable.range(0, PARALLEL_REQUESTS)
+        .parallel()
+        .runOn(Schedulers.computation())
+        .flatMap(i -> operation.get()
+            .<Throwable>toMaybe()
+            .onErrorReturn(error -> error)
+            .toFlowable())
+        .sequential()
+        .toList()
+        .blockingGet();
+  }
+}
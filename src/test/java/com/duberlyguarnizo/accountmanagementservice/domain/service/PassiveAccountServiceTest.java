@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.domain.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.ClientType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Account;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.AccountCreationResult;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Batch creation against a persistence mock that keeps the accounts in memory and pays a
+ * simulated round trip on every query and write.
+ */
+@Slf4j
+class PassiveAccountServiceTest {
+  private static final long ROUND_TRIP_MS = 5;
+
+  private final Map<UUID, List<PassiveAccount>> stored = new ConcurrentHashMap<>();
+  private final Map<UUID, ClientType> clientTypes = new ConcurrentHashMap<>();
+  private AccountPersistence persistence;
+  private PassiveAccountService service;
+
+  @BeforeEach
+  void setUp() {
+    persistence = mock(AccountPersistence.class);
+    InterServiceOperations operations = mock(InterServiceOperations.class);
+    when(operations.getClientType(any())).thenAnswer(call ->
+        Maybe.fromCallable(() -> clientTypes.get(call.<UUID>getArgument(0))));
+    PastDueDebtCheck pastDueDebtCheck = mock(PastDueDebtCheck.class);
+    when(pastDueDebtCheck.hasPastDueDebt(any())).thenReturn(
+        Single.just(false).delay(ROUND_TRIP_MS, TimeUnit.MILLISECONDS));
+    AtomicLong sequence = new AtomicLong();
+    AccountCodeAllocator codeAllocator = mock(AccountCodeAllocator.class);
+    when(codeAllocator.nextPassiveAccountCode(any())).thenAnswer(call ->
+        Single.fromCallable(() -> String.format("191101%08d", sequence.incrementAndGet())));
+
+    when(persistence.getPassiveAccountsByClientId(any())).thenAnswer(call -> Observable
+        .defer(() -> Observable.fromIterable(new ArrayList<>(
+            stored.getOrDefault(call.<UUID>getArgument(0), List.of()))))
+        .delaySubscription(ROUND_TRIP_MS, TimeUnit.MILLISECONDS));
+    when(persistence.createAccount(any())).thenAnswer(call -> Completable
+        .fromAction(() -> store(call.getArgument(0)))
+        .delaySubscription(ROUND_TRIP_MS, TimeUnit.MILLISECONDS));
+    when(persistence.createAccounts(anyList())).thenAnswer(call -> Single
+        .fromCallable(() -> {
+          call.<List<Account>>getArgument(0).forEach(this::store);
+          return List.<Integer>of();
+        })
+        .delaySubscription(ROUND_TRIP_MS, TimeUnit.MILLISECONDS));
+    service = new PassiveAccountService(operations, persistence, codeAllocator,
+        pastDueDebtCheck);
+  }
+
+  @Test
+  void batchValidatesAgainstStoredAndEarlierAccountsOfTheClient() {
+    UUID regular = regularClient();
+    UUID corporate = UUID.randomUUID();
+    clientTypes.put(corporate, ClientType.CORPORATE_CLIENT);
+    UUID unknown = UUID.randomUUID();
+
+    List<AccountCreationResult> results = service.createPassiveAccounts(Flowable.just(
+        account(regular, PassiveAccountType.SAVINGS_ACCOUNT),
+        account(regular, PassiveAccountType.SAVINGS_ACCOUNT),
+        account(corporate, PassiveAccountType.CHECKING_ACCOUNT),
+        account(corporate, PassiveAccountType.SAVINGS_ACCOUNT),
+        account(unknown, PassiveAccountType.CHECKING_ACCOUNT),
+        account(regular, PassiveAccountType.SAVINGS_ACCOUNT),
+        account(regular, PassiveAccountType.CHECKING_ACCOUNT)), 4)
+        .toList()
+        .blockingGet();
+
+    assertThat(results).extracting(AccountCreationResult::getIndex)
+        .containsExactly(0, 1, 2, 3, 4, 5, 6);
+    assertThat(results).extracting(AccountCreationResult::isCreated)
+        .containsExactly(true, false, true, false, false, false, true);
+    assertThat(results.get(4).getError()).contains(unknown.toString());
+    assertThat(stored.get(regular)).hasSize(2);
+    // once per chunk, however many of the chunk's accounts belong to the client
+    verify(persistence, times(2)).getPassiveAccountsByClientId(regular);
+    verify(persistence, times(2)).createAccounts(anyList());
+  }
+
+  @Test
+  void batchIsAtLeastTenTimesFasterThanSingleCreations() {
+    int clients = 100;
+    List<UUID> singleClients = Flowable.range(0, clients).map(i -> regularClient()).toList()
+        .blockingGet();
+    List<UUID> batchClients = Flowable.range(0, clients).map(i -> regularClient()).toList()
+        .blockingGet();
+
+    long singleStart = System.nanoTime();
+    Flowable.fromIterable(requests(singleClients))
+        .concatMapCompletable(service::createPassiveAccount)
+        .blockingAwait();
+    long singleMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - singleStart);
+
+    long batchStart = System.nanoTime();
+    List<AccountCreationResult> results = service
+        .createPassiveAccounts(Flowable.fromIterable(requests(batchClients)), 500)
+        .toList()
+        .blockingGet();
+    long batchMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - batchStart));
+
+    log.info("{} accounts: {} ms one by one, {} ms in a batch", 2 * clients, singleMs, batchMs);
+    assertThat(results).allMatch(AccountCreationResult::isCreated);
+    assertThat(singleMs / batchMs).isGreaterThanOrEqualTo(10);
+  }
+
+  private List<PassiveAccount> requests(List<UUID> clients) {
+    return clients.stream()
+        .flatMap(client -> List.of(account(client, PassiveAccountType.SAVINGS_ACCOUNT),
+            account(client, PassiveAccountType.CHECKING_ACCOUNT)).stream())
+        .collect(Collectors.toList());
+  }
+
+  private UUID regularClient() {
+    UUID clientId = UUID.randomUUID();
+    clientTypes.put(clientId, ClientType.REGULAR_CLIENT);
+    return clientId;
+  }
+
+  private void store(Account account) {
+    stored.computeIfAbsent(account.getClientId(), id -> new ArrayList<>())
+        .add((PassiveAccount) account);
+  }
+
+  private static PassiveAccount account(UUID clientId, PassiveAccountType type) {
+    PassiveAccount account = new PassiveAccount();
+    account.setClientId(clientId);
+    account.setPassiveAccountType(type);
+    return account;
+  }
+}
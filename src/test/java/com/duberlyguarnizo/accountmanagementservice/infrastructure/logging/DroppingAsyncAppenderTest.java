@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.logging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DroppingAsyncAppenderTest {
+  private static final int QUEUE_SIZE = 10;
+
+  private final LoggerContext context = new LoggerContext();
+  private final CountDownLatch outputStalled = new CountDownLatch(1);
+  private final AtomicInteger written = new AtomicInteger();
+  private DroppingAsyncAppender appender;
+  private Logger logger;
+
+  @BeforeEach
+  void setUp() {
+    // stands for a console that stopped draining
+    AppenderBase<ILoggingEvent> output = new AppenderBase<>() {
+      @Override
+      protected void append(ILoggingEvent event) {
+        try {
+          outputStalled.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        written.incrementAndGet();
+      }
+    };
+    output.setContext(context);
+    output.start();
+    appender = new DroppingAsyncAppender();
+    appender.setContext(context);
+    appender.setQueueSize(QUEUE_SIZE);
+    appender.addAppender(output);
+    appender.start();
+    logger = context.getLogger(DroppingAsyncAppenderTest.class);
+    logger.setLevel(Level.DEBUG);
+    logger.addAppender(appender);
+  }
+
+  @AfterEach
+  void tearDown() {
+    outputStalled.countDown();
+    context.stop();
+  }
+
+  @Test
+  void loggingNeverWaitsForTheOutputAndDropsAreCounted() throws InterruptedException {
+    long start = System.nanoTime();
+    for (int i = 0; i < 1000; ++i) {
+      logger.warn("event {}", i);
+    }
+    assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(1));
+
+    outputStalled.countDown();
+    appender.stop();
+    assertThat(written.get() + appender.getDroppedCount()).isEqualTo(1000);
+    assertThat(appender.getDroppedCount()).isGreaterThanOrEqualTo(1000 - QUEUE_SIZE - 1);
+  }
+
+  @Test
+  void lowLevelEventsAreDroppedFirst() throws InterruptedException {
+    logger.warn("taken by the worker, which then stalls");
+    while (appender.getNumberOfElementsInQueue() > 0) {
+      Thread.sleep(1);
+    }
+    // past the discarding threshold: less than a fifth of the queue left
+    for (int i = 0; i < QUEUE_SIZE - 1; ++i) {
+      logger.warn("filler {}", i);
+    }
+
+    logger.debug("dropped");
+    assertThat(appender.getDroppedCount()).isEqualTo(1);
+    logger.warn("still queued");
+    assertThat(appender.getDroppedCount()).isEqualTo(1);
+    logger.error("dropped, the queue is full");
+    assertThat(appender.getDroppedCount()).isEqualTo(2);
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.logging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SamplingTurboFilterTest {
+  private final LoggerContext context = new LoggerContext();
+  private final ListAppender<ILoggingEvent> events = new ListAppender<>();
+
+  @BeforeEach
+  void setUp() {
+    SamplingTurboFilter filter = new SamplingTurboFilter();
+    filter.setContext(context);
+    filter.addSample("com.example.service=10");
+    filter.addSample("com.example.service.quiet=1000");
+    filter.start();
+    context.addTurboFilter(filter);
+    events.setContext(context);
+    events.start();
+    Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+    root.setLevel(Level.DEBUG);
+    root.addAppender(events);
+  }
+
+  private long logged(String loggerName, Level level) {
+    return events.list.stream()
+        .filter(event -> event.getLoggerName().equals(loggerName) && event.getLevel() == level)
+        .count();
+  }
+
+  @Test
+  void debugEventsOfACategoryAreSampled() {
+    Logger service = context.getLogger("com.example.service.AccountService");
+    Logger quiet = context.getLogger("com.example.service.quiet.Poller");
+    Logger other = context.getLogger("com.example.services.Other");
+    for (int i = 0; i < 1000; ++i) {
+      service.debug("event {}", i);
+      quiet.debug("event {}", i);
+      other.debug("event {}", i);
+    }
+
+    assertThat(logged("com.example.service.AccountService", Level.DEBUG)).isEqualTo(100);
+    // the most specific category applies
+    assertThat(logged("com.example.service.quiet.Poller", Level.DEBUG)).isEqualTo(1);
+    // a name that merely starts with the category is not part of it
+    assertThat(logged("com.example.services.Other", Level.DEBUG)).isEqualTo(1000);
+  }
+
+  @Test
+  void eventsAboveTheLevelAreNotSampled() {
+    Logger service = context.getLogger("com.example.service.AccountService");
+    for (int i = 0; i < 100; ++i) {
+      service.warn("event {}", i);
+    }
+
+    assertThat(logged("com.example.service.AccountService", Level.WARN)).isEqualTo(100);
+    assertThat(service.isDebugEnabled()).isTrue();
+  }
+}
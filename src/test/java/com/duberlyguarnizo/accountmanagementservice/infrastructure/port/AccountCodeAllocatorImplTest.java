@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
+import com.mongodb.client.result.UpdateResult;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import reactor.core.publisher.Mono;
+
+class AccountCodeAllocatorImplTest {
+  private static final int BLOCK_SIZE = 1000;
+  private static final int THREADS = 16;
+  private static final int CODES_PER_THREAD = 20_000;
+
+  private final AtomicLong counter = new AtomicLong();
+  private final AtomicInteger leases = new AtomicInteger();
+  private ReactiveMongoTemplate template;
+
+  @BeforeEach
+  void setUp() {
+    // stands in for the atomic $inc on the shared counter document
+    template = mock(ReactiveMongoTemplate.class);
+    when(template.findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Document.class),
+        eq(AccountCodeAllocatorImpl.COUNTER_COLLECTION)))
+        .thenAnswer(call -> Mono.fromCallable(() -> {
+          leases.incrementAndGet();
+          return new Document("value", counter.addAndGet(BLOCK_SIZE));
+        }));
+    // and for the $max that seeds it past the stored codes
+    when(template.upsert(any(Query.class), any(UpdateDefinition.class),
+        eq(AccountCodeAllocatorImpl.COUNTER_COLLECTION)))
+        .thenAnswer(call -> Mono.fromCallable(() -> {
+          Document max = (Document) call.getArgument(1, UpdateDefinition.class)
+              .getUpdateObject().get("$max");
+          counter.accumulateAndGet(max.getLong("value"), Math::max);
+          return UpdateResult.acknowledged(1, 1L, null);
+        }));
+    when(template.findOne(any(Query.class), eq(Document.class), anyString()))
+        .thenReturn(Mono.empty());
+  }
+
+  @Test
+  void allocationStartsPastTheCodesAlreadyStored() {
+    when(template.findOne(any(Query.class), eq(Document.class), eq("passive_accounts")))
+        .thenReturn(Mono.just(new Document("accountCode", "19110100004567")));
+    AccountCodeAllocatorImpl allocator = new AccountCodeAllocatorImpl(template, BLOCK_SIZE);
+
+    assertThat(allocator.nextPassiveAccountCode(PassiveAccountType.SAVINGS_ACCOUNT)
+        .blockingGet()).isEqualTo("19110100004568");
+
+    ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+    verify(template).findOne(query.capture(), eq(Document.class), eq("passive_accounts"));
+    assertThat(query.getValue().getSortObject()).containsEntry("accountCode", -1);
+  }
+
+  @Test
+  void formatKeepsTheFourteenDigitLayout() {
+    assertThat(AccountCodeAllocatorImpl.format("101", 42)).isEqualTo("19110100000042");
+    assertThat(AccountCodeAllocatorImpl.format("202", 99_999_999)).isEqualTo("19120299999999");
+    assertThat(new AccountCodeAllocatorImpl(template, BLOCK_SIZE)
+        .nextAssetAccountCode(AssetAccountType.CREDIT_CARD_ACCOUNT).blockingGet())
+        .hasSize(14)
+        .startsWith("191201");
+  }
+
+  @Test
+  void concurrentAllocationsAcrossNodesAreUnique() throws Exception {
+    // two allocators share the counter the way two nodes share the Mongo document
+    List<AccountCodeAllocatorImpl> nodes = List.of(
+        new AccountCodeAllocatorImpl(template, BLOCK_SIZE),
+        new AccountCodeAllocatorImpl(template, BLOCK_SIZE));
+    Set<String> codes = ConcurrentHashMap.newKeySet();
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    List<Future<?>> workers = new ArrayList<>();
+
+    long start = System.nanoTime();
+    for (int t = 0; t < THREADS; ++t) {
+      AccountCodeAllocatorImpl node = nodes.get(t % nodes.size());
+      workers.add(executor.submit(() -> {
+        for (int i = 0; i < CODES_PER_THREAD; ++i) {
+          codes.add(node.nextPassiveAccountCode(PassiveAccountType.SAVINGS_ACCOUNT)
+              .blockingGet());
+        }
+      }));
+    }
+    for (Future<?> worker : workers) {
+      worker.get();
+    }
+    long elapsed = System.nanoTime() - start;
+    executor.shutdown();
+
+    int total = THREADS * CODES_PER_THREAD;
+    System.out.printf("Allocated %d codes in %d ms (%.0f codes/s, %d leases)%n", total,
+        elapsed / 1_000_000, total / (elapsed / 1e9), leases.get());
+    assertThat(codes).hasSize(total).allMatch(code -> code.matches("191101\\d{8}"));
+    assertThat(leases.get()).isLessThan(total / BLOCK_SIZE * 2);
+  }
+}
@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.PassiveAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Account;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.AssetAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.AccountBalanceView;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.AssetAccountEntity;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.AssetAccountRepository;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.OutboxEventEntity;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.PassiveAccountEntity;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.PassiveAccountRepository;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.result.InsertManyResult;
+import com.mongodb.client.result.UpdateResult;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Maybe;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.data.projection.EntityProjection;
+import org.springframework.data.projection.EntityProjectionIntrospector.ProjectionPredicate;
+import org.springframework.data.projection.EntityProjectionIntrospector;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class AccountPersistenceImplTest {
+  private AssetAccountRepository assetRepository;
+  private PassiveAccountRepository passiveRepository;
+  private ReactiveMongoTemplate template;
+  private AccountPersistenceImpl persistence;
+
+  @BeforeEach
+  void setUp() {
+    assetRepository = mock(AssetAccountRepository.class);
+    passiveRepository = mock(PassiveAccountRepository.class);
+    template = mock(ReactiveMongoTemplate.class);
+    persistence = new AccountPersistenceImpl(assetRepository, passiveRepository, template,
+        new AccountOutbox(template, null, 16), 64);
+    when(assetRepository.findByAccountCode(anyString())).thenReturn(Maybe.empty());
+    when(passiveRepository.findByAccountCode(anyString())).thenReturn(Maybe.empty());
+    when(assetRepository.findBalanceByAccountCode(anyString())).thenReturn(Maybe.empty());
+    when(passiveRepository.findBalanceByAccountCode(anyString())).thenReturn(Maybe.empty());
+  }
+
+  @Test
+  void passiveCodeLookupQueriesOnlyThePassiveCollection() {
+    persistence.getAccountByAccountCode("19110200000007").blockingGet();
+    persistence.getAccountBalance("19110200000007").onErrorComplete().blockingGet();
+
+    verify(passiveRepository).findByAccountCode("19110200000007");
+    verify(passiveRepository).findBalanceByAccountCode("19110200000007");
+    verify(assetRepository, never()).findByAccountCode(anyString());
+    verify(assetRepository, never()).findBalanceByAccountCode(anyString());
+  }
+
+  @Test
+  void assetCodeLookupQueriesOnlyTheAssetCollection() {
+    persistence.getAccountByAccountCode("19120100000007").blockingGet();
+
+    verify(assetRepository).findByAccountCode("19120100000007");
+    verify(passiveRepository, never()).findByAccountCode(anyString());
+  }
+
+  @Test
+  void legacyCodeLookupFallsBackToBothCollections() {
+    persistence.getAccountByAccountCode("12345678901234").blockingGet();
+
+    verify(assetRepository).findByAccountCode("12345678901234");
+    verify(passiveRepository).findByAccountCode("12345678901234");
+  }
+
+  @Test
+  void balanceLookupsProjectOnlyTheCoveredFields() {
+    when(template.find(any(Query.class), eq(Document.class), eq("asset_accounts")))
+        .thenReturn(Flux.just(new Document("accountCode", "19120100000007")
+            .append("balance", 1500L)));
+
+    assertThat(persistence.getAccountBalances(List.of("19120100000007")).blockingGet())
+        .containsExactly(Map.entry("19120100000007", 1500L));
+
+    ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+    verify(template).find(query.capture(), eq(Document.class), eq("asset_accounts"));
+    assertThat(query.getValue().getFieldsObject())
+        .isEqualTo(Document.parse(AccountBalanceView.FIELDS));
+  }
+
+  @Test
+  void projectedBalanceIsReadWithoutTheEntity() {
+    MappingMongoConverter converter = converter();
+    EntityProjection<AccountBalanceView, AssetAccountEntity> projection =
+        EntityProjectionIntrospector.create(converter.getProjectionFactory(),
+                ProjectionPredicate.typeHierarchy(), converter.getMappingContext())
+            .introspect(AccountBalanceView.class, AssetAccountEntity.class);
+
+    AccountBalanceView balance = converter.project(projection,
+        new Document("accountCode", "19120100000007").append("balance", 1500L));
+
+    assertThat(balance.getAccountCode()).isEqualTo("19120100000007");
+    assertThat(balance.getBalance()).isEqualTo(1500L);
+  }
+
+  @Test
+  void typeListingResumesAfterTheCursorInAccountCodeOrder() {
+    when(template.find(any(Query.class), eq(Document.class), eq("passive_accounts")))
+        .thenReturn(Flux.empty());
+
+    persistence.getPassiveAccountsByType(PassiveAccountType.SAVINGS_ACCOUNT, "19110100000099",
+        50).blockingSubscribe();
+
+    ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+    verify(template).find(query.capture(), eq(Document.class), eq("passive_accounts"));
+    assertThat(query.getValue().getQueryObject())
+        .containsEntry("passiveAccountType", "SAVINGS_ACCOUNT")
+        .containsEntry("accountCode", new Document("$gt", "19110100000099"));
+    assertThat(query.getValue().getSortObject()).containsEntry("accountCode", 1);
+    assertThat(query.getValue().getLimit()).isEqualTo(50);
+    assertThat(query.getValue().getMeta().getCursorBatchSize()).isEqualTo(64);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void availableCreditIsSummedOnTheServerPerCollection() {
+    UUID clientId = UUID.randomUUID();
+    when(template.aggregate(any(TypedAggregation.class), eq(Document.class)))
+        .thenAnswer(call -> {
+          TypedAggregation<?> aggregation = call.getArgument(0);
+          long sum = aggregation.getInputType() == PassiveAccountEntity.class ? 50000L : 12000L;
+          return Flux.just(new Document("_id", null).append("balanceSum", sum));
+        });
+
+    Long credit = persistence.getAvailableCreditForClient(clientId).blockingGet();
+
+    ArgumentCaptor<TypedAggregation<?>> aggregation = ArgumentCaptor.forClass(
+        TypedAggregation.class);
+    verify(template, times(2)).aggregate(aggregation.capture(), eq(Document.class));
+    assertThat(credit).isEqualTo(38000L);
+    List<Document> pipeline = aggregation.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+    assertThat(pipeline).hasSize(2);
+    assertThat(pipeline.get(0)).containsEntry("$match", new Document("clientId", clientId));
+    assertThat(pipeline.get(1).get("$group", Document.class))
+        .containsEntry("_id", null)
+        .containsEntry("balanceSum", new Document("$sum", "$balance"));
+  }
+
+  @Test
+  void availableCreditCountsMissingAccountsAsZero() {
+    when(template.aggregate(any(TypedAggregation.class), eq(Document.class)))
+        .thenReturn(Flux.empty());
+
+    assertThat(persistence.getAvailableCreditForClient(UUID.randomUUID()).blockingGet())
+        .isZero();
+  }
+
+  @Test
+  void pastDueCheckIsASingleExistsQueryOnClientAndPaymentDate() {
+    UUID clientId = UUID.randomUUID();
+    Instant cutoff = Instant.parse("2023-05-01T00:00:00Z");
+    when(template.exists(any(Query.class), eq(AssetAccountEntity.class)))
+        .thenReturn(Mono.just(true));
+
+    Boolean pastDue = persistence.hasAssetAccountLastPaidBefore(clientId, cutoff).blockingGet();
+
+    ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+    verify(template).exists(query.capture(), eq(AssetAccountEntity.class));
+    assertThat(pastDue).isTrue();
+    assertThat(query.getValue().getQueryObject())
+        .containsEntry("clientId", clientId)
+        .containsEntry("lastPaymentDate", new Document("$lt", cutoff));
+  }
+
+  @Test
+  void assetPaymentRecordsThePaymentDate() {
+    when(template.updateFirst(any(Query.class), any(UpdateDefinition.class),
+        eq(AssetAccountEntity.class)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+    persistence.subtractFromBalance(AccountType.ASSET, UUID.randomUUID(), 500).blockingGet();
+
+    ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+    verify(template).updateFirst(any(Query.class), update.capture(),
+        eq(AssetAccountEntity.class));
+    assertThat(update.getValue().getUpdateObject().get("$set", Document.class))
+        .containsKey("lastPaymentDate");
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void bulkCreationIsUnorderedAndReportsFailedPositions() {
+    MongoCollection<Document> passiveCollection = mock(MongoCollection.class);
+    when(template.getConverter()).thenReturn(converter());
+    when(template.getCollection("passive_accounts")).thenReturn(Mono.just(passiveCollection));
+    // the second and third passive documents, at positions 2 and 3 of the list, are rejected
+    when(passiveCollection.insertMany(anyList(), any(InsertManyOptions.class))).thenReturn(
+        Mono.error(new MongoBulkWriteException(BulkWriteResult.unacknowledged(),
+            List.of(new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1),
+                new BulkWriteError(11000, "duplicate key", new BsonDocument(), 2)),
+            null, new ServerAddress())));
+    MongoCollection<Document> assetCollection = mock(MongoCollection.class);
+    when(template.getCollection("asset_accounts")).thenReturn(Mono.just(assetCollection));
+    when(assetCollection.insertMany(anyList(), any(InsertManyOptions.class)))
+        .thenReturn(Mono.just(InsertManyResult.acknowledged(Map.of())));
+    List<Account> accounts = List.of(passiveAccount(), assetAccount(), passiveAccount(),
+        passiveAccount(), assetAccount());
+
+    List<Integer> failed = persistence.createAccounts(accounts).blockingGet();
+
+    ArgumentCaptor<InsertManyOptions> options = ArgumentCaptor.forClass(InsertManyOptions.class);
+    ArgumentCaptor<List<Document>> documents = ArgumentCaptor.forClass(List.class);
+    verify(passiveCollection).insertMany(documents.capture(), options.capture());
+    assertThat(options.getValue().isOrdered()).isFalse();
+    assertThat(documents.getValue()).hasSize(3);
+    assertThat(failed).containsExactlyInAnyOrder(2, 3);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void bulkCreationWithTheOutboxRecordsEventsOnlyForInsertedAccounts() {
+    TransactionalOperator transactionalOperator = mock(TransactionalOperator.class);
+    when(transactionalOperator.transactional(any(Mono.class)))
+        .thenAnswer(call -> call.getArgument(0));
+    persistence = new AccountPersistenceImpl(assetRepository, passiveRepository, template,
+        new AccountOutbox(template, transactionalOperator, 16), 64);
+    when(template.getConverter()).thenReturn(converter());
+    MongoCollection<Document> passiveCollection = mock(MongoCollection.class);
+    when(template.getCollection("passive_accounts")).thenReturn(Mono.just(passiveCollection));
+    // the first pass is aborted by the second passive document, the retry without it commits
+    when(passiveCollection.insertMany(anyList(), any(InsertManyOptions.class))).thenReturn(
+        Mono.error(new MongoBulkWriteException(BulkWriteResult.unacknowledged(),
+            List.of(new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1)),
+            null, new ServerAddress())),
+        Mono.just(InsertManyResult.acknowledged(Map.of())));
+    MongoCollection<Document> assetCollection = mock(MongoCollection.class);
+    when(template.getCollection("asset_accounts")).thenReturn(Mono.just(assetCollection));
+    when(assetCollection.insertMany(anyList(), any(InsertManyOptions.class)))
+        .thenReturn(Mono.just(InsertManyResult.acknowledged(Map.of())));
+    when(template.insert(anyList(), eq(OutboxEventEntity.class)))
+        .thenAnswer(call -> Flux.fromIterable(call.<List<OutboxEventEntity>>getArgument(0)));
+    List<Account> accounts = List.of(passiveAccount(), assetAccount(), passiveAccount());
+
+    List<Integer> failed = persistence.createAccounts(accounts).blockingGet();
+
+    assertThat(failed).containsExactly(2);
+    ArgumentCaptor<List<Document>> documents = ArgumentCaptor.forClass(List.class);
+    verify(passiveCollection, times(2)).insertMany(documents.capture(), any());
+    assertThat(documents.getAllValues().get(1)).hasSize(1);
+    ArgumentCaptor<List<OutboxEventEntity>> events = ArgumentCaptor.forClass(List.class);
+    verify(template).insert(events.capture(), eq(OutboxEventEntity.class));
+    assertThat(events.getValue()).extracting(OutboxEventEntity::getAccountId).containsExactly(
+        accounts.get(0).getAccountId().toString(), accounts.get(1).getAccountId().toString());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void appliedBalanceChangeAppendsItsEventInTheSameTransaction() {
+    TransactionalOperator transactionalOperator = mock(TransactionalOperator.class);
+    AtomicBoolean inTransaction = new AtomicBoolean();
+    when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(call ->
+        call.<Mono<?>>getArgument(0)
+            .doOnSubscribe(subscription -> inTransaction.set(true))
+            .doFinally(signal -> inTransaction.set(false)));
+    persistence = new AccountPersistenceImpl(assetRepository, passiveRepository, template,
+        new AccountOutbox(template, transactionalOperator, 16), 64);
+    UUID applied = UUID.randomUUID();
+    UUID missing = UUID.randomUUID();
+    when(template.updateFirst(any(Query.class), any(UpdateDefinition.class),
+        eq(PassiveAccountEntity.class))).thenAnswer(call -> {
+          Query query = call.getArgument(0);
+          boolean matched = query.getQueryObject().get("_id").equals(applied.toString());
+          return Mono.just(UpdateResult.acknowledged(matched ? 1 : 0, matched ? 1L : 0L, null));
+        });
+    List<Boolean> insertedInTransaction = new ArrayList<>();
+    when(template.insert(anyList(), eq(OutboxEventEntity.class))).thenAnswer(call -> {
+      insertedInTransaction.add(inTransaction.get());
+      return Flux.fromIterable(call.<List<OutboxEventEntity>>getArgument(0));
+    });
+
+    persistence.addToBalance(AccountType.PASSIVE, applied, 1500).blockingGet();
+    persistence.addToBalance(AccountType.PASSIVE, missing, 1500).blockingGet();
+
+    ArgumentCaptor<List<OutboxEventEntity>> events = ArgumentCaptor.forClass(List.class);
+    verify(template).insert(events.capture(), eq(OutboxEventEntity.class));
+    assertThat(insertedInTransaction).containsExactly(true);
+    OutboxEventEntity event = events.getValue().get(0);
+    assertThat(event.getType()).isEqualTo(AccountOutbox.BALANCE_CHANGED);
+    assertThat(event.getAccountId()).isEqualTo(applied.toString());
+    assertThat(event.getPartition()).isBetween(0, 15);
+    // events keep the amount in major units, as the API returns it
+    assertThat(Document.parse(event.getPayload())).containsEntry("amount", 15.0);
+  }
+
+  @Test
+  void subtractFromBalancePushesBalanceGuardIntoTheFilter() {
+    UUID accountId = UUID.randomUUID();
+    when(template.updateFirst(any(Query.class), any(UpdateDefinition.class),
+        eq(PassiveAccountEntity.class)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null)));
+
+    Boolean applied = persistence.subtractFromBalance(AccountType.PASSIVE, accountId, 2500)
+        .blockingGet();
+
+    ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+    ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+    verify(template).updateFirst(query.capture(), update.capture(), eq(PassiveAccountEntity.class));
+    assertThat(applied).isFalse();
+    assertThat(query.getValue().getQueryObject())
+        .containsEntry("_id", accountId.toString())
+        .containsEntry("balance", new Document("$gte", 2500L));
+    assertThat(update.getValue().getUpdateObject())
+        .containsEntry("$inc", new Document("balance", -2500L));
+  }
+
+  @Test
+  void updateLeavesTheBalanceToTheAtomicUpdates() {
+    when(template.getConverter()).thenReturn(converter());
+    when(template.updateFirst(any(Query.class), any(UpdateDefinition.class),
+        eq(PassiveAccountEntity.class)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+    PassiveAccount account = new PassiveAccount();
+    account.setAccountId(UUID.randomUUID());
+    account.setAccountCode("19110100000007");
+    account.setPassiveAccountType(PassiveAccountType.FIXED_TERM_SAVINGS_ACCOUNT);
+    account.setBalance(999L);
+
+    persistence.updateAccount(account).blockingAwait();
+
+    ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+    ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+    verify(template).updateFirst(query.capture(), update.capture(), eq(PassiveAccountEntity.class));
+    assertThat(query.getValue().getQueryObject())
+        .containsEntry("_id", account.getAccountId().toString());
+    Document set = (Document) update.getValue().getUpdateObject().get("$set");
+    assertThat(set).containsEntry("passiveAccountType", "FIXED_TERM_SAVINGS_ACCOUNT")
+        .doesNotContainKeys("_id", "balance", "ledgerSeq");
+  }
+
+  @Test
+  void deleteRemovesTheAccountFromEitherCollection() {
+    UUID accountId = UUID.randomUUID();
+    when(assetRepository.deleteById(anyString())).thenReturn(Completable.complete());
+    when(passiveRepository.deleteById(anyString())).thenReturn(Completable.complete());
+
+    persistence.deleteAccount(accountId).blockingAwait();
+
+    verify(assetRepository).deleteById(accountId.toString());
+    verify(passiveRepository).deleteById(accountId.toString());
+  }
+
+  @Test
+  void addToBalanceWithinLimitPushesLimitGuardIntoTheFilter() {
+    UUID accountId = UUID.randomUUID();
+    when(template.updateFirst(any(Query.class), any(UpdateDefinition.class),
+        eq(AssetAccountEntity.class)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+    Boolean applied = persistence.addToBalanceWithinLimit(accountId, 1000).blockingGet();
+
+    ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+    verify(template).updateFirst(query.capture(), any(UpdateDefinition.class),
+        eq(AssetAccountEntity.class));
+    assertThat(applied).isTrue();
+    assertThat(query.getValue().getQueryObject()).containsKey("$expr");
+    assertThat(query.getValue().getQueryObject().get("$expr").toString())
+        .contains("$add", "$balance", "$loanOrCreditCardLimit");
+  }
+
+  private static MappingMongoConverter converter() {
+    MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+    MongoMappingContext mappingContext = new MongoMappingContext();
+    mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+    MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE,
+        mappingContext);
+    converter.setCustomConversions(conversions);
+    converter.afterPropertiesSet();
+    return converter;
+  }
+
+  private static PassiveAccount passiveAccount() {
+    PassiveAccount account = new PassiveAccount();
+    account.setAccountId(UUID.randomUUID());
+    account.setAccountType(AccountType.PASSIVE);
+    return account;
+  }
+
+  private static AssetAccount assetAccount() {
+    AssetAccount account = new AssetAccount();
+    account.setAccountId(UUID.randomUUID());
+    account.setAccountType(AccountType.ASSET);
+    return account;
+  }
+}
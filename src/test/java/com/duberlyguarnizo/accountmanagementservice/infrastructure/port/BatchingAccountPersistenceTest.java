@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BatchingAccountPersistenceTest {
+  private static final int CLIENTS = 20;
+
+  private final List<UUID> clients = IntStream.range(0, CLIENTS)
+      .mapToObj(i -> UUID.randomUUID())
+      .collect(Collectors.toList());
+  private AccountPersistence delegate;
+  private BatchingAccountPersistence persistence;
+
+  @BeforeEach
+  void setUp() {
+    delegate = mock(AccountPersistence.class);
+    // two accounts per client
+    when(delegate.getAssetAccountSummariesByClientIds(any())).thenAnswer(call -> {
+      Collection<UUID> clientIds = call.getArgument(0);
+      return Observable.fromIterable(clientIds)
+          .concatMap(clientId -> Observable.just(
+              AssetAccountDto.builder().clientId(clientId).accountCode(clientId + "-1").build(),
+              AssetAccountDto.builder().clientId(clientId).accountCode(clientId + "-2").build()));
+    });
+    when(delegate.getAccountBalances(any()))
+        .thenReturn(Single.just(Map.of("19110100000001", 5L)));
+    persistence = new BatchingAccountPersistence(delegate, Duration.ofMillis(50), 100,
+        reactor.core.scheduler.Schedulers.parallel(), new SimpleMeterRegistry());
+  }
+
+  @Test
+  void concurrentPortfolioLookupsShareOneQuery() {
+    List<List<AssetAccountDto>> portfolios = Observable.range(0, 10 * CLIENTS)
+        .flatMapSingle(i -> persistence
+            .getAssetAccountSummariesByClientId(clients.get(i % CLIENTS))
+            .toList()
+            .subscribeOn(Schedulers.computation()))
+        .toList()
+        .blockingGet();
+
+    assertThat(portfolios).hasSize(10 * CLIENTS).allSatisfy(portfolio -> {
+      assertThat(portfolio).hasSize(2);
+      assertThat(portfolio.get(0).getClientId()).isEqualTo(portfolio.get(1).getClientId());
+    });
+    verify(delegate, times(1)).getAssetAccountSummariesByClientIds(any());
+  }
+
+  @Test
+  void aBalanceMissingFromTheBatchIsNotFound() {
+    Single<Long> found = persistence.getAccountBalance("19110100000001");
+    Single<Long> missing = persistence.getAccountBalance("19110100000002");
+
+    assertThat(found.blockingGet()).isEqualTo(5L);
+    missing.test().awaitDone(5, TimeUnit.SECONDS)
+        .assertError(NoSuchElementException.class);
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.duberlyguarnizo.accountmanagementservice.concurrency.Bulkhead;
+import com.duberlyguarnizo.accountmanagementservice.domain.AssetAccountDto;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AssetAccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.subscribers.TestSubscriber;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class BulkheadAccountPersistenceTest {
+  private static final int ACCOUNTS = 1000;
+
+  @Test
+  void listingHoldsAPlaceOnlyWhileAPageIsRead() {
+    AccountPersistence delegate = mock(AccountPersistence.class);
+    List<String> pages = new ArrayList<>();
+    when(delegate.getAssetAccountsByType(eq(AssetAccountType.LOAN_ACCOUNT), any(), anyInt()))
+        .thenAnswer(call -> {
+          String after = call.getArgument(1);
+          int size = call.getArgument(2);
+          pages.add(after + ":" + size);
+          int from = after == null ? 0 : Integer.parseInt(after) + 1;
+          return Flowable.range(from, Math.max(0, Math.min(size, ACCOUNTS - from)))
+              .map(code -> AssetAccountDto.builder().accountCode(String.valueOf(code)).build());
+        });
+    Bulkhead bulkhead = new Bulkhead("test", 1, 0, new SimpleMeterRegistry());
+    var persistence = new BulkheadAccountPersistence(delegate, bulkhead, 256);
+
+    TestSubscriber<AssetAccountDto> slowReader =
+        persistence.getAssetAccountsByType(AssetAccountType.LOAN_ACCOUNT, null, 0).test(1);
+    slowReader.assertValueCount(1);
+    // the reader has not asked for more, and the next page is not read until it does
+    assertThat(bulkhead.getActive()).isZero();
+    slowReader.requestMore(Long.MAX_VALUE);
+
+    slowReader.assertComplete().assertValueCount(ACCOUNTS);
+    assertThat(pages).containsExactly("null:256", "255:256", "511:256", "767:256");
+    pages.clear();
+    persistence.getAssetAccountsByType(AssetAccountType.LOAN_ACCOUNT, "99", 300).test()
+        .assertComplete().assertValueCount(300);
+    assertThat(pages).containsExactly("99:256", "355:44");
+  }
+}
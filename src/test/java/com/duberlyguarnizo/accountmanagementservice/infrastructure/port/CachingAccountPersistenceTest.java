@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Account;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CachingAccountPersistenceTest {
+  private static final String ACCOUNT_CODE = "19110100000001";
+
+  private final UUID accountId = UUID.randomUUID();
+  private AccountPersistence delegate;
+  private CachingAccountPersistence cache;
+
+  @BeforeEach
+  void setUp() {
+    delegate = mock(AccountPersistence.class);
+    cache = new CachingAccountPersistence(delegate, 100, Duration.ofMinutes(1));
+    PassiveAccount account = new PassiveAccount();
+    account.setAccountId(accountId);
+    account.setAccountCode(ACCOUNT_CODE);
+    account.setBalance(50L);
+    when(delegate.getAccountByAccountCode(ACCOUNT_CODE))
+        .thenReturn(Maybe.fromCallable(() -> (Account) account));
+    when(delegate.addToBalance(AccountType.PASSIVE, accountId, 10L))
+        .thenReturn(Single.just(true));
+  }
+
+  @Test
+  void repeatedReadsHitTheCache() {
+    assertThat(cache.getAccountBalance(ACCOUNT_CODE).blockingGet()).isEqualTo(50L);
+    assertThat(cache.getAccountByAccountCode(ACCOUNT_CODE).blockingGet().getAccountCode())
+        .isEqualTo(ACCOUNT_CODE);
+
+    verify(delegate, times(1)).getAccountByAccountCode(ACCOUNT_CODE);
+    assertThat(cache.getCache().stats().hitCount()).isEqualTo(1);
+    assertThat(cache.getCache().stats().missCount()).isEqualTo(1);
+  }
+
+  @Test
+  void balanceMutationInvalidatesTheEntry() {
+    cache.getAccountBalance(ACCOUNT_CODE).blockingGet();
+
+    cache.addToBalance(AccountType.PASSIVE, accountId, 10L).blockingGet();
+
+    assertThat(cache.getCache().getIfPresent(ACCOUNT_CODE)).isNull();
+    cache.getAccountBalance(ACCOUNT_CODE).blockingGet();
+    verify(delegate, times(2)).getAccountByAccountCode(ACCOUNT_CODE);
+  }
+
+  @Test
+  void everyCachedAccountStaysReachableByItsId() {
+    cache = new CachingAccountPersistence(delegate, 10, Duration.ofMinutes(1));
+    Map<String, UUID> idsByCode = new HashMap<>();
+    for (int i = 0; i < 100; ++i) {
+      PassiveAccount account = new PassiveAccount();
+      account.setAccountId(UUID.randomUUID());
+      account.setAccountCode(String.format("191101%08d", i));
+      idsByCode.put(account.getAccountCode(), account.getAccountId());
+      when(delegate.getAccountByAccountCode(account.getAccountCode()))
+          .thenReturn(Maybe.just(account));
+      when(delegate.addToBalance(AccountType.PASSIVE, account.getAccountId(), 1L))
+          .thenReturn(Single.just(true));
+      // some accounts are read more often, so the eviction policy keeps them over the others
+      for (int read = 0; read <= i % 3; ++read) {
+        cache.getAccountByAccountCode(account.getAccountCode()).blockingGet();
+      }
+    }
+    cache.getCache().cleanUp();
+
+    Set<String> cached = Set.copyOf(cache.getCache().asMap().keySet());
+    assertThat(cached).isNotEmpty();
+    cached.forEach(accountCode -> cache.addToBalance(AccountType.PASSIVE,
+        idsByCode.get(accountCode), 1L).blockingGet());
+
+    assertThat(cache.getCache().asMap()).isEmpty();
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
+import io.reactivex.rxjava3.core.Single;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class CachingPastDueDebtCheckTest {
+  private final UUID clientId = UUID.randomUUID();
+  private AccountPersistence persistence;
+  private CachingPastDueDebtCheck check;
+
+  @BeforeEach
+  void setUp() {
+    persistence = mock(AccountPersistence.class);
+    check = new CachingPastDueDebtCheck(persistence, Duration.ofMinutes(1), 100);
+  }
+
+  @Test
+  void clientWithoutPastDueDebtIsAnsweredFromTheCache() {
+    when(persistence.hasAssetAccountLastPaidBefore(eq(clientId), any()))
+        .thenReturn(Single.just(false));
+
+    assertThat(check.hasPastDueDebt(clientId).blockingGet()).isFalse();
+    assertThat(check.hasPastDueDebt(clientId).blockingGet()).isFalse();
+
+    ArgumentCaptor<Instant> cutoff = ArgumentCaptor.forClass(Instant.class);
+    verify(persistence).hasAssetAccountLastPaidBefore(eq(clientId), cutoff.capture());
+    assertThat(cutoff.getValue())
+        .isBetween(Instant.now().minus(31, ChronoUnit.DAYS),
+            Instant.now().minus(29, ChronoUnit.DAYS));
+  }
+
+  @Test
+  void clientWithPastDueDebtIsCheckedEveryTime() {
+    when(persistence.hasAssetAccountLastPaidBefore(eq(clientId), any()))
+        .thenReturn(Single.just(true));
+
+    assertThat(check.hasPastDueDebt(clientId).blockingGet()).isTrue();
+    assertThat(check.hasPastDueDebt(clientId).blockingGet()).isTrue();
+
+    verify(persistence, times(2)).hasAssetAccountLastPaidBefore(eq(clientId), any());
+  }
+
+  @Test
+  void paymentDateChangeEvictsTheClient() {
+    when(persistence.hasAssetAccountLastPaidBefore(eq(clientId), any()))
+        .thenReturn(Single.just(false));
+
+    check.hasPastDueDebt(clientId).blockingGet();
+    check.paymentDateChanged(clientId);
+    check.hasPastDueDebt(clientId).blockingGet();
+
+    verify(persistence, times(2)).hasAssetAccountLastPaidBefore(eq(clientId), any());
+  }
+
+  @Test
+  void answerLoadedAcrossAPaymentDateChangeIsNotCached() {
+    when(persistence.hasAssetAccountLastPaidBefore(eq(clientId), any()))
+        .thenReturn(Single.fromCallable(() -> {
+          check.paymentDateChanged(clientId);
+          return false;
+        }));
+
+    check.hasPastDueDebt(clientId).blockingGet();
+    check.hasPastDueDebt(clientId).blockingGet();
+
+    verify(persistence, times(2)).hasAssetAccountLastPaidBefore(eq(clientId), any());
+  }
+}
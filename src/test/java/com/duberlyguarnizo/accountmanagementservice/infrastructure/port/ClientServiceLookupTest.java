@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.ClientType;
+import java.net.URI;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+class ClientServiceLookupTest {
+  private final AtomicReference<URI> requested = new AtomicReference<>();
+
+  private ClientServiceLookup lookup(HttpStatus status, String body) {
+    WebClient webClient = WebClient.builder()
+        .exchangeFunction(request -> {
+          requested.set(request.url());
+          return Mono.just(ClientResponse.create(status)
+              .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+              .body(body)
+              .build());
+        })
+        .build();
+    return new ClientServiceLookup(webClient,
+        "http://client-management-service/clients/{clientId}", Duration.ofSeconds(1),
+        Schedulers.parallel());
+  }
+
+  @Test
+  void clientTypeIsReadFromTheClientService() {
+    UUID clientId = UUID.randomUUID();
+
+    ClientType clientType = lookup(HttpStatus.OK, "{\"clientType\": \"CORPORATE_CLIENT\"}")
+        .getClientType(clientId).blockingGet();
+
+    assertThat(clientType).isEqualTo(ClientType.CORPORATE_CLIENT);
+    assertThat(requested.get())
+        .hasToString("http://client-management-service/clients/" + clientId);
+  }
+
+  @Test
+  void unknownClientIsEmpty() {
+    assertThat(lookup(HttpStatus.NOT_FOUND, "{}").getClientType(UUID.randomUUID())
+        .isEmpty().blockingGet()).isTrue();
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.ClientType;
+import io.reactivex.rxjava3.core.Observable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+/**
+ * Runs the replica against an embedded broker. Each test publishes to a topic of its own.
+ */
+@Slf4j
+class ClientTypeReplicaTest {
+  private static final int CLIENTS = 20_000;
+  private static EmbeddedKafkaBroker broker;
+  private static KafkaProducer<String, String> producer;
+  private final List<ClientTypeReplica> replicas = new ArrayList<>();
+
+  @BeforeAll
+  static void startBroker() {
+    broker = new EmbeddedKafkaBroker(1, false)
+        .brokerProperties(Map.of("transaction.state.log.replication.factor", "1",
+            "transaction.state.log.min.isr", "1"));
+    broker.afterPropertiesSet();
+    producer = new KafkaProducer<>(KafkaTestUtils.producerProps(broker), new StringSerializer(),
+        new StringSerializer());
+  }
+
+  @AfterAll
+  static void stopBroker() {
+    producer.close();
+    broker.destroy();
+  }
+
+  @AfterEach
+  void stopReplicas() {
+    replicas.forEach(ClientTypeReplica::stop);
+  }
+
+  @Test
+  void replicaAppliesTheLatestValuePerClientAndFollowsNewRecords() {
+    String topic = createTopic();
+    UUID upgraded = UUID.randomUUID();
+    UUID removed = UUID.randomUUID();
+    UUID regular = UUID.randomUUID();
+    publish(topic, upgraded, ClientType.REGULAR_CLIENT.name());
+    publish(topic, removed, ClientType.REGULAR_CLIENT.name());
+    publish(topic, regular, ClientType.REGULAR_CLIENT.name());
+    publish(topic, upgraded, ClientType.CORPORATE_CLIENT.name());
+    publish(topic, removed, null);
+
+    ClientTypeReplica replica = startReplica(topic);
+    replica.caughtUp().blockingAwait(30, TimeUnit.SECONDS);
+
+    assertThat(replica.getClientType(upgraded)).isEqualTo(ClientType.CORPORATE_CLIENT);
+    assertThat(replica.getClientType(regular)).isEqualTo(ClientType.REGULAR_CLIENT);
+    assertThat(replica.getClientType(removed)).isNull();
+
+    UUID newClient = UUID.randomUUID();
+    long publishedAt = System.nanoTime();
+    publish(topic, newClient, ClientType.CORPORATE_CLIENT.name());
+    Observable.interval(5, TimeUnit.MILLISECONDS)
+        .filter(tick -> replica.getClientType(newClient) != null)
+        .firstOrError()
+        .timeout(10, TimeUnit.SECONDS)
+        .blockingGet();
+    log.info("New client visible {} ms after publication",
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - publishedAt));
+  }
+
+  @Test
+  void replicaOfAnEmptyTopicIsCaughtUpOnceAssigned() {
+    ClientTypeReplica replica = startReplica(createTopic());
+
+    replica.caughtUp().blockingAwait(30, TimeUnit.SECONDS);
+
+    assertThat(replica.size()).isZero();
+  }
+
+  @Test
+  void replicaCatchesUpWhenThePartitionEndsWithATransactionMarker() {
+    String topic = createTopic();
+    UUID corporate = UUID.randomUUID();
+    Map<String, Object> properties = KafkaTestUtils.producerProps(broker);
+    properties.put(ProducerConfig.TRANSACTIONAL_ID_CONFIG, "client-types-" + UUID.randomUUID());
+    try (KafkaProducer<String, String> transactional = new KafkaProducer<>(properties,
+        new StringSerializer(), new StringSerializer())) {
+      transactional.initTransactions();
+      transactional.beginTransaction();
+      transactional.send(new ProducerRecord<>(topic, 0, corporate.toString(),
+          ClientType.CORPORATE_CLIENT.name()));
+      // the commit marker takes the last offset, so no record sits at end - 1
+      transactional.commitTransaction();
+    }
+
+    ClientTypeReplica replica = startReplica(topic);
+
+    assertThat(replica.caughtUp().blockingAwait(30, TimeUnit.SECONDS)).isTrue();
+    assertThat(replica.getClientType(corporate)).isEqualTo(ClientType.CORPORATE_CLIENT);
+  }
+
+  @Test
+  void restartedReplicaCatchesUpWithTheWholeTopic() {
+    String topic = createTopic();
+    for (int i = 0; i < CLIENTS; ++i) {
+      publish(topic, UUID.randomUUID(),
+          (i % 10 == 0 ? ClientType.CORPORATE_CLIENT : ClientType.REGULAR_CLIENT).name());
+    }
+    producer.flush();
+    ClientTypeReplica first = startReplica(topic);
+    first.caughtUp().blockingAwait(60, TimeUnit.SECONDS);
+    first.stop();
+
+    long restartedAt = System.nanoTime();
+    ClientTypeReplica restarted = startReplica(topic);
+    restarted.caughtUp().blockingAwait(60, TimeUnit.SECONDS);
+    long catchUpMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - restartedAt);
+
+    log.info("Replica caught up with {} clients {} ms after restart", restarted.size(),
+        catchUpMillis);
+    assertThat(restarted.size()).isEqualTo(CLIENTS);
+    assertThat(catchUpMillis).isLessThan(30_000);
+  }
+
+  private String createTopic() {
+    String topic = "client-types-" + UUID.randomUUID();
+    broker.addTopics(new NewTopic(topic, 3, (short) 1)
+        .configs(Map.of("cleanup.policy", "compact")));
+    return topic;
+  }
+
+  private ClientTypeReplica startReplica(String topic) {
+    ClientTypeReplica replica = new ClientTypeReplica(
+        Map.of(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString()), topic,
+        true);
+    replicas.add(replica);
+    replica.start();
+    return replica;
+  }
+
+  private void publish(String topic, UUID clientId, String clientType) {
+    producer.send(new ProducerRecord<>(topic, clientId.toString(), clientType));
+  }
+}
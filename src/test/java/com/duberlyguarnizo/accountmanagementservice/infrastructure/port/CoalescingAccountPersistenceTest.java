@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+/**
+ * Runs the lanes against a single simulated account document. Mongo applies the writes to one
+ * document one at a time, so every write holds the document for {@link #WRITE_MS}.
+ */
+class CoalescingAccountPersistenceTest {
+  private static final long WRITE_MS = 1;
+  private static final int OPERATIONS = 1024;
+
+  private final UUID accountId = UUID.randomUUID();
+  private final List<String> writes = Collections.synchronizedList(new ArrayList<>());
+  private ExecutorService documentLock;
+  private AccountPersistence document;
+  private long balance;
+
+  @BeforeEach
+  void setUp() {
+    documentLock = Executors.newSingleThreadExecutor();
+    Scheduler documentScheduler = Schedulers.from(documentLock);
+    document = mock(AccountPersistence.class);
+    when(document.addToBalance(eq(AccountType.PASSIVE), eq(accountId), anyLong()))
+        .thenAnswer(call -> Single.fromCallable(() -> {
+          long amount = call.getArgument(2);
+          TimeUnit.MILLISECONDS.sleep(WRITE_MS);
+          writes.add("+" + amount);
+          balance += amount;
+          return true;
+        }).subscribeOn(documentScheduler));
+    when(document.subtractFromBalance(eq(AccountType.PASSIVE), eq(accountId), anyLong()))
+        .thenAnswer(call -> Single.fromCallable(() -> {
+          long amount = call.getArgument(2);
+          TimeUnit.MILLISECONDS.sleep(WRITE_MS);
+          writes.add("-" + amount);
+          if (balance < amount) {
+            return false;
+          }
+          balance -= amount;
+          return true;
+        }).subscribeOn(documentScheduler));
+  }
+
+  @AfterEach
+  void tearDown() {
+    documentLock.shutdownNow();
+  }
+
+  @Test
+  void withdrawalSeesTheDepositsQueuedBeforeIt() {
+    var lanes = new CoalescingAccountPersistence(document, 4, Duration.ofMillis(20), 256,
+        reactor.core.scheduler.Schedulers.parallel());
+
+    List<Single<Boolean>> outcomes = List.of(
+        lanes.addToBalance(AccountType.PASSIVE, accountId, 10).cache(),
+        lanes.addToBalance(AccountType.PASSIVE, accountId, 5).cache(),
+        lanes.subtractFromBalance(AccountType.PASSIVE, accountId, 12).cache(),
+        lanes.addToBalance(AccountType.PASSIVE, accountId, 1).cache(),
+        lanes.addToBalance(AccountType.PASSIVE, accountId, 2).cache());
+    outcomes.forEach(Single::subscribe);
+
+    assertThat(Single.concat(outcomes).toList().blockingGet()).containsOnly(true);
+    assertThat(writes).containsExactly("+15", "-12", "+3");
+    assertThat(balance).isEqualTo(6);
+  }
+
+  @Test
+  void failedWriteReachesEveryMergedCaller() {
+    AccountPersistence failing = mock(AccountPersistence.class);
+    when(failing.addToBalance(any(), any(), anyLong())).thenReturn(
+        Single.error(new DataAccessResourceFailureException("connection reset")));
+    var lanes = new CoalescingAccountPersistence(failing, 4, Duration.ofMillis(20), 256,
+        reactor.core.scheduler.Schedulers.parallel());
+
+    var first = lanes.addToBalance(AccountType.PASSIVE, accountId, 1).test();
+    var second = lanes.addToBalance(AccountType.PASSIVE, accountId, 2).test();
+
+    first.awaitDone(1, TimeUnit.SECONDS).assertError(DataAccessResourceFailureException.class);
+    second.awaitDone(1, TimeUnit.SECONDS).assertError(DataAccessResourceFailureException.class);
+  }
+
+  @Test
+  void overflowingSumFailsOnlyItsCallersAndTheLaneMovesOn() {
+    var lanes = new CoalescingAccountPersistence(document, 4, Duration.ofMillis(20), 256,
+        reactor.core.scheduler.Schedulers.parallel());
+
+    var first = lanes.addToBalance(AccountType.PASSIVE, accountId, Long.MAX_VALUE).test();
+    var second = lanes.addToBalance(AccountType.PASSIVE, accountId, 1).test();
+    first.awaitDone(1, TimeUnit.SECONDS).assertError(ArithmeticException.class);
+    second.awaitDone(1, TimeUnit.SECONDS).assertError(ArithmeticException.class);
+
+    assertThat(lanes.addToBalance(AccountType.PASSIVE, accountId, 3)
+        .timeout(1, TimeUnit.SECONDS).blockingGet()).isTrue();
+    assertThat(writes).containsExactly("+3");
+  }
+
+  @Test
+  void synchronousBatchesDrainWithoutGrowingTheStack() {
+    AccountPersistence synchronous = mock(AccountPersistence.class);
+    when(synchronous.addToBalance(any(), any(), anyLong())).thenReturn(Single.just(true));
+    var lanes = new CoalescingAccountPersistence(synchronous, 1, Duration.ofMillis(20), 1,
+        reactor.core.scheduler.Schedulers.parallel());
+
+    List<Single<Boolean>> outcomes = new ArrayList<>();
+    for (int i = 0; i < 100_000; ++i) {
+      Single<Boolean> outcome = lanes.addToBalance(AccountType.PASSIVE, accountId, 1).cache();
+      outcome.subscribe();
+      outcomes.add(outcome);
+    }
+
+    assertThat(Single.concat(outcomes).all(applied -> applied)
+        .timeout(10, TimeUnit.SECONDS).blockingGet()).isTrue();
+  }
+
+  /**
+   * The throughput and tail latency of the lanes against direct writes are measured by
+   * CoalescingBenchmark; this only checks what the burst writes.
+   */
+  @Test
+  void depositsQueuedBehindAWriteAreMergedInOrder() {
+    CountDownLatch queued = new CountDownLatch(1);
+    // the first write holds the document until every deposit is waiting in the lane
+    documentLock.execute(() -> {
+      try {
+        queued.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    // without a window the first deposit is written at once
+    var lanes = new CoalescingAccountPersistence(document, 16, Duration.ZERO, 256,
+        reactor.core.scheduler.Schedulers.parallel());
+
+    List<Single<Boolean>> outcomes = new ArrayList<>();
+    for (int i = 1; i <= OPERATIONS; ++i) {
+      Single<Boolean> outcome = lanes.addToBalance(AccountType.PASSIVE, accountId, i).cache();
+      outcome.subscribe();
+      outcomes.add(outcome);
+    }
+    queued.countDown();
+
+    assertThat(Single.concat(outcomes).all(applied -> applied)
+        .timeout(10, TimeUnit.SECONDS).blockingGet()).isTrue();
+    assertThat(balance).isEqualTo((long) OPERATIONS * (OPERATIONS + 1) / 2);
+    // the deposit that opened the lane, then the queue in batches of at most 256
+    assertThat(writes).hasSize(1 + OPERATIONS / 256);
+    assertThat(writes.get(0)).isEqualTo("+1");
+    assertThat(writes.subList(1, writes.size())).containsExactly(
+        "+" + sum(2, 257), "+" + sum(258, 513), "+" + sum(514, 769), "+" + sum(770, 1024));
+  }
+
+  private static long sum(long from, long to) {
+    return (from + to) * (to - from + 1) / 2;
+  }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.duberlyguarnizo.accountmanagementservice.exception.BulkheadFullException;
+import com.duberlyguarnizo.accountmanagementservice.exception.IdempotencyKeyReusedException;
+import com.duberlyguarnizo.accountmanagementservice.exception.IdempotentRequestInProgressException;
+import com.duberlyguarnizo.accountmanagementservice.exception.IdempotentRequestOutcomeUnknownException;
+import com.duberlyguarnizo.accountmanagementservice.exception.InsufficientBalanceException;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.IdempotencyKeyEntity;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import reactor.core.publisher.Mono;
+
+@Slf4j
+class IdempotencyStoreImplTest {
+  private static final String KEY = "retry-me";
+  private static final String FINGERPRINT = "increaseAccountBalance:account:10.0";
+  private ReactiveMongoTemplate template;
+  private IdempotencyStoreImpl store;
+  private AtomicInteger executions;
+
+  @BeforeEach
+  void setUp() {
+    template = mock(ReactiveMongoTemplate.class);
+    when(template.insert(any(IdempotencyKeyEntity.class)))
+        .thenAnswer(call -> Mono.just(call.getArgument(0)));
+    when(template.updateFirst(any(Query.class), any(UpdateDefinition.class),
+        eq(IdempotencyKeyEntity.class)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+    store = new IdempotencyStoreImpl(template, Duration.ofHours(24), Duration.ofSeconds(30),
+        1000);
+    executions = new AtomicInteger();
+  }
+
+  private Completable operation() {
+    return Completable.fromRunnable(executions::incrementAndGet);
+  }
+
+  @Test
+  void duplicateIsAnsweredWithoutRunningTheOperationAgain() {
+    store.execute(KEY, FINGERPRINT, operation()).blockingAwait();
+    store.execute(KEY, FINGERPRINT, operation()).blockingAwait();
+
+    assertThat(executions).hasValue(1);
+    verify(template, times(1)).insert(any(IdempotencyKeyEntity.class));
+    verify(template).updateFirst(any(Query.class), any(UpdateDefinition.class),
+        eq(IdempotencyKeyEntity.class));
+  }
+
+  @Test
+  void concurrentDuplicatesShareOneExecution() {
+    Completable slowOperation = operation().delay(50, TimeUnit.MILLISECONDS);
+
+    Flowable.range(0, 100)
+        .flatMapCompletable(i -> store.execute(KEY, FINGERPRINT, slowOperation)
+            .subscribeOn(Schedulers.io()))
+        .blockingAwait();
+
+    assertThat(executions).hasValue(1);
+    verify(template, times(1)).insert(any(IdempotencyKeyEntity.class));
+  }
+
+  @Test
+  void businessRuleFailureIsReplayed() {
+    Completable failing = operation().andThen(Completable.error(
+        new InsufficientBalanceException("Account balance is less than the amount to withdraw")));
+
+    store.execute(KEY, FINGERPRINT, failing).test().assertError(
+        InsufficientBalanceException.class);
+    store.execute(KEY, FINGERPRINT, failing).test().assertError(
+        InsufficientBalanceException.class);
+
+    assertThat(executions).hasValue(1);
+  }
+
+  @Test
+  void unknownOutcomeKeepsTheKey() {
+    Completable failing = operation().andThen(Completable.error(
+        new DataAccessResourceFailureException("connection reset")));
+
+    store.execute(KEY, FINGERPRINT, failing).test().assertError(
+        DataAccessResourceFailureException.class);
+    store.execute(KEY, FINGERPRINT, operation()).test().assertError(
+        IdempotentRequestOutcomeUnknownException.class);
+
+    assertThat(executions).hasValue(1);
+    ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+    verify(template).updateFirst(any(Query.class), update.capture(),
+        eq(IdempotencyKeyEntity.class));
+    assertThat(update.getValue().getUpdateObject().get("$set", Document.class))
+        .containsEntry("status", IdempotencyKeyEntity.UNKNOWN);
+  }
+
+  @Test
+  void operationTurnedAwayFreesTheKey() {
+    when(template.remove(any(Query.class), eq(IdempotencyKeyEntity.class)))
+        .thenReturn(Mono.just(DeleteResult.acknowledged(1)));
+    Completable rejected = Completable.error(new BulkheadFullException("bulkhead full"));
+
+    store.execute(KEY, FINGERPRINT, rejected).test().assertError(BulkheadFullException.class);
+    store.execute(KEY, FINGERPRINT, operation()).blockingAwait();
+
+    assertThat(executions).hasValue(1);
+    ArgumentCaptor<Query> released = ArgumentCaptor.forClass(Query.class);
+    verify(template).remove(released.capture(), eq(IdempotencyKeyEntity.class));
+    assertThat(released.getValue().getQueryObject())
+        .containsEntry("_id", KEY)
+        .containsEntry("status", IdempotencyKeyEntity.IN_PROGRESS);
+    // only the outcome of the second attempt was stored
+    verify(template).updateFirst(any(Query.class), any(UpdateDefinition.class),
+        eq(IdempotencyKeyEntity.class));
+  }
+
+  @Test
+  void leaseIsRenewedWhileTheOperationRuns() {
+    store = new IdempotencyStoreImpl(template, Duration.ofHours(24), Duration.ofMillis(60),
+        1000);
+
+    store.execute(KEY, FINGERPRINT, operation().delay(300, TimeUnit.MILLISECONDS))
+        .blockingAwait();
+
+    ArgumentCaptor<UpdateDefinition> updates = ArgumentCaptor.forClass(UpdateDefinition.class);
+    verify(template, atLeast(3)).updateFirst(any(Query.class), updates.capture(),
+        eq(IdempotencyKeyEntity.class));
+    List<UpdateDefinition> renewals = updates.getAllValues()
+        .subList(0, updates.getAllValues().size() - 1);
+    assertThat(renewals).allSatisfy(renewal ->
+        assertThat(renewal.getUpdateObject().get("$set", Document.class))
+            .containsOnlyKeys("expiresAt"));
+    long calls = mockingDetails(template).getInvocations().size();
+    // the renewals stop with the operation
+    Completable.timer(100, TimeUnit.MILLISECONDS).blockingAwait();
+    assertThat(mockingDetails(template).getInvocations()).hasSize((int) calls);
+  }
+
+  @Test
+  void claimIsALeaseShorterThanTheOutcomeRetention() {
+    ArgumentCaptor<IdempotencyKeyEntity> claim =
+        ArgumentCaptor.forClass(IdempotencyKeyEntity.class);
+    when(template.insert(claim.capture())).thenAnswer(call -> Mono.just(call.getArgument(0)));
+
+    store.execute(KEY, FINGERPRINT, operation().doOnComplete(() ->
+        assertThat(claim.getValue().getExpiresAt())
+            .isBefore(Instant.now().plus(Duration.ofMinutes(1))))).blockingAwait();
+
+    ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+    verify(template).updateFirst(any(Query.class), update.capture(),
+        eq(IdempotencyKeyEntity.class));
+    assertThat(update.getValue().getUpdateObject().get("$set", Document.class)
+        .get("expiresAt", Instant.class)).isAfter(Instant.now().plus(Duration.ofHours(23)));
+  }
+
+  @Test
+  void expiredClaimIsTakenOver() {
+    when(template.insert(any(IdempotencyKeyEntity.class)))
+        .thenReturn(Mono.error(new DuplicateKeyException("E11000")));
+    IdempotencyKeyEntity abandoned = stored(IdempotencyKeyEntity.IN_PROGRESS);
+    Instant expired = Instant.now().minusSeconds(1);
+    abandoned.setExpiresAt(expired);
+    when(template.findById(KEY, IdempotencyKeyEntity.class)).thenReturn(Mono.just(abandoned));
+
+    store.execute(KEY, FINGERPRINT, operation()).blockingAwait();
+
+    assertThat(executions).hasValue(1);
+    ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+    verify(template, times(2)).updateFirst(queries.capture(), any(UpdateDefinition.class),
+        eq(IdempotencyKeyEntity.class));
+    // the lease is renewed only if it is still the one seen expired
+    assertThat(queries.getAllValues().get(0).getQueryObject())
+        .containsEntry("expiresAt", expired);
+  }
+
+  @Test
+  void keyReusedForAnotherRequestIsRejected() {
+    store.execute(KEY, FINGERPRINT, operation()).blockingAwait();
+
+    store.execute(KEY, "increaseAccountBalance:account:20.0", operation()).test()
+        .assertError(IdempotencyKeyReusedException.class);
+    assertThat(executions).hasValue(1);
+  }
+
+  @Test
+  void outcomeStoredByAnotherNodeIsReplayed() {
+    when(template.insert(any(IdempotencyKeyEntity.class)))
+        .thenReturn(Mono.error(new DuplicateKeyException("E11000")));
+    when(template.findById(KEY, IdempotencyKeyEntity.class)).thenReturn(Mono.just(
+        stored(IdempotencyKeyEntity.COMPLETED)));
+
+    store.execute(KEY, FINGERPRINT, operation()).blockingAwait();
+    store.execute(KEY, FINGERPRINT, operation()).blockingAwait();
+
+    assertThat(executions).hasValue(0);
+    // the second request was answered from the front cache
+    verify(template, times(1)).findById(KEY, IdempotencyKeyEntity.class);
+  }
+
+  @Test
+  void keyRunningOnAnotherNodeIsRefused() {
+    when(template.insert(any(IdempotencyKeyEntity.class)))
+        .thenReturn(Mono.error(new DuplicateKeyException("E11000")));
+    when(template.findById(KEY, IdempotencyKeyEntity.class)).thenReturn(Mono.just(
+        stored(IdempotencyKeyEntity.IN_PROGRESS)));
+
+    store.execute(KEY, FINGERPRINT, operation()).test()
+        .assertError(IdempotentRequestInProgressException.class);
+    assertThat(executions).hasValue(0);
+    verify(template, never()).updateFirst(any(Query.class), any(UpdateDefinition.class),
+        eq(IdempotencyKeyEntity.class));
+  }
+
+  @Test
+  void cachedLookupStaysUnderAMillisecond() {
+    store.execute(KEY, FINGERPRINT, operation()).blockingAwait();
+    int lookups = 100_000;
+    for (int i = 0; i < lookups; ++i) {
+      store.execute(KEY, FINGERPRINT, operation()).blockingAwait();
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < lookups; ++i) {
+      store.execute(KEY, FINGERPRINT, operation()).blockingAwait();
+    }
+    double micros = (System.nanoTime() - start) / 1000.0 / lookups;
+
+    log.info("Cached idempotency lookup took {} us on average", String.format("%.2f", micros));
+    assertThat(executions).hasValue(1);
+    assertThat(micros).isLessThan(1000);
+  }
+
+  private static IdempotencyKeyEntity stored(String status) {
+    return IdempotencyKeyEntity.builder()
+        .key(KEY)
+        .fingerprint(FINGERPRINT)
+        .status(status)
+        .createdAt(Instant.now())
+        .expiresAt(Instant.now().plus(Duration.ofHours(24)))
+        .build();
+  }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Account;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.AssetAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.mapper.AccountMapper;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.AssetAccountEntity;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.LedgerEntryEntity;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.PassiveAccountEntity;
+import com.mongodb.client.result.UpdateResult;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Maybe;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Runs the ledger against an in-memory account_ledger collection that enforces the unique
+ * (accountId, seq) index, shared by two instances standing for two nodes.
+ */
+class LedgerAccountPersistenceTest {
+  private static final String ACCOUNT_CODE = "19110100000001";
+  private static final long OPENING_BALANCE = 100L;
+
+  private final UUID accountId = UUID.randomUUID();
+  private final List<LedgerEntryEntity> ledger = new ArrayList<>();
+  private ReactiveMongoTemplate template;
+  private AccountPersistence snapshots;
+  private LedgerAccountPersistence node;
+  private LedgerAccountPersistence otherNode;
+
+  @BeforeEach
+  void setUp() {
+    template = mock(ReactiveMongoTemplate.class);
+    when(template.insert(any(LedgerEntryEntity.class))).thenAnswer(call -> Mono.defer(() -> {
+      LedgerEntryEntity entry = call.getArgument(0);
+      synchronized (ledger) {
+        if (ledger.stream().anyMatch(stored -> stored.getSeq() == entry.getSeq())) {
+          return Mono.error(new DuplicateKeyException("E11000 accountId_seq"));
+        }
+        ledger.add(entry);
+      }
+      return Mono.just(entry);
+    }));
+    when(template.findOne(any(Query.class), eq(LedgerEntryEntity.class)))
+        .thenAnswer(call -> Mono.defer(() -> Mono.justOrEmpty(find(call.getArgument(0)))));
+    when(template.getCollectionName(PassiveAccountEntity.class)).thenReturn("passive_accounts");
+    when(template.findOne(any(Query.class), eq(Document.class), anyString()))
+        .thenAnswer(call -> Mono.just(new Document("balance", OPENING_BALANCE)));
+    when(template.updateFirst(any(Query.class), any(Update.class), eq(PassiveAccountEntity.class)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+    when(template.updateMulti(any(Query.class), any(Update.class), eq(LedgerEntryEntity.class)))
+        .thenAnswer(call -> Mono.fromCallable(() -> unmarkFolded(call.getArgument(0))));
+    when(template.aggregate(any(Aggregation.class), eq(LedgerEntryEntity.class),
+        eq(Document.class))).thenAnswer(call -> Flux.defer(this::pendingAccounts));
+
+    snapshots = mock(AccountPersistence.class);
+    when(snapshots.getAccountByAccountCode(ACCOUNT_CODE)).thenAnswer(call -> {
+      PassiveAccount account = new PassiveAccount();
+      account.setAccountId(accountId);
+      account.setAccountCode(ACCOUNT_CODE);
+      account.setBalance(OPENING_BALANCE);
+      account.setCreatedAt(Instant.EPOCH);
+      return Maybe.just((Account) account);
+    });
+    AccountOutbox outbox = new AccountOutbox(template, null, 16);
+    node = new LedgerAccountPersistence(snapshots, template, outbox, 1000);
+    otherNode = new LedgerAccountPersistence(snapshots, template, outbox, 1000);
+  }
+
+  /**
+   * Interprets the two ledger queries: the last entry, optionally up to an instant, and the
+   * first entry.
+   */
+  private LedgerEntryEntity find(Query query) {
+    Instant until = query.getQueryObject().get("createdAt") == null ? null
+        : ((Document) query.getQueryObject().get("createdAt")).get("$lte", Instant.class);
+    boolean first = query.getSortObject().getInteger("seq") == 1;
+    Comparator<LedgerEntryEntity> bySeq = Comparator.comparingLong(LedgerEntryEntity::getSeq);
+    synchronized (ledger) {
+      return ledger.stream()
+          .filter(entry -> until == null || !entry.getCreatedAt().isAfter(until))
+          .max(first ? bySeq.reversed() : bySeq)
+          .orElse(null);
+    }
+  }
+
+  /**
+   * Removes the pending mark of the entries up to the folded seq.
+   */
+  private UpdateResult unmarkFolded(Query query) {
+    long folded = query.getQueryObject().get("seq", Document.class).getLong("$lte");
+    synchronized (ledger) {
+      List<LedgerEntryEntity> unmarked = ledger.stream()
+          .filter(entry -> entry.getPending() != null && entry.getSeq() <= folded)
+          .collect(Collectors.toList());
+      unmarked.forEach(entry -> entry.setPending(null));
+      return UpdateResult.acknowledged(unmarked.size(), (long) unmarked.size(), null);
+    }
+  }
+
+  /**
+   * Groups the entries still marked pending by account, as the recovery pipeline does.
+   */
+  private Flux<Document> pendingAccounts() {
+    synchronized (ledger) {
+      return Flux.fromIterable(ledger.stream()
+          .filter(entry -> Boolean.TRUE.equals(entry.getPending()))
+          .map(entry -> new Document("_id", entry.getAccountId())
+              .append("accountType", entry.getAccountType().name()))
+          .distinct()
+          .collect(Collectors.toList()));
+    }
+  }
+
+  @Test
+  void changesAreAppendedWithTheRunningBalance() {
+    assertThat(node.addToBalance(AccountType.PASSIVE, accountId, 10L).blockingGet()).isTrue();
+    assertThat(node.subtractFromBalance(AccountType.PASSIVE, accountId, 30L).blockingGet())
+        .isTrue();
+
+    assertThat(ledger).extracting(LedgerEntryEntity::getSeq).containsExactly(1L, 2L);
+    assertThat(ledger).extracting(LedgerEntryEntity::getBalanceAfter)
+        .containsExactly(110L, 80L);
+    assertThat(ledger).extracting(LedgerEntryEntity::getAccountId)
+        .containsOnly(AccountMapper.toEntityId(accountId));
+    assertThat(node.getAccountBalance(ACCOUNT_CODE).blockingGet()).isEqualTo(80L);
+  }
+
+  @Test
+  void overdraftIsRejectedWithoutAppending() {
+    assertThat(node.subtractFromBalance(AccountType.PASSIVE, accountId, 150L).blockingGet())
+        .isFalse();
+
+    assertThat(ledger).isEmpty();
+  }
+
+  @Test
+  void writesFromAnotherNodeAreSeenBeforeAppending() {
+    node.addToBalance(AccountType.PASSIVE, accountId, 10L).blockingGet();
+    otherNode.addToBalance(AccountType.PASSIVE, accountId, 5L).blockingGet();
+
+    // the cached state of the first node is one entry behind: its insert collides and retries
+    node.addToBalance(AccountType.PASSIVE, accountId, 1L).blockingGet();
+    // and its stale balance must not reject a withdrawal the stored one allows
+    assertThat(otherNode.subtractFromBalance(AccountType.PASSIVE, accountId, 116L)
+        .blockingGet()).isTrue();
+
+    assertThat(ledger).extracting(LedgerEntryEntity::getSeq).containsExactly(1L, 2L, 3L, 4L);
+    assertThat(ledger).extracting(LedgerEntryEntity::getBalanceAfter)
+        .containsExactly(110L, 115L, 116L, 0L);
+  }
+
+  @Test
+  void snapshotFoldsTheLastEntryIntoTheAccount() {
+    node.addToBalance(AccountType.PASSIVE, accountId, 10L).blockingGet();
+    node.addToBalance(AccountType.PASSIVE, accountId, 20L).blockingGet();
+
+    assertThat(node.snapshot().block()).isEqualTo(1L);
+    assertThat(node.snapshot().block()).isZero();
+
+    ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+    verify(template).updateFirst(any(Query.class), update.capture(),
+        eq(PassiveAccountEntity.class));
+    assertThat(update.getValue().getUpdateObject().get("$set", Document.class))
+        .containsEntry("balance", 130L)
+        .containsEntry("ledgerSeq", 2L);
+  }
+
+  @Test
+  void entriesLeftByAStoppedNodeAreFoldedAfterARestart() {
+    otherNode.addToBalance(AccountType.PASSIVE, accountId, 10L).blockingGet();
+    // the other node stopped without its last snapshot: the entry is only in the ledger
+
+    assertThat(node.recoverPendingSnapshots().block()).isEqualTo(1L);
+    assertThat(node.snapshot().block()).isEqualTo(1L);
+
+    ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+    verify(template).updateFirst(any(Query.class), update.capture(),
+        eq(PassiveAccountEntity.class));
+    assertThat(update.getValue().getUpdateObject().get("$set", Document.class))
+        .containsEntry("balance", 110L)
+        .containsEntry("ledgerSeq", 1L);
+    assertThat(ledger).extracting(LedgerEntryEntity::getPending).containsOnlyNulls();
+    assertThat(otherNode.recoverPendingSnapshots().block()).isZero();
+  }
+
+  @Test
+  void recoveryOnlyReadsThePendingIndex() {
+    node.addToBalance(AccountType.PASSIVE, accountId, 10L).blockingGet();
+    node.addToBalance(AccountType.PASSIVE, accountId, 20L).blockingGet();
+    node.snapshot().block();
+    node.addToBalance(AccountType.PASSIVE, accountId, 5L).blockingGet();
+
+    assertThat(otherNode.recoverPendingSnapshots().block()).isEqualTo(1L);
+
+    // the first stage selects exactly the entries of the partial index, on its leading key, so
+    // the entries already folded are never read
+    ArgumentCaptor<Aggregation> aggregation = ArgumentCaptor.forClass(Aggregation.class);
+    verify(template).aggregate(aggregation.capture(), eq(LedgerEntryEntity.class),
+        eq(Document.class));
+    List<Document> pipeline = aggregation.getValue()
+        .toPipeline(Aggregation.DEFAULT_CONTEXT);
+    CompoundIndex pending = Arrays.stream(
+            LedgerEntryEntity.class.getAnnotationsByType(CompoundIndex.class))
+        .filter(index -> !index.partialFilter().isEmpty())
+        .findFirst()
+        .orElseThrow();
+    Document match = pipeline.get(0).get("$match", Document.class);
+    assertThat(match).isEqualTo(Document.parse(pending.partialFilter()));
+    assertThat(Document.parse(pending.def()).keySet()).first()
+        .isEqualTo(LedgerEntryEntity.PENDING);
+    assertThat(pipeline).noneMatch(stage -> stage.containsKey("$sort")
+                                            || stage.containsKey("$lookup"));
+    assertThat(ledger).extracting(LedgerEntryEntity::getPending)
+        .containsExactly(null, null, true);
+  }
+
+  @Test
+  void debitWithinTheLimitIsCheckedAgainstTheLoweredLimit() {
+    AtomicLong limit = new AtomicLong(500L);
+    when(template.getCollectionName(AssetAccountEntity.class)).thenReturn("asset_accounts");
+    when(template.findOne(any(Query.class), eq(Document.class), eq("asset_accounts")))
+        .thenAnswer(call -> Mono.fromCallable(() -> new Document("balance", 0L)
+            .append("loanOrCreditCardLimit", limit.get())));
+    when(snapshots.updateAccount(any())).thenReturn(Completable.complete());
+    assertThat(node.addToBalanceWithinLimit(accountId, 100L).blockingGet()).isTrue();
+
+    AssetAccount card = new AssetAccount();
+    card.setAccountId(accountId);
+    card.setLoanOrCreditCardLimit(150L);
+    node.updateAccount(card).blockingAwait();
+    limit.set(150L);
+    assertThat(node.addToBalanceWithinLimit(accountId, 100L).blockingGet()).isFalse();
+    // lowered by another node, which this one was not told about
+    limit.set(120L);
+    assertThat(otherNode.addToBalanceWithinLimit(accountId, 10L).blockingGet()).isTrue();
+    limit.set(100L);
+    assertThat(otherNode.addToBalanceWithinLimit(accountId, 5L).blockingGet()).isFalse();
+
+    assertThat(ledger).extracting(LedgerEntryEntity::getBalanceAfter)
+        .containsExactly(100L, 110L);
+  }
+
+  @Test
+  void pastBalanceIsTheLastEntryBeforeThatInstant() {
+    node.addToBalance(AccountType.PASSIVE, accountId, 10L).blockingGet();
+    Instant afterFirst = ledger.get(0).getCreatedAt();
+    node.addToBalance(AccountType.PASSIVE, accountId, 20L).blockingGet();
+    ledger.get(1).setCreatedAt(afterFirst.plusSeconds(60));
+
+    assertThat(node.getAccountBalanceAt(ACCOUNT_CODE, afterFirst.plusSeconds(30)).blockingGet())
+        .isEqualTo(110L);
+    assertThat(node.getAccountBalanceAt(ACCOUNT_CODE, afterFirst.minusSeconds(30)).blockingGet())
+        .isEqualTo(OPENING_BALANCE);
+    assertThat(node.getAccountBalanceAt(ACCOUNT_CODE, Instant.EPOCH.minusSeconds(1))
+        .isEmpty().blockingGet()).isTrue();
+  }
+}
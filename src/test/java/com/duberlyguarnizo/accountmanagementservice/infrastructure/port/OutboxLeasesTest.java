@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.mongodb.client.result.UpdateResult;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import reactor.core.publisher.Mono;
+
+class OutboxLeasesTest {
+  private ReactiveMongoTemplate template;
+  private OutboxLeases leases;
+
+  @BeforeEach
+  void setUp() {
+    template = mock(ReactiveMongoTemplate.class);
+    leases = new OutboxLeases(template, "relay-a", 16, Duration.ofSeconds(10));
+    when(template.upsert(any(Query.class), any(UpdateDefinition.class),
+        eq(OutboxLeases.MEMBER_COLLECTION)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+    when(template.updateFirst(any(Query.class), any(UpdateDefinition.class),
+        eq(OutboxLeases.LEASE_COLLECTION)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null)));
+  }
+
+  @Test
+  void relayHoldsItsFairShareOfPartitions() {
+    when(template.count(any(Query.class), eq(OutboxLeases.MEMBER_COLLECTION)))
+        .thenReturn(Mono.just(2L));
+    when(template.findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Document.class), eq(OutboxLeases.LEASE_COLLECTION)))
+        .thenReturn(Mono.just(new Document()));
+
+    List<Integer> held = leases.renew().block();
+
+    assertThat(held).hasSize(8).doesNotHaveDuplicates().allMatch(p -> p >= 0 && p < 16);
+  }
+
+  @Test
+  void partitionsLeasedByLiveRelaysAreSkipped() {
+    Set<Integer> takenByOthers = Set.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11);
+    when(template.count(any(Query.class), eq(OutboxLeases.MEMBER_COLLECTION)))
+        .thenReturn(Mono.just(1L));
+    when(template.findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Document.class), eq(OutboxLeases.LEASE_COLLECTION)))
+        .thenAnswer(call -> {
+          int partition = call.<Query>getArgument(0).getQueryObject().getInteger("_id");
+          return takenByOthers.contains(partition)
+              ? Mono.error(new DuplicateKeyException("lease held"))
+              : Mono.just(new Document());
+        });
+
+    assertThat(leases.renew().block()).containsExactlyInAnyOrder(12, 13, 14, 15);
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.duberlyguarnizo.accountmanagementservice.concurrency.BoundedScheduler;
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.infrastructure.repository.OutboxEventEntity;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Drains an in-memory outbox into an embedded broker through the relay and measures the rate.
+ */
+@Slf4j
+class OutboxRelayTest {
+  private static final String TOPIC = "account-events";
+  private static final int PARTITIONS = 16;
+  private static final int EVENTS = 200_000;
+  private static EmbeddedKafkaBroker broker;
+
+  @BeforeAll
+  static void startBroker() {
+    broker = new EmbeddedKafkaBroker(1, false, PARTITIONS, TOPIC);
+    broker.afterPropertiesSet();
+  }
+
+  @AfterAll
+  static void stopBroker() {
+    broker.destroy();
+  }
+
+  @Test
+  void relayPublishesAtLeastTenThousandEventsPerSecond() {
+    AccountOutbox events = new AccountOutbox(null, null, PARTITIONS);
+    List<Queue<OutboxEventEntity>> pending = IntStream.range(0, PARTITIONS)
+        .mapToObj(partition -> new ConcurrentLinkedQueue<OutboxEventEntity>())
+        .collect(Collectors.toList());
+    for (int i = 0; i < EVENTS; ++i) {
+      OutboxEventEntity event = events.balanceChanged(AccountType.PASSIVE, UUID.randomUUID(), i);
+      event.setId(Integer.toString(i));
+      pending.get(event.getPartition()).add(event);
+    }
+    AtomicLong delivered = new AtomicLong();
+    AccountOutbox outbox = mock(AccountOutbox.class);
+    when(outbox.findPending(anyInt(), anyInt())).thenAnswer(call -> Flux.defer(() -> {
+      Queue<OutboxEventEntity> queue = pending.get(call.<Integer>getArgument(0));
+      List<OutboxEventEntity> batch = new ArrayList<>();
+      for (int i = call.<Integer>getArgument(1); i > 0 && !queue.isEmpty(); --i) {
+        batch.add(queue.poll());
+      }
+      return Flux.fromIterable(batch);
+    }));
+    when(outbox.markDelivered(anyList())).thenAnswer(call ->
+        Mono.fromSupplier(() -> delivered.addAndGet(call.<List<?>>getArgument(0).size())));
+    OutboxLeases leases = mock(OutboxLeases.class);
+    when(leases.getTtl()).thenReturn(Duration.ofSeconds(10));
+    when(leases.renew()).thenReturn(Mono.just(IntStream.range(0, PARTITIONS).boxed()
+        .collect(Collectors.toList())));
+    when(leases.releaseAll()).thenReturn(Mono.empty());
+    Map<String, Object> producerProperties = KafkaTestUtils.producerProps(broker);
+    producerProperties.put(ProducerConfig.LINGER_MS_CONFIG, 20);
+    producerProperties.put(ProducerConfig.BATCH_SIZE_CONFIG, 262144);
+    producerProperties.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    BoundedScheduler jobs = new BoundedScheduler("account-jobs", 2, 64, meterRegistry);
+    OutboxRelay relay = new OutboxRelay(outbox, leases, producerProperties, TOPIC, 1000,
+        Duration.ofMillis(100), jobs.scheduler(), meterRegistry);
+
+    long start = System.nanoTime();
+    relay.start();
+    try {
+      Flux.interval(Duration.ofMillis(10))
+          .filter(tick -> delivered.get() == EVENTS)
+          .blockFirst(Duration.ofSeconds(60));
+    } finally {
+      relay.stop();
+      jobs.close();
+    }
+    double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+
+    long eventsPerSecond = Math.round(EVENTS / seconds);
+    log.info("Relayed {} events in {} ms, {} events/s", EVENTS, Math.round(seconds * 1000),
+        eventsPerSecond);
+    assertThat(publishedRecords()).isEqualTo(EVENTS);
+    assertThat(eventsPerSecond).isGreaterThanOrEqualTo(10_000);
+  }
+
+  private long publishedRecords() {
+    Map<String, Object> consumerProperties =
+        KafkaTestUtils.consumerProps("outbox-relay-test", "false", broker);
+    try (Consumer<String, String> consumer =
+             new DefaultKafkaConsumerFactory<String, String>(consumerProperties)
+                 .createConsumer()) {
+      List<TopicPartition> partitions = IntStream.range(0, PARTITIONS)
+          .mapToObj(partition -> new TopicPartition(TOPIC, partition))
+          .collect(Collectors.toList());
+      return consumer.endOffsets(partitions).values().stream().mapToLong(Long::longValue).sum();
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.port;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.duberlyguarnizo.accountmanagementservice.domain.enums.AccountType;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.Account;
+import com.duberlyguarnizo.accountmanagementservice.domain.model.PassiveAccount;
+import com.duberlyguarnizo.accountmanagementservice.domain.persistence.AccountPersistence;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.observers.TestObserver;
+import io.reactivex.rxjava3.subjects.MaybeSubject;
+import io.reactivex.rxjava3.subjects.SingleSubject;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SingleFlightAccountPersistenceTest {
+  private static final int LOOKUPS = 1000;
+  private static final String ACCOUNT_CODE = "19110100000001";
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final ExecutorService requests = Executors.newFixedThreadPool(16);
+  private AccountPersistence repository;
+  private SingleFlightAccountPersistence persistence;
+
+  @BeforeEach
+  void setUp() {
+    repository = mock(AccountPersistence.class);
+    persistence = new SingleFlightAccountPersistence(repository, registry);
+  }
+
+  @AfterEach
+  void tearDown() {
+    requests.shutdownNow();
+  }
+
+  /**
+   * Subscribes to the lookup from many threads at once and returns once all of them did.
+   */
+  private <T> List<TestObserver<T>> concurrently(Supplier<TestObserver<T>> lookup)
+      throws InterruptedException {
+    List<TestObserver<T>> observers = new CopyOnWriteArrayList<>();
+    CountDownLatch subscribed = new CountDownLatch(LOOKUPS);
+    for (int i = 0; i < LOOKUPS; ++i) {
+      requests.execute(() -> {
+        observers.add(lookup.get());
+        subscribed.countDown();
+      });
+    }
+    assertThat(subscribed.await(10, TimeUnit.SECONDS)).isTrue();
+    return observers;
+  }
+
+  @Test
+  void concurrentIdenticalLookupsMakeOneRepositoryCall() throws InterruptedException {
+    // the query answers only once every lookup has come in
+    MaybeSubject<Account> query = MaybeSubject.create();
+    when(repository.getAccountByAccountCode(ACCOUNT_CODE)).thenReturn(query);
+    PassiveAccount account = new PassiveAccount();
+    account.setAccountCode(ACCOUNT_CODE);
+
+    List<TestObserver<Account>> observers =
+        concurrently(() -> persistence.getAccountByAccountCode(ACCOUNT_CODE).test());
+    query.onSuccess(account);
+
+    assertThat(observers).hasSize(LOOKUPS)
+        .allSatisfy(observer -> observer.assertValue(account));
+    verify(repository, times(1)).getAccountByAccountCode(any());
+    assertThat(registry.get("singleflight.joined").tag("name", "getAccountByAccountCode")
+        .counter().count()).isEqualTo(LOOKUPS - 1);
+  }
+
+  @Test
+  void lookupAfterACompletedWriteDoesNotJoinAnEarlierQuery() {
+    UUID accountId = UUID.randomUUID();
+    SingleSubject<Long> before = SingleSubject.create();
+    when(repository.getAccountBalance(ACCOUNT_CODE)).thenReturn(before, Single.just(2510L));
+    when(repository.addToBalance(AccountType.PASSIVE, accountId, 10L))
+        .thenReturn(Single.just(true));
+
+    TestObserver<Long> earlier = persistence.getAccountBalance(ACCOUNT_CODE).test();
+    persistence.addToBalance(AccountType.PASSIVE, accountId, 10L).blockingGet();
+    TestObserver<Long> later = persistence.getAccountBalance(ACCOUNT_CODE).test();
+    before.onSuccess(2500L);
+
+    earlier.assertValue(2500L);
+    later.assertValue(2510L);
+    verify(repository, times(2)).getAccountBalance(ACCOUNT_CODE);
+  }
+
+  @Test
+  void everySubscriberGetsItsOwnCopyOfTheAccount() {
+    MaybeSubject<Account> query = MaybeSubject.create();
+    when(repository.getAccountByAccountCode(ACCOUNT_CODE)).thenReturn(query);
+    PassiveAccount account = new PassiveAccount();
+    account.setAccountCode(ACCOUNT_CODE);
+    account.setBalance(2500L);
+
+    TestObserver<Account> first = persistence.getAccountByAccountCode(ACCOUNT_CODE).test();
+    TestObserver<Account> second = persistence.getAccountByAccountCode(ACCOUNT_CODE).test();
+    query.onSuccess(account);
+
+    Account firstAccount = first.values().get(0);
+    firstAccount.setBalance(0L);
+    assertThat(second.values().get(0)).isNotSameAs(firstAccount)
+        .isInstanceOf(PassiveAccount.class)
+        .extracting(Account::getBalance).isEqualTo(2500L);
+    verify(repository, times(1)).getAccountByAccountCode(any());
+  }
+
+  @Test
+  void concurrentIdenticalBalanceLookupsMakeOneRepositoryCall() throws InterruptedException {
+    SingleSubject<Long> query = SingleSubject.create();
+    when(repository.getAccountBalance(ACCOUNT_CODE)).thenReturn(query);
+
+    List<TestObserver<Long>> observers =
+        concurrently(() -> persistence.getAccountBalance(ACCOUNT_CODE).test());
+    query.onSuccess(2500L);
+
+    assertThat(observers).hasSize(LOOKUPS).allSatisfy(observer -> observer.assertValue(2500L));
+    verify(repository, times(1)).getAccountBalance(any());
+  }
+}
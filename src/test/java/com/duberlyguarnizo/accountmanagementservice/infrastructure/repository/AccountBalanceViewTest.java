@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.infrastructure.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.repository.Query;
+import reactor.core.publisher.Mono;
+
+/**
+ * A balance read must be answered from the accountCode_balance index alone, which is what
+ * pays for maintaining it next to the unique accountCode index. The shape of the queries is
+ * checked against the declared index on every build; the plan itself is checked against a
+ * live Mongo when one is given with -Dmongo.uri.
+ */
+class AccountBalanceViewTest {
+  private static final String INDEX = "accountCode_balance";
+
+  @ParameterizedTest
+  @ValueSource(classes = {AssetAccountEntity.class, PassiveAccountEntity.class})
+  void balanceQueryOnlyTouchesTheKeysOfItsIndex(Class<?> entity) {
+    CompoundIndex index = Arrays.stream(entity.getAnnotationsByType(CompoundIndex.class))
+        .filter(declared -> declared.name().equals(INDEX))
+        .findFirst()
+        .orElseThrow();
+    Document keys = Document.parse(index.def());
+    Document projection = Document.parse(AccountBalanceView.FIELDS);
+
+    assertThat(keys.keySet()).first().isEqualTo("accountCode");
+    assertThat(projection).containsEntry("_id", 0);
+    projection.remove("_id");
+    assertThat(keys.keySet()).containsExactlyInAnyOrderElementsOf(projection.keySet());
+  }
+
+  @Test
+  void repositoriesFilterOnTheLeadingKeyAndProjectTheView() throws NoSuchMethodException {
+    for (Class<?> repository : List.of(AssetAccountRepository.class,
+        PassiveAccountRepository.class)) {
+      Query query = repository.getMethod("findBalanceByAccountCode", String.class)
+          .getAnnotation(Query.class);
+      Document filter = Document.parse(query.value().replace("?0", "'19120100000042'"));
+      assertThat(filter.keySet()).containsExactly("accountCode");
+      assertThat(query.fields()).isEqualTo(AccountBalanceView.FIELDS);
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(classes = {AssetAccountEntity.class, PassiveAccountEntity.class})
+  @EnabledIfSystemProperty(named = "mongo.uri", matches = ".+")
+  void balanceReadExaminesNoDocuments(Class<?> entity) {
+    String database = "balance_plan_" + UUID.randomUUID().toString().replace("-", "");
+    try (MongoClient client = MongoClients.create(System.getProperty("mongo.uri"))) {
+      ReactiveMongoTemplate template = new ReactiveMongoTemplate(client, database);
+      try {
+        IndexResolver.create(template.getConverter().getMappingContext())
+            .resolveIndexFor(entity)
+            .forEach(index -> template.indexOps(entity).ensureIndex(index).block());
+        String collection = template.getCollectionName(entity);
+        for (int i = 0; i < 100; ++i) {
+          template.insert(new Document("_id", UUID.randomUUID().toString())
+              .append("accountCode", String.format("1912010000%04d", i))
+              .append("balance", 100L * i), collection).block();
+        }
+
+        Document explained = template.executeCommand(new Document("explain",
+                new Document("find", collection)
+                    .append("filter", new Document("accountCode", "19120100000042"))
+                    .append("projection", Document.parse(AccountBalanceView.FIELDS)))
+                .append("verbosity", "executionStats"))
+            .block();
+
+        Document stats = explained.get("executionStats", Document.class);
+        assertThat(stats.getInteger("nReturned")).isEqualTo(1);
+        assertThat(stats.getInteger("totalDocsExamined")).isZero();
+      } finally {
+        template.getMongoDatabase().flatMap(db -> Mono.from(db.drop())).block();
+      }
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2023. Code by Duberly Guarnizo <duberlygfr@gmail.com>.
+ */
+
+package com.duberlyguarnizo.accountmanagementservice.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.disposables.Disposable;
+import io.reactivex.rxjava3.subjects.SingleSubject;
+import java.util.NoSuchElementException;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class PipelineMetricsTest {
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final PipelineMetrics metrics = new PipelineMetrics(registry, "test.pipeline");
+
+  private long count(String method, String outcome, String exception) {
+    Timer timer = registry.find("test.pipeline")
+        .tags("method", method, "outcome", outcome, "exception", exception)
+        .timer();
+    return timer == null ? 0 : timer.count();
+  }
+
+  private double active(String method) {
+    return registry.get("test.pipeline.active").tag("method", method).gauge().value();
+  }
+
+  @Test
+  void everySubscriptionIsTimedByOutcome() {
+    Single<Integer> single = Single.just(1).compose(metrics.single("read"));
+    single.blockingGet();
+    single.blockingGet();
+    Completable.error(new NoSuchElementException())
+        .compose(metrics.completable("write"))
+        .onErrorComplete()
+        .blockingAwait();
+
+    assertThat(count("read", "success", "none")).isEqualTo(2);
+    assertThat(count("write", "error", "NoSuchElementException")).isEqualTo(1);
+    assertThat(count("write", "success", "none")).isZero();
+  }
+
+  @Test
+  void inFlightSubscriptionsAreCountedUntilTheyTerminate() {
+    SingleSubject<Integer> pending = SingleSubject.create();
+    Single<Integer> single = pending.compose(metrics.single("pending"));
+
+    Disposable first = single.subscribe();
+    single.subscribe();
+    assertThat(active("pending")).isEqualTo(2);
+
+    first.dispose();
+    assertThat(active("pending")).isEqualTo(1);
+    assertThat(count("pending", "cancelled", "none")).isEqualTo(1);
+
+    pending.onSuccess(1);
+    assertThat(active("pending")).isZero();
+    assertThat(count("pending", "success", "none")).isEqualTo(1);
+  }
+
+  @Test
+  void reactorPipelinesAreTimedToo() {
+    Mono.empty().transform(metrics.mono("empty")).block();
+    Flux.range(0, 10).transform(metrics.flux("range")).take(3).blockLast();
+
+    assertThat(count("empty", "success", "none")).isEqualTo(1);
+    // take() cancels the upstream after the third element
+    assertThat(count("range", "cancelled", "none")).isEqualTo(1);
+    assertThat(active("range")).isZero();
+  }
+
+  @Test
+  void prometheusScrapeHasTheHistogramBuckets() {
+    PrometheusMeterRegistry prometheus = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    Single.just(1).compose(new PipelineMetrics(prometheus, "test.pipeline").single("read"))
+        .blockingGet();
+
+    assertThat(prometheus.scrape())
+        .contains("test_pipeline_seconds_bucket{exception=\"none\",method=\"read\","
+            + "outcome=\"success\",le=\"0.001\",} 1.0")
+        .contains("test_pipeline_active{method=\"read\",} 0.0");
+  }
+}